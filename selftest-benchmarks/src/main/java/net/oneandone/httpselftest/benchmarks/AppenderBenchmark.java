@@ -0,0 +1,97 @@
+package net.oneandone.httpselftest.benchmarks;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.MDC;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import net.oneandone.httpselftest.log.logback.BoundedInMemoryAppender;
+
+/**
+ * Appends from several threads at once, like request threads of the application logging during a test run.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class AppenderBenchmark {
+
+    private static final String MDC_KEY = "X-REQUEST-ID";
+
+    private static final String[] RUN_IDS = { "run-0", "run-1", "run-2", "run-3" };
+
+    /**
+     * shared: all threads log for the same run; separate: each thread logs for its own run; unrelated: threads log without a
+     * run id, as regular application traffic does; idle: like unrelated, but no run is registered at all.
+     */
+    @Param({ "shared", "separate", "unrelated", "idle" })
+    public String target;
+
+    private BoundedInMemoryAppender<Object> appender;
+
+    private final AtomicInteger threadCounter = new AtomicInteger();
+
+    private final LoggingEvent event = new LoggingEvent();
+
+    @Setup
+    public void setup() {
+        Set<String> runIds = "idle".equals(target) ? Collections.emptySet() : new HashSet<>(Arrays.asList(RUN_IDS));
+        appender = new BoundedInMemoryAppender<>(runIds, MDC_KEY);
+        appender.start();
+        event.setLevel(Level.INFO);
+        event.setMessage("some message");
+        event.setThreadName("worker");
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        @Setup
+        public void setup(AppenderBenchmark benchmark) {
+            int thread = benchmark.threadCounter.getAndIncrement();
+            switch (benchmark.target) {
+                case "shared":
+                    MDC.put(MDC_KEY, RUN_IDS[0]);
+                    break;
+                case "separate":
+                    MDC.put(MDC_KEY, RUN_IDS[thread % RUN_IDS.length]);
+                    break;
+                default:
+                    MDC.remove(MDC_KEY);
+            }
+        }
+
+        @TearDown
+        public void teardown() {
+            MDC.remove(MDC_KEY);
+        }
+    }
+
+    @Benchmark
+    public void doAppend(ThreadState thread) {
+        appender.doAppend(event);
+    }
+
+}
@@ -0,0 +1,128 @@
+package net.oneandone.httpselftest.benchmarks;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import net.oneandone.httpselftest.log.ConcurrentLogBuffer;
+import net.oneandone.httpselftest.log.EventRenderer;
+import net.oneandone.httpselftest.log.LogDetails;
+import net.oneandone.httpselftest.log.LogSnapshot;
+import net.oneandone.httpselftest.log.SelftestEvent;
+import net.oneandone.httpselftest.log.logback.LogbackEventRenderer;
+import net.oneandone.httpselftest.test.run.SimpleContext;
+import net.oneandone.httpselftest.test.run.TestRunData;
+import net.oneandone.httpselftest.test.run.TestRunResult;
+import net.oneandone.httpselftest.writer.SelftestHtmlWriter;
+
+/**
+ * Renders a test outcome with full log buffers for several loggers, writing to a discarding writer. Log details are created
+ * per invocation, since they cache rendered lines.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HtmlWriterBenchmark {
+
+    private static final Level[] LEVELS = { Level.DEBUG, Level.INFO, Level.INFO, Level.WARN };
+
+    @Param({ "4" })
+    public int loggers;
+
+    @Param({ "300" })
+    public int linesPerLogger;
+
+    private SelftestHtmlWriter writer;
+
+    private TestRunData testRun;
+
+    private EventRenderer renderer;
+
+    private List<LogSnapshot> snapshots;
+
+    private SimpleContext ctx;
+
+    @Setup
+    public void setup() {
+        writer = new SelftestHtmlWriter(new PrintWriter(new DiscardingWriter()));
+        testRun = TestRunData.completed("benchmark", "benchmark-1-------------", 42, 1000, TestRunResult.success());
+        ctx = new SimpleContext();
+
+        renderer = new LogbackEventRenderer(Optional.empty());
+        snapshots = new ArrayList<>();
+        for (int logger = 0; logger < loggers; logger++) {
+            ConcurrentLogBuffer buffer = new ConcurrentLogBuffer(linesPerLogger);
+            for (int line = 0; line < linesPerLogger; line++) {
+                Level level = LEVELS[line % LEVELS.length];
+                String message = "request " + line + " forwarded to http://backend.local:8080/api/resource?id=" + line
+                        + " took <15ms> & returned 200";
+                buffer.add(SelftestEvent.of(event(level, message), level.levelStr));
+            }
+            snapshots.add(buffer.snapshot());
+        }
+    }
+
+    @Benchmark
+    public void writeTestOutcome() {
+        List<LogDetails> logs = new ArrayList<>(snapshots.size());
+        for (int logger = 0; logger < snapshots.size(); logger++) {
+            logs.add(new LogDetails(Arrays.asList("LOGGER" + logger), snapshots.get(logger), renderer));
+        }
+        writer.writeTestOutcome(testRun, logs, ctx);
+    }
+
+    private static LoggingEvent event(Level level, String message) {
+        LoggingEvent event = new LoggingEvent();
+        event.setLevel(level);
+        event.setMessage(message);
+        event.setThreadName("http-nio-8080-exec-1");
+        event.setLoggerName("net.oneandone.example.SomeController");
+        event.setTimeStamp(System.currentTimeMillis());
+        return event;
+    }
+
+    private static class DiscardingWriter extends Writer {
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            // discard
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            // discard
+        }
+
+        @Override
+        public void flush() {
+            // nothing buffered
+        }
+
+        @Override
+        public void close() {
+            // nothing to release
+        }
+    }
+
+}
@@ -0,0 +1,76 @@
+package net.oneandone.httpselftest.benchmarks;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.oneandone.httpselftest.http.DataBasedHttpDetails;
+import net.oneandone.httpselftest.http.Headers;
+import net.oneandone.httpselftest.http.presenter.FormEntityPresenter;
+import net.oneandone.httpselftest.http.presenter.JsonEntityPresenter;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PresenterBenchmark {
+
+    @Param({ "10", "1000" })
+    public int entries;
+
+    private final JsonEntityPresenter jsonPresenter = new JsonEntityPresenter();
+
+    private final FormEntityPresenter formPresenter = new FormEntityPresenter();
+
+    private Headers jsonHeaders;
+
+    private DataBasedHttpDetails jsonDetails;
+
+    private Headers formHeaders;
+
+    private DataBasedHttpDetails formDetails;
+
+    @Setup
+    public void setup() {
+        StringBuilder json = new StringBuilder("{\"items\": [");
+        StringBuilder form = new StringBuilder();
+        for (int i = 0; i < entries; i++) {
+            json.append(i == 0 ? "" : ", ").append("{\"id\": ").append(i).append(", \"url\": \"http://host/path/").append(i)
+                    .append("\", \"active\": true}");
+            form.append(i == 0 ? "" : "&").append("key").append(i).append("=value%20").append(i).append("%26more");
+        }
+        json.append("]}");
+
+        jsonHeaders = new Headers();
+        jsonHeaders.add("Content-Type", "application/json");
+        jsonDetails = new DataBasedHttpDetails("HTTP/1.1 200 OK", jsonHeaders, json.toString());
+
+        formHeaders = new Headers();
+        formHeaders.add("Content-Type", "application/x-www-form-urlencoded");
+        formDetails = new DataBasedHttpDetails("POST http://host/path", formHeaders, form.toString());
+    }
+
+    @Benchmark
+    public Optional<String> json() {
+        return jsonPresenter.parse(jsonHeaders, jsonDetails);
+    }
+
+    @Benchmark
+    public Optional<String> form() {
+        return formPresenter.parse(formHeaders, formDetails);
+    }
+
+}
@@ -0,0 +1,74 @@
+package net.oneandone.httpselftest.benchmarks;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.oneandone.httpselftest.http.HttpClient;
+import net.oneandone.httpselftest.http.HttpClients;
+import net.oneandone.httpselftest.http.TestRequest;
+import net.oneandone.httpselftest.http.WrappedRequest;
+import net.oneandone.httpselftest.http.WrappedResponse;
+
+/**
+ * Request/response round trips of {@link net.oneandone.httpselftest.http.SocketHttpClient} against a local stand-in server.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SocketHttpClientBenchmark {
+
+    @Param({ "fixed", "chunked" })
+    public String encoding;
+
+    @Param({ "1024", "4194304" })
+    public int bodySize;
+
+    @Param({ "false", "true" })
+    public boolean keepAlive;
+
+    private StandInHttpServer server;
+
+    private HttpClients clients;
+
+    private HttpClient client;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        byte[] body = new byte[bodySize];
+        Arrays.fill(body, (byte) 'x');
+
+        server = new StandInHttpServer();
+        server.respond("body", encoding.equals("chunked") ? StandInHttpServer.chunked(body, 8192) : StandInHttpServer.fixedLength(body));
+        clients = new HttpClients(HttpClients.DEFAULT_MAX_BODY_BYTES, keepAlive);
+        client = clients.get(HttpClient.Type.SOCKET);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws Exception {
+        clients.close();
+        server.close();
+    }
+
+    @Benchmark
+    public WrappedResponse call() {
+        return client.call(server.baseUrl(), new WrappedRequest(new TestRequest("body", "GET")), 5000);
+    }
+
+}
@@ -0,0 +1,122 @@
+package net.oneandone.httpselftest.benchmarks;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Minimal local HTTP/1.1 server answering GET requests with canned raw responses, keeping connections alive. Avoids measuring
+ * a real servlet container alongside the client.
+ */
+public class StandInHttpServer implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+
+    private final Map<String, byte[]> responses = new ConcurrentHashMap<>();
+
+    public StandInHttpServer() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "stand-in-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + serverSocket.getLocalPort() + "/";
+    }
+
+    /**
+     * @param path     request path, without leading slash
+     * @param response complete raw response
+     */
+    public void respond(String path, byte[] response) {
+        responses.put("/" + path, response);
+    }
+
+    public static byte[] fixedLength(byte[] body) {
+        String head = "HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: " + body.length + "\r\n\r\n";
+        return concat(head.getBytes(US_ASCII), body);
+    }
+
+    public static byte[] chunked(byte[] body, int chunkSize) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] head = "HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nTransfer-Encoding: chunked\r\n\r\n".getBytes(US_ASCII);
+        out.write(head, 0, head.length);
+        for (int offset = 0; offset < body.length; offset += chunkSize) {
+            int length = Math.min(chunkSize, body.length - offset);
+            byte[] size = (Integer.toHexString(length) + "\r\n").getBytes(US_ASCII);
+            out.write(size, 0, size.length);
+            out.write(body, offset, length);
+            out.write('\r');
+            out.write('\n');
+        }
+        byte[] last = "0\r\n\r\n".getBytes(US_ASCII);
+        out.write(last, 0, last.length);
+        return out.toByteArray();
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] combined = new byte[first.length + second.length];
+        System.arraycopy(first, 0, combined, 0, first.length);
+        System.arraycopy(second, 0, combined, first.length, second.length);
+        return combined;
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread handler = new Thread(() -> serve(socket), "stand-in-connection");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                // closed
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket closing = socket) {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            String path;
+            while ((path = readRequestPath(in)) != null) {
+                byte[] response = responses.get(path);
+                out.write(response != null ? response : "HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n".getBytes(US_ASCII));
+                out.flush();
+            }
+        } catch (IOException e) {
+            // connection closed by client
+        }
+    }
+
+    // reads a request without body, returns its path or null at end of stream
+    private static String readRequestPath(InputStream in) throws IOException {
+        StringBuilder head = new StringBuilder();
+        int c;
+        while ((c = in.read()) >= 0) {
+            head.append((char) c);
+            int length = head.length();
+            if (length >= 4 && head.charAt(length - 1) == '\n' && head.charAt(length - 3) == '\n') {
+                String requestLine = head.substring(0, head.indexOf("\r\n"));
+                return requestLine.split(" ")[1];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+}
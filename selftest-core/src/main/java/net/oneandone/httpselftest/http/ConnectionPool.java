@@ -0,0 +1,79 @@
+package net.oneandone.httpselftest.http;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Idle persistent connections of a test run, grouped by target address. Thread-safe, so parallel test cases can share it.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private final Map<InetSocketAddress, Deque<Socket>> idle = new ConcurrentHashMap<>();
+
+    private volatile boolean closed;
+
+    /**
+     * @param address target address
+     * @return an idle connection to the address, or null if there is none
+     */
+    Socket acquire(InetSocketAddress address) {
+        Deque<Socket> sockets = idle.get(address);
+        if (sockets == null) {
+            return null;
+        }
+        Socket socket;
+        while ((socket = sockets.pollFirst()) != null) {
+            if (!socket.isClosed() && !socket.isInputShutdown()) {
+                return socket;
+            }
+            closeQuietly(socket);
+        }
+        return null;
+    }
+
+    /**
+     * Returns a connection for reuse. The previous response must have been consumed completely.
+     *
+     * @param address target address the socket is connected to
+     * @param socket  the connection
+     */
+    void release(InetSocketAddress address, Socket socket) {
+        if (closed) {
+            closeQuietly(socket);
+            return;
+        }
+        idle.computeIfAbsent(address, always -> new ConcurrentLinkedDeque<>()).addFirst(socket);
+        if (closed) { // raced with close()
+            close();
+        }
+    }
+
+    int idleCount() {
+        return idle.values().stream().mapToInt(Deque::size).sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        idle.values().forEach(sockets -> {
+            Socket socket;
+            while ((socket = sockets.pollFirst()) != null) {
+                closeQuietly(socket);
+            }
+        });
+    }
+
+    static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // nothing left to do
+        }
+    }
+
+}
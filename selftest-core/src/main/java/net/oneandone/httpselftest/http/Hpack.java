@@ -0,0 +1,315 @@
+package net.oneandone.httpselftest.http;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import net.oneandone.httpselftest.common.Pair;
+
+/**
+ * Header compression for HTTP/2, see https://tools.ietf.org/html/rfc7541. The encoder sends every field as a literal without
+ * indexing, so it keeps no state and the dump of a request shows exactly what was sent. The decoder understands everything a
+ * server may send, including the dynamic table and Huffman coded strings.
+ */
+final class Hpack {
+
+    static final int DEFAULT_TABLE_SIZE = 4096;
+
+    // https://tools.ietf.org/html/rfc7541#appendix-A, index 0 is unused
+    private static final String[][] STATIC_TABLE = { { null, null }, //
+            { ":authority", "" }, { ":method", "GET" }, { ":method", "POST" }, { ":path", "/" }, { ":path", "/index.html" },
+            { ":scheme", "http" }, { ":scheme", "https" }, { ":status", "200" }, { ":status", "204" }, { ":status", "206" },
+            { ":status", "304" }, { ":status", "400" }, { ":status", "404" }, { ":status", "500" }, { "accept-charset", "" },
+            { "accept-encoding", "gzip, deflate" }, { "accept-language", "" }, { "accept-ranges", "" }, { "accept", "" },
+            { "access-control-allow-origin", "" }, { "age", "" }, { "allow", "" }, { "authorization", "" },
+            { "cache-control", "" }, { "content-disposition", "" }, { "content-encoding", "" }, { "content-language", "" },
+            { "content-length", "" }, { "content-location", "" }, { "content-range", "" }, { "content-type", "" },
+            { "cookie", "" }, { "date", "" }, { "etag", "" }, { "expect", "" }, { "expires", "" }, { "from", "" },
+            { "host", "" }, { "if-match", "" }, { "if-modified-since", "" }, { "if-none-match", "" }, { "if-range", "" },
+            { "if-unmodified-since", "" }, { "last-modified", "" }, { "link", "" }, { "location", "" }, { "max-forwards", "" },
+            { "proxy-authenticate", "" }, { "proxy-authorization", "" }, { "range", "" }, { "referer", "" }, { "refresh", "" },
+            { "retry-after", "" }, { "server", "" }, { "set-cookie", "" }, { "strict-transport-security", "" },
+            { "transfer-encoding", "" }, { "user-agent", "" }, { "vary", "" }, { "via", "" }, { "www-authenticate", "" } };
+
+    private Hpack() {
+    }
+
+    /**
+     * @param fields header fields with lower case names, pseudo-header fields first
+     * @return the header block
+     */
+    static byte[] encode(List<Pair<String, String>> fields) {
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        for (Pair<String, String> field : fields) {
+            int nameIndex = staticNameIndex(field.left);
+            // literal header field without indexing, see https://tools.ietf.org/html/rfc7541#section-6.2.2
+            writeInteger(block, 0x00, 4, nameIndex);
+            if (nameIndex == 0) {
+                writeString(block, field.left);
+            }
+            writeString(block, field.right);
+        }
+        return block.toByteArray();
+    }
+
+    private static int staticNameIndex(String name) {
+        for (int i = 1; i < STATIC_TABLE.length; i++) {
+            if (STATIC_TABLE[i][0].equals(name)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private static void writeString(ByteArrayOutputStream block, String value) {
+        byte[] bytes = value.getBytes(ISO_8859_1);
+        writeInteger(block, 0x00, 7, bytes.length); // not Huffman coded
+        block.write(bytes, 0, bytes.length);
+    }
+
+    static void writeInteger(ByteArrayOutputStream block, int firstByteBits, int prefixBits, int value) {
+        int maxPrefix = (1 << prefixBits) - 1;
+        if (value < maxPrefix) {
+            block.write(firstByteBits | value);
+            return;
+        }
+        block.write(firstByteBits | maxPrefix);
+        int remainder = value - maxPrefix;
+        while (remainder >= 0x80) {
+            block.write((remainder & 0x7f) | 0x80);
+            remainder >>>= 7;
+        }
+        block.write(remainder);
+    }
+
+    /**
+     * Decodes the header blocks of one connection in order. Not thread-safe.
+     */
+    static final class Decoder {
+
+        private final LinkedList<Pair<String, String>> dynamicTable = new LinkedList<>(); // newest first
+
+        private int maxTableSize = DEFAULT_TABLE_SIZE;
+
+        private int tableSize;
+
+        /**
+         * @param block a complete header block
+         * @return the header fields in order
+         * @throws IllegalStateException if the block is malformed
+         */
+        List<Pair<String, String>> decode(byte[] block) {
+            List<Pair<String, String>> fields = new ArrayList<>();
+            int[] position = { 0 };
+            while (position[0] < block.length) {
+                int first = block[position[0]] & 0xff;
+                if ((first & 0x80) != 0) { // indexed field
+                    fields.add(entry(readInteger(block, position, 7)));
+                } else if ((first & 0xc0) == 0x40) { // literal with incremental indexing
+                    Pair<String, String> field = readLiteral(block, position, 6);
+                    add(field);
+                    fields.add(field);
+                } else if ((first & 0xe0) == 0x20) { // dynamic table size update
+                    int size = readInteger(block, position, 5);
+                    if (size > DEFAULT_TABLE_SIZE) {
+                        throw new IllegalStateException("dynamic table size exceeds our setting: " + size);
+                    }
+                    maxTableSize = size;
+                    evict();
+                } else { // literal without indexing or never indexed
+                    fields.add(readLiteral(block, position, 4));
+                }
+            }
+            return fields;
+        }
+
+        private Pair<String, String> readLiteral(byte[] block, int[] position, int prefixBits) {
+            int nameIndex = readInteger(block, position, prefixBits);
+            String name = nameIndex == 0 ? readString(block, position) : entry(nameIndex).left;
+            return new Pair<>(name, readString(block, position));
+        }
+
+        private Pair<String, String> entry(int index) {
+            if (index <= 0) {
+                throw new IllegalStateException("invalid header table index: " + index);
+            }
+            if (index < STATIC_TABLE.length) {
+                return new Pair<>(STATIC_TABLE[index][0], STATIC_TABLE[index][1]);
+            }
+            int dynamicIndex = index - STATIC_TABLE.length;
+            if (dynamicIndex >= dynamicTable.size()) {
+                throw new IllegalStateException("invalid header table index: " + index);
+            }
+            return dynamicTable.get(dynamicIndex);
+        }
+
+        private void add(Pair<String, String> field) {
+            dynamicTable.addFirst(field);
+            tableSize += entrySize(field);
+            evict();
+        }
+
+        private void evict() {
+            while (tableSize > maxTableSize) {
+                tableSize -= entrySize(dynamicTable.removeLast());
+            }
+        }
+
+        // https://tools.ietf.org/html/rfc7541#section-4.1
+        private static int entrySize(Pair<String, String> field) {
+            return field.left.length() + field.right.length() + 32;
+        }
+
+        private static String readString(byte[] block, int[] position) {
+            if (position[0] >= block.length) {
+                throw new IllegalStateException("header block ends within a string");
+            }
+            boolean huffman = (block[position[0]] & 0x80) != 0;
+            int length = readInteger(block, position, 7);
+            if (length > block.length - position[0]) {
+                throw new IllegalStateException("header block ends within a string");
+            }
+            byte[] bytes = Arrays.copyOfRange(block, position[0], position[0] + length);
+            position[0] += length;
+            return new String(huffman ? Huffman.decode(bytes) : bytes, ISO_8859_1);
+        }
+
+        static int readInteger(byte[] block, int[] position, int prefixBits) {
+            int maxPrefix = (1 << prefixBits) - 1;
+            int value = block[position[0]++] & maxPrefix;
+            if (value < maxPrefix) {
+                return value;
+            }
+            int shift = 0;
+            int next;
+            do {
+                if (position[0] >= block.length || shift > 21) {
+                    throw new IllegalStateException("invalid integer in header block");
+                }
+                next = block[position[0]++] & 0xff;
+                value += (next & 0x7f) << shift;
+                shift += 7;
+            } while ((next & 0x80) != 0);
+            return value;
+        }
+    }
+
+    /**
+     * The canonical Huffman code of https://tools.ietf.org/html/rfc7541#appendix-B, symbol 256 is EOS.
+     */
+    static final class Huffman {
+
+        private static final int[] CODES = {
+                0x1ff8, 0x7fffd8, 0xfffffe2, 0xfffffe3, 0xfffffe4, 0xfffffe5, 0xfffffe6, 0xfffffe7,
+                0xfffffe8, 0xffffea, 0x3ffffffc, 0xfffffe9, 0xfffffea, 0x3ffffffd, 0xfffffeb, 0xfffffec,
+                0xfffffed, 0xfffffee, 0xfffffef, 0xffffff0, 0xffffff1, 0xffffff2, 0x3ffffffe, 0xffffff3,
+                0xffffff4, 0xffffff5, 0xffffff6, 0xffffff7, 0xffffff8, 0xffffff9, 0xffffffa, 0xffffffb,
+                0x14, 0x3f8, 0x3f9, 0xffa, 0x1ff9, 0x15, 0xf8, 0x7fa,
+                0x3fa, 0x3fb, 0xf9, 0x7fb, 0xfa, 0x16, 0x17, 0x18,
+                0x0, 0x1, 0x2, 0x19, 0x1a, 0x1b, 0x1c, 0x1d,
+                0x1e, 0x1f, 0x5c, 0xfb, 0x7ffc, 0x20, 0xffb, 0x3fc,
+                0x1ffa, 0x21, 0x5d, 0x5e, 0x5f, 0x60, 0x61, 0x62,
+                0x63, 0x64, 0x65, 0x66, 0x67, 0x68, 0x69, 0x6a,
+                0x6b, 0x6c, 0x6d, 0x6e, 0x6f, 0x70, 0x71, 0x72,
+                0xfc, 0x73, 0xfd, 0x1ffb, 0x7fff0, 0x1ffc, 0x3ffc, 0x22,
+                0x7ffd, 0x3, 0x23, 0x4, 0x24, 0x5, 0x25, 0x26,
+                0x27, 0x6, 0x74, 0x75, 0x28, 0x29, 0x2a, 0x7,
+                0x2b, 0x76, 0x2c, 0x8, 0x9, 0x2d, 0x77, 0x78,
+                0x79, 0x7a, 0x7b, 0x7ffe, 0x7fc, 0x3ffd, 0x1ffd, 0xffffffc,
+                0xfffe6, 0x3fffd2, 0xfffe7, 0xfffe8, 0x3fffd3, 0x3fffd4, 0x3fffd5, 0x7fffd9,
+                0x3fffd6, 0x7fffda, 0x7fffdb, 0x7fffdc, 0x7fffdd, 0x7fffde, 0xffffeb, 0x7fffdf,
+                0xffffec, 0xffffed, 0x3fffd7, 0x7fffe0, 0xffffee, 0x7fffe1, 0x7fffe2, 0x7fffe3,
+                0x7fffe4, 0x1fffdc, 0x3fffd8, 0x7fffe5, 0x3fffd9, 0x7fffe6, 0x7fffe7, 0xffffef,
+                0x3fffda, 0x1fffdd, 0xfffe9, 0x3fffdb, 0x3fffdc, 0x7fffe8, 0x7fffe9, 0x1fffde,
+                0x7fffea, 0x3fffdd, 0x3fffde, 0xfffff0, 0x1fffdf, 0x3fffdf, 0x7fffeb, 0x7fffec,
+                0x1fffe0, 0x1fffe1, 0x3fffe0, 0x1fffe2, 0x7fffed, 0x3fffe1, 0x7fffee, 0x7fffef,
+                0xfffea, 0x3fffe2, 0x3fffe3, 0x3fffe4, 0x7ffff0, 0x3fffe5, 0x3fffe6, 0x7ffff1,
+                0x3ffffe0, 0x3ffffe1, 0xfffeb, 0x7fff1, 0x3fffe7, 0x7ffff2, 0x3fffe8, 0x1ffffec,
+                0x3ffffe2, 0x3ffffe3, 0x3ffffe4, 0x7ffffde, 0x7ffffdf, 0x3ffffe5, 0xfffff1, 0x1ffffed,
+                0x7fff2, 0x1fffe3, 0x3ffffe6, 0x7ffffe0, 0x7ffffe1, 0x3ffffe7, 0x7ffffe2, 0xfffff2,
+                0x1fffe4, 0x1fffe5, 0x3ffffe8, 0x3ffffe9, 0xffffffd, 0x7ffffe3, 0x7ffffe4, 0x7ffffe5,
+                0xfffec, 0xfffff3, 0xfffed, 0x1fffe6, 0x3fffe9, 0x1fffe7, 0x1fffe8, 0x7ffff3,
+                0x3fffea, 0x3fffeb, 0x1ffffee, 0x1ffffef, 0xfffff4, 0xfffff5, 0x3ffffea, 0x7ffff4,
+                0x3ffffeb, 0x7ffffe6, 0x3ffffec, 0x3ffffed, 0x7ffffe7, 0x7ffffe8, 0x7ffffe9, 0x7ffffea,
+                0x7ffffeb, 0xffffffe, 0x7ffffec, 0x7ffffed, 0x7ffffee, 0x7ffffef, 0x7fffff0, 0x3ffffee,
+                0x3fffffff, };
+
+        private static final byte[] LENGTHS = {
+                13, 23, 28, 28, 28, 28, 28, 28, 28, 24, 30, 28, 28, 30, 28, 28, 28, 28, 28, 28, 28, 28, 30, 28,
+                28, 28, 28, 28, 28, 28, 28, 28, 6, 10, 10, 12, 13, 6, 8, 11, 10, 10, 8, 11, 8, 6, 6, 6,
+                5, 5, 5, 6, 6, 6, 6, 6, 6, 6, 7, 8, 15, 6, 12, 10, 13, 6, 7, 7, 7, 7, 7, 7,
+                7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 8, 7, 8, 13, 19, 13, 14, 6,
+                15, 5, 6, 5, 6, 5, 6, 6, 6, 5, 7, 7, 6, 6, 6, 5, 6, 7, 6, 5, 5, 6, 7, 7,
+                7, 7, 7, 15, 11, 14, 13, 28, 20, 22, 20, 20, 22, 22, 22, 23, 22, 23, 23, 23, 23, 23, 24, 23,
+                24, 24, 22, 23, 24, 23, 23, 23, 23, 21, 22, 23, 22, 23, 23, 24, 22, 21, 20, 22, 22, 23, 23, 21,
+                23, 22, 22, 24, 21, 22, 23, 23, 21, 21, 22, 21, 23, 22, 23, 23, 20, 22, 22, 22, 23, 22, 22, 23,
+                26, 26, 20, 19, 22, 23, 22, 25, 26, 26, 26, 27, 27, 26, 24, 25, 19, 21, 26, 27, 27, 26, 27, 24,
+                21, 21, 26, 26, 28, 27, 27, 27, 20, 24, 20, 21, 22, 21, 21, 23, 22, 22, 25, 25, 24, 24, 26, 23,
+                26, 27, 26, 26, 27, 27, 27, 27, 27, 28, 27, 27, 27, 27, 27, 26, 30, };
+
+        private static final int MAX_LENGTH = 30;
+
+        private static final int EOS = 256;
+
+        // canonical decoding: the codes of one length are consecutive, ordered like their symbols
+        private static final int[] FIRST_CODE = new int[MAX_LENGTH + 1];
+
+        private static final int[] COUNT = new int[MAX_LENGTH + 1];
+
+        private static final int[] FIRST_INDEX = new int[MAX_LENGTH + 1];
+
+        private static final int[] SYMBOLS = new int[CODES.length];
+
+        static {
+            int index = 0;
+            for (int length = 1; length <= MAX_LENGTH; length++) {
+                FIRST_INDEX[length] = index;
+                FIRST_CODE[length] = Integer.MAX_VALUE;
+                for (int symbol = 0; symbol < CODES.length; symbol++) {
+                    if (LENGTHS[symbol] == length) {
+                        FIRST_CODE[length] = Math.min(FIRST_CODE[length], CODES[symbol]);
+                        SYMBOLS[index++] = symbol;
+                        COUNT[length]++;
+                    }
+                }
+            }
+        }
+
+        private Huffman() {
+        }
+
+        static byte[] decode(byte[] encoded) {
+            ByteArrayOutputStream decoded = new ByteArrayOutputStream(encoded.length * 8 / 5);
+            int code = 0;
+            int length = 0;
+            for (byte b : encoded) {
+                for (int bit = 7; bit >= 0; bit--) {
+                    code = (code << 1) | ((b >>> bit) & 1);
+                    length++;
+                    int offset = code - FIRST_CODE[length];
+                    if (COUNT[length] > 0 && offset >= 0 && offset < COUNT[length]) {
+                        int symbol = SYMBOLS[FIRST_INDEX[length] + offset];
+                        if (symbol == EOS) {
+                            throw new IllegalStateException("Huffman coded string contains EOS");
+                        }
+                        decoded.write(symbol);
+                        code = 0;
+                        length = 0;
+                    } else if (length == MAX_LENGTH) {
+                        throw new IllegalStateException("invalid Huffman code");
+                    }
+                }
+            }
+            // padding is the most significant bits of EOS, i.e. up to 7 one bits
+            if (length > 7 || code != (1 << length) - 1) {
+                throw new IllegalStateException("invalid Huffman padding");
+            }
+            return decoded.toByteArray();
+        }
+    }
+
+}
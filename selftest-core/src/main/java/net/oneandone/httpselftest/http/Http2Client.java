@@ -0,0 +1,149 @@
+package net.oneandone.httpselftest.http;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static net.oneandone.httpselftest.http.UrlConnectionHttpClient.concatAvoidingDuplicateSlash;
+
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import net.oneandone.httpselftest.common.Pair;
+
+/**
+ * Speaks HTTP/2 over cleartext TCP with prior knowledge (h2c). All requests of a test run to the same address are multiplexed
+ * as streams over one connection. Request and response details carry the frames of the stream for the frame dump.
+ */
+public class Http2Client implements HttpClient {
+
+    // see https://tools.ietf.org/html/rfc7540#section-8.1.2.2
+    private static final List<String> CONNECTION_SPECIFIC_HEADERS =
+            Arrays.asList("connection", "keep-alive", "proxy-connection", "transfer-encoding", "upgrade");
+
+    private final int maxBodyBytes;
+
+    private final Http2ConnectionPool pool;
+
+    /**
+     * @param maxBodyBytes maximum size of a response body; larger responses fail with an {@link HttpException}
+     * @param pool         connections to multiplex the requests on
+     */
+    Http2Client(int maxBodyBytes, Http2ConnectionPool pool) {
+        if (maxBodyBytes < 0) {
+            throw new IllegalArgumentException("maxBodyBytes must not be negative, but was: " + maxBodyBytes);
+        }
+        this.maxBodyBytes = maxBodyBytes;
+        this.pool = pool;
+    }
+
+    @Override
+    public WrappedResponse call(String baseUrl, WrappedRequest requestw, int timeoutMillis) {
+        try {
+            TestRequest request = requestw.request;
+            SocketHttpClient.checkCharsets(request);
+            if (requestw.streamingBody != null) {
+                throw new IllegalArgumentException(getClass().getSimpleName() + " does not support streaming response bodies");
+            }
+
+            URL endpoint = new URL(baseUrl);
+            long startNanos = System.nanoTime();
+            long deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+            int port = endpoint.getPort();
+            if (port < 0) {
+                throw new IllegalArgumentException("No port provided: " + baseUrl);
+            }
+            String path = concatAvoidingDuplicateSlash(endpoint.getPath(), request.path);
+            InetSocketAddress address = new InetSocketAddress(endpoint.getHost(), port);
+
+            String authority = address.getHostString() + ":" + port;
+            Headers requestHeaders = new Headers();
+            List<Pair<String, String>> fields = requestFields(request, authority, path, requestHeaders);
+            byte[] body = request.body == null ? null : request.body.getBytes(UTF_8);
+
+            Http2Connection connection = pool.acquire(address, timeoutMillis);
+            long connectedNanos = System.nanoTime();
+            Http2Connection.Stream stream = connection.send(fields, body, maxBodyBytes, deadlineNanos);
+            long sentNanos = System.nanoTime();
+            requestw.details =
+                    new Http2Details(request.method + " " + path + " HTTP/2", requestHeaders, request.body, stream.sentFrames());
+
+            try {
+                stream.await(deadlineNanos);
+            } catch (TimeoutException e) {
+                connection.cancel(stream);
+                throw new HttpException(new SocketTimeoutException("Read timed out"));
+            }
+
+            return response(stream, startNanos, connectedNanos, sentNanos);
+        } catch (HttpException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HttpException(e);
+        } catch (TimeoutException e) {
+            throw new HttpException(new SocketTimeoutException(e.getMessage()));
+        } catch (Exception e) {
+            throw new HttpException(e);
+        }
+    }
+
+    private static List<Pair<String, String>> requestFields(TestRequest request, String authority, String path,
+            Headers requestHeaders) {
+        List<Pair<String, String>> fields = new ArrayList<>();
+        fields.add(new Pair<>(":method", request.method));
+        fields.add(new Pair<>(":scheme", "http"));
+        fields.add(new Pair<>(":authority", authority));
+        fields.add(new Pair<>(":path", path));
+        request.headers.stream().forEach(header -> {
+            String name = header.left.toLowerCase();
+            if (CONNECTION_SPECIFIC_HEADERS.contains(name)) {
+                throw new IllegalArgumentException("Header not allowed in HTTP/2: " + header.left);
+            }
+            fields.add(new Pair<>(name, header.right));
+            requestHeaders.add(name, header.right);
+        });
+        if (request.body != null) {
+            String contentLength = String.valueOf(request.body.getBytes(UTF_8).length);
+            fields.add(new Pair<>("content-length", contentLength));
+            requestHeaders.add("content-length", contentLength);
+        }
+        return fields;
+    }
+
+    private static WrappedResponse response(Http2Connection.Stream stream, long startNanos, long connectedNanos,
+            long sentNanos) {
+        String status = null;
+        Headers headers = new Headers();
+        for (Pair<String, String> field : stream.fields()) {
+            if (field.left.equals(":status")) {
+                status = field.right;
+            } else if (!field.left.startsWith(":")) {
+                headers.add(field.left, field.right);
+            }
+        }
+        if (status == null) {
+            throw new HttpException(new IllegalStateException("response without :status on stream " + stream.id));
+        }
+        String body = new String(stream.body(), UTF_8);
+
+        TestResponse response = new TestResponse(Integer.parseInt(status), headers, body);
+        HttpDetails details = new Http2Details("HTTP/2 " + status, headers, body.isEmpty() ? null : body,
+                stream.receivedFrames());
+        // the reader may have received the response before the sender got to take the time
+        long firstByteNanos = Math.max(sentNanos, stream.firstFrameNanos());
+        PhaseTimings timings = new PhaseTimings(micros(startNanos, connectedNanos), micros(connectedNanos, sentNanos),
+                micros(sentNanos, firstByteNanos), micros(firstByteNanos, stream.headersNanos()),
+                micros(stream.headersNanos(), stream.endNanos()));
+        return new WrappedResponse(response, details, timings);
+    }
+
+    private static long micros(long fromNanos, long toNanos) {
+        return Math.max(0, toNanos - fromNanos) / 1_000;
+    }
+
+}
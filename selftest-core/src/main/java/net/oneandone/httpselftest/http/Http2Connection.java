@@ -0,0 +1,512 @@
+package net.oneandone.httpselftest.http;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.oneandone.httpselftest.common.Pair;
+
+/**
+ * A cleartext HTTP/2 connection with prior knowledge, see https://tools.ietf.org/html/rfc7540#section-3.4. Any number of
+ * threads send requests as concurrent streams, a single reader thread dispatches the frames of the server to them.
+ */
+final class Http2Connection implements AutoCloseable {
+
+    static final int DEFAULT_WINDOW_SIZE = 65_535;
+
+    static final int MAX_FRAME_SIZE = 16_384;
+
+    private static final byte[] PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(US_ASCII);
+
+    private static final int SETTINGS_ENABLE_PUSH = 0x2;
+
+    private static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
+
+    private static final int ERROR_CANCEL = 0x8;
+
+    private static final AtomicInteger CONNECTION_COUNTER = new AtomicInteger();
+
+    private final Socket socket;
+
+    private final DataInputStream in;
+
+    private final OutputStream out; // guarded by itself, also orders the stream ids
+
+    private final Map<Integer, Stream> streams = new ConcurrentHashMap<>();
+
+    private final Hpack.Decoder decoder = new Hpack.Decoder(); // reader thread only
+
+    private int nextStreamId = 1; // guarded by out
+
+    private final Object windowLock = new Object();
+
+    private long connectionSendWindow = DEFAULT_WINDOW_SIZE; // guarded by windowLock
+
+    private int initialStreamWindow = DEFAULT_WINDOW_SIZE; // guarded by windowLock
+
+    private volatile boolean usable = true;
+
+    private Http2Connection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+    }
+
+    static Http2Connection open(InetSocketAddress address, int timeoutMillis) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(address, timeoutMillis);
+            socket.setTcpNoDelay(true);
+            Http2Connection connection = new Http2Connection(socket);
+            connection.start();
+            return connection;
+        } catch (IOException | RuntimeException e) {
+            ConnectionPool.closeQuietly(socket);
+            throw e;
+        }
+    }
+
+    private void start() throws IOException {
+        synchronized (out) {
+            out.write(PREFACE);
+            byte[] settings = new byte[6];
+            settings[1] = SETTINGS_ENABLE_PUSH; // value 0
+            new Http2Frame(Http2Frame.SETTINGS, 0, 0, settings).write(out);
+            out.flush();
+        }
+        Thread reader = new Thread(this::readFrames, "selftest-h2-" + CONNECTION_COUNTER.incrementAndGet());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * @return false once the connection failed, was closed or the server announced to close it
+     */
+    boolean isUsable() {
+        return usable;
+    }
+
+    /**
+     * Sends a request on a new stream.
+     *
+     * @param fields        the header fields, pseudo-header fields first
+     * @param body          the request body, or null
+     * @param maxBodyBytes  maximum size of the response body
+     * @param deadlineNanos when to give up waiting for flow control to allow sending the body
+     * @return the stream to await the response on
+     * @throws IOException      on write failure
+     * @throws TimeoutException if the deadline passed
+     */
+    Stream send(List<Pair<String, String>> fields, byte[] body, int maxBodyBytes, long deadlineNanos)
+            throws IOException, InterruptedException, TimeoutException {
+        byte[] block = Hpack.encode(fields);
+        Stream stream;
+        synchronized (out) {
+            if (!usable) {
+                throw new IOException("HTTP/2 connection is closed");
+            }
+            synchronized (windowLock) {
+                stream = new Stream(nextStreamId, maxBodyBytes, initialStreamWindow);
+            }
+            nextStreamId += 2;
+            streams.put(stream.id, stream);
+            writeHeaderBlock(stream, block, fields, body == null);
+        }
+        if (body != null) {
+            sendData(stream, body, deadlineNanos);
+        }
+        return stream;
+    }
+
+    private void writeHeaderBlock(Stream stream, byte[] block, List<Pair<String, String>> fields, boolean endStream)
+            throws IOException {
+        int offset = 0;
+        do {
+            int length = Math.min(MAX_FRAME_SIZE, block.length - offset);
+            boolean first = offset == 0;
+            boolean last = offset + length == block.length;
+            int flags = (last ? Http2Frame.FLAG_END_HEADERS : 0) | (first && endStream ? Http2Frame.FLAG_END_STREAM : 0);
+            byte[] fragment = new byte[length];
+            System.arraycopy(block, offset, fragment, 0, length);
+            Http2Frame frame = new Http2Frame(first ? Http2Frame.HEADERS : Http2Frame.CONTINUATION, flags, stream.id, fragment);
+            if (last) {
+                frame.setHeaderFields(fields);
+            }
+            write(stream, frame);
+            offset += length;
+        } while (offset < block.length);
+    }
+
+    private void sendData(Stream stream, byte[] body, long deadlineNanos)
+            throws IOException, InterruptedException, TimeoutException {
+        int offset = 0;
+        do {
+            int length;
+            synchronized (windowLock) {
+                while ((length = (int) Math.min(Math.min(MAX_FRAME_SIZE, body.length - offset),
+                        Math.min(connectionSendWindow, stream.sendWindow))) <= 0 && offset < body.length) {
+                    if (!usable || stream.completion.isDone()) {
+                        return; // the caller learns why from the stream
+                    }
+                    long remainingNanos = deadlineNanos - System.nanoTime();
+                    if (remainingNanos <= 0) {
+                        throw new TimeoutException("flow control window of server stays exhausted");
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(windowLock, remainingNanos);
+                }
+                length = Math.max(0, length);
+                connectionSendWindow -= length;
+                stream.sendWindow -= length;
+            }
+            boolean last = offset + length == body.length;
+            byte[] data = new byte[length];
+            System.arraycopy(body, offset, data, 0, length);
+            write(stream, new Http2Frame(Http2Frame.DATA, last ? Http2Frame.FLAG_END_STREAM : 0, stream.id, data));
+            offset += length;
+        } while (offset < body.length);
+    }
+
+    /**
+     * Gives up on a stream, e.g. after a timeout.
+     */
+    void cancel(Stream stream) {
+        stream.fail(new IOException("stream " + stream.id + " cancelled")); // ends the wait of retire()
+        if (streams.remove(stream.id) != null && usable) {
+            try {
+                write(stream, rstStream(stream.id, ERROR_CANCEL));
+            } catch (IOException e) {
+                // the reader fails the connection
+            }
+        }
+    }
+
+    /**
+     * Takes the connection out of use and closes it once the streams in progress are done, e.g. after the server announced
+     * to close it.
+     */
+    void retire() {
+        CompletableFuture<?>[] inProgress;
+        synchronized (out) { // no stream is added once the connection is unusable
+            usable = false;
+            inProgress = streams.values().stream().map(stream -> stream.completion).toArray(CompletableFuture<?>[]::new);
+        }
+        CompletableFuture.allOf(inProgress).whenComplete((done, failure) -> close());
+    }
+
+    @Override
+    public void close() {
+        usable = false;
+        ConnectionPool.closeQuietly(socket); // ends the reader
+    }
+
+    private void readFrames() {
+        Exception failure;
+        try {
+            ByteArrayOutputStream headerBlock = null;
+            Http2Frame headersFrame = null;
+            while (true) {
+                Http2Frame frame = Http2Frame.read(in, MAX_FRAME_SIZE);
+                if (headerBlock != null && (frame.type != Http2Frame.CONTINUATION || frame.streamId != headersFrame.streamId)) {
+                    throw new IllegalStateException("expected CONTINUATION of " + headersFrame + ", but got: " + frame);
+                }
+                Stream stream = frame.streamId == 0 ? null : streams.get(frame.streamId);
+                if (stream != null) {
+                    stream.received(frame);
+                }
+                switch (frame.type) {
+                    case Http2Frame.HEADERS:
+                    case Http2Frame.CONTINUATION:
+                        if (frame.type == Http2Frame.HEADERS) {
+                            headerBlock = new ByteArrayOutputStream();
+                            headersFrame = frame;
+                        } else if (headerBlock == null) {
+                            throw new IllegalStateException("unexpected " + frame);
+                        }
+                        byte[] fragment = frame.type == Http2Frame.HEADERS ? frame.content() : frame.payload;
+                        headerBlock.write(fragment, 0, fragment.length);
+                        if (frame.hasFlag(Http2Frame.FLAG_END_HEADERS)) {
+                            // decoded even for unknown streams to keep the dynamic table in sync
+                            List<Pair<String, String>> fields = decoder.decode(headerBlock.toByteArray());
+                            frame.setHeaderFields(fields);
+                            if (stream != null) {
+                                stream.onHeaders(fields, headersFrame.hasFlag(Http2Frame.FLAG_END_STREAM));
+                            }
+                            headerBlock = null;
+                        }
+                        break;
+                    case Http2Frame.DATA:
+                        onData(frame, stream);
+                        break;
+                    case Http2Frame.SETTINGS:
+                        if (!frame.hasFlag(Http2Frame.FLAG_ACK)) {
+                            applySettings(frame.payload);
+                            write(null, new Http2Frame(Http2Frame.SETTINGS, Http2Frame.FLAG_ACK, 0, new byte[0]));
+                        }
+                        break;
+                    case Http2Frame.PING:
+                        if (!frame.hasFlag(Http2Frame.FLAG_ACK)) {
+                            write(null, new Http2Frame(Http2Frame.PING, Http2Frame.FLAG_ACK, 0, frame.payload));
+                        }
+                        break;
+                    case Http2Frame.WINDOW_UPDATE:
+                        onWindowUpdate(frame, stream);
+                        break;
+                    case Http2Frame.RST_STREAM:
+                        if (stream != null) {
+                            stream.fail(new IOException(
+                                    "stream reset by server with " + Http2Frame.errorName(Http2Frame.getInt(frame.payload, 0))));
+                        }
+                        break;
+                    case Http2Frame.GOAWAY:
+                        onGoAway(frame);
+                        break;
+                    case Http2Frame.PUSH_PROMISE:
+                        throw new IllegalStateException("server push is disabled, but got: " + frame);
+                    default:
+                        // PRIORITY and unknown frame types are ignored
+                }
+                if (stream != null && stream.completion.isDone()) {
+                    streams.remove(stream.id);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        }
+        usable = false;
+        ConnectionPool.closeQuietly(socket);
+        Exception cause = failure instanceof EOFException ? new EOFException("HTTP/2 connection closed by server") : failure;
+        for (Stream stream : streams.values()) {
+            stream.fail(cause);
+        }
+        synchronized (windowLock) {
+            windowLock.notifyAll();
+        }
+    }
+
+    private void onData(Http2Frame frame, Stream stream) throws IOException {
+        int length = frame.payload.length;
+        boolean endStream = frame.hasFlag(Http2Frame.FLAG_END_STREAM);
+        boolean accepted = stream != null && stream.onData(frame.content(), endStream);
+        if (length > 0) { // keep the windows open, the body size is limited per stream instead
+            write(null, windowUpdate(0, length));
+            if (accepted && !endStream) {
+                write(null, windowUpdate(stream.id, length));
+            }
+        }
+        if (stream != null && !accepted) {
+            write(stream, rstStream(stream.id, ERROR_CANCEL));
+        }
+    }
+
+    private void applySettings(byte[] payload) {
+        for (int i = 0; i + 6 <= payload.length; i += 6) {
+            int id = (payload[i] & 0xff) << 8 | payload[i + 1] & 0xff;
+            int value = Http2Frame.getInt(payload, i + 2);
+            if (id == SETTINGS_INITIAL_WINDOW_SIZE) {
+                synchronized (windowLock) {
+                    int delta = value - initialStreamWindow;
+                    initialStreamWindow = value;
+                    streams.values().forEach(stream -> stream.sendWindow += delta);
+                    windowLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    private void onWindowUpdate(Http2Frame frame, Stream stream) {
+        int increment = Http2Frame.getInt(frame.payload, 0) & 0x7fffffff;
+        synchronized (windowLock) {
+            if (frame.streamId == 0) {
+                connectionSendWindow += increment;
+            } else if (stream != null) {
+                stream.sendWindow += increment;
+            }
+            windowLock.notifyAll();
+        }
+    }
+
+    private void onGoAway(Http2Frame frame) {
+        usable = false;
+        int lastStreamId = Http2Frame.getInt(frame.payload, 0) & 0x7fffffff;
+        String error = Http2Frame.errorName(Http2Frame.getInt(frame.payload, 4));
+        for (Stream stream : streams.values()) {
+            if (stream.id > lastStreamId) {
+                stream.fail(new IOException("connection closed by server with " + error));
+            }
+        }
+    }
+
+    private void write(Stream stream, Http2Frame frame) throws IOException {
+        synchronized (out) {
+            frame.write(out);
+            out.flush();
+            if (stream != null) {
+                stream.sent(frame);
+            }
+        }
+    }
+
+    private static Http2Frame windowUpdate(int streamId, int increment) {
+        byte[] payload = new byte[4];
+        Http2Frame.putInt(payload, 0, increment);
+        return new Http2Frame(Http2Frame.WINDOW_UPDATE, 0, streamId, payload);
+    }
+
+    private static Http2Frame rstStream(int streamId, int errorCode) {
+        byte[] payload = new byte[4];
+        Http2Frame.putInt(payload, 0, errorCode);
+        return new Http2Frame(Http2Frame.RST_STREAM, 0, streamId, payload);
+    }
+
+    /**
+     * A single request and its response.
+     */
+    static final class Stream {
+
+        final int id;
+
+        private final int maxBodyBytes;
+
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+        private final List<Http2Frame> sentFrames = Collections.synchronizedList(new ArrayList<>());
+
+        private final List<Http2Frame> receivedFrames = Collections.synchronizedList(new ArrayList<>());
+
+        private long sendWindow; // guarded by windowLock of the connection
+
+        // written by the reader thread before completion
+        private List<Pair<String, String>> fields;
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private long firstFrameNanos;
+        private long headersNanos;
+        private long endNanos;
+
+        private Stream(int id, int maxBodyBytes, long sendWindow) {
+            this.id = id;
+            this.maxBodyBytes = maxBodyBytes;
+            this.sendWindow = sendWindow;
+        }
+
+        /**
+         * @throws TimeoutException if the response did not complete before the deadline
+         * @throws HttpException    if the stream failed
+         */
+        void await(long deadlineNanos) throws InterruptedException, TimeoutException {
+            try {
+                completion.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof HttpException ? (HttpException) cause : new HttpException((Exception) cause);
+            }
+        }
+
+        List<Http2Frame> sentFrames() {
+            synchronized (sentFrames) {
+                return new ArrayList<>(sentFrames);
+            }
+        }
+
+        List<Http2Frame> receivedFrames() {
+            synchronized (receivedFrames) {
+                return new ArrayList<>(receivedFrames);
+            }
+        }
+
+        /**
+         * @return the final response header fields, call after {@link #await(long)} only
+         */
+        List<Pair<String, String>> fields() {
+            return fields;
+        }
+
+        byte[] body() {
+            return body.toByteArray();
+        }
+
+        long firstFrameNanos() {
+            return firstFrameNanos;
+        }
+
+        long headersNanos() {
+            return headersNanos;
+        }
+
+        long endNanos() {
+            return endNanos;
+        }
+
+        private void sent(Http2Frame frame) {
+            sentFrames.add(frame);
+        }
+
+        private void received(Http2Frame frame) {
+            if (receivedFrames.isEmpty()) {
+                firstFrameNanos = System.nanoTime();
+            }
+            receivedFrames.add(frame);
+        }
+
+        private void onHeaders(List<Pair<String, String>> headerFields, boolean endStream) {
+            boolean interim = headerFields.stream().anyMatch(f -> f.left.equals(":status") && f.right.startsWith("1"));
+            if (fields == null && !interim) {
+                fields = headerFields;
+                headersNanos = System.nanoTime();
+            } // trailers only show up in the frame dump
+            if (endStream) {
+                end();
+            }
+        }
+
+        /**
+         * @return false if the stream failed
+         */
+        private boolean onData(byte[] data, boolean endStream) {
+            if (fields == null) {
+                fail(new IllegalStateException("received DATA before HEADERS on stream " + id));
+                return false;
+            }
+            if ((long) body.size() + data.length > maxBodyBytes) {
+                fail(new IllegalStateException("response body exceeds maximum size of " + maxBodyBytes + " bytes"));
+                return false;
+            }
+            body.write(data, 0, data.length);
+            if (endStream) {
+                end();
+            }
+            return true;
+        }
+
+        private void end() {
+            if (fields == null) {
+                fail(new IllegalStateException("stream " + id + " ended without response headers"));
+                return;
+            }
+            endNanos = System.nanoTime();
+            completion.complete(null);
+        }
+
+        private void fail(Exception e) {
+            completion.completeExceptionally(e);
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+package net.oneandone.httpselftest.http;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The HTTP/2 connections of a test run, one per target address. All requests to an address share its connection as long as it
+ * is usable. Thread-safe.
+ */
+final class Http2ConnectionPool implements AutoCloseable {
+
+    private final Map<InetSocketAddress, Http2Connection> connections = new HashMap<>(); // guarded by this
+
+    private final Connector connector;
+
+    private boolean closed; // guarded by this
+
+    Http2ConnectionPool() {
+        this(Http2Connection::open);
+    }
+
+    Http2ConnectionPool(Connector connector) {
+        this.connector = connector;
+    }
+
+    /**
+     * Connects outside the lock, so a slow connect does not hold up requests to other addresses. Concurrent callers may both
+     * connect to the same address, the connection stored first is shared and the other one closed.
+     *
+     * @param address       target address
+     * @param timeoutMillis connect timeout if a new connection is needed
+     * @return a usable connection to the address
+     * @throws IOException if connecting fails
+     */
+    Http2Connection acquire(InetSocketAddress address, int timeoutMillis) throws IOException {
+        Http2Connection unusable;
+        synchronized (this) {
+            checkOpen();
+            unusable = connections.get(address);
+            if (unusable != null && unusable.isUsable()) {
+                return unusable;
+            }
+            connections.remove(address);
+        }
+        if (unusable != null) {
+            unusable.retire();
+        }
+
+        Http2Connection opened = connector.open(address, timeoutMillis);
+        Http2Connection shared;
+        synchronized (this) {
+            Http2Connection current = closed ? null : connections.get(address);
+            if (closed || current != null && current.isUsable()) {
+                shared = current;
+                unusable = opened;
+            } else {
+                connections.put(address, opened);
+                shared = opened;
+                unusable = current;
+            }
+        }
+        if (unusable != null) {
+            unusable.retire();
+        }
+        if (shared == null) {
+            throw new IllegalStateException("HTTP/2 connection pool is closed");
+        }
+        return shared;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("HTTP/2 connection pool is closed");
+        }
+    }
+
+    synchronized int connectionCount() {
+        return connections.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        connections.values().forEach(Http2Connection::close);
+        connections.clear();
+    }
+
+    interface Connector {
+
+        Http2Connection open(InetSocketAddress address, int timeoutMillis) throws IOException;
+
+    }
+
+}
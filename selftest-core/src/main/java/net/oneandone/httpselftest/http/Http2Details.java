@@ -0,0 +1,18 @@
+package net.oneandone.httpselftest.http;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The decoded view of an HTTP/2 request or response, along with the frames of its stream.
+ */
+public class Http2Details extends DataBasedHttpDetails {
+
+    public final List<Http2Frame> frames;
+
+    public Http2Details(String firstLine, Headers headers, String body, List<Http2Frame> frames) {
+        super(firstLine, headers, body);
+        this.frames = Collections.unmodifiableList(frames);
+    }
+
+}
@@ -0,0 +1,184 @@
+package net.oneandone.httpselftest.http;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.oneandone.httpselftest.common.Pair;
+
+/**
+ * A single HTTP/2 frame as sent or received, see https://tools.ietf.org/html/rfc7540#section-4.1. Frames ending a header block
+ * carry the decoded header fields of the block.
+ */
+public final class Http2Frame {
+
+    static final int DATA = 0x0;
+    static final int HEADERS = 0x1;
+    static final int RST_STREAM = 0x3;
+    static final int SETTINGS = 0x4;
+    static final int PUSH_PROMISE = 0x5;
+    static final int PING = 0x6;
+    static final int GOAWAY = 0x7;
+    static final int WINDOW_UPDATE = 0x8;
+    static final int CONTINUATION = 0x9;
+
+    static final int FLAG_END_STREAM = 0x1;
+    static final int FLAG_ACK = 0x1;
+    static final int FLAG_END_HEADERS = 0x4;
+    static final int FLAG_PADDED = 0x8;
+    static final int FLAG_PRIORITY = 0x20;
+
+    static final int HEADER_LENGTH = 9;
+
+    private static final String[] TYPE_NAMES = { "DATA", "HEADERS", "PRIORITY", "RST_STREAM", "SETTINGS", "PUSH_PROMISE",
+            "PING", "GOAWAY", "WINDOW_UPDATE", "CONTINUATION" };
+
+    private static final String[] ERROR_NAMES = { "NO_ERROR", "PROTOCOL_ERROR", "INTERNAL_ERROR", "FLOW_CONTROL_ERROR",
+            "SETTINGS_TIMEOUT", "STREAM_CLOSED", "FRAME_SIZE_ERROR", "REFUSED_STREAM", "CANCEL", "COMPRESSION_ERROR",
+            "CONNECT_ERROR", "ENHANCE_YOUR_CALM", "INADEQUATE_SECURITY", "HTTP_1_1_REQUIRED" };
+
+    final int type;
+    final int flags;
+    final int streamId;
+    final byte[] payload;
+
+    private volatile List<Pair<String, String>> headerFields = Collections.emptyList();
+
+    Http2Frame(int type, int flags, int streamId, byte[] payload) {
+        this.type = type;
+        this.flags = flags;
+        this.streamId = streamId;
+        this.payload = payload;
+    }
+
+    static Http2Frame read(DataInputStream in, int maxPayloadLength) throws IOException {
+        int length = in.readUnsignedShort() << 8 | in.readUnsignedByte();
+        int type = in.readUnsignedByte();
+        int flags = in.readUnsignedByte();
+        int streamId = in.readInt() & 0x7fffffff;
+        if (length > maxPayloadLength) {
+            throw new IllegalStateException("frame of " + length + " bytes exceeds maximum size of " + maxPayloadLength);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new Http2Frame(type, flags, streamId, payload);
+    }
+
+    void write(OutputStream out) throws IOException {
+        byte[] header = new byte[HEADER_LENGTH];
+        header[0] = (byte) (payload.length >>> 16);
+        header[1] = (byte) (payload.length >>> 8);
+        header[2] = (byte) payload.length;
+        header[3] = (byte) type;
+        header[4] = (byte) flags;
+        putInt(header, 5, streamId);
+        out.write(header);
+        out.write(payload);
+    }
+
+    boolean hasFlag(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    /**
+     * @return the payload without padding and priority fields, for DATA and HEADERS frames
+     */
+    byte[] content() {
+        int start = 0;
+        int end = payload.length;
+        if ((type == DATA || type == HEADERS) && hasFlag(FLAG_PADDED)) {
+            start = 1;
+            end -= payload[0] & 0xff;
+        }
+        if (type == HEADERS && hasFlag(FLAG_PRIORITY)) {
+            start += 5;
+        }
+        if (end < start) {
+            throw new IllegalStateException("padding exceeds payload of " + this);
+        }
+        byte[] content = new byte[end - start];
+        System.arraycopy(payload, start, content, 0, content.length);
+        return content;
+    }
+
+    void setHeaderFields(List<Pair<String, String>> fields) {
+        headerFields = Collections.unmodifiableList(new ArrayList<>(fields));
+    }
+
+    public String typeName() {
+        return type < TYPE_NAMES.length ? TYPE_NAMES[type] : "UNKNOWN(" + type + ")";
+    }
+
+    public int streamId() {
+        return streamId;
+    }
+
+    public byte[] payload() {
+        return payload.clone();
+    }
+
+    /**
+     * @return the decoded fields if this frame ends a header block, otherwise empty
+     */
+    public List<Pair<String, String>> headerFields() {
+        return headerFields;
+    }
+
+    /**
+     * @return the data of a DATA frame without padding, otherwise null
+     */
+    public byte[] data() {
+        return type == DATA ? content() : null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(typeName()).append(" stream=").append(streamId).append(" length=")
+                .append(payload.length);
+        List<String> flagNames = new ArrayList<>();
+        if (hasFlag(FLAG_END_STREAM)) {
+            flagNames.add(type == SETTINGS || type == PING ? "ACK" : "END_STREAM");
+        }
+        if (hasFlag(FLAG_END_HEADERS)) {
+            flagNames.add("END_HEADERS");
+        }
+        if (hasFlag(FLAG_PADDED)) {
+            flagNames.add("PADDED");
+        }
+        if (hasFlag(FLAG_PRIORITY)) {
+            flagNames.add("PRIORITY");
+        }
+        if (!flagNames.isEmpty()) {
+            sb.append(" flags=").append(String.join("|", flagNames));
+        }
+        if (type == RST_STREAM && payload.length >= 4) {
+            sb.append(" error=").append(errorName(getInt(payload, 0)));
+        } else if (type == GOAWAY && payload.length >= 8) {
+            sb.append(" last-stream=").append(getInt(payload, 0) & 0x7fffffff).append(" error=")
+                    .append(errorName(getInt(payload, 4)));
+        } else if (type == WINDOW_UPDATE && payload.length >= 4) {
+            sb.append(" increment=").append(getInt(payload, 0) & 0x7fffffff);
+        }
+        return sb.toString();
+    }
+
+    static String errorName(int code) {
+        return code >= 0 && code < ERROR_NAMES.length ? ERROR_NAMES[code] : "0x" + Integer.toHexString(code);
+    }
+
+    static int getInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) << 24 | (bytes[offset + 1] & 0xff) << 16 | (bytes[offset + 2] & 0xff) << 8
+                | bytes[offset + 3] & 0xff;
+    }
+
+    static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+}
@@ -5,7 +5,7 @@ public interface HttpClient {
     WrappedResponse call(String baseUrl, WrappedRequest request, int timeoutMillis);
 
     enum Type {
-        URLCON, SOCKET;
+        URLCON, SOCKET, NIO, H2C;
     }
 
 }
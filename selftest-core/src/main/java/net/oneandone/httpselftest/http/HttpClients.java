@@ -0,0 +1,60 @@
+package net.oneandone.httpselftest.http;
+
+/**
+ * Provides the {@link HttpClient} for a {@link HttpClient.Type}, sharing the client settings across all requests of a test run.
+ * Closing it releases the connections kept alive during the run, including the multiplexed {@link HttpClient.Type#H2C}
+ * connections, and stops the I/O thread of the {@link HttpClient.Type#NIO} client.
+ */
+public class HttpClients implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_BODY_BYTES = 16 * 1024 * 1024;
+
+    private final int maxBodyBytes;
+
+    private final ConnectionPool pool;
+
+    private final SelectorLoop loop = new SelectorLoop();
+
+    private final Http2ConnectionPool http2Pool = new Http2ConnectionPool();
+
+    public HttpClients() {
+        this(DEFAULT_MAX_BODY_BYTES, false);
+    }
+
+    /**
+     * @param maxBodyBytes maximum size of a response body; larger responses fail with an {@link HttpException}
+     * @param keepAlive    whether {@link HttpClient.Type#SOCKET} requests reuse persistent connections
+     */
+    public HttpClients(int maxBodyBytes, boolean keepAlive) {
+        if (maxBodyBytes < 0) {
+            throw new IllegalArgumentException("maxBodyBytes must not be negative, but was: " + maxBodyBytes);
+        }
+        this.maxBodyBytes = maxBodyBytes;
+        this.pool = keepAlive ? new ConnectionPool() : null;
+    }
+
+    public HttpClient get(HttpClient.Type type) {
+        switch (type) {
+            case SOCKET:
+                return new SocketHttpClient(maxBodyBytes, pool);
+            case URLCON:
+                return new UrlConnectionHttpClient(maxBodyBytes);
+            case NIO:
+                return new NioHttpClient(maxBodyBytes, loop);
+            case H2C:
+                return new Http2Client(maxBodyBytes, http2Pool);
+            default:
+                throw new IllegalStateException("Unknown clientType: " + type);
+        }
+    }
+
+    @Override
+    public void close() {
+        loop.close();
+        http2Pool.close();
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+}
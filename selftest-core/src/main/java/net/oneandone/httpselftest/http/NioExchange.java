@@ -0,0 +1,329 @@
+package net.oneandone.httpselftest.http;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single request/response exchange driven by the {@link SelectorLoop}. Writes the request, then reads into a growing capture
+ * buffer until the framing of the response says it is complete or the server closes the connection. The captured bytes are
+ * parsed by the caller, so the wire capture is exactly what the {@link SocketHttpClient} would have read.
+ * <p>
+ * Except for {@link #response()} and {@link #abandon(Exception)}, all methods are called on the loop thread only.
+ */
+final class NioExchange {
+
+    private static final int INITIAL_CAPACITY = 8 * 1024;
+
+    private static final int NO_FRAMING = -1;
+
+    private final InetSocketAddress address;
+
+    private final ByteBuffer[] request;
+
+    private final String requestMethod;
+
+    private final long timeoutNanos;
+
+    private final int maxBytes;
+
+    private final PhaseTimings.Stopwatch stopwatch;
+
+    private final CompletableFuture<byte[]> response = new CompletableFuture<>();
+
+    private SocketChannel channel;
+
+    private long deadlineNanos;
+
+    private boolean connected;
+
+    private byte[] capture;
+
+    private int limit; // number of bytes read from the wire
+
+    private int headerScan; // index to continue searching for the end of the headers
+
+    private int headerEnd = NO_FRAMING; // index after the empty line ending the headers
+
+    private long bodyEnd = NO_FRAMING; // index after the body, known up front for Content-Length
+
+    private boolean chunked;
+
+    private int chunkStart; // index of the next chunk size line
+
+    /**
+     * @param maxBytes  maximum number of bytes read from the wire, exceeding it fails the exchange
+     * @param stopwatch laps connect, send, first byte, headers and body
+     */
+    NioExchange(InetSocketAddress address, byte[] headerBytes, byte[] bodyBytes, String requestMethod, int timeoutMillis,
+            int maxBytes, PhaseTimings.Stopwatch stopwatch) {
+        this.address = address;
+        this.request = bodyBytes == null ? new ByteBuffer[] { ByteBuffer.wrap(headerBytes) }
+                : new ByteBuffer[] { ByteBuffer.wrap(headerBytes), ByteBuffer.wrap(bodyBytes) };
+        this.requestMethod = requestMethod;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.maxBytes = maxBytes;
+        this.stopwatch = stopwatch;
+        this.capture = new byte[Math.min(INITIAL_CAPACITY, maxBytes)];
+    }
+
+    /**
+     * @return completes with the captured response bytes, or exceptionally with an {@link HttpException}
+     */
+    CompletableFuture<byte[]> response() {
+        return response;
+    }
+
+    /**
+     * Gives up on the exchange from the caller's side, the loop closes the connection on its next round.
+     */
+    void abandon(Exception reason) {
+        response.completeExceptionally(new HttpException(reason));
+    }
+
+    long deadlineNanos() {
+        return deadlineNanos;
+    }
+
+    void register(Selector selector) {
+        if (response.isDone()) {
+            return;
+        }
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            deadlineNanos = System.nanoTime() + timeoutNanos;
+            channel.register(selector, SelectionKey.OP_CONNECT, this);
+            if (channel.connect(address)) {
+                onConnected(channel.keyFor(selector));
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    void handle(SelectionKey key, ByteBuffer readBuffer) {
+        try {
+            if (response.isDone()) {
+                close();
+            } else if (key.isConnectable()) {
+                if (channel.finishConnect()) {
+                    onConnected(key);
+                }
+            } else if (key.isWritable()) {
+                write(key);
+            } else if (key.isReadable()) {
+                read(readBuffer);
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * @return whether the exchange is over, either because its caller abandoned it or because its deadline has passed
+     */
+    boolean expireOrRelease(long nowNanos) {
+        if (response.isDone()) {
+            close();
+            return true;
+        }
+        if (nowNanos - deadlineNanos >= 0) {
+            fail(new SocketTimeoutException(connected ? "Read timed out" : "connect timed out"));
+            return true;
+        }
+        return false;
+    }
+
+    void fail(Exception e) {
+        close();
+        response.completeExceptionally(e instanceof HttpException ? e
+                : connected ? new HttpException(e, Arrays.copyOf(capture, limit)) : new HttpException(e));
+    }
+
+    private void onConnected(SelectionKey key) throws IOException {
+        connected = true;
+        stopwatch.lap();
+        progress();
+        key.interestOps(SelectionKey.OP_WRITE);
+        write(key);
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        if (channel.write(request) > 0) {
+            progress();
+        }
+        if (!request[request.length - 1].hasRemaining()) {
+            stopwatch.lap();
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void read(ByteBuffer readBuffer) throws IOException {
+        readBuffer.clear();
+        int read = channel.read(readBuffer);
+        if (read < 0) {
+            complete(); // the parser reports responses cut short
+            return;
+        }
+        if (read == 0) {
+            return;
+        }
+        if (limit == 0) {
+            stopwatch.lap();
+        }
+        progress();
+        readBuffer.flip();
+        append(readBuffer);
+        if (isComplete()) {
+            complete();
+        }
+    }
+
+    private void append(ByteBuffer bytes) {
+        if (capture.length - limit < bytes.remaining()) {
+            if ((long) limit + bytes.remaining() > maxBytes) {
+                throw new IllegalStateException("response exceeds maximum size of " + maxBytes + " bytes");
+            }
+            long grown = Math.max(capture.length * 2L, (long) limit + bytes.remaining());
+            capture = Arrays.copyOf(capture, (int) Math.min(grown, maxBytes));
+        }
+        int count = bytes.remaining();
+        bytes.get(capture, limit, count);
+        limit += count;
+    }
+
+    private void complete() {
+        if (headerEnd >= 0) {
+            stopwatch.lap();
+        }
+        close();
+        response.complete(Arrays.copyOf(capture, limit));
+    }
+
+    private void progress() {
+        deadlineNanos = System.nanoTime() + timeoutNanos;
+    }
+
+    private void close() {
+        if (channel != null) {
+            try {
+                channel.close(); // also cancels the selection key
+            } catch (IOException e) {
+                // nothing left to do
+            }
+        }
+    }
+
+    /*
+     * Follows the framing just far enough to know when to stop reading. Whenever the framing is broken, the response is
+     * considered complete, so the parser can report the problem on the captured bytes.
+     */
+    private boolean isComplete() {
+        if (headerEnd < 0) {
+            headerEnd = indexAfter("\r\n\r\n", headerScan);
+            if (headerEnd < 0) {
+                headerScan = Math.max(0, limit - 3);
+                return false;
+            }
+            stopwatch.lap();
+            if (!readFraming()) {
+                return true;
+            }
+        }
+        if (chunked) {
+            return chunksComplete();
+        }
+        return bodyEnd >= 0 && limit >= bodyEnd;
+    }
+
+    /**
+     * @return false if the response has no body or the framing is broken
+     */
+    private boolean readFraming() {
+        String[] lines = new String(capture, 0, headerEnd, US_ASCII).split("\r\n");
+        String[] statusLine = lines[0].split(" ");
+        try {
+            if (statusLine.length < 2
+                    || SocketHttpClient.bodyIsNotAllowedAccordingToRfc(Integer.parseInt(statusLine[1]), requestMethod)) {
+                return false;
+            }
+            String transferEncoding = "identity";
+            String contentLength = null;
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon < 0) {
+                    return false;
+                }
+                String name = lines[i].substring(0, colon);
+                if (name.equalsIgnoreCase("Transfer-Encoding")) {
+                    transferEncoding = lines[i].substring(colon + 1).trim().toLowerCase();
+                } else if (name.equalsIgnoreCase("Content-Length")) {
+                    contentLength = lines[i].substring(colon + 1).trim();
+                }
+            }
+            if (transferEncoding.equals("chunked")) {
+                chunked = true;
+                chunkStart = headerEnd;
+                return true;
+            }
+            if (!transferEncoding.equals("identity")) {
+                return false;
+            }
+            // the socket client reads an identity body without Content-Length as empty
+            bodyEnd = headerEnd + (contentLength == null ? 0 : Integer.parseInt(contentLength, 10));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private boolean chunksComplete() {
+        while (true) {
+            int lineEnd = indexAfter("\r\n", chunkStart);
+            if (lineEnd < 0) {
+                return false;
+            }
+            int chunkSize;
+            try {
+                chunkSize = Integer.parseInt(new String(capture, chunkStart, lineEnd - 2 - chunkStart, US_ASCII), 16);
+            } catch (NumberFormatException e) {
+                return true;
+            }
+            if (chunkSize < 0) {
+                return true;
+            }
+            long nextChunk = (long) lineEnd + chunkSize + 2; // chunk data is followed by CRLF
+            if (nextChunk > limit) {
+                return false;
+            }
+            if (chunkSize == 0) {
+                return true;
+            }
+            chunkStart = (int) nextChunk;
+        }
+    }
+
+    private int indexAfter(String delimiter, int from) {
+        byte[] bytes = delimiter.getBytes(US_ASCII);
+        outer: for (int i = from; i <= limit - bytes.length; i++) {
+            for (int j = 0; j < bytes.length; j++) {
+                if (capture[i + j] != bytes[j]) {
+                    continue outer;
+                }
+            }
+            return i + bytes.length;
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,81 @@
+package net.oneandone.httpselftest.http;
+
+import static net.oneandone.httpselftest.http.UrlConnectionHttpClient.concatAvoidingDuplicateSlash;
+
+import java.io.ByteArrayInputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.ExecutionException;
+
+import net.oneandone.httpselftest.common.Pair;
+
+/**
+ * Speaks the same wire protocol as the {@link SocketHttpClient}, but performs the I/O of all requests on the non-blocking
+ * channels of a shared {@link SelectorLoop}. Callers still wait for their response, they do not hold a socket meanwhile. Each
+ * request uses a new connection.
+ */
+public class NioHttpClient implements HttpClient {
+
+    private final int maxBodyBytes;
+
+    private final SelectorLoop loop;
+
+    /**
+     * @param maxBodyBytes maximum size of a response body; larger responses fail with an {@link HttpException}
+     * @param loop         performs the I/O
+     */
+    NioHttpClient(int maxBodyBytes, SelectorLoop loop) {
+        if (maxBodyBytes < 0) {
+            throw new IllegalArgumentException("maxBodyBytes must not be negative, but was: " + maxBodyBytes);
+        }
+        this.maxBodyBytes = maxBodyBytes;
+        this.loop = loop;
+    }
+
+    @Override
+    public WrappedResponse call(String baseUrl, WrappedRequest requestw, int timeoutMillis) {
+        NioExchange exchange = null;
+        try {
+            TestRequest request = requestw.request;
+            SocketHttpClient.checkCharsets(request);
+            if (requestw.streamingBody != null) {
+                throw new IllegalArgumentException(getClass().getSimpleName() + " does not support streaming response bodies");
+            }
+
+            URL endpoint = new URL(baseUrl);
+            PhaseTimings.Stopwatch stopwatch = new PhaseTimings.Stopwatch();
+
+            int port = endpoint.getPort();
+            if (port < 0) {
+                throw new IllegalArgumentException("No port provided: " + baseUrl);
+            }
+            String path = concatAvoidingDuplicateSlash(endpoint.getPath(), request.path);
+            InetSocketAddress address = new InetSocketAddress(endpoint.getHost(), port);
+
+            Pair<byte[], byte[]> requestBytes =
+                    SocketHttpClient.prepareRequest(address.getHostString(), address.getPort(), path, request);
+            requestw.details = new WireBasedHttpDetails(requestBytes.left, requestBytes.right);
+
+            int maxResponseBytes = SocketHttpClient.maxResponseBytes(maxBodyBytes);
+            exchange = new NioExchange(address, requestBytes.left, requestBytes.right, request.method, timeoutMillis,
+                    maxResponseBytes, stopwatch);
+            loop.submit(exchange);
+            byte[] captured = exchange.response().get();
+
+            WireReader in = new WireReader(new ByteArrayInputStream(captured), maxResponseBytes);
+            WrappedResponse parsed = SocketHttpClient.parseResponse(in, request.method, maxBodyBytes, null, null);
+            return new WrappedResponse(parsed.response, parsed.responseDetails, stopwatch.timings());
+        } catch (ExecutionException e) {
+            throw (HttpException) e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.abandon(e);
+            throw new HttpException(e);
+        } catch (HttpException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new HttpException(e);
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package net.oneandone.httpselftest.http;
+
+/**
+ * Durations of the phases of an HTTP call, in microseconds.
+ */
+public final class PhaseTimings {
+
+    /** Name resolution and connection establishment, 0 if a pooled connection was reused. */
+    public final long connectMicros;
+    /** Writing the request. The {@code URLCON} client only buffers it here and writes it while waiting for the first byte. */
+    public final long sendMicros;
+    /** Waiting for the first byte of the response after the request was sent. */
+    public final long firstByteMicros;
+    /** Reading and parsing the status line and headers. */
+    public final long headersMicros;
+    /** Reading the body. */
+    public final long bodyMicros;
+
+    public PhaseTimings(long connectMicros, long sendMicros, long firstByteMicros, long headersMicros, long bodyMicros) {
+        this.connectMicros = connectMicros;
+        this.sendMicros = sendMicros;
+        this.firstByteMicros = firstByteMicros;
+        this.headersMicros = headersMicros;
+        this.bodyMicros = bodyMicros;
+    }
+
+    /**
+     * Measures consecutive phases of one call, each phase ends with a call to {@link #lap()}. Not thread-safe, the phases may
+     * be measured by another thread than the caller's if access is handed over safely.
+     */
+    static final class Stopwatch {
+
+        private final long[] marksNanos = new long[6];
+
+        private int phase;
+
+        Stopwatch() {
+            marksNanos[0] = System.nanoTime();
+        }
+
+        void lap() {
+            marksNanos[++phase] = System.nanoTime();
+        }
+
+        /**
+         * Discards all ended phases, so the time spent so far counts for the first phase, e.g. when retrying on a new
+         * connection.
+         */
+        void restart() {
+            phase = 0;
+        }
+
+        PhaseTimings timings() {
+            if (phase != marksNanos.length - 1) {
+                throw new IllegalStateException("expected " + (marksNanos.length - 1) + " phases, but got: " + phase);
+            }
+            return new PhaseTimings(micros(0), micros(1), micros(2), micros(3), micros(4));
+        }
+
+        private long micros(int phaseIndex) {
+            return (marksNanos[phaseIndex + 1] - marksNanos[phaseIndex]) / 1_000;
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+package net.oneandone.httpselftest.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A single thread multiplexing the connections of all {@link NioHttpClient} requests of a test run on one selector. The thread
+ * is started with the first request. Closing the loop fails all requests still in flight.
+ */
+final class SelectorLoop implements AutoCloseable {
+
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+    private static final AtomicInteger LOOP_COUNTER = new AtomicInteger();
+
+    private final Queue<NioExchange> pending = new ConcurrentLinkedQueue<>();
+
+    private final Object lock = new Object();
+
+    private Selector selector; // guarded by lock
+
+    private boolean closed; // guarded by lock
+
+    void submit(NioExchange exchange) throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("selector loop is closed");
+            }
+            if (selector == null) {
+                selector = Selector.open();
+                Selector started = selector;
+                Thread thread = new Thread(() -> run(started), "selftest-nio-" + LOOP_COUNTER.incrementAndGet());
+                thread.setDaemon(true);
+                thread.start();
+            }
+            pending.add(exchange);
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            if (selector != null) {
+                selector.wakeup();
+            }
+        }
+    }
+
+    private boolean isClosed() {
+        synchronized (lock) {
+            return closed;
+        }
+    }
+
+    private void run(Selector selector) {
+        // one direct buffer serves all connections, reads are copied into the capture of the exchange right away
+        ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+        IOException failure = new IOException("selector loop closed");
+        try {
+            while (!isClosed()) {
+                NioExchange exchange;
+                while ((exchange = pending.poll()) != null) {
+                    exchange.register(selector);
+                }
+                selector.select(expireAndGetTimeoutMillis(selector));
+                Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                while (selected.hasNext()) {
+                    SelectionKey key = selected.next();
+                    selected.remove();
+                    ((NioExchange) key.attachment()).handle(key, readBuffer);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            failure = new IOException("selector loop failed", e);
+        } finally {
+            synchronized (lock) {
+                closed = true;
+            }
+            for (SelectionKey key : selector.keys()) {
+                ((NioExchange) key.attachment()).fail(failure);
+            }
+            NioExchange exchange;
+            while ((exchange = pending.poll()) != null) {
+                exchange.fail(failure);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // nothing left to do
+            }
+        }
+    }
+
+    /*
+     * Fails exchanges whose deadline has passed and releases those abandoned by their caller.
+     */
+    private static long expireAndGetTimeoutMillis(Selector selector) {
+        long now = System.nanoTime();
+        long nextDeadline = Long.MAX_VALUE;
+        for (SelectionKey key : selector.keys()) {
+            NioExchange exchange = (NioExchange) key.attachment();
+            if (!exchange.expireOrRelease(now)) {
+                nextDeadline = Math.min(nextDeadline, exchange.deadlineNanos());
+            }
+        }
+        if (nextDeadline == Long.MAX_VALUE) {
+            return 0; // no timeout
+        }
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(nextDeadline - now + 999_999));
+    }
+
+}
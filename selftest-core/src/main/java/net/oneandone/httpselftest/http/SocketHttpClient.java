@@ -3,31 +3,71 @@ package net.oneandone.httpselftest.http;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static net.oneandone.httpselftest.http.UrlConnectionHttpClient.concatAvoidingDuplicateSlash;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Predicate;
 
 import net.oneandone.httpselftest.common.Pair;
 
 public class SocketHttpClient implements HttpClient {
 
+    private static final byte[] CRLF = "\r\n".getBytes(UTF_8);
+
+    // only these are sent again if a reused connection turns out to be closed, see RFC 7230, section 6.3.1
+    private static final Set<String> IDEMPOTENT_METHODS =
+            Collections.unmodifiableSet(new HashSet<>(Arrays.asList("GET", "HEAD", "PUT", "DELETE", "OPTIONS", "TRACE")));
+
+    // allowance for status line, headers and chunk framing on top of the body limit
+    private static final int MAX_FRAMING_BYTES = 64 * 1024;
+
+    private final int maxBodyBytes;
+
+    private final ConnectionPool pool;
+
+    public SocketHttpClient() {
+        this(HttpClients.DEFAULT_MAX_BODY_BYTES);
+    }
+
+    /**
+     * @param maxBodyBytes maximum size of a response body; larger responses fail with an {@link HttpException}
+     */
+    public SocketHttpClient(int maxBodyBytes) {
+        this(maxBodyBytes, null);
+    }
+
+    /**
+     * @param maxBodyBytes maximum size of a response body; larger responses fail with an {@link HttpException}
+     * @param pool         persistent connections to reuse, or null to use a new connection per request
+     */
+    public SocketHttpClient(int maxBodyBytes, ConnectionPool pool) {
+        if (maxBodyBytes < 0) {
+            throw new IllegalArgumentException("maxBodyBytes must not be negative, but was: " + maxBodyBytes);
+        }
+        this.maxBodyBytes = maxBodyBytes;
+        this.pool = pool;
+    }
+
     @Override
     public WrappedResponse call(String baseUrl, WrappedRequest requestw, int timeoutMillis) {
-        try (Socket socket = new Socket()) {
+        try {
             TestRequest request = requestw.request;
-            checkMethodCharset(request.method);
-            checkPathCharset(request.path);
-            checkHeadersCharset(request.headers);
+            checkCharsets(request);
 
             URL endpoint = new URL(baseUrl);
+            PhaseTimings.Stopwatch stopwatch = new PhaseTimings.Stopwatch();
 
             int port = endpoint.getPort();
             if (port < 0) {
@@ -35,12 +75,28 @@ public class SocketHttpClient implements HttpClient {
             }
             String hostname = endpoint.getHost();
             String path = concatAvoidingDuplicateSlash(endpoint.getPath(), request.path);
+            InetSocketAddress address = new InetSocketAddress(hostname, port);
+
+            Socket pooled = pool == null ? null : pool.acquire(address);
+            if (pooled != null) {
+                try {
+                    stopwatch.lap();
+                    return exchange(pooled, true, address, path, requestw, timeoutMillis, stopwatch);
+                } catch (StaleConnectionException e) {
+                    // the server closed the idle connection before it got the request, retry once on a new one
+                    stopwatch.restart();
+                }
+            }
 
-            socket.connect(new InetSocketAddress(hostname, port), timeoutMillis);
-            socket.setSoTimeout(timeoutMillis);
-
-            sendRequest(socket.getOutputStream(), hostname, port, path, request, requestw);
-            return parseResponse(capturedInputStream(socket.getInputStream()), request.method);
+            Socket socket = new Socket();
+            try {
+                socket.connect(address, timeoutMillis);
+            } catch (IOException e) {
+                ConnectionPool.closeQuietly(socket);
+                throw e;
+            }
+            stopwatch.lap();
+            return exchange(socket, false, address, path, requestw, timeoutMillis, stopwatch);
         } catch (HttpException e) {
             throw e;
         } catch (Exception e) {
@@ -48,6 +104,81 @@ public class SocketHttpClient implements HttpClient {
         }
     }
 
+    private WrappedResponse exchange(Socket socket, boolean reused, InetSocketAddress address, String path,
+            WrappedRequest requestw, int timeoutMillis, PhaseTimings.Stopwatch stopwatch) throws IOException {
+        TestRequest request = requestw.request;
+        boolean retryable = reused && IDEMPOTENT_METHODS.contains(request.method);
+        boolean keepAlive = false;
+        try {
+            socket.setSoTimeout(timeoutMillis);
+            try {
+                sendRequest(socket.getOutputStream(), address.getHostString(), address.getPort(), path, request, requestw);
+                stopwatch.lap();
+            } catch (IOException e) {
+                if (retryable) {
+                    throw new StaleConnectionException();
+                }
+                throw e;
+            }
+
+            WireReader in = new WireReader(socket.getInputStream(), maxResponseBytes(maxBodyBytes));
+            if (retryable) {
+                awaitFirstByte(in);
+            }
+            WrappedResponse response = parseResponse(in, request.method, maxBodyBytes, requestw.streamingBody, stopwatch);
+
+            keepAlive = pool != null && isPersistent(request, response, in);
+            return response;
+        } finally {
+            if (keepAlive) {
+                pool.release(address, socket);
+            } else {
+                ConnectionPool.closeQuietly(socket);
+            }
+        }
+    }
+
+    /*
+     * A server closing an idle connection just as it is reused shows as end of stream or reset before the first byte of the
+     * response. A timeout does not qualify, the server may be processing the request.
+     */
+    private static void awaitFirstByte(WireReader in) throws IOException {
+        try {
+            in.awaitBytes();
+        } catch (SocketException e) {
+            throw new StaleConnectionException();
+        } catch (IOException e) {
+            throw new HttpException(e, in.captured());
+        }
+        if (!in.hasUnconsumedBytes()) {
+            throw new StaleConnectionException();
+        }
+    }
+
+    static int maxResponseBytes(int maxBodyBytes) {
+        return (int) Math.min((long) maxBodyBytes + MAX_FRAMING_BYTES, Integer.MAX_VALUE - 8);
+    }
+
+    /*
+     * A connection can only be reused if both sides agree on HTTP/1.1 persistence and the response was delimited, i.e. it was
+     * consumed completely without relying on the server closing the connection.
+     */
+    private static boolean isPersistent(TestRequest request, WrappedResponse wrapped, WireReader in) {
+        TestResponse response = wrapped.response;
+        byte[] headerBytes = ((WireBasedHttpDetails) wrapped.responseDetails).headerBytes;
+        boolean http11 = new String(headerBytes, 0, Math.min(9, headerBytes.length), UTF_8).equals("HTTP/1.1 ");
+        boolean delimited = bodyIsNotAllowedAccordingToRfc(response.getStatus(), request.method)
+                || getLastValue(response.getHeaders(), "Transfer-Encoding").orElse("").equalsIgnoreCase("chunked")
+                || getLastValue(response.getHeaders(), "Content-Length").isPresent();
+        return http11 && delimited && !in.hasUnconsumedBytes() && !requestsClose(request.headers)
+                && !requestsClose(response.getHeaders());
+    }
+
+    private static boolean requestsClose(Headers headers) {
+        List<String> values = headers.get("Connection");
+        return values != null && values.stream().anyMatch(value -> value.toLowerCase().contains("close"));
+    }
+
     private static void sendRequest(OutputStream out, String host, int port, String path, TestRequest request,
             WrappedRequest wrapper) throws IOException {
         Pair<byte[], byte[]> requestBytes = prepareRequest(host, port, path, request);
@@ -60,7 +191,7 @@ public class SocketHttpClient implements HttpClient {
         out.flush();
     }
 
-    private static Pair<byte[], byte[]> prepareRequest(String hostname, int port, String path, TestRequest request) {
+    static Pair<byte[], byte[]> prepareRequest(String hostname, int port, String path, TestRequest request) {
         Bytes headerBytes = new Bytes();
 
         headerBytes.appendLine(request.method + " " + path + " " + "HTTP/1.1");
@@ -81,47 +212,66 @@ public class SocketHttpClient implements HttpClient {
         }
     }
 
-    private static WrappedResponse parseResponse(CapturingInputStream in, String requestMethod) throws HttpException {
+    /**
+     * @param streaming receives the body instead of the response, or null to materialize it
+     * @param stopwatch laps the first byte, headers and body phases, or null if the caller measures them itself
+     */
+    static WrappedResponse parseResponse(WireReader in, String requestMethod, int maxBodyBytes, StreamingBody streaming,
+            PhaseTimings.Stopwatch stopwatch) throws HttpException {
         try {
+            in.awaitBytes();
+            lap(stopwatch);
 
             List<String> headerList = consumeHeaders(in);
-            byte[] headerBytes = in.readBytes();
+            byte[] headerBytes = in.copy(0, in.position());
 
             int statusCode = parseStatusCode(headerList.get(0));
 
             Headers headers = new Headers();
             for (int i = 1; i < headerList.size(); i++) { // skip status line
                 String headerLine = headerList.get(i);
-                String[] keyValue = headerLine.split(":", 2);
-                if (keyValue.length != 2) {
+                int colon = headerLine.indexOf(':');
+                if (colon < 0) {
                     throw new IllegalStateException("Could not parse header line: " + headerLine);
                 }
-                headers.add(keyValue[0], keyValue[1].trim());
+                headers.add(headerLine.substring(0, colon), headerLine.substring(colon + 1).trim());
             }
+            lap(stopwatch);
 
             byte[] bodyBytes;
-            if (bodyIsNotAllowedAccordingToRfc(statusCode, requestMethod)) {
-                bodyBytes = new byte[0];
+            String body;
+            if (streaming != null) {
+                boolean noBody = bodyIsNotAllowedAccordingToRfc(statusCode, requestMethod);
+                streaming.consume(new TestResponse(statusCode, headers, null), new BodyInputStream(in, headers, noBody));
+                bodyBytes = streaming.captured();
+                body = null;
             } else {
-                bodyBytes = consumeBody(headers, in);
+                if (bodyIsNotAllowedAccordingToRfc(statusCode, requestMethod)) {
+                    bodyBytes = new byte[0];
+                } else {
+                    bodyBytes = consumeBody(headers, in, maxBodyBytes);
+                }
+                body = new String(bodyBytes, UTF_8);
             }
-            String body = new String(bodyBytes, UTF_8);
+            lap(stopwatch);
 
             TestResponse response = new TestResponse(statusCode, headers, body);
             HttpDetails responseDetails = new WireBasedHttpDetails(headerBytes, bodyBytes);
-            return new WrappedResponse(response, responseDetails);
+            return new WrappedResponse(response, responseDetails, stopwatch == null ? null : stopwatch.timings());
         } catch (Exception e) {
-            throw new HttpException(e, in.readBytes());
+            throw new HttpException(e, in.captured());
         }
     }
 
-    // no body on HEAD, 1xx, 204, 304; see https://tools.ietf.org/html/rfc7230#section-3.3.3
-    private static boolean bodyIsNotAllowedAccordingToRfc(int status, String method) {
-        return method.equals("HEAD") || status == 204 || status == 304 || status / 100 == 1;
+    private static void lap(PhaseTimings.Stopwatch stopwatch) {
+        if (stopwatch != null) {
+            stopwatch.lap();
+        }
     }
 
-    private static CapturingInputStream capturedInputStream(InputStream in) {
-        return new CapturingInputStream(in);
+    // no body on HEAD, 1xx, 204, 304; see https://tools.ietf.org/html/rfc7230#section-3.3.3
+    static boolean bodyIsNotAllowedAccordingToRfc(int status, String method) {
+        return method.equals("HEAD") || status == 204 || status == 304 || status / 100 == 1;
     }
 
     private static Optional<String> getLastValue(Headers headers, String headerName) {
@@ -129,81 +279,71 @@ public class SocketHttpClient implements HttpClient {
         return values == null ? Optional.empty() : Optional.of(values.get(values.size() - 1));
     }
 
-    private static byte[] consumeBody(Headers headers, InputStream in) throws IOException {
+    private static byte[] consumeBody(Headers headers, WireReader in, int maxBodyBytes) throws IOException {
+        return isChunked(headers) ? consumeBodyChunked(in, maxBodyBytes) : consumeBodyIdentity(headers, in, maxBodyBytes);
+    }
+
+    private static boolean isChunked(Headers headers) {
         String txEncoding = getLastValue(headers, "Transfer-Encoding").orElse("identity").toLowerCase();
 
         switch (txEncoding) {
             case "chunked":
-                return consumeBodyChunked(in);
+                return true;
             case "identity":
-                return consumeBodyIdentity(headers, in);
+                return false;
             default:
                 throw new IllegalStateException("This HTTP client does not implement Transfer-Encoding '" + txEncoding + "'.");
         }
     }
 
-    private static byte[] consumeBodyChunked(InputStream in) throws IOException {
-        byte[] result = new byte[0];
+    private static byte[] consumeBodyChunked(WireReader in, int maxBodyBytes) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
         int chunkSize = 0;
         do {
             chunkSize = readChunkSize(in);
-            byte[] chunk = readChunk(in, chunkSize);
-            result = concat(result, chunk);
+            checkBodySize((long) body.size() + chunkSize, maxBodyBytes);
+            readChunk(in, chunkSize, body);
         } while (chunkSize > 0);
-        return result;
+        return body.toByteArray();
     }
 
-    private static byte[] consumeBodyIdentity(Headers headers, InputStream in) throws IOException {
+    private static byte[] consumeBodyIdentity(Headers headers, WireReader in, int maxBodyBytes) throws IOException {
         Optional<String> contentLength = getLastValue(headers, "Content-Length");
         if (!contentLength.isPresent()) {
             return new byte[0];
         }
-        return readNumberOfBytes(in, Integer.parseInt(contentLength.get(), 10));
+        int bodySize = Integer.parseInt(contentLength.get(), 10);
+        checkBodySize(bodySize, maxBodyBytes);
+        return readNumberOfBytes(in, bodySize);
     }
 
-    private static int readChunkSize(InputStream in) throws IOException {
-        byte[] bytes = dropLastTwo(readUntilCrLf(in));
-        return Integer.parseInt(new String(bytes, UTF_8), 16);
+    private static void checkBodySize(long bodySize, int maxBodyBytes) {
+        if (bodySize > maxBodyBytes) {
+            throw new IllegalStateException("response body exceeds maximum size of " + maxBodyBytes + " bytes");
+        }
     }
 
-    private static byte[] dropLastTwo(byte[] bytes) {
-        return Arrays.copyOf(bytes, bytes.length - 2);
+    private static int readChunkSize(WireReader in) throws IOException {
+        return Integer.parseInt(in.readLine(), 16);
     }
 
-    private static byte[] readUntilCrLf(InputStream in) throws IOException {
-        List<Byte> byteList = new ArrayList<>();
-        do {
-            int read = in.read();
-            if (read == -1) {
-                throw new IllegalStateException("unexpected end of stream; encountered -1 before CRLF");
-            }
-            byteList.add((byte) read);
-        } while (!endingWithCrLf(byteList));
-        return listToArray(byteList);
+    private static void readChunk(WireReader in, int chunkSize, ByteArrayOutputStream body) throws IOException {
+        int start = in.skip(chunkSize);
+        in.copyTo(start, start + chunkSize, body);
+        readChunkDelimiter(in);
     }
 
-    private static byte[] readChunk(InputStream in, int chunkSize) throws IOException {
-        byte[] bytes = readNumberOfBytes(in, chunkSize);
-        byte[] chunkEnding = dropLastTwo(readUntilCrLf(in));
-        if (chunkEnding.length > 0) {
-            throw new IllegalStateException("expected chunk delimiter, but found: " + Arrays.toString(chunkEnding));
+    private static void readChunkDelimiter(WireReader in) throws IOException {
+        String chunkEnding = in.readLine();
+        if (!chunkEnding.isEmpty()) {
+            throw new IllegalStateException(
+                    "expected chunk delimiter, but found: " + Arrays.toString(chunkEnding.getBytes(UTF_8)));
         }
-        return bytes;
     }
 
-    private static byte[] readNumberOfBytes(InputStream in, int bytesToRead) throws IOException {
-        byte[] result = new byte[0];
-        byte[] buffer = new byte[bytesToRead];
-        int length = 0;
-        int lengthTotal = 0;
-        while (lengthTotal < bytesToRead && (length = in.read(buffer)) != -1) {
-            lengthTotal += length;
-            result = concat(result, Arrays.copyOf(buffer, length));
-        }
-        if (lengthTotal != bytesToRead) {
-            throw new IllegalStateException("unexpected end of file. expected: " + bytesToRead + "bytes, got: " + lengthTotal);
-        }
-        return result;
+    private static byte[] readNumberOfBytes(WireReader in, int bytesToRead) throws IOException {
+        int start = in.skip(bytesToRead);
+        return in.copy(start, start + bytesToRead);
     }
 
     private static int parseStatusCode(String statusLine) {
@@ -214,33 +354,19 @@ public class SocketHttpClient implements HttpClient {
         return Integer.valueOf(split[1]);
     }
 
-    private static List<String> consumeHeaders(InputStream in) throws IOException {
+    private static List<String> consumeHeaders(WireReader in) throws IOException {
         List<String> headerLines = new ArrayList<>();
-        byte[] line;
+        String line;
         do {
-            line = dropLastTwo(readUntilCrLf(in));
-            if (line.length > 0) {
-                headerLines.add(new String(line, UTF_8));
+            line = in.readLine();
+            if (!line.isEmpty()) {
+                headerLines.add(line);
             }
-        } while (line.length > 0);
+        } while (!line.isEmpty());
 
         return headerLines;
     }
 
-    private static byte[] listToArray(List<Byte> byteList) {
-        int numBytes = byteList.size();
-        byte[] byteArray = new byte[numBytes];
-        for (int i = 0; i < numBytes; i++) {
-            byteArray[i] = byteList.get(i);
-        }
-        return byteArray;
-    }
-
-    private static boolean endingWithCrLf(List<Byte> bytes) {
-        int numBytes = bytes.size();
-        return numBytes >= 2 && bytes.get(numBytes - 2) == '\r' && bytes.get(numBytes - 1) == '\n';
-    }
-
     public static byte[] concat(byte[] first, byte[] second) {
         byte[] combined = new byte[first.length + second.length];
         System.arraycopy(first, 0, combined, 0, first.length);
@@ -248,6 +374,12 @@ public class SocketHttpClient implements HttpClient {
         return combined;
     }
 
+    static void checkCharsets(TestRequest request) {
+        checkMethodCharset(request.method);
+        checkPathCharset(request.path);
+        checkHeadersCharset(request.headers);
+    }
+
     private static void checkMethodCharset(String method) {
         checkCharset(method, c -> 'A' <= c && c <= 'Z');
     }
@@ -256,7 +388,7 @@ public class SocketHttpClient implements HttpClient {
         checkCharset(path, c -> ' ' <= c && c <= '~');
     }
 
-    private void checkHeadersCharset(Headers headers) {
+    private static void checkHeadersCharset(Headers headers) {
         if (headers != null) {
             headers.stream().forEach(pair -> {
                 checkPathCharset(pair.left);
@@ -273,58 +405,99 @@ public class SocketHttpClient implements HttpClient {
         });
     }
 
-    public static class Bytes {
+    /*
+     * Decodes the framing of a body while the consumer reads it. Consumed bytes are dropped from the capture buffer of the
+     * reader, so it only ever holds the current read.
+     */
+    private static final class BodyInputStream extends InputStream {
 
-        private byte[] buffer = new byte[0];
+        private final WireReader in;
 
-        public void append(String msg) {
-            append(msg.getBytes(UTF_8));
-        }
+        private final boolean chunked;
 
-        public void append(byte[] bytes) {
-            buffer = concat(buffer, bytes);
+        private long remaining; // bytes left in the body, or in the current chunk
+
+        private boolean started;
+
+        private boolean ended;
+
+        private BodyInputStream(WireReader in, Headers headers, boolean noBody) {
+            this.in = in;
+            this.chunked = !noBody && isChunked(headers);
+            this.remaining = noBody || chunked ? 0 : getLastValue(headers, "Content-Length").map(Long::parseLong).orElse(0L);
+            this.ended = !chunked;
         }
 
-        public void appendLine(String line) {
-            append(line);
-            appendCrLf();
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
         }
 
-        public void appendCrLf() {
-            buffer = concat(buffer, "\r\n".getBytes(UTF_8));
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (remaining == 0 && !nextChunk()) {
+                return -1;
+            }
+            int read = in.read(b, off, (int) Math.min(len, remaining));
+            if (read < 0) {
+                throw new IllegalStateException("unexpected end of stream; " + remaining + " bytes of body missing");
+            }
+            remaining -= read;
+            return read;
         }
 
-        public byte[] toArray() {
-            return concat(buffer, new byte[0]);
+        private boolean nextChunk() throws IOException {
+            if (ended) {
+                return false;
+            }
+            if (started) {
+                readChunkDelimiter(in);
+            }
+            started = true;
+            in.discardConsumed();
+            remaining = Long.parseLong(in.readLine(), 16);
+            if (remaining == 0) {
+                readChunkDelimiter(in);
+                ended = true;
+            }
+            return !ended;
         }
 
     }
 
-    private static class CapturingInputStream extends InputStream {
+    private static class StaleConnectionException extends IOException {
 
-        private InputStream actual;
-        private List<Byte> readBytes;
+        private static final long serialVersionUID = 1L;
 
-        public CapturingInputStream(InputStream in) {
-            this.actual = in;
-            readBytes = new ArrayList<>();
+    }
+
+    public static class Bytes {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        public void append(String msg) {
+            append(msg.getBytes(UTF_8));
         }
 
-        @Override
-        public int read() throws IOException {
-            int read = actual.read();
-            if (read >= 0) {
-                readBytes.add((byte) read);
-            }
-            return read;
+        public void append(byte[] bytes) {
+            buffer.write(bytes, 0, bytes.length);
         }
 
-        byte[] readBytes() {
-            byte[] bytes = new byte[readBytes.size()];
-            for (int i = 0; i < bytes.length; i++) {
-                bytes[i] = readBytes.get(i);
-            }
-            return bytes;
+        public void appendLine(String line) {
+            append(line);
+            appendCrLf();
+        }
+
+        public void appendCrLf() {
+            append(CRLF);
+        }
+
+        public byte[] toArray() {
+            return buffer.toByteArray();
         }
 
     }
@@ -0,0 +1,193 @@
+package net.oneandone.httpselftest.http;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Hands a response body to a consumer while it is read from the wire, instead of materializing it. Of the body only a window at
+ * its head and one at its tail are kept for display. Whatever the consumer leaves unread is drained, so the capture always
+ * covers the end of the body.
+ * <p>
+ * Supported by the {@link HttpClient.Type#SOCKET} and {@link HttpClient.Type#URLCON} clients. The maximum body size does not
+ * apply, as the body is never held in memory.
+ * </p>
+ */
+public final class StreamingBody {
+
+    /**
+     * Receives the body of a response.
+     */
+    public interface Consumer {
+
+        /**
+         * @param response status and headers of the response, without body
+         * @param body     the body as it is received; not valid after returning
+         * @throws Exception if anything fails while consuming, the failure is available from {@link StreamingBody#failure()}
+         */
+        void accept(TestResponse response, InputStream body) throws Exception;
+
+    }
+
+    private final Consumer consumer;
+
+    private final byte[] head;
+
+    private final byte[] tail;
+
+    private long length;
+
+    private Exception failure;
+
+    /**
+     * @param headBytes size of the window captured at the start of the body
+     * @param tailBytes size of the window captured at the end of the body
+     * @param consumer  receives the body
+     */
+    public StreamingBody(int headBytes, int tailBytes, Consumer consumer) {
+        if (headBytes < 0 || tailBytes < 0) {
+            throw new IllegalArgumentException(
+                    "capture windows must not be negative, but were: " + headBytes + ", " + tailBytes);
+        }
+        this.head = new byte[headBytes];
+        this.tail = new byte[tailBytes];
+        this.consumer = consumer;
+    }
+
+    /*
+     * Failures of the consumer are recorded rather than thrown, since they are verification outcomes and not failures of the
+     * HTTP call. Read failures of the underlying stream are rethrown even if the consumer swallowed them.
+     */
+    void consume(TestResponse response, InputStream body) throws Exception {
+        CapturingInputStream capturing = new CapturingInputStream(body);
+        try {
+            consumer.accept(response, capturing);
+        } catch (Exception e) {
+            failure = e;
+        }
+        if (capturing.readFailure != null) {
+            throw capturing.readFailure;
+        }
+        byte[] buffer = new byte[8 * 1024];
+        while (capturing.read(buffer, 0, buffer.length) >= 0) {
+            // drain into the capture windows
+        }
+    }
+
+    /**
+     * @return total number of bytes in the body
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * @return the failure of the consumer, or null
+     */
+    public Exception failure() {
+        return failure;
+    }
+
+    /**
+     * @return the head window, followed by a marker of the omitted bytes and the tail window if the body did not fit in both
+     */
+    byte[] captured() {
+        long omitted = length - head.length - tail.length;
+        if (omitted <= 0) {
+            byte[] captured = new byte[(int) length];
+            int headLength = (int) Math.min(length, head.length);
+            System.arraycopy(head, 0, captured, 0, headLength);
+            copyTail(captured, headLength, captured.length - headLength);
+            return captured;
+        }
+        byte[] marker = ("\n[... " + omitted + " bytes omitted ...]\n").getBytes(US_ASCII);
+        byte[] captured = new byte[head.length + marker.length + tail.length];
+        System.arraycopy(head, 0, captured, 0, head.length);
+        System.arraycopy(marker, 0, captured, head.length, marker.length);
+        copyTail(captured, head.length + marker.length, tail.length);
+        return captured;
+    }
+
+    // copies the last count bytes written to the tail ring buffer
+    private void copyTail(byte[] target, int offset, int count) {
+        if (count == 0) {
+            return;
+        }
+        long tailed = length - head.length;
+        int end = (int) (tailed % tail.length);
+        int start = end - count;
+        if (start >= 0) {
+            System.arraycopy(tail, start, target, offset, count);
+        } else {
+            System.arraycopy(tail, tail.length + start, target, offset, -start);
+            System.arraycopy(tail, 0, target, offset - start, end);
+        }
+    }
+
+    private void capture(byte[] bytes, int offset, int count) {
+        int toHead = (int) Math.max(0, Math.min(count, head.length - length));
+        if (toHead > 0) {
+            System.arraycopy(bytes, offset, head, (int) length, toHead);
+            length += toHead;
+        }
+        int remaining = count - toHead;
+        if (remaining > tail.length) { // only the last bytes can end up in the tail window
+            length += remaining - tail.length;
+            remaining = tail.length;
+        }
+        int from = offset + count - remaining;
+        while (remaining > 0) {
+            int position = (int) ((length - head.length) % tail.length);
+            int step = Math.min(remaining, tail.length - position);
+            System.arraycopy(bytes, from, tail, position, step);
+            from += step;
+            remaining -= step;
+            length += step;
+        }
+    }
+
+    private final class CapturingInputStream extends InputStream {
+
+        private final InputStream in;
+
+        private Exception readFailure;
+
+        private CapturingInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read;
+            try {
+                read = in.read(b, off, len);
+            } catch (IOException | RuntimeException e) {
+                readFailure = e;
+                throw e;
+            }
+            if (read > 0) {
+                capture(b, off, read);
+            }
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return in.available();
+        }
+
+        @Override
+        public void close() {
+            // the client owns the underlying stream, unread bytes are drained after the consumer returns
+        }
+
+    }
+
+}
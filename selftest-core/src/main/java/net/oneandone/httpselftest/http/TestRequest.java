@@ -38,7 +38,10 @@ public class TestRequest {
      * <br>
      * The {@code SOCKET} client is used by default. It produces a reliable wire protocol but does not support all HTTP features.
      * The {@code URLCON} client is more feature complete but the wire protocol will be missing some details. The client can be
-     * changed after construction. If using {@code URLCON} client, GET requests may not contain a body.
+     * changed after construction. If using {@code URLCON} client, GET requests may not contain a body. The {@code NIO} client
+     * produces the same wire protocol as {@code SOCKET}, but shares a single I/O thread between all requests of a test run. The
+     * {@code H2C} client speaks cleartext HTTP/2 with prior knowledge and multiplexes all requests of a test run over one
+     * connection.
      *
      * @param path    the HTTP path suffix
      * @param method  the HTTP verb
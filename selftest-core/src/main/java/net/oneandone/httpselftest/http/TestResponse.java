@@ -47,6 +47,9 @@ public class TestResponse {
         return headers.get(headerName);
     }
 
+    /**
+     * @return the body, or null if it was handed to a {@link StreamingBody} instead
+     */
     public String getBody() {
         return body;
     }
@@ -1,5 +1,6 @@
 package net.oneandone.httpselftest.http;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -14,6 +15,22 @@ import java.util.stream.Collectors;
 
 public class UrlConnectionHttpClient implements HttpClient {
 
+    private final int maxBodyBytes;
+
+    public UrlConnectionHttpClient() {
+        this(HttpClients.DEFAULT_MAX_BODY_BYTES);
+    }
+
+    /**
+     * @param maxBodyBytes maximum size of a response body; larger responses fail with an {@link HttpException}
+     */
+    public UrlConnectionHttpClient(int maxBodyBytes) {
+        if (maxBodyBytes < 0) {
+            throw new IllegalArgumentException("maxBodyBytes must not be negative, but was: " + maxBodyBytes);
+        }
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
     @Override
     public WrappedResponse call(String baseUrl, WrappedRequest requestw, int timeout) {
 
@@ -28,13 +45,14 @@ public class UrlConnectionHttpClient implements HttpClient {
         URL endpoint = null;
         HttpURLConnection conn = null;
         try {
+            PhaseTimings.Stopwatch stopwatch = new PhaseTimings.Stopwatch();
             endpoint = new URL(finalUrl);
             conn = (HttpURLConnection) endpoint.openConnection();
             conn.setConnectTimeout(timeout);
             conn.setReadTimeout(timeout);
 
-            prepareAndSendRequest(request, conn, finalUrl, requestw);
-            return parseResponse(conn);
+            prepareAndSendRequest(request, conn, finalUrl, requestw, stopwatch);
+            return parseResponse(conn, maxBodyBytes, requestw.streamingBody, stopwatch);
         } catch (HttpException e) {
             throw e;
         } catch (Exception e) {
@@ -46,10 +64,16 @@ public class UrlConnectionHttpClient implements HttpClient {
         }
     }
 
+    /*
+     * HttpURLConnection buffers the body and writes the whole request only once the response is requested, so the send phase
+     * only covers buffering and the actual writes count for the time to first byte. Fixed-length streaming mode would write
+     * them directly, but loses the body of 401 responses that ask for authentication.
+     */
     private static void prepareAndSendRequest(TestRequest request, HttpURLConnection conn, String finalUrl,
-            WrappedRequest requestw) throws IOException {
+            WrappedRequest requestw, PhaseTimings.Stopwatch stopwatch) throws IOException {
         conn.setInstanceFollowRedirects(false);
         conn.setDoInput(true);
+        conn.setDoOutput(request.body != null);
 
         // method
         conn.setRequestMethod(request.method);
@@ -61,18 +85,24 @@ public class UrlConnectionHttpClient implements HttpClient {
 
         requestw.details = new DataBasedHttpDetails(request.method + " " + finalUrl, request.headers, request.body);
 
+        conn.connect();
+        stopwatch.lap();
+
         // body
         if (request.body != null) {
-            conn.setDoOutput(true);
             try (OutputStream out = conn.getOutputStream()) {
                 out.write(request.body.getBytes(StandardCharsets.UTF_8));
                 out.flush();
             }
         }
+        stopwatch.lap();
     }
 
-    private static WrappedResponse parseResponse(HttpURLConnection conn) throws IOException {
+    // the status line and headers are read along with the first byte, parsing them here only copies them
+    private static WrappedResponse parseResponse(HttpURLConnection conn, int maxBodyBytes, StreamingBody streaming,
+            PhaseTimings.Stopwatch stopwatch) throws Exception {
         int statusCode = conn.getResponseCode();
+        stopwatch.lap();
         if (statusCode < 0) {
             throw new HttpException("could not parse status line: " + conn.getHeaderFieldKey(0) + "->" + conn.getHeaderField(0));
         }
@@ -95,31 +125,50 @@ public class UrlConnectionHttpClient implements HttpClient {
             }
             headers.add(conn.getHeaderFieldKey(i), headerField);
         }
+        stopwatch.lap();
 
         // parse body if present
+        BodyReader reader = streaming == null ? in -> consume(in, "UTF-8", maxBodyBytes) : in -> {
+            streaming.consume(new TestResponse(statusCode, headers, null), in);
+            return null;
+        };
         String body = null;
         try (InputStream in = conn.getInputStream()) {
-            body = consume(in, "UTF-8");
+            body = reader.read(in);
         } catch (IOException e) { // getInputStream is not allow on "error" status codes, fall-back to getErrorStream
             if (statusCode < 400) { // inputStream should have been there
                 throw e;
             }
             InputStream err = conn.getErrorStream();
             if (err != null) {
-                body = consume(err, "UTF-8");
+                body = reader.read(err);
+            } else if (streaming != null) {
+                streaming.consume(new TestResponse(statusCode, headers, null), new ByteArrayInputStream(new byte[0]));
             }
         }
+        stopwatch.lap();
 
-        DataBasedHttpDetails responseDetails = new DataBasedHttpDetails(statusLine, headers, body);
+        // a streamed body is shown as far as it was captured, but not passed on
+        String shownBody = streaming == null ? body : new String(streaming.captured(), StandardCharsets.UTF_8);
+        DataBasedHttpDetails responseDetails = new DataBasedHttpDetails(statusLine, headers, shownBody);
         TestResponse response = new TestResponse(statusCode, headers, body);
-        return new WrappedResponse(response, responseDetails);
+        return new WrappedResponse(response, responseDetails, stopwatch.timings());
+    }
+
+    private interface BodyReader {
+
+        String read(InputStream in) throws Exception;
+
     }
 
-    private static String consume(InputStream in, String charset) throws IOException {
+    private static String consume(InputStream in, String charset, int maxBodyBytes) throws IOException {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
-        byte[] buffer = new byte[256];
+        byte[] buffer = new byte[8 * 1024];
         int length = 0;
         while ((length = in.read(buffer)) != -1) {
+            if ((long) out.size() + length > maxBodyBytes) {
+                throw new HttpException("response body exceeds maximum size of " + maxBodyBytes + " bytes");
+            }
             out.write(buffer, 0, length);
         }
         return out.toString(charset);
@@ -0,0 +1,159 @@
+package net.oneandone.httpselftest.http;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads the raw bytes of an HTTP message into a single growing buffer. The buffer doubles as capture of everything read from the
+ * wire, so parsing works on indices into it instead of copying or boxing single bytes.
+ */
+final class WireReader {
+
+    private static final int INITIAL_CAPACITY = 8 * 1024;
+
+    private final InputStream in;
+
+    private final int maxBytes;
+
+    private byte[] buffer;
+
+    private int limit; // number of bytes read from the wire
+
+    private int position; // number of bytes consumed by the parser
+
+    WireReader(InputStream in) {
+        this(in, Integer.MAX_VALUE - 8);
+    }
+
+    /**
+     * @param maxBytes maximum number of bytes read from the wire, exceeding it fails the read
+     */
+    WireReader(InputStream in, int maxBytes) {
+        this.in = in;
+        this.maxBytes = maxBytes;
+        this.buffer = new byte[Math.min(INITIAL_CAPACITY, maxBytes)];
+    }
+
+    /**
+     * Consumes the next line.
+     *
+     * @return the line without its terminating CRLF
+     * @throws IOException on read failure
+     */
+    String readLine() throws IOException {
+        int lineStart = position;
+        int scanFrom = position;
+        while (true) {
+            for (int i = scanFrom; i < limit; i++) {
+                if (buffer[i] == '\n' && i > lineStart && buffer[i - 1] == '\r') {
+                    position = i + 1;
+                    return new String(buffer, lineStart, i - 1 - lineStart, UTF_8);
+                }
+            }
+            scanFrom = limit;
+            if (!fill()) {
+                throw new IllegalStateException("unexpected end of stream; encountered -1 before CRLF");
+            }
+        }
+    }
+
+    /**
+     * Consumes the given number of bytes.
+     *
+     * @param count number of bytes
+     * @return start index of the consumed bytes in the capture buffer, see {@link #copy(int, int)}
+     * @throws IOException on read failure
+     */
+    int skip(int count) throws IOException {
+        int start = position;
+        while (limit - start < count) {
+            if (!fill()) {
+                throw new IllegalStateException(
+                        "unexpected end of file. expected: " + count + "bytes, got: " + (limit - start));
+            }
+        }
+        position = start + count;
+        return start;
+    }
+
+    /**
+     * Blocks until an unconsumed byte is available or the stream has ended, without consuming anything.
+     *
+     * @throws IOException on read failure
+     */
+    void awaitBytes() throws IOException {
+        if (!hasUnconsumedBytes()) {
+            fill();
+        }
+    }
+
+    /**
+     * Consumes up to the given number of bytes without keeping them in the capture buffer, for bodies that are streamed.
+     *
+     * @return number of bytes read, or -1 if the stream has ended
+     * @throws IOException on read failure
+     */
+    int read(byte[] target, int offset, int length) throws IOException {
+        if (hasUnconsumedBytes()) {
+            int count = Math.min(length, limit - position);
+            System.arraycopy(buffer, position, target, offset, count);
+            position += count;
+            return count;
+        }
+        discardConsumed();
+        return in.read(target, offset, length);
+    }
+
+    /**
+     * Drops the consumed bytes from the capture buffer, so it does not grow while a body is streamed. Indices into the buffer
+     * become invalid.
+     */
+    void discardConsumed() {
+        System.arraycopy(buffer, position, buffer, 0, limit - position);
+        limit -= position;
+        position = 0;
+    }
+
+    int position() {
+        return position;
+    }
+
+    boolean hasUnconsumedBytes() {
+        return limit > position;
+    }
+
+    byte[] copy(int from, int to) {
+        return Arrays.copyOfRange(buffer, from, to);
+    }
+
+    void copyTo(int from, int to, ByteArrayOutputStream out) {
+        out.write(buffer, from, to - from);
+    }
+
+    /**
+     * @return everything read from the wire so far, including bytes not yet consumed
+     */
+    byte[] captured() {
+        return Arrays.copyOf(buffer, limit);
+    }
+
+    private boolean fill() throws IOException {
+        if (limit == buffer.length) {
+            if (limit >= maxBytes) {
+                throw new IllegalStateException("response exceeds maximum size of " + maxBytes + " bytes");
+            }
+            buffer = Arrays.copyOf(buffer, (int) Math.min(buffer.length * 2L, maxBytes));
+        }
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+}
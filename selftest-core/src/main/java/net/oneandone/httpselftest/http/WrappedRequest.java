@@ -5,11 +5,24 @@ import java.util.Objects;
 public class WrappedRequest {
 
     public final TestRequest request;
+    final StreamingBody streamingBody;
     HttpDetails details;
 
     public WrappedRequest(TestRequest request) {
+        this(request, null);
+    }
+
+    /**
+     * @param streamingBody receives the response body instead of the response, or null to materialize it
+     */
+    public WrappedRequest(TestRequest request, StreamingBody streamingBody) {
         Objects.requireNonNull(request, "request may not be null");
         this.request = request;
+        this.streamingBody = streamingBody;
+    }
+
+    public StreamingBody getStreamingBody() {
+        return streamingBody;
     }
 
     public HttpDetails getDetails() {
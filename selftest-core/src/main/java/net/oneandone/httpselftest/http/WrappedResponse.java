@@ -6,12 +6,18 @@ public class WrappedResponse {
 
     public final TestResponse response;
     public final HttpDetails responseDetails;
+    public final PhaseTimings timings; // null if not recorded by the client
 
     public WrappedResponse(TestResponse response, HttpDetails responseDetails) {
+        this(response, responseDetails, null);
+    }
+
+    public WrappedResponse(TestResponse response, HttpDetails responseDetails, PhaseTimings timings) {
         Objects.requireNonNull(response, "response may not be null");
         Objects.requireNonNull(responseDetails, "responseDetails may not be null");
         this.response = response;
         this.responseDetails = responseDetails;
+        this.timings = timings;
     }
 
 }
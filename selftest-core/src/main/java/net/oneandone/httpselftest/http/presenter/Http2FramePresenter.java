@@ -0,0 +1,36 @@
+package net.oneandone.httpselftest.http.presenter;
+
+import java.util.Optional;
+
+import net.oneandone.httpselftest.http.Headers;
+import net.oneandone.httpselftest.http.Http2Details;
+import net.oneandone.httpselftest.http.Http2Frame;
+import net.oneandone.httpselftest.http.HttpDetails;
+
+public class Http2FramePresenter implements HttpPresenter {
+
+    @Override
+    public String id() {
+        return "frames";
+    }
+
+    @Override
+    public Optional<String> parse(Headers headers, HttpDetails details) {
+        if (!(details instanceof Http2Details)) {
+            return Optional.empty();
+        }
+
+        StringBuilder dump = new StringBuilder();
+        for (Http2Frame frame : ((Http2Details) details).frames) {
+            dump.append(frame).append('\n');
+            frame.headerFields().forEach(field -> dump.append("    ").append(field.left).append(": ").append(field.right)
+                    .append('\n'));
+            byte[] data = frame.data();
+            if (data != null && data.length > 0) {
+                dump.append(Hexdump.hexdump(data)).append('\n');
+            }
+        }
+        return Optional.of(dump.toString());
+    }
+
+}
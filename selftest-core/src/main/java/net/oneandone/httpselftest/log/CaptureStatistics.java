@@ -0,0 +1,31 @@
+package net.oneandone.httpselftest.log;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts log events that were examined while a test run was active and those that were captured for a run. The ratio shows
+ * how much of the regular traffic pays for log capturing.
+ */
+public class CaptureStatistics {
+
+    private final LongAdder examined = new LongAdder();
+
+    private final LongAdder captured = new LongAdder();
+
+    public void examined() {
+        examined.increment();
+    }
+
+    public void captured() {
+        captured.increment();
+    }
+
+    public long getExamined() {
+        return examined.sum();
+    }
+
+    public long getCaptured() {
+        return captured.sum();
+    }
+
+}
@@ -0,0 +1,145 @@
+package net.oneandone.httpselftest.log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-capacity ring buffer keeping the latest events. Writers never block each other: each claims a sequence number and
+ * writes its own slot. {@link #snapshot()} swaps in an empty generation and reads the previous one once its in-flight writers
+ * are done, so every event ends up in exactly one snapshot unless it was overwritten.
+ */
+public class ConcurrentLogBuffer {
+
+    public static final int DEFAULT_CAPACITY = 300;
+
+    private final int capacity;
+
+    private final AtomicReference<Generation> current;
+
+    private final AtomicLong added = new AtomicLong();
+
+    public ConcurrentLogBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of events kept, older events are dropped
+     */
+    public ConcurrentLogBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive, but was: " + capacity);
+        }
+        this.capacity = capacity;
+        this.current = new AtomicReference<>(new Generation(capacity));
+    }
+
+    public void add(SelftestEvent e) {
+        while (true) {
+            Generation generation = current.get();
+            generation.inFlight.incrementAndGet();
+            try {
+                if (generation == current.get()) { // otherwise a snapshot may already be reading it
+                    generation.write(e);
+                    added.incrementAndGet();
+                    LogActivity.signal();
+                    return;
+                }
+            } finally {
+                generation.inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return number of events added so far, including those already dropped or taken by a snapshot
+     */
+    public long eventCount() {
+        return added.get();
+    }
+
+    public LogSnapshot snapshot() {
+        Generation previous = current.getAndSet(new Generation(capacity));
+        while (previous.inFlight.get() > 0) {
+            Thread.yield();
+        }
+        return previous.read();
+    }
+
+    private static final class Generation {
+
+        final AtomicInteger inFlight = new AtomicInteger();
+
+        final AtomicLong nextSequence = new AtomicLong();
+
+        final AtomicReferenceArray<Slot> slots;
+
+        final ConcurrentMap<String, AtomicInteger> levelCounts = new ConcurrentHashMap<>();
+
+        final AtomicInteger uncounted = new AtomicInteger();
+
+        Generation(int capacity) {
+            slots = new AtomicReferenceArray<>(capacity);
+        }
+
+        void write(SelftestEvent e) {
+            count(e.level);
+            long sequence = nextSequence.getAndIncrement();
+            int index = (int) (sequence % slots.length());
+            Slot slot = new Slot(sequence, e);
+            Slot existing = slots.get(index);
+            // a writer that lapped this one may have been faster, never overwrite a newer event
+            while ((existing == null || existing.sequence < sequence) && !slots.compareAndSet(index, existing, slot)) {
+                existing = slots.get(index);
+            }
+        }
+
+        private void count(String level) {
+            if (level == null) {
+                uncounted.incrementAndGet();
+                return;
+            }
+            AtomicInteger counter = levelCounts.get(level);
+            if (counter == null) {
+                levelCounts.putIfAbsent(level, new AtomicInteger());
+                counter = levelCounts.get(level);
+            }
+            counter.incrementAndGet();
+        }
+
+        LogSnapshot read() {
+            long written = nextSequence.get();
+            long first = Math.max(0, written - slots.length());
+            List<SelftestEvent> events = new ArrayList<>((int) (written - first));
+            for (long sequence = first; sequence < written; sequence++) {
+                Slot slot = slots.get((int) (sequence % slots.length()));
+                if (slot != null && slot.sequence == sequence) {
+                    events.add(slot.event);
+                }
+            }
+            Map<String, Integer> counts = new HashMap<>();
+            levelCounts.forEach((level, counter) -> counts.put(level, counter.get()));
+            return new LogSnapshot(events, first > 0, counts, uncounted.get() == 0);
+        }
+    }
+
+    private static final class Slot {
+
+        final long sequence;
+
+        final SelftestEvent event;
+
+        Slot(long sequence, SelftestEvent event) {
+            this.sequence = sequence;
+            this.event = event;
+        }
+    }
+
+}
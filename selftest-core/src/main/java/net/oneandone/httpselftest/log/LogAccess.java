@@ -9,10 +9,10 @@ import java.util.Map;
 public class LogAccess {
 
     public final List<String> logNames;
-    public final SynchronousLogBuffer buffer;
+    public final ConcurrentLogBuffer buffer;
     public final EventRenderer renderer;
 
-    public LogAccess(List<String> logNames, SynchronousLogBuffer buffer, EventRenderer renderer) {
+    public LogAccess(List<String> logNames, ConcurrentLogBuffer buffer, EventRenderer renderer) {
         this.logNames = logNames;
         this.buffer = buffer;
         this.renderer = renderer;
@@ -20,7 +20,7 @@ public class LogAccess {
 
     public static List<LogDetails> snapshot(List<LogAccess> loggers) {
 
-        Map<SynchronousLogBuffer, LogSnapshot> snapshots = new IdentityHashMap<>();
+        Map<ConcurrentLogBuffer, LogSnapshot> snapshots = new IdentityHashMap<>();
 
         loggers.forEach(access -> {
             if (!snapshots.containsKey(access.buffer)) {
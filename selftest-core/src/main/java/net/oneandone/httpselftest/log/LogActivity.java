@@ -0,0 +1,49 @@
+package net.oneandone.httpselftest.log;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Wakes runners waiting for the log events of a test run whenever an event is captured or a request of a run finished, so
+ * they don't need to poll. Signalling costs a single read as long as nobody waits.
+ */
+public final class LogActivity {
+
+    private static final Object MONITOR = new Object();
+
+    private static final AtomicInteger WAITING = new AtomicInteger();
+
+    private LogActivity() {
+    }
+
+    public static void signal() {
+        if (WAITING.get() > 0) {
+            synchronized (MONITOR) {
+                MONITOR.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits for the next signal, at most the given time. Wakes up spuriously at times, callers re-check their condition.
+     *
+     * @param maxNanos  maximum time to wait
+     * @param unchanged state the caller observed before calling; re-checked once waiting is announced, so signals in between
+     *                  are not lost
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static void await(long maxNanos, BooleanSupplier unchanged) throws InterruptedException {
+        WAITING.incrementAndGet();
+        try {
+            synchronized (MONITOR) {
+                if (maxNanos > 0 && unchanged.getAsBoolean()) {
+                    TimeUnit.NANOSECONDS.timedWait(MONITOR, maxNanos);
+                }
+            }
+        } finally {
+            WAITING.decrementAndGet();
+        }
+    }
+
+}
@@ -8,10 +8,48 @@ public class LogDetails {
     public final LogSnapshot logs;
     public final EventRenderer renderer;
 
+    // rendering the same line twice yields the same result, so concurrent readers may race on filling the cache
+    private final String[] renderedLines;
+
     public LogDetails(List<String> logNames, LogSnapshot logs, EventRenderer renderer) {
         this.logNames = logNames;
         this.logs = logs;
         this.renderer = renderer;
+        this.renderedLines = new String[logs.events.size()];
+    }
+
+    /**
+     * @return the event at the given index, laid out by the renderer at most once
+     */
+    public String renderedLine(int index) {
+        String line = renderedLines[index];
+        if (line == null) {
+            line = renderer.doLayout(logs.events.get(index).event);
+            renderedLines[index] = line;
+        }
+        return line;
+    }
+
+    public String level(int index) {
+        SelftestEvent event = logs.events.get(index);
+        return event.level != null ? event.level : renderer.getLevel(event.event);
+    }
+
+    /**
+     * @return true if there is an event on the given level. Uses the level counts of the snapshot if they are complete.
+     */
+    public boolean hasEventOnLevel(String level) {
+        if (logs.levelCounts.getOrDefault(level, 0) > 0) {
+            return true;
+        } else if (logs.allLevelsCounted) {
+            return false;
+        }
+        for (int i = 0; i < logs.events.size(); i++) {
+            if (level.equals(level(i))) {
+                return true;
+            }
+        }
+        return false;
     }
 
 }
@@ -1,17 +1,37 @@
 package net.oneandone.httpselftest.log;
 
+import static java.util.Collections.emptyMap;
 import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
 
 import java.util.List;
+import java.util.Map;
 
 public class LogSnapshot {
 
     public final List<SelftestEvent> events;
     public final boolean hasOverflown;
 
+    /**
+     * number of events per level, counted when the events were captured. This includes events dropped on overflow.
+     */
+    public final Map<String, Integer> levelCounts;
+
+    /**
+     * false if some events were captured without level, {@link #levelCounts} is incomplete in this case
+     */
+    public final boolean allLevelsCounted;
+
     public LogSnapshot(List<SelftestEvent> events, boolean hasOverflown) {
+        this(events, hasOverflown, emptyMap(), events.isEmpty());
+    }
+
+    public LogSnapshot(List<SelftestEvent> events, boolean hasOverflown, Map<String, Integer> levelCounts,
+            boolean allLevelsCounted) {
         this.events = unmodifiableList(events);
         this.hasOverflown = hasOverflown;
+        this.levelCounts = unmodifiableMap(levelCounts);
+        this.allLevelsCounted = allLevelsCounted;
     }
 
 }
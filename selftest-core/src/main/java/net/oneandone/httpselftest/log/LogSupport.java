@@ -1,10 +1,32 @@
 package net.oneandone.httpselftest.log;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 public interface LogSupport {
 
+    /**
+     * Prepares log capturing, called once on servlet init.
+     */
+    default void start() {
+        // nothing to prepare
+    }
+
+    /**
+     * Releases everything acquired by {@link #start()}, called on servlet destroy.
+     */
+    default void stop() {
+        // nothing to release
+    }
+
+    /**
+     * @return counters of examined and captured log events, if the implementation keeps them
+     */
+    default Optional<CaptureStatistics> getStatistics() {
+        return Optional.empty();
+    }
+
     void runWithAttachedAppenders(Set<String> runIds, Runnable c);
 
     List<LogAccess> getLogs(String runIds);
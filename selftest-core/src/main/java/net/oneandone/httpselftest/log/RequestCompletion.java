@@ -0,0 +1,81 @@
+package net.oneandone.httpselftest.log;
+
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks the requests of test runs through the {@code SelftestMDCFilter}, so the runner learns when the application is done
+ * with a request instead of sleeping for a fixed time. Only runs registered by the runner are tracked, requests of other runs
+ * and regular traffic are ignored.
+ */
+public final class RequestCompletion {
+
+    private static final ConcurrentMap<String, Progress> RUNS = new ConcurrentHashMap<>();
+
+    private RequestCompletion() {
+    }
+
+    public static void register(String runId) {
+        RUNS.put(runId, new Progress());
+    }
+
+    public static void unregister(String runId) {
+        RUNS.remove(runId);
+    }
+
+    /**
+     * @param runId run id of the request, null if it is not part of a test run
+     */
+    public static void started(String runId) {
+        Progress progress = runId == null ? null : RUNS.get(runId);
+        if (progress != null) {
+            progress.started.incrementAndGet();
+            progress.active.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param runId run id of the request, null if it is not part of a test run
+     */
+    public static void finished(String runId) {
+        Progress progress = runId == null ? null : RUNS.get(runId);
+        if (progress != null) {
+            progress.finishedAt = System.nanoTime();
+            progress.active.decrementAndGet();
+            LogActivity.signal();
+        }
+    }
+
+    /**
+     * @return true if a request of the run passed the filter and all of its requests are finished, false if the run is not
+     *         registered or the filter has not seen it, e.g. because it is not installed
+     */
+    public static boolean isCompleted(String runId) {
+        return completedAt(runId).isPresent();
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the last request of the run finished, empty unless the run {@link #isCompleted}
+     */
+    public static OptionalLong completedAt(String runId) {
+        Progress progress = RUNS.get(runId);
+        if (progress == null || progress.started.get() == 0 || progress.active.get() != 0) {
+            return OptionalLong.empty();
+        }
+        return OptionalLong.of(progress.finishedAt);
+    }
+
+    private static final class Progress {
+
+        final AtomicInteger started = new AtomicInteger();
+
+        final AtomicInteger active = new AtomicInteger();
+
+        // written before active is decremented, so it is set once the run is seen completed
+        volatile long finishedAt;
+
+    }
+
+}
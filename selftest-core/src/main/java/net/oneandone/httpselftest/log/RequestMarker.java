@@ -0,0 +1,39 @@
+package net.oneandone.httpselftest.log;
+
+/**
+ * Marks the current thread while it handles a request that passed the {@code SelftestMDCFilter}. This lets appenders dismiss
+ * events of regular traffic without looking up the MDC. Threads that never passed the filter, e.g. worker threads the
+ * application hands its MDC to, are not marked at all and are looked up in the MDC as before.
+ */
+public final class RequestMarker {
+
+    /**
+     * Marker of a request without run id, compare by identity.
+     */
+    public static final String NO_RUN = new String("no selftest run");
+
+    private static final ThreadLocal<String> RUN_ID = new ThreadLocal<>();
+
+    private RequestMarker() {
+    }
+
+    /**
+     * @param runId run id of the request, null if it is not part of a test run
+     */
+    public static void mark(String runId) {
+        RUN_ID.set(runId == null ? NO_RUN : runId);
+    }
+
+    public static void clear() {
+        RUN_ID.remove();
+    }
+
+    /**
+     * @return the run id of the current request, {@link #NO_RUN} for requests without run id, or null if the thread is not
+     *         marked
+     */
+    public static String runId() {
+        return RUN_ID.get();
+    }
+
+}
@@ -4,12 +4,22 @@ public class SelftestEvent {
 
     public final Object event;
 
-    private SelftestEvent(Object event) {
+    /**
+     * level determined when the event was captured, null if unknown
+     */
+    public final String level;
+
+    private SelftestEvent(Object event, String level) {
         this.event = event;
+        this.level = level;
     }
 
     public static SelftestEvent of(Object event) {
-        return new SelftestEvent(event);
+        return new SelftestEvent(event, null);
+    }
+
+    public static SelftestEvent of(Object event, String level) {
+        return new SelftestEvent(event, level);
     }
 
 }
@@ -1,16 +1,18 @@
 package net.oneandone.httpselftest.log.logback;
 
-import static java.util.stream.Collectors.toMap;
-
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 
 import org.slf4j.MDC;
 
+import net.oneandone.httpselftest.log.CaptureStatistics;
+import net.oneandone.httpselftest.log.ConcurrentLogBuffer;
+import net.oneandone.httpselftest.log.RequestMarker;
 import net.oneandone.httpselftest.log.SelftestEvent;
-import net.oneandone.httpselftest.log.SynchronousLogBuffer;
 
 import ch.qos.logback.core.Appender;
 import ch.qos.logback.core.LogbackException;
@@ -18,6 +20,11 @@ import ch.qos.logback.core.filter.Filter;
 import ch.qos.logback.core.spi.ContextAwareBase;
 import ch.qos.logback.core.spi.FilterReply;
 
+/**
+ * Collects events of threads marked with a registered run id. Runs are registered and unregistered while the appender stays
+ * attached, events of unmarked threads are dropped without looking at the MDC as long as no run is registered. While a run is
+ * registered, threads marked by {@link RequestMarker} skip the MDC lookup as well.
+ */
 public class BoundedInMemoryAppender<E> extends ContextAwareBase implements Appender<E> {
 
     private String name;
@@ -26,26 +33,77 @@ public class BoundedInMemoryAppender<E> extends ContextAwareBase implements Appe
 
     private final String requestIdHolder;
 
-    private final Map<String, SynchronousLogBuffer> buffers;
+    private final int bufferCapacity;
+
+    private final ConcurrentMap<String, ConcurrentLogBuffer> buffers = new ConcurrentHashMap<>();
+
+    private final CaptureStatistics statistics;
+
+    private final Function<? super E, String> levelOf;
 
     public BoundedInMemoryAppender(Set<String> runIds, String requestIdHolder) {
-        buffers = runIds.stream().collect(toMap(id -> id, id -> new SynchronousLogBuffer()));
+        this(runIds, requestIdHolder, ConcurrentLogBuffer.DEFAULT_CAPACITY);
+    }
+
+    public BoundedInMemoryAppender(Set<String> runIds, String requestIdHolder, int bufferCapacity) {
+        this(requestIdHolder, bufferCapacity);
+        register(runIds);
+    }
+
+    public BoundedInMemoryAppender(String requestIdHolder, int bufferCapacity) {
+        this(requestIdHolder, bufferCapacity, new CaptureStatistics());
+    }
+
+    public BoundedInMemoryAppender(String requestIdHolder, int bufferCapacity, CaptureStatistics statistics) {
+        this(requestIdHolder, bufferCapacity, statistics, event -> null);
+    }
+
+    /**
+     * @param levelOf determines the level of an event when it is captured, may return null
+     */
+    public BoundedInMemoryAppender(String requestIdHolder, int bufferCapacity, CaptureStatistics statistics,
+            Function<? super E, String> levelOf) {
         this.requestIdHolder = requestIdHolder;
+        this.bufferCapacity = bufferCapacity;
+        this.statistics = statistics;
+        this.levelOf = levelOf;
+    }
+
+    public void register(Set<String> runIds) {
+        runIds.forEach(id -> buffers.put(id, new ConcurrentLogBuffer(bufferCapacity)));
+    }
+
+    public void unregister(Set<String> runIds) {
+        runIds.forEach(buffers::remove);
     }
 
     @Override
     public void doAppend(E event) throws LogbackException {
-        String requestId = MDC.get(requestIdHolder);
+        if (buffers.isEmpty()) {
+            return;
+        }
+        statistics.examined();
+        String requestId = RequestMarker.runId();
+        if (requestId == RequestMarker.NO_RUN) {
+            return;
+        } else if (requestId == null) {
+            requestId = MDC.get(requestIdHolder);
+        }
         if (requestId != null) {
-            SynchronousLogBuffer buffer = buffers.get(requestId);
+            ConcurrentLogBuffer buffer = buffers.get(requestId);
             if (buffer != null) {
-                buffer.add(SelftestEvent.of(event));
+                buffer.add(SelftestEvent.of(event, levelOf.apply(event)));
+                statistics.captured();
             }
         }
     }
 
-    public SynchronousLogBuffer getBuffer(String runId) {
-        SynchronousLogBuffer bufferForId = buffers.get(runId);
+    public CaptureStatistics getStatistics() {
+        return statistics;
+    }
+
+    public ConcurrentLogBuffer getBuffer(String runId) {
+        ConcurrentLogBuffer bufferForId = buffers.get(runId);
         if (bufferForId == null) {
             throw new IllegalArgumentException("Unknown run id: " + runId);
         }
@@ -23,11 +23,9 @@ public class LogbackEventRenderer implements EventRenderer {
         if (layout.isPresent()) {
             return layout.get().doLayout(evt);
         } else {
-            String timestamp = TIMESTAMP_FORMATTER.format(Instant.ofEpochMilli(evt.getTimeStamp()));
-            String threadName = evt.getThreadName();
-            String message = evt.toString();
-
-            return String.format("%s [%s] %s", timestamp, threadName, message);
+            StringBuilder line = new StringBuilder(128);
+            TIMESTAMP_FORMATTER.formatTo(Instant.ofEpochMilli(evt.getTimeStamp()), line);
+            return line.append(" [").append(evt.getThreadName()).append("] ").append(evt.toString()).toString();
         }
     }
 
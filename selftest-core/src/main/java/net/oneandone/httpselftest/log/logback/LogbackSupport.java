@@ -4,6 +4,7 @@ import static java.util.stream.Collectors.toList;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -23,45 +24,106 @@ import ch.qos.logback.core.Layout;
 import ch.qos.logback.core.OutputStreamAppender;
 import ch.qos.logback.core.encoder.Encoder;
 import ch.qos.logback.core.encoder.LayoutWrappingEncoder;
+import net.oneandone.httpselftest.log.CaptureStatistics;
+import net.oneandone.httpselftest.log.ConcurrentLogBuffer;
 import net.oneandone.httpselftest.log.EventRenderer;
 import net.oneandone.httpselftest.log.LogAccess;
 import net.oneandone.httpselftest.log.LogSupport;
-import net.oneandone.httpselftest.log.SynchronousLogBuffer;
 
+/**
+ * Captures log events by attaching an in-memory appender to every logger that appends directly. The appenders are attached
+ * once and stay attached, runs only register their ids with them. If logback is reset, e.g. by re-reading its configuration,
+ * the appenders are attached again on the next run, with the ids of all runs still in progress registered.
+ */
 public class LogbackSupport implements LogSupport {
 
     static final String APPENDER_PREFIX = "selftestAppender";
 
-    private final Map<Logger, BoundedInMemoryAppender<ILoggingEvent>> appenderMap;
+    private volatile Map<Logger, BoundedInMemoryAppender<ILoggingEvent>> appenderMap; // replaced on attach, never modified
 
     private String mdcKey;
 
+    private final int bufferCapacity;
+
+    private final CaptureStatistics statistics = new CaptureStatistics();
+
+    private final Set<String> activeRunIds = new HashSet<>(); // synchronized by "LOCK"
+
     private static final Object LOCK = new Object(); // static because logback is static
     private static List<Exception> exceptions = new LinkedList<>(); // synchronized by "LOCK"
 
     public LogbackSupport(String mdcKey) {
+        this(mdcKey, ConcurrentLogBuffer.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param mdcKey         MDC key holding the run id
+     * @param bufferCapacity number of log events kept per run id and logger
+     */
+    public LogbackSupport(String mdcKey, int bufferCapacity) {
         this.mdcKey = mdcKey;
+        this.bufferCapacity = bufferCapacity;
         appenderMap = new IdentityHashMap<>();
     }
 
     @Override
-    public void runWithAttachedAppenders(Set<String> runIds, Runnable c) {
+    public void start() {
         synchronized (LOCK) {
-            try {
-                attach(runIds);
-                c.run();
-            } finally {
+            if (!isAttached()) {
                 detach();
+                attach();
             }
         }
     }
 
-    // visible for testing
-    protected void attach(Set<String> runIds) {
+    @Override
+    public void stop() {
+        synchronized (LOCK) {
+            detach();
+        }
+    }
+
+    @Override
+    public void runWithAttachedAppenders(Set<String> runIds, Runnable c) {
+        if (!isAttached()) {
+            start();
+        }
+        synchronized (LOCK) {
+            activeRunIds.addAll(runIds);
+            appenderMap.values().forEach(appender -> appender.register(runIds));
+        }
+        try {
+            c.run();
+        } finally {
+            synchronized (LOCK) {
+                activeRunIds.removeAll(runIds);
+                appenderMap.values().forEach(appender -> appender.unregister(runIds));
+            }
+        }
+    }
+
+    @Override
+    public Optional<CaptureStatistics> getStatistics() {
+        return Optional.of(statistics);
+    }
+
+    private boolean isAttached() {
+        Logger root = rootLogger();
+        BoundedInMemoryAppender<ILoggingEvent> appender = appenderMap.get(root);
+        return appender != null && root.isAttached(appender);
+    }
+
+    private void attach() {
         abortIfBroken(exceptions);
         try {
-            allLoggers().stream().filter(LogbackSupport::isAppendingDirectly)
-                    .forEach(logger -> logger.addAppender(getAppender(logger, runIds)));
+            Map<Logger, BoundedInMemoryAppender<ILoggingEvent>> attached = new IdentityHashMap<>();
+            allLoggers().stream().filter(LogbackSupport::isAppendingDirectly).forEach(logger -> {
+                BoundedInMemoryAppender<ILoggingEvent> appender = newAppender(logger);
+                appender.register(activeRunIds);
+                logger.addAppender(appender);
+                attached.put(logger, appender);
+            });
+            appenderMap = attached;
         } catch (Exception e) {
             exceptions.add(e);
             throw e;
@@ -71,7 +133,7 @@ public class LogbackSupport implements LogSupport {
     private void detach() {
         try {
             appenderMap.forEach((logger, appender) -> logger.detachAppender(appender));
-            appenderMap.clear();
+            appenderMap = new IdentityHashMap<>();
         } catch (Exception e) {
             exceptions.add(e);
             throw e;
@@ -97,7 +159,7 @@ public class LogbackSupport implements LogSupport {
         return appenderMap.entrySet().stream() //
                 .flatMap(entry -> {
                     Logger logger = entry.getKey();
-                    SynchronousLogBuffer buffer = entry.getValue().getBuffer(runId);
+                    ConcurrentLogBuffer buffer = entry.getValue().getBuffer(runId);
                     List<String> names = new LinkedList<>();
                     Optional.ofNullable(logger.getName()).ifPresent(names::add);
                     List<Appender<?>> attachedAppenders = attachedAppenders(logger).stream()
@@ -127,25 +189,28 @@ public class LogbackSupport implements LogSupport {
         return Optional.empty();
     }
 
-    private BoundedInMemoryAppender<ILoggingEvent> getAppender(Logger logger, Set<String> runIds) {
-        return appenderMap.computeIfAbsent(logger, logr -> {
-            BoundedInMemoryAppender<ILoggingEvent> appender = new BoundedInMemoryAppender<>(runIds, mdcKey);
-            appender.setName(APPENDER_PREFIX + "_" + logr.getName());
-            LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
-            appender.setContext(context);
-            return appender;
-        });
+    private BoundedInMemoryAppender<ILoggingEvent> newAppender(Logger logger) {
+        BoundedInMemoryAppender<ILoggingEvent> appender = new BoundedInMemoryAppender<>(mdcKey, bufferCapacity, statistics,
+                event -> event.getLevel().levelStr);
+        appender.setName(APPENDER_PREFIX + "_" + logger.getName());
+        appender.setContext(loggerContext());
+        return appender;
     }
 
     private static boolean isAppendingDirectly(Logger logger) {
-        if (!attachedSelftestAppenders(logger).isEmpty()) {
-            throw new IllegalStateException("Appender already attached. This should never happen! Please investigate.");
-        }
         return !logger.isAdditive() || logger.getName().equals(org.slf4j.Logger.ROOT_LOGGER_NAME);
     }
 
     private static List<Logger> allLoggers() {
-        return ((LoggerContext) LoggerFactory.getILoggerFactory()).getLoggerList();
+        return loggerContext().getLoggerList();
+    }
+
+    private static Logger rootLogger() {
+        return loggerContext().getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+    }
+
+    private static LoggerContext loggerContext() {
+        return (LoggerContext) LoggerFactory.getILoggerFactory();
     }
 
     public static List<Appender<?>> attachedSelftestAppenders(Logger logger) {
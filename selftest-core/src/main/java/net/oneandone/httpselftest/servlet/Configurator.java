@@ -2,28 +2,57 @@ package net.oneandone.httpselftest.servlet;
 
 import static java.util.Arrays.asList;
 import static java.util.stream.Collectors.toList;
+import static net.oneandone.httpselftest.servlet.SelftestServlet.PROP_CACHE_TTL;
+import static net.oneandone.httpselftest.servlet.SelftestServlet.PROP_CONCURRENT_RUNS;
+import static net.oneandone.httpselftest.servlet.SelftestServlet.PROP_CONCURRENT_RUNS_TIMEOUT;
 import static net.oneandone.httpselftest.servlet.SelftestServlet.PROP_CONFIGGROUPS;
+import static net.oneandone.httpselftest.servlet.SelftestServlet.PROP_BURST_MAX_CONCURRENCY;
+import static net.oneandone.httpselftest.servlet.SelftestServlet.PROP_BURST_MAX_ITERATIONS;
 import static net.oneandone.httpselftest.servlet.SelftestServlet.PROP_CREDENTIALS;
+import static net.oneandone.httpselftest.servlet.SelftestServlet.PROP_EXECUTOR;
+import static net.oneandone.httpselftest.servlet.SelftestServlet.PROP_HISTORY_SIZE;
+import static net.oneandone.httpselftest.servlet.SelftestServlet.PROP_HTML_PROGRESSIVE;
+import static net.oneandone.httpselftest.servlet.SelftestServlet.PROP_KEEP_ALIVE;
 import static net.oneandone.httpselftest.servlet.SelftestServlet.PROP_LOGGER;
+import static net.oneandone.httpselftest.servlet.SelftestServlet.PROP_LOG_BUFFER_SIZE;
+import static net.oneandone.httpselftest.servlet.SelftestServlet.PROP_LOG_QUIET_PERIOD;
+import static net.oneandone.httpselftest.servlet.SelftestServlet.PROP_MAX_BODY_SIZE;
 import static net.oneandone.httpselftest.servlet.SelftestServlet.PROP_OVERRIDE_MDC_KEY;
 import static net.oneandone.httpselftest.servlet.SelftestServlet.PROP_OVERRIDE_PATH;
 import static net.oneandone.httpselftest.servlet.SelftestServlet.PROP_OVERRIDE_PORT;
+import static net.oneandone.httpselftest.servlet.SelftestServlet.PROP_PARALLELISM;
+import static net.oneandone.httpselftest.servlet.SelftestServlet.PROP_SCHEDULE_CONFIG_ID;
+import static net.oneandone.httpselftest.servlet.SelftestServlet.PROP_SCHEDULE_INTERVAL;
 import static net.oneandone.httpselftest.test.run.TestRunner.X_REQUEST_ID;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
 import javax.servlet.ServletConfig;
 
+import net.oneandone.httpselftest.http.HttpClients;
+import net.oneandone.httpselftest.log.ConcurrentLogBuffer;
 import net.oneandone.httpselftest.log.InactiveLogSupport;
 import net.oneandone.httpselftest.log.LogSupport;
 import net.oneandone.httpselftest.log.logback.LogbackSupport;
+import net.oneandone.httpselftest.test.run.ExecutorBackend;
+import net.oneandone.httpselftest.test.run.RunHistory;
+import net.oneandone.httpselftest.test.run.RunSettings;
 
 public final class Configurator {
 
     private static final List<String> LOGGER_VALUES = Arrays.asList("none", "logback");
 
+    private static final List<String> EXECUTOR_VALUES = Arrays.asList("platform", "virtual", "auto");
+
+    static final long DEFAULT_CONCURRENT_RUNS_TIMEOUT_MILLIS = 10_000;
+
+    static final int DEFAULT_BURST_MAX_ITERATIONS = 1_000;
+
+    static final int DEFAULT_BURST_MAX_CONCURRENCY = 8;
+
     private Configurator() {
     }
 
@@ -60,7 +89,29 @@ public final class Configurator {
                     String.format("invalid value for %s: %s (possible values: %s)", PROP_LOGGER, loggerType, LOGGER_VALUES));
         }
 
-        return loggerType.equals("logback") ? new LogbackSupport(mdcKey) : new InactiveLogSupport();
+        return loggerType.equals("logback") ? new LogbackSupport(mdcKey, getLogBufferSize(config)) : new InactiveLogSupport();
+    }
+
+    static int getLogBufferSize(ServletConfig config) {
+        int bufferSize = Optional.ofNullable(config.getInitParameter(PROP_LOG_BUFFER_SIZE)).map(Integer::parseInt)
+                .orElse(ConcurrentLogBuffer.DEFAULT_CAPACITY);
+
+        if (bufferSize <= 0) {
+            throw new IllegalStateException(String.format("invalid value for %s: %s", PROP_LOG_BUFFER_SIZE, bufferSize));
+        }
+
+        return bufferSize;
+    }
+
+    static int getLogQuietPeriod(ServletConfig config) {
+        int quietPeriod = Optional.ofNullable(config.getInitParameter(PROP_LOG_QUIET_PERIOD)).map(Integer::parseInt)
+                .orElse(RunSettings.DEFAULT_LOG_QUIET_MILLIS);
+
+        if (quietPeriod < 0) {
+            throw new IllegalStateException(String.format("invalid value for %s: %s", PROP_LOG_QUIET_PERIOD, quietPeriod));
+        }
+
+        return quietPeriod;
     }
 
     static Optional<List<String>> getConfigGroups(ServletConfig config) {
@@ -73,4 +124,137 @@ public final class Configurator {
         return Optional.of(asList(groups.split(",")).stream().map(String::trim).collect(toList()));
     }
 
+    static int getParallelism(ServletConfig config) {
+        int parallelism = Optional.ofNullable(config.getInitParameter(PROP_PARALLELISM)).map(Integer::parseInt).orElse(1);
+
+        if (parallelism <= 0) {
+            throw new IllegalStateException(String.format("invalid value for %s: %s", PROP_PARALLELISM, parallelism));
+        }
+
+        return parallelism;
+    }
+
+    static int getMaxBodySize(ServletConfig config) {
+        int maxBodySize = Optional.ofNullable(config.getInitParameter(PROP_MAX_BODY_SIZE)).map(Integer::parseInt)
+                .orElse(HttpClients.DEFAULT_MAX_BODY_BYTES);
+
+        if (maxBodySize <= 0) {
+            throw new IllegalStateException(String.format("invalid value for %s: %s", PROP_MAX_BODY_SIZE, maxBodySize));
+        }
+
+        return maxBodySize;
+    }
+
+    static boolean getKeepAlive(ServletConfig config) {
+        return getFlag(config, PROP_KEEP_ALIVE);
+    }
+
+    static boolean getHtmlProgressive(ServletConfig config) {
+        return getFlag(config, PROP_HTML_PROGRESSIVE);
+    }
+
+    private static boolean getFlag(ServletConfig config, String property) {
+        String flag = Optional.ofNullable(config.getInitParameter(property)).orElse("false").trim();
+
+        if (!flag.equals("true") && !flag.equals("false")) {
+            throw new IllegalStateException(String.format("invalid value for %s: %s", property, flag));
+        }
+
+        return Boolean.parseBoolean(flag);
+    }
+
+    static int getConcurrentRuns(ServletConfig config) {
+        int concurrentRuns = Optional.ofNullable(config.getInitParameter(PROP_CONCURRENT_RUNS)).map(Integer::parseInt).orElse(1);
+
+        if (concurrentRuns <= 0) {
+            throw new IllegalStateException(String.format("invalid value for %s: %s", PROP_CONCURRENT_RUNS, concurrentRuns));
+        }
+
+        return concurrentRuns;
+    }
+
+    static long getConcurrentRunsTimeout(ServletConfig config) {
+        long timeoutMillis = Optional.ofNullable(config.getInitParameter(PROP_CONCURRENT_RUNS_TIMEOUT)).map(Long::parseLong)
+                .orElse(DEFAULT_CONCURRENT_RUNS_TIMEOUT_MILLIS);
+
+        if (timeoutMillis < 0) {
+            throw new IllegalStateException(String.format("invalid value for %s: %s", PROP_CONCURRENT_RUNS_TIMEOUT, timeoutMillis));
+        }
+
+        return timeoutMillis;
+    }
+
+    static Optional<Duration> getCacheTtl(ServletConfig config) {
+        long ttlMillis = Optional.ofNullable(config.getInitParameter(PROP_CACHE_TTL)).map(Long::parseLong).orElse(0L);
+
+        if (ttlMillis < 0) {
+            throw new IllegalStateException(String.format("invalid value for %s: %s", PROP_CACHE_TTL, ttlMillis));
+        }
+
+        return ttlMillis == 0 ? Optional.empty() : Optional.of(Duration.ofMillis(ttlMillis));
+    }
+
+    static Optional<Duration> getScheduleInterval(ServletConfig config) {
+        long intervalMillis =
+                Optional.ofNullable(config.getInitParameter(PROP_SCHEDULE_INTERVAL)).map(Long::parseLong).orElse(0L);
+
+        if (intervalMillis < 0) {
+            throw new IllegalStateException(String.format("invalid value for %s: %s", PROP_SCHEDULE_INTERVAL, intervalMillis));
+        }
+
+        return intervalMillis == 0 ? Optional.empty() : Optional.of(Duration.ofMillis(intervalMillis));
+    }
+
+    static Optional<String> getScheduleConfigId(ServletConfig config) {
+        return Optional.ofNullable(config.getInitParameter(PROP_SCHEDULE_CONFIG_ID)).map(String::trim)
+                .filter(id -> !id.isEmpty());
+    }
+
+    static int getHistorySize(ServletConfig config) {
+        int historySize = Optional.ofNullable(config.getInitParameter(PROP_HISTORY_SIZE)).map(Integer::parseInt)
+                .orElse(RunHistory.DEFAULT_CAPACITY);
+
+        if (historySize <= 0) {
+            throw new IllegalStateException(String.format("invalid value for %s: %s", PROP_HISTORY_SIZE, historySize));
+        }
+
+        return historySize;
+    }
+
+    static int getBurstMaxIterations(ServletConfig config) {
+        return getPositiveInt(config, PROP_BURST_MAX_ITERATIONS, DEFAULT_BURST_MAX_ITERATIONS);
+    }
+
+    static int getBurstMaxConcurrency(ServletConfig config) {
+        return getPositiveInt(config, PROP_BURST_MAX_CONCURRENCY, DEFAULT_BURST_MAX_CONCURRENCY);
+    }
+
+    private static int getPositiveInt(ServletConfig config, String name, int defaultValue) {
+        int value = Optional.ofNullable(config.getInitParameter(name)).map(Integer::parseInt).orElse(defaultValue);
+
+        if (value <= 0) {
+            throw new IllegalStateException(String.format("invalid value for %s: %s", name, value));
+        }
+
+        return value;
+    }
+
+    static ExecutorBackend getExecutorBackend(ServletConfig config) {
+        String executor = Optional.ofNullable(config.getInitParameter(PROP_EXECUTOR)).map(String::trim).orElse("platform");
+
+        if (!EXECUTOR_VALUES.contains(executor)) {
+            throw new IllegalStateException(
+                    String.format("invalid value for %s: %s (possible values: %s)", PROP_EXECUTOR, executor, EXECUTOR_VALUES));
+        }
+        if (executor.equals("virtual") && !ExecutorBackend.isVirtualAvailable()) {
+            throw new IllegalStateException(
+                    String.format("invalid value for %s: %s (virtual threads require Java 21)", PROP_EXECUTOR, executor));
+        }
+
+        if (executor.equals("platform")) {
+            return ExecutorBackend.PLATFORM;
+        }
+        return ExecutorBackend.isVirtualAvailable() ? ExecutorBackend.VIRTUAL : ExecutorBackend.PLATFORM;
+    }
+
 }
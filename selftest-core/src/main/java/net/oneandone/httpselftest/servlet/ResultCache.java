@@ -0,0 +1,132 @@
+package net.oneandone.httpselftest.servlet;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the latest rendered result per request key. Expired results are still served while a single refresh per key runs in
+ * the background. Only the first request for a key waits for a run. Once {@link #MAX_ENTRIES} keys are stored, a new key
+ * evicts the least recently used one.
+ */
+final class ResultCache {
+
+    static final int MAX_ENTRIES = 16;
+
+    private final Duration ttl;
+
+    private final Executor refresher;
+
+    private final Clock clock;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong uses = new AtomicLong();
+
+    ResultCache(Duration ttl, Executor refresher, Clock clock) {
+        this.ttl = ttl;
+        this.refresher = refresher;
+        this.clock = clock;
+    }
+
+    /**
+     * @param key identifies the parameters of the run
+     * @param run executes the tests, returns null if the run could not be started
+     * @return the cached or fresh result, empty if there is none and the run could not be started
+     */
+    Optional<Result> get(String key, Supplier<Result> run) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            if (entries.size() >= MAX_ENTRIES) {
+                evictLeastRecentlyUsed();
+            }
+            entry = entries.computeIfAbsent(key, k -> new Entry());
+        }
+        entry.lastUsed = uses.incrementAndGet();
+
+        Result latest = entry.latest;
+        if (latest == null) {
+            return Optional.ofNullable(entry.refresh(run, Runnable::run).join());
+        }
+        if (!clock.instant().isBefore(latest.created.plus(ttl))) {
+            entry.refresh(run, refresher);
+        }
+        return Optional.of(latest);
+    }
+
+    // concurrent misses may each evict an entry or briefly exceed the bound, which is harmless
+    private void evictLeastRecentlyUsed() {
+        entries.entrySet().stream().min(Comparator.comparingLong(e -> e.getValue().lastUsed))
+                .ifPresent(eldest -> entries.remove(eldest.getKey(), eldest.getValue()));
+    }
+
+    Duration age(Result result) {
+        return Duration.between(result.created, clock.instant());
+    }
+
+    Result newResult(String body, int status) {
+        return new Result(body, status, clock.instant());
+    }
+
+    static final class Result {
+
+        final String body;
+        final int status;
+        final Instant created;
+
+        private Result(String body, int status, Instant created) {
+            this.body = body;
+            this.status = status;
+            this.created = created;
+        }
+    }
+
+    private static final class Entry {
+
+        volatile Result latest;
+
+        volatile long lastUsed;
+
+        final AtomicReference<CompletableFuture<Result>> refreshing = new AtomicReference<>();
+
+        CompletableFuture<Result> refresh(Supplier<Result> run, Executor executor) {
+            CompletableFuture<Result> future = new CompletableFuture<>();
+            while (!refreshing.compareAndSet(null, future)) {
+                CompletableFuture<Result> running = refreshing.get();
+                if (running != null) {
+                    return running;
+                }
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        Result result = run.get();
+                        if (result != null) {
+                            latest = result;
+                        }
+                        refreshing.set(null);
+                        future.complete(result);
+                    } catch (Throwable t) {
+                        refreshing.set(null);
+                        future.completeExceptionally(t);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                refreshing.set(null);
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+    }
+
+}
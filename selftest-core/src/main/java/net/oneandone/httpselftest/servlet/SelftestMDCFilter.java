@@ -14,6 +14,9 @@ import javax.servlet.http.HttpServletRequest;
 
 import org.slf4j.MDC;
 
+import net.oneandone.httpselftest.log.RequestCompletion;
+import net.oneandone.httpselftest.log.RequestMarker;
+
 public class SelftestMDCFilter implements Filter {
 
     @Override
@@ -21,10 +24,13 @@ public class SelftestMDCFilter implements Filter {
             throws IOException, ServletException {
 
         boolean runIdWasStored = false;
+        String runId = null;
         try {
             if (request instanceof HttpServletRequest) {
                 HttpServletRequest httpRequest = (HttpServletRequest) request;
-                String runId = httpRequest.getHeader(X_REQUEST_ID);
+                runId = httpRequest.getHeader(X_REQUEST_ID);
+                RequestMarker.mark(runId);
+                RequestCompletion.started(runId);
                 if (runId != null) {
                     runIdWasStored = true;
                     MDC.put(X_REQUEST_ID, runId);
@@ -32,6 +38,8 @@ public class SelftestMDCFilter implements Filter {
             }
             chain.doFilter(request, response);
         } finally {
+            RequestCompletion.finished(runId);
+            RequestMarker.clear();
             if (runIdWasStored) {
                 MDC.remove(X_REQUEST_ID);
             }
@@ -0,0 +1,80 @@
+package net.oneandone.httpselftest.servlet;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+import net.oneandone.httpselftest.test.run.RunHistory;
+import net.oneandone.httpselftest.test.run.RunRecord;
+import net.oneandone.httpselftest.writer.SelfTestJsonWriter;
+import net.oneandone.httpselftest.writer.SelfTestWriter;
+
+/**
+ * Runs the test suite periodically on a daemon thread and records the outcomes in a {@link RunHistory}.
+ */
+final class SelftestScheduler implements AutoCloseable {
+
+    private final RunHistory history;
+
+    private final Predicate<SelfTestWriter> suite;
+
+    private final Clock clock;
+
+    private final BiConsumer<String, Throwable> log;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "selftest-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param suite runs the tests with the given writer, returns false if the run was skipped
+     */
+    SelftestScheduler(RunHistory history, Predicate<SelfTestWriter> suite, Clock clock) {
+        this(history, suite, clock, (message, t) -> {
+        });
+    }
+
+    /**
+     * @param log receives failures of runs, e.g. the servlet log
+     */
+    SelftestScheduler(RunHistory history, Predicate<SelfTestWriter> suite, Clock clock, BiConsumer<String, Throwable> log) {
+        this.history = history;
+        this.suite = suite;
+        this.clock = clock;
+        this.log = log;
+    }
+
+    void start(Duration interval) {
+        executor.scheduleWithFixedDelay(this::runOnce, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void runOnce() {
+        SelfTestJsonWriter collector = new SelfTestJsonWriter(new PrintWriter(new StringWriter()));
+        Instant start = clock.instant();
+        try {
+            if (!suite.test(collector)) {
+                return;
+            }
+        } catch (Throwable t) { // anything thrown would silently cancel the schedule, including errors of test cases
+            log.accept("Scheduled selftest run failed", t);
+            collector.writeUncaughtException(t);
+        }
+        long durationMillis = Duration.between(start, clock.instant()).toMillis();
+        history.add(new RunRecord(start, durationMillis, collector.testRunData, collector.uncaughtExceptions));
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+}
@@ -2,20 +2,26 @@ package net.oneandone.httpselftest.servlet;
 
 import static net.oneandone.httpselftest.writer.SelftestHtmlWriter.CONFIG_ID;
 import static net.oneandone.httpselftest.writer.SelftestHtmlWriter.EXECUTE;
-import static java.util.Comparator.comparing;
-import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Clock;
 import java.time.Instant;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -23,11 +29,19 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import net.oneandone.httpselftest.http.HttpClients;
 import net.oneandone.httpselftest.log.LogSupport;
 import net.oneandone.httpselftest.test.api.TestCase;
 import net.oneandone.httpselftest.test.api.TestConfigs;
+import net.oneandone.httpselftest.test.run.BurstRunner;
+import net.oneandone.httpselftest.test.run.ExecutorBackend;
+import net.oneandone.httpselftest.test.run.LatencyHistograms;
+import net.oneandone.httpselftest.test.run.RunHistory;
+import net.oneandone.httpselftest.test.run.RunSettings;
 import net.oneandone.httpselftest.test.run.TestRunner;
+import net.oneandone.httpselftest.writer.PageAsset;
 import net.oneandone.httpselftest.writer.SelfTestJsonWriter;
+import net.oneandone.httpselftest.writer.SelfTestNdjsonWriter;
 import net.oneandone.httpselftest.writer.SelfTestWriter;
 import net.oneandone.httpselftest.writer.SelftestHtmlWriter;
 
@@ -35,7 +49,8 @@ import net.oneandone.httpselftest.writer.SelftestHtmlWriter;
  * If you implement a subclass of this servlet, keep in mind that the application calling itself locally may have more access
  * rights than the user who is calling the servlet.
  *
- * Test cases are executed in alphabetic order.
+ * Test cases are executed in alphabetic order. If {@value #PROP_PARALLELISM} is configured, independent test cases are executed
+ * concurrently (see {@link TestCase#dependsOn()}), but still reported in alphabetic order.
  */
 public abstract class SelftestServlet extends HttpServlet {
 
@@ -45,14 +60,43 @@ public abstract class SelftestServlet extends HttpServlet {
     public static final String PROP_OVERRIDE_PORT = "selftest.override.port";
     public static final String PROP_OVERRIDE_PATH = "selftest.override.contextpath";
     public static final String PROP_OVERRIDE_MDC_KEY = "selftest.override.mdckey";
+    public static final String PROP_PARALLELISM = "selftest.parallelism";
+    public static final String PROP_MAX_BODY_SIZE = "selftest.http.maxbodysize";
+    public static final String PROP_KEEP_ALIVE = "selftest.http.keepalive";
+    public static final String PROP_LOG_BUFFER_SIZE = "selftest.log.buffersize";
+    public static final String PROP_LOG_QUIET_PERIOD = "selftest.log.quietperiod";
+    public static final String PROP_CONCURRENT_RUNS = "selftest.concurrentruns";
+    public static final String PROP_CONCURRENT_RUNS_TIMEOUT = "selftest.concurrentruns.timeout";
+    public static final String PROP_CACHE_TTL = "selftest.cache.ttl";
+    public static final String PROP_SCHEDULE_INTERVAL = "selftest.schedule.interval";
+    public static final String PROP_SCHEDULE_CONFIG_ID = "selftest.schedule.configid";
+    public static final String PROP_HISTORY_SIZE = "selftest.history.size";
+    public static final String PROP_BURST_MAX_ITERATIONS = "selftest.burst.maxiterations";
+    public static final String PROP_BURST_MAX_CONCURRENCY = "selftest.burst.maxconcurrency";
+    public static final String PROP_EXECUTOR = "selftest.executor";
+    public static final String PROP_HTML_PROGRESSIVE = "selftest.html.progressive";
 
     public static final String PARAMETER_PREFIX = "p-";
 
-    private final ReentrantLock requestLock = new ReentrantLock();
+    public static final String HISTORY = "history";
 
-    // fields synchronized by "requestLock"
-    private Instant lastTestrunStart = null;
-    private String lastTestrunIp = null;
+    public static final String ASSET = "asset";
+
+    public static final String BURST = "burst";
+
+    public static final String BURST_ITERATIONS = "burst-iterations";
+
+    public static final String BURST_CONCURRENCY = "burst-concurrency";
+
+    public static final String HEADER_LOG_EXAMINED = "X-Selftest-Log-Examined";
+    public static final String HEADER_LOG_CAPTURED = "X-Selftest-Log-Captured";
+    public static final String HEADER_RESULT_TIMESTAMP = "X-Selftest-Result-Timestamp";
+
+    private static final String RETRY_AFTER_SECONDS = "5";
+    private static final String BUSY_MESSAGE = "The selftest servlet is currently in use. "
+            + "Please re-send your request in a couple seconds or consider switching to another node.";
+
+    private volatile LastTestrun lastTestrun = new LastTestrun(null, null);
 
     // fields synchronized by servlet life-cycle
     private LogSupport logSupport;
@@ -60,12 +104,41 @@ public abstract class SelftestServlet extends HttpServlet {
     private Optional<Integer> configuredPort;
     private Optional<String> configuredContextPath;
     private Optional<List<String>> configuredConfigGroups;
+    private int configuredParallelism;
+    private int configuredMaxBodySize;
+    private boolean configuredKeepAlive;
+    private boolean configuredHtmlProgressive;
+    private long configuredConcurrentRunsTimeout;
+    private Semaphore runPermits;
+    private Optional<ResultCache> resultCache;
+    private ExecutorService cacheRefresher;
+    private Optional<String> configuredScheduleConfigId;
+    private RunHistory history;
+    private LatencyHistograms latencies;
+    private int configuredBurstMaxIterations;
+    private int configuredBurstMaxConcurrency;
+    private ExecutorBackend configuredExecutorBackend;
+    private int configuredLogQuietPeriod;
+    private SelftestScheduler scheduler;
+    private TestRegistry testRegistry;
+    private TestConfigs staticConfigs;
+
+    // app url of the latest request, needed by scheduled runs if the port is not configured
+    private volatile String observedAppUrl;
 
     /**
      * @return all predefined test properties
      */
     protected abstract TestConfigs.Builder getConfigs();
 
+    /**
+     * @return whether {@link #getConfigs()} may return different configs over time. If not, it is called once on
+     *         initialization instead of on every request.
+     */
+    protected boolean hasDynamicConfigs() {
+        return false;
+    }
+
     @Override
     public void init(ServletConfig config) throws ServletException {
         super.init(config);
@@ -74,83 +147,314 @@ public abstract class SelftestServlet extends HttpServlet {
         configuredContextPath = Configurator.getContextPath(config);
         logSupport = Configurator.getLogSupport(config);
         configuredConfigGroups = Configurator.getConfigGroups(config);
+        configuredParallelism = Configurator.getParallelism(config);
+        configuredMaxBodySize = Configurator.getMaxBodySize(config);
+        configuredKeepAlive = Configurator.getKeepAlive(config);
+        configuredHtmlProgressive = Configurator.getHtmlProgressive(config);
+        configuredConcurrentRunsTimeout = Configurator.getConcurrentRunsTimeout(config);
+        runPermits = new Semaphore(Configurator.getConcurrentRuns(config), true);
+        resultCache = Configurator.getCacheTtl(config).map(ttl -> {
+            cacheRefresher = Executors.newSingleThreadExecutor(SelftestServlet::newCacheRefreshThread);
+            return new ResultCache(ttl, cacheRefresher, Clock.systemUTC());
+        });
+        configuredScheduleConfigId = Configurator.getScheduleConfigId(config);
+        history = new RunHistory(Configurator.getHistorySize(config));
+        latencies = new LatencyHistograms();
+        configuredBurstMaxIterations = Configurator.getBurstMaxIterations(config);
+        configuredBurstMaxConcurrency = Configurator.getBurstMaxConcurrency(config);
+        configuredExecutorBackend = Configurator.getExecutorBackend(config);
+        configuredLogQuietPeriod = Configurator.getLogQuietPeriod(config);
+        testRegistry = new TestRegistry(getClass());
+        staticConfigs = hasDynamicConfigs() ? null : new TestConfigs(getConfigs());
+        logSupport.start();
+        Configurator.getScheduleInterval(config).ifPresent(interval -> {
+            scheduler = new SelftestScheduler(history, this::runScheduled, Clock.systemUTC(), this::log);
+            scheduler.start(interval);
+        });
+    }
+
+    private static Thread newCacheRefreshThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "selftest-cache-refresh");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.close();
+        }
+        if (cacheRefresher != null) {
+            cacheRefresher.shutdownNow();
+        }
+        logSupport.stop();
+        super.destroy();
     }
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        handleRequest(req, resp, writer -> get(req, writer));
+        if (req.getParameter(ASSET) != null) {
+            serveAsset(req, resp);
+        } else if (req.getParameter(HISTORY) != null) {
+            handleRequest(req, resp, false, writer -> history(req, writer));
+        } else {
+            handleRequest(req, resp, false, writer -> get(req, writer));
+        }
     }
 
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        handleRequest(req, resp, writer -> post(req, writer));
+        boolean executesTests = req.getParameter(EXECUTE) != null || req.getParameter(BURST) != null;
+        handleRequest(req, resp, executesTests, writer -> post(req, writer));
+    }
+
+    /*
+     * Stylesheet and script are part of the library and no secret, so they are served without authorization. Requests naming
+     * the current version get it cached for good, others revalidate by entity tag.
+     */
+    private static void serveAsset(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        Optional<PageAsset> found = PageAsset.byId(req.getParameter(ASSET));
+        if (!found.isPresent()) {
+            resp.setStatus(404);
+            return;
+        }
+        PageAsset asset = found.get();
+        resp.setHeader("ETag", asset.etag());
+        if (asset.version().equals(req.getParameter("v"))) {
+            resp.setHeader("Cache-Control", "public, max-age=31536000, immutable");
+        } else {
+            resp.setHeader("Cache-Control", "no-cache");
+        }
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null && (ifNoneMatch.contains(asset.etag()) || ifNoneMatch.trim().equals("*"))) {
+            resp.setStatus(304);
+            return;
+        }
+        resp.setContentType(asset.contentType());
+        resp.setContentLength(asset.content().length);
+        resp.getOutputStream().write(asset.content());
     }
 
-    private void handleRequest(HttpServletRequest req, HttpServletResponse resp, Consumer<SelfTestWriter> businessLogic)
-            throws IOException {
+    private void handleRequest(HttpServletRequest req, HttpServletResponse resp, boolean executesTests,
+            Consumer<SelfTestWriter> businessLogic) throws IOException {
         if (!Authorization.isOk(req, configuredCredentials)) {
             resp.setStatus(401);
             resp.setHeader("WWW-Authenticate", "Basic");
             return;
         }
 
+        observedAppUrl = determineAppBaseUrl(req);
         resp.setCharacterEncoding("UTF-8");
+        logSupport.getStatistics().ifPresent(statistics -> {
+            resp.setHeader(HEADER_LOG_EXAMINED, Long.toString(statistics.getExamined()));
+            resp.setHeader(HEADER_LOG_CAPTURED, Long.toString(statistics.getCaptured()));
+        });
         final SelfTestWriter writer;
+        final String accept = req.getHeader("Accept");
+        final boolean ndjson = accept != null && accept.contains(SelfTestNdjsonWriter.CONTENT_TYPE);
+        final boolean json = !ndjson && accept != null && accept.contains("application/json");
 
-        if (req.getHeader("Accept") != null && req.getHeader("Accept").contains("application/json")) {
+        if (executesTests && json && resultCache.isPresent() && req.getParameter(BURST) == null && !hasTestParameters(req)) {
+            serveCachedResult(req, resp, resultCache.get());
+            return;
+        }
+
+        if (ndjson) {
+            writer = new SelfTestNdjsonWriter(resp.getWriter());
+            resp.addHeader("Content-Type", SelfTestNdjsonWriter.CONTENT_TYPE);
+        } else if (json) {
             writer = new SelfTestJsonWriter(resp.getWriter());
             resp.addHeader("Content-Type", "application/json");
         } else {
-            writer = new SelftestHtmlWriter(resp.getWriter());
+            writer = new SelftestHtmlWriter(resp.getWriter(), configuredHtmlProgressive);
             resp.addHeader("Content-Type", "text/html; charset=UTF-8");
         }
 
-        if (requestLock.tryLock()) {
+        if (!executesTests) {
+            executeWritingUncaughtExceptions(resp::setStatus, writer, businessLogic);
+        } else if (acquireRunPermit()) {
             try {
-                executeWritingUncaughtExceptions(resp, writer, businessLogic);
+                executeWritingUncaughtExceptions(resp::setStatus, writer, businessLogic);
             } finally {
-                requestLock.unlock();
+                runPermits.release();
             }
         } else {
-            writer.writeText("The selftest servlet is currently in use. "
-                    + "Please re-send your request in a couple seconds or consider switching to another node.");
+            rejectBusy(resp);
+            writer.writeText(BUSY_MESSAGE);
+        }
+    }
+
+    private static void rejectBusy(HttpServletResponse resp) {
+        resp.setStatus(503);
+        resp.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+    }
+
+    private void serveCachedResult(HttpServletRequest req, HttpServletResponse resp, ResultCache cache) throws IOException {
+        final TestConfigs configs = configs();
+        final TestConfigs.Values testParams = extractParamsFromRequest(req, configs);
+        final String appUrl = determineAppBaseUrl(req);
+        final String callerIp = req.getRemoteAddr();
+
+        Optional<ResultCache.Result> cached;
+        try {
+            cached = cache.get(cacheKey(req, configs, appUrl), () -> {
+                if (!acquireRunPermit()) {
+                    return null;
+                }
+                try {
+                    lastTestrun = new LastTestrun(Instant.now(), callerIp);
+                    StringWriter body = new StringWriter();
+                    int[] status = { 200 };
+                    executeWritingUncaughtExceptions(code -> status[0] = code, new SelfTestJsonWriter(new PrintWriter(body)),
+                            writer -> runTests(writer, testParams, appUrl));
+                    return cache.newResult(body.toString(), status[0]);
+                } finally {
+                    runPermits.release();
+                }
+            });
+        } catch (CompletionException e) { // the run failed with an error, there is no result to serve
+            resp.setStatus(500);
+            resp.addHeader("Content-Type", "application/json");
+            SelfTestJsonWriter writer = new SelfTestJsonWriter(resp.getWriter());
+            writer.writeUncaughtException(e.getCause());
+            writer.writePageEnd();
+            return;
+        }
+
+        resp.addHeader("Content-Type", "application/json");
+        if (cached.isPresent()) {
+            ResultCache.Result result = cached.get();
+            resp.setStatus(result.status);
+            resp.setHeader("Age", Long.toString(cache.age(result).getSeconds()));
+            resp.setHeader(HEADER_RESULT_TIMESTAMP, result.created.toString());
+            resp.getWriter().write(result.body);
+        } else {
+            rejectBusy(resp);
+        }
+    }
+
+    // custom test parameters may take any value, so results are only cached per known config
+    private static boolean hasTestParameters(HttpServletRequest req) {
+        return req.getParameterMap().keySet().stream().anyMatch(key -> key.startsWith(PARAMETER_PREFIX));
+    }
+
+    private static String cacheKey(HttpServletRequest req, TestConfigs configs, String appUrl) {
+        String configId = req.getParameter(CONFIG_ID);
+        return appUrl + " " + (configId != null && configs.getIds().contains(configId) ? configId : "");
+    }
+
+    private boolean acquireRunPermit() {
+        try {
+            return runPermits.tryAcquire(configuredConcurrentRunsTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         }
     }
 
     private void get(HttpServletRequest req, final SelfTestWriter writer) {
-        final TestConfigs configs = new TestConfigs(getConfigs());
+        final TestConfigs configs = configs();
         final String callerIp = req.getRemoteAddr();
+        final LastTestrun last = lastTestrun;
         writer.writePageStart(configs, relevantConfigIds(configs, req), determineValuesForGet(req, configs), servletName(req),
-                determineAppBaseUrl(req), lastTestrunStart, callerIp, lastTestrunIp);
+                determineAppBaseUrl(req), last.start, callerIp, last.ip);
 
         final List<TestCase> tests = tests();
         writer.writeUnrunTests(tests);
     }
 
+    private void history(HttpServletRequest req, final SelfTestWriter writer) {
+        final TestConfigs configs = configs();
+        final String callerIp = req.getRemoteAddr();
+        final LastTestrun last = lastTestrun;
+        writer.writePageStart(configs, relevantConfigIds(configs, req), determineValuesForGet(req, configs), servletName(req),
+                determineAppBaseUrl(req), last.start, callerIp, last.ip);
+
+        if (scheduler == null) {
+            writer.writeText("Scheduled runs are not configured.");
+        }
+        writer.writeHistory(history.snapshot());
+    }
+
     private void post(HttpServletRequest req, final SelfTestWriter writer) {
-        final TestConfigs configs = new TestConfigs(getConfigs());
+        final TestConfigs configs = configs();
         final String callerIp = req.getRemoteAddr();
 
         final TestConfigs.Values testParams = extractParamsFromRequest(req, configs);
         final String appUrl = determineAppBaseUrl(req);
 
-        if (req.getParameter(EXECUTE) != null) {
-            lastTestrunStart = Instant.now();
-            lastTestrunIp = callerIp;
+        if (req.getParameter(EXECUTE) != null || req.getParameter(BURST) != null) {
+            lastTestrun = new LastTestrun(Instant.now(), callerIp);
         }
 
-        writer.writePageStart(configs, relevantConfigIds(configs, req), testParams, servletName(req), appUrl, lastTestrunStart,
-                callerIp, lastTestrunIp);
+        final LastTestrun last = lastTestrun;
+        writer.writePageStart(configs, relevantConfigIds(configs, req), testParams, servletName(req), appUrl, last.start,
+                callerIp, last.ip);
 
-        if (req.getParameter(EXECUTE) != null) {
-            final List<TestCase> tests = tests();
-            TestRunner runner = new TestRunner(writer, testParams, appUrl, tests, logSupport);
-            runner.runAll();
+        if (req.getParameter(BURST) != null) {
+            runBurst(req, writer, testParams, appUrl);
+        } else if (req.getParameter(EXECUTE) != null) {
+            runTests(writer, testParams, appUrl);
         } else {
             writer.writeText("Unrecognized request!");
         }
     }
 
+    private boolean runScheduled(SelfTestWriter writer) {
+        final String appUrl = configuredPort.map(this::appBaseUrl).orElse(observedAppUrl);
+        if (appUrl == null || !acquireRunPermit()) {
+            return false;
+        }
+        try {
+            final TestConfigs configs = configs();
+            final TestConfigs.Values testParams =
+                    configuredScheduleConfigId.map(configs::create).orElseGet(configs::createEmpty);
+            runTests(writer, testParams, appUrl);
+            return true;
+        } finally {
+            runPermits.release();
+        }
+    }
+
+    private void runTests(SelfTestWriter writer, TestConfigs.Values testParams, String appUrl) {
+        final List<TestCase> tests = tests();
+        try (HttpClients clients = new HttpClients(configuredMaxBodySize, configuredKeepAlive)) {
+            RunSettings settings = runSettings(clients).parallelism(configuredParallelism).latencies(latencies).build();
+            TestRunner runner = new TestRunner(writer, testParams, appUrl, tests, logSupport, settings);
+            runner.runAll();
+        }
+    }
+
+    private void runBurst(HttpServletRequest req, SelfTestWriter writer, TestConfigs.Values testParams, String appUrl) {
+        final String testName = req.getParameter(BURST);
+        final Optional<Supplier<TestCase>> test = testRegistry.factory(testName);
+        if (!test.isPresent()) {
+            writer.writeText("Unknown test case: " + testName);
+            return;
+        }
+        int iterations = burstParameter(req, BURST_ITERATIONS, configuredBurstMaxIterations);
+        int concurrency = burstParameter(req, BURST_CONCURRENCY, configuredBurstMaxConcurrency);
+        try (HttpClients clients = new HttpClients(configuredMaxBodySize, configuredKeepAlive)) {
+            new BurstRunner(writer, test.get(), testParams, appUrl, logSupport, iterations, concurrency,
+                    runSettings(clients).build()).run();
+        }
+    }
+
+    private RunSettings.Builder runSettings(HttpClients clients) {
+        return RunSettings.builder().clients(clients).executorBackend(configuredExecutorBackend)
+                .logQuietMillis(configuredLogQuietPeriod);
+    }
+
+    // missing values default to 1, values above the configured maximum are capped
+    private static int burstParameter(HttpServletRequest req, String name, int max) {
+        String value = req.getParameter(name);
+        int parsed = value == null || value.trim().isEmpty() ? 1 : Integer.parseInt(value.trim());
+        if (parsed < 1) {
+            throw new IllegalArgumentException(name + " must be positive, but was: " + parsed);
+        }
+        return Math.min(parsed, max);
+    }
+
     // TODO can this be simplified?
     private Set<String> relevantConfigIds(TestConfigs configs, HttpServletRequest req) {
         if (!configuredConfigGroups.isPresent()) {
@@ -181,21 +485,12 @@ public abstract class SelftestServlet extends HttpServlet {
         return configuredConfigGroups.get().stream().filter(hostprefix::contains).findFirst();
     }
 
-    private List<TestCase> tests() {
-        List<TestCase> testcases = new LinkedList<>();
-
-        for (Class<?> clazz : getClass().getDeclaredClasses()) {
-            if (TestCase.class.isAssignableFrom(clazz)) {
-                try {
-                    final TestCase testcase = (TestCase) clazz.newInstance();
-                    testcases.add(testcase);
-                } catch (ReflectiveOperationException e) {
-                    throw new IllegalStateException("Failed to instantiate test case '" + clazz.getSimpleName() + "'", e);
-                }
-            }
-        }
+    private TestConfigs configs() {
+        return staticConfigs != null ? staticConfigs : new TestConfigs(getConfigs());
+    }
 
-        return testcases.stream().sorted(comparing(testcase -> testcase.getClass().getSimpleName())).collect(toList());
+    private List<TestCase> tests() {
+        return testRegistry.instantiate();
     }
 
     private static String servletName(HttpServletRequest req) {
@@ -203,15 +498,15 @@ public abstract class SelftestServlet extends HttpServlet {
         return requestURI.substring(requestURI.lastIndexOf('/') + 1);
     }
 
-    private static void executeWritingUncaughtExceptions(HttpServletResponse resp, SelfTestWriter writer,
+    private static void executeWritingUncaughtExceptions(IntConsumer status, SelfTestWriter writer,
             Consumer<SelfTestWriter> businessLogic) {
         try {
             businessLogic.accept(writer);
         } catch (Exception e) {
-            resp.setStatus(500);
+            status.accept(500);
             writer.writeUncaughtException(e);
         } catch (Throwable t) {
-            resp.setStatus(500);
+            status.accept(500);
             writer.writeUncaughtException(t);
             throw t;
         } finally {
@@ -220,8 +515,10 @@ public abstract class SelftestServlet extends HttpServlet {
     }
 
     private String determineAppBaseUrl(HttpServletRequest req) {
-        int port = configuredPort.orElse(req.getLocalPort());
+        return appBaseUrl(configuredPort.orElse(req.getLocalPort()));
+    }
 
+    private String appBaseUrl(int port) {
         String contextPath = configuredContextPath.orElseGet(() -> getServletContext().getContextPath());
         contextPath = guaranteeLeadingAndTrailingSlash(contextPath);
 
@@ -264,4 +561,15 @@ public abstract class SelftestServlet extends HttpServlet {
         }
     }
 
+    private static final class LastTestrun {
+
+        final Instant start;
+        final String ip;
+
+        LastTestrun(Instant start, String ip) {
+            this.start = start;
+            this.ip = ip;
+        }
+    }
+
 }
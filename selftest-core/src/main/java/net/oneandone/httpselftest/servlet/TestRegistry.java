@@ -0,0 +1,73 @@
+package net.oneandone.httpselftest.servlet;
+
+import static java.util.Comparator.comparing;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import net.oneandone.httpselftest.test.api.TestCase;
+
+/**
+ * Test cases declared as nested classes of a servlet. They are discovered once, each request gets fresh instances from the
+ * constructors looked up on discovery.
+ */
+final class TestRegistry {
+
+    private final List<Constructor<? extends TestCase>> constructors;
+
+    TestRegistry(Class<?> servletClass) {
+        List<Constructor<? extends TestCase>> found = new ArrayList<>();
+        for (Class<?> clazz : servletClass.getDeclaredClasses()) {
+            if (TestCase.class.isAssignableFrom(clazz)) {
+                found.add(constructorOf(clazz.asSubclass(TestCase.class)));
+            }
+        }
+        found.sort(comparing(constructor -> constructor.getDeclaringClass().getSimpleName()));
+        this.constructors = Collections.unmodifiableList(found);
+    }
+
+    /**
+     * @return new instances of all test cases, in alphabetic order of their class names
+     */
+    List<TestCase> instantiate() {
+        List<TestCase> testcases = new ArrayList<>(constructors.size());
+        for (Constructor<? extends TestCase> constructor : constructors) {
+            testcases.add(newInstance(constructor));
+        }
+        return testcases;
+    }
+
+    /**
+     * @return creates new instances of the test case with the given name, e.g. one per iteration of a burst
+     */
+    Optional<Supplier<TestCase>> factory(String name) {
+        for (Constructor<? extends TestCase> constructor : constructors) {
+            if (newInstance(constructor).getName().equals(name)) {
+                return Optional.of(() -> newInstance(constructor));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static TestCase newInstance(Constructor<? extends TestCase> constructor) {
+        try {
+            return constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(
+                    "Failed to instantiate test case '" + constructor.getDeclaringClass().getSimpleName() + "'", e);
+        }
+    }
+
+    private static Constructor<? extends TestCase> constructorOf(Class<? extends TestCase> clazz) {
+        try {
+            return clazz.getConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Test case '" + clazz.getSimpleName() + "' lacks a public no-arg constructor", e);
+        }
+    }
+
+}
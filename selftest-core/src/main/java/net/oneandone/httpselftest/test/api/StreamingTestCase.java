@@ -0,0 +1,45 @@
+package net.oneandone.httpselftest.test.api;
+
+import java.io.InputStream;
+
+import net.oneandone.httpselftest.http.TestResponse;
+
+/**
+ * Test case for responses too large to be held in memory, e.g. downloads. The body is not materialized, but handed to
+ * {@link #verifyBody(TestValues, TestResponse, InputStream, Context)} while it is received. Only a window at its head and one
+ * at its tail are kept for display.
+ * <p>
+ * Requires the SOCKET or URLCON client. The response passed to {@link #verify(TestValues, TestResponse, Context)} afterwards
+ * carries status and headers, its body is null.
+ * </p>
+ */
+public interface StreamingTestCase extends TestCase {
+
+    /**
+     * Called while the response body is received. Bytes left unread are consumed once this method returns. Assertions are
+     * communicated by throwing {@link AssertionException}, just like in {@link #verify(TestValues, TestResponse, Context)},
+     * which is only called if this method succeeds.
+     *
+     * @param config   config object containing the parameters provided by the frontend for this test run
+     * @param response status and headers of the response, without body
+     * @param body     the response body as it is received
+     * @param ctx      test execution context spanning previously executed steps
+     * @throws Exception if anything fails during verification
+     */
+    void verifyBody(TestValues config, TestResponse response, InputStream body, Context ctx) throws Exception;
+
+    /**
+     * @return number of bytes kept for display from the start of the body
+     */
+    default int captureHeadBytes() {
+        return 4 * 1024;
+    }
+
+    /**
+     * @return number of bytes kept for display from the end of the body
+     */
+    default int captureTailBytes() {
+        return 1024;
+    }
+
+}
@@ -1,5 +1,8 @@
 package net.oneandone.httpselftest.test.api;
 
+import java.util.Collections;
+import java.util.Set;
+
 import net.oneandone.httpselftest.http.TestResponse;
 import net.oneandone.httpselftest.http.TestRequest;
 import net.oneandone.httpselftest.test.util.Assertions;
@@ -47,8 +50,10 @@ public interface TestCase {
     void verify(TestValues config, TestResponse response, Context ctx) throws Exception;
 
     /**
-     * Duration to wait after test execution before rendering output. This is useful in case logging or execution happens
-     * asynchronously. Otherwise log lines could be missed.
+     * Maximum duration to wait after test execution before rendering output. This is useful in case logging or execution
+     * happens asynchronously. Otherwise log lines could be missed. If the {@code SelftestMDCFilter} is installed, the wait ends
+     * early once the application finished the request and no log line of the test case arrived for the quiet period
+     * configured by {@code selftest.log.quietperiod}.
      *
      * @return duration in milliseconds
      */
@@ -65,4 +70,15 @@ public interface TestCase {
         return 100;
     }
 
+    /**
+     * Names (see {@link #getName()}) of the test cases this test case relies on, e.g. because it retrieves values they stored in
+     * the {@link Context}. Only relevant for parallel execution, where a test case is started once all of its dependencies have
+     * finished. Sequential execution always happens in alphabetic order.
+     *
+     * @return names of the test cases to wait for
+     */
+    default Set<String> dependsOn() {
+        return Collections.emptySet();
+    }
+
 }
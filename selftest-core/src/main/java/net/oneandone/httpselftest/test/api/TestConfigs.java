@@ -54,11 +54,11 @@ public class TestConfigs {
     }
 
     public List<String> getParameterNames() {
-        return allParameterNames;
+        return Collections.unmodifiableList(allParameterNames);
     }
 
     public Set<String> getIds() {
-        return configsMap.keySet();
+        return Collections.unmodifiableSet(configsMap.keySet());
     }
 
     public boolean isEmpty() {
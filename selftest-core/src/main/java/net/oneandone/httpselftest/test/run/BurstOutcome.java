@@ -0,0 +1,44 @@
+package net.oneandone.httpselftest.test.run;
+
+/**
+ * Summary of a test case executed repeatedly by the {@link BurstRunner}.
+ */
+public final class BurstOutcome {
+
+    public final String testName;
+    public final int iterations;
+    public final int concurrency;
+    public final long durationMillis;
+    public final int failures;
+    public final int errors;
+    public final LatencySummary latency;
+    public final String firstProblem; // null if all iterations succeeded
+
+    BurstOutcome(String testName, int iterations, int concurrency, long durationMillis, int failures, int errors,
+            LatencySummary latency, String firstProblem) {
+        this.testName = testName;
+        this.iterations = iterations;
+        this.concurrency = concurrency;
+        this.durationMillis = durationMillis;
+        this.failures = failures;
+        this.errors = errors;
+        this.latency = latency;
+        this.firstProblem = firstProblem;
+    }
+
+    public double requestsPerSecond() {
+        return durationMillis == 0 ? 0 : iterations * 1000.0 / durationMillis;
+    }
+
+    /**
+     * @return share of iterations that failed or errored, between 0 and 1
+     */
+    public double errorRate() {
+        return iterations == 0 ? 0 : (double) (failures + errors) / iterations;
+    }
+
+    public boolean isSuccess() {
+        return failures == 0 && errors == 0;
+    }
+
+}
@@ -0,0 +1,183 @@
+package net.oneandone.httpselftest.test.run;
+
+import static java.util.Collections.singleton;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import net.oneandone.httpselftest.common.Pair;
+import net.oneandone.httpselftest.http.HttpClients;
+import net.oneandone.httpselftest.http.WrappedRequest;
+import net.oneandone.httpselftest.http.WrappedResponse;
+import net.oneandone.httpselftest.log.LogSupport;
+import net.oneandone.httpselftest.test.api.AssertionException;
+import net.oneandone.httpselftest.test.api.TestCase;
+import net.oneandone.httpselftest.test.api.TestConfigs.Values;
+import net.oneandone.httpselftest.writer.SelfTestWriter;
+
+/**
+ * Executes a single test case repeatedly from a pool of workers. Every {@value #SAMPLE_INTERVAL}th iteration, starting with
+ * the first, is executed like a regular test run including log capture and written as test outcome; all other iterations only
+ * count towards the {@link BurstOutcome}. Each iteration uses its own instance of the test case and its own context, so test
+ * cases need not be thread-safe, but must not depend on values stored by other test cases.
+ */
+public class BurstRunner {
+
+    static final int SAMPLE_INTERVAL = 100;
+
+    private static final AtomicInteger WORKER_COUNTER = new AtomicInteger(0);
+
+    private final SelfTestWriter writer;
+
+    private final Supplier<? extends TestCase> testCases;
+
+    private final String testName;
+
+    private final Values config;
+
+    private final String appUrl;
+
+    private final HttpClients clients;
+
+    private final LogSupport logSupport;
+
+    private final int iterations;
+
+    private final int concurrency;
+
+    private final ExecutorBackend executorBackend;
+
+    private final int logQuietMillis;
+
+    /**
+     * @param testCases creates a fresh instance of the test case for each iteration
+     * @param settings  kind of threads sending the requests, http clients and log quiet period
+     */
+    public BurstRunner(SelfTestWriter writer, Supplier<? extends TestCase> testCases, Values config, String appUrl,
+            LogSupport logSupport, int iterations, int concurrency, RunSettings settings) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("iterations must be positive, but was: " + iterations);
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be positive, but was: " + concurrency);
+        }
+        this.writer = writer;
+        this.testCases = testCases;
+        this.testName = testCases.get().getName();
+        this.config = config;
+        this.appUrl = appUrl;
+        this.logSupport = logSupport;
+        this.iterations = iterations;
+        this.concurrency = concurrency;
+        this.clients = settings.clients();
+        this.executorBackend = settings.executorBackend();
+        this.logQuietMillis = settings.logQuietMillis();
+    }
+
+    public BurstOutcome run() {
+        writer.writeText(
+                "Running " + iterations + " iterations of " + testName + " with concurrency " + concurrency + ":");
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        AtomicReference<String> firstProblem = new AtomicReference<>();
+        Map<Integer, Pair<TestRunData, SimpleContext>> samples = new TreeMap<>(); // synchronized by itself
+
+        ExecutorService executor = executorBackend.newFixedThreadPool(Math.min(concurrency, iterations),
+                () -> "selftest-burst-" + WORKER_COUNTER.incrementAndGet());
+        long startNanos = System.nanoTime();
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int w = 0; w < Math.min(concurrency, iterations); w++) {
+                workers.add(executor.submit(() -> {
+                    int iteration;
+                    while ((iteration = next.getAndIncrement()) < iterations) {
+                        TestCase test = testCases.get();
+                        SimpleContext ctx = new SimpleContext();
+                        TestRunData testRun = iteration % SAMPLE_INTERVAL == 0 ? sampled(test, ctx) : unsampled(test, ctx);
+                        if (testRun.wrappedResponse != null) {
+                            histogram.record(testRun.durationMicros);
+                        }
+                        if (testRun.result.type != ResultType.SUCCESS) {
+                            (testRun.result.type == ResultType.FAILURE ? failures : errors).incrementAndGet();
+                            firstProblem.compareAndSet(null, problemOf(testRun.result));
+                        }
+                        if (iteration % SAMPLE_INTERVAL == 0) {
+                            synchronized (samples) {
+                                samples.put(iteration, new Pair<>(testRun, ctx));
+                            }
+                        }
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running burst", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Burst worker failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        long durationMillis = (System.nanoTime() - startNanos) / 1_000_000;
+
+        for (Pair<TestRunData, SimpleContext> sample : samples.values()) {
+            writer.writeTestOutcome(sample.left, sample.left.logs, sample.right);
+        }
+
+        BurstOutcome outcome = new BurstOutcome(testName, iterations, concurrency, durationMillis, failures.get(),
+                errors.get(), histogram.summary(), firstProblem.get());
+        writer.writeBurstOutcome(outcome);
+        return outcome;
+    }
+
+    private TestRunData sampled(TestCase test, SimpleContext ctx) {
+        String runId = TestRunner.runId(test.getName());
+        TestRunData[] testRun = new TestRunData[1];
+        logSupport.runWithAttachedAppenders(singleton(runId), () -> {
+            testRun[0] = TestRunner.execute(test, runId, config, appUrl, clients, ctx, logSupport.getLogs(runId),
+                    logQuietMillis);
+        });
+        testRun[0].maxDuration = test.maxAcceptableDurationMillis();
+        return testRun[0];
+    }
+
+    // like a regular execution, but without waiting for and capturing logs
+    private TestRunData unsampled(TestCase test, SimpleContext ctx) {
+        String runId = TestRunner.runId(test.getName());
+        TestRunData testRun = new TestRunData(test.getName(), Instant.now(), runId);
+        try {
+            WrappedRequest request = TestRunner.wrap(test, test.prepareRequest(config, ctx), config, ctx);
+            TestRunner.addRunId(request.request.headers, runId);
+            TestRunner.invokeKeepingTime(appUrl, clients, request, testRun);
+            WrappedResponse response = testRun.wrappedResponse;
+            try {
+                TestRunner.verify(test, config, request, response.response, ctx);
+                testRun.result = TestRunResult.success();
+            } catch (AssertionException e) {
+                testRun.result = TestRunResult.failure(e.getMessage());
+            }
+        } catch (Exception e) {
+            testRun.result = TestRunResult.error(e);
+        }
+        return testRun;
+    }
+
+    private static String problemOf(TestRunResult result) {
+        return result.type == ResultType.FAILURE ? result.assertionMessage : result.uncaught.toString();
+    }
+
+}
@@ -0,0 +1,70 @@
+package net.oneandone.httpselftest.test.run;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Supplier;
+
+/**
+ * Kind of threads that execute test cases concurrently. Virtual threads are looked up reflectively, so this class also loads
+ * on Java versions before 21.
+ */
+public enum ExecutorBackend {
+
+    PLATFORM {
+        @Override
+        Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        }
+    },
+
+    VIRTUAL {
+        @Override
+        Thread newThread(Runnable runnable) {
+            if (VIRTUAL_THREAD_FACTORY == null) {
+                throw new IllegalStateException("Virtual threads are not supported by this JVM.");
+            }
+            return VIRTUAL_THREAD_FACTORY.newThread(runnable);
+        }
+    };
+
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY = lookupVirtualThreadFactory();
+
+    abstract Thread newThread(Runnable runnable);
+
+    /**
+     * @param threads     number of threads, which is the maximum number of tasks executed concurrently
+     * @param threadNames provides the name of each new thread
+     */
+    public ExecutorService newFixedThreadPool(int threads, Supplier<String> threadNames) {
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = newThread(runnable);
+            thread.setName(threadNames.get());
+            return thread;
+        });
+    }
+
+    public static boolean isVirtualAvailable() {
+        return VIRTUAL_THREAD_FACTORY != null;
+    }
+
+    // Thread.ofVirtual().factory(), available since Java 21
+    private static ThreadFactory lookupVirtualThreadFactory() {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Class<?> virtualBuilderType = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            MethodHandle ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(virtualBuilderType));
+            MethodHandle factory = lookup.findVirtual(builderType, "factory", MethodType.methodType(ThreadFactory.class));
+            return (ThreadFactory) factory.invoke(ofVirtual.invoke());
+        } catch (Throwable t) { // older JVM, or virtual threads disabled
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package net.oneandone.httpselftest.test.run;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies in microseconds. Like an HDR histogram, values are counted in buckets growing by powers of
+ * two, each split into 64 sub-buckets, so reported percentiles are within 1/64 of the recorded values. Values above one hour
+ * are counted as one hour.
+ */
+public final class LatencyHistogram {
+
+    static final long MAX_TRACKABLE_MICROS = 3_600_000_000L;
+
+    private static final int SUB_BUCKET_BITS = 7;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+
+    private final AtomicLongArray counts = new AtomicLongArray(indexOf(MAX_TRACKABLE_MICROS) + 1);
+
+    private final LongAdder total = new LongAdder();
+
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long micros) {
+        long value = Math.min(Math.max(micros, 0), MAX_TRACKABLE_MICROS);
+        counts.incrementAndGet(indexOf(value));
+        total.increment();
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Percentiles of concurrently recorded values may be off by the values recorded in the meantime.
+     */
+    public LatencySummary summary() {
+        long count = total.sum();
+        long maxMicros = max.get();
+        long[] thresholds = { rank(count, 50), rank(count, 90), rank(count, 99) };
+        long[] percentiles = new long[thresholds.length];
+
+        int next = 0;
+        long seen = 0;
+        for (int i = 0; i < counts.length() && next < thresholds.length; i++) {
+            seen += counts.get(i);
+            while (next < thresholds.length && seen >= thresholds[next]) {
+                percentiles[next++] = Math.min(highestEquivalentValue(i), maxMicros);
+            }
+        }
+        while (next < thresholds.length) { // values recorded after the count was taken
+            percentiles[next++] = maxMicros;
+        }
+        return new LatencySummary(count, percentiles[0], percentiles[1], percentiles[2], maxMicros);
+    }
+
+    private static long rank(long count, int percentile) {
+        return Math.max(1, (count * percentile + 99) / 100);
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int bucket = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        int subBucket = (int) (value >>> bucket);
+        return SUB_BUCKET_COUNT + (bucket - 1) * SUB_BUCKET_HALF + (subBucket - SUB_BUCKET_HALF);
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int bucket = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+        long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return ((subBucket + 1) << bucket) - 1;
+    }
+
+}
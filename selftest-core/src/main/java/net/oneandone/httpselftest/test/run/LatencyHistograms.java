@@ -0,0 +1,22 @@
+package net.oneandone.httpselftest.test.run;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * One {@link LatencyHistogram} per test case name, kept across test runs.
+ */
+public class LatencyHistograms {
+
+    private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * @return the summary including the given value
+     */
+    public LatencySummary record(String testName, long micros) {
+        LatencyHistogram histogram = histograms.computeIfAbsent(testName, name -> new LatencyHistogram());
+        histogram.record(micros);
+        return histogram.summary();
+    }
+
+}
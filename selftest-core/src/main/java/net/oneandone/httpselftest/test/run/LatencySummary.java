@@ -0,0 +1,22 @@
+package net.oneandone.httpselftest.test.run;
+
+/**
+ * Percentiles of the latencies of a test case across runs, in microseconds.
+ */
+public final class LatencySummary {
+
+    public final long count;
+    public final long p50Micros;
+    public final long p90Micros;
+    public final long p99Micros;
+    public final long maxMicros;
+
+    LatencySummary(long count, long p50Micros, long p90Micros, long p99Micros, long maxMicros) {
+        this.count = count;
+        this.p50Micros = p50Micros;
+        this.p90Micros = p90Micros;
+        this.p99Micros = p99Micros;
+        this.maxMicros = maxMicros;
+    }
+
+}
@@ -0,0 +1,41 @@
+package net.oneandone.httpselftest.test.run;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Bounded history of past runs, the oldest run is dropped when full.
+ */
+public class RunHistory {
+
+    public static final int DEFAULT_CAPACITY = 100;
+
+    private final int capacity;
+
+    private final Deque<RunRecord> records; // synchronized by "this"
+
+    public RunHistory(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive, but was: " + capacity);
+        }
+        this.capacity = capacity;
+        this.records = new ArrayDeque<>(capacity);
+    }
+
+    public synchronized void add(RunRecord record) {
+        if (records.size() == capacity) {
+            records.removeLast();
+        }
+        records.addFirst(record);
+    }
+
+    /**
+     * @return copy of the history, newest run first
+     */
+    public synchronized List<RunRecord> snapshot() {
+        return new ArrayList<>(records);
+    }
+
+}
@@ -0,0 +1,43 @@
+package net.oneandone.httpselftest.test.run;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.stream.Collectors.toList;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Condensed outcome of a past test run, without requests, responses and logs.
+ */
+public final class RunRecord {
+
+    public final Instant startInstant;
+    public final long durationMillis;
+    public final List<TestOutcome> tests;
+    public final List<String> uncaughtExceptions;
+
+    public RunRecord(Instant startInstant, long durationMillis, List<TestRunData> testRuns, List<Throwable> uncaught) {
+        this.startInstant = startInstant;
+        this.durationMillis = durationMillis;
+        this.tests = unmodifiableList(testRuns.stream().map(TestOutcome::new).collect(toList()));
+        this.uncaughtExceptions = unmodifiableList(uncaught.stream().map(Throwable::toString).collect(toList()));
+    }
+
+    public boolean isSuccess() {
+        return uncaughtExceptions.isEmpty() && tests.stream().allMatch(test -> test.result == ResultType.SUCCESS);
+    }
+
+    public static final class TestOutcome {
+
+        public final String testName;
+        public final ResultType result;
+        public final long durationMillis;
+
+        TestOutcome(TestRunData testRun) {
+            this.testName = testRun.testName;
+            this.result = testRun.getResult().type;
+            this.durationMillis = testRun.getDurationMillis();
+        }
+    }
+
+}
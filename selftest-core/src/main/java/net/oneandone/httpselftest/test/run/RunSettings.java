@@ -0,0 +1,130 @@
+package net.oneandone.httpselftest.test.run;
+
+import java.util.Optional;
+
+import net.oneandone.httpselftest.http.HttpClients;
+
+/**
+ * How the {@link TestRunner} and the {@link BurstRunner} execute test cases. Immutable, created through {@link #builder()}.
+ */
+public final class RunSettings {
+
+    public static final int DEFAULT_LOG_QUIET_MILLIS = 5;
+
+    private final int parallelism;
+
+    private final HttpClients clients;
+
+    private final Optional<LatencyHistograms> latencies;
+
+    private final ExecutorBackend executorBackend;
+
+    private final int logQuietMillis;
+
+    private RunSettings(Builder builder) {
+        this.parallelism = builder.parallelism;
+        this.clients = builder.clients != null ? builder.clients : new HttpClients();
+        this.latencies = builder.latencies;
+        this.executorBackend = builder.executorBackend;
+        this.logQuietMillis = builder.logQuietMillis;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return settings executing tests sequentially with default http clients, without latency tracking
+     */
+    public static RunSettings defaults() {
+        return builder().build();
+    }
+
+    public int parallelism() {
+        return parallelism;
+    }
+
+    public HttpClients clients() {
+        return clients;
+    }
+
+    public Optional<LatencyHistograms> latencies() {
+        return latencies;
+    }
+
+    public ExecutorBackend executorBackend() {
+        return executorBackend;
+    }
+
+    public int logQuietMillis() {
+        return logQuietMillis;
+    }
+
+    public static final class Builder {
+
+        private int parallelism = 1;
+
+        private HttpClients clients;
+
+        private Optional<LatencyHistograms> latencies = Optional.empty();
+
+        private ExecutorBackend executorBackend = ExecutorBackend.PLATFORM;
+
+        private int logQuietMillis = DEFAULT_LOG_QUIET_MILLIS;
+
+        private Builder() {
+        }
+
+        /**
+         * @param parallelism maximum number of test cases executed concurrently. 1 executes all tests sequentially on the
+         *                    calling thread. Does not apply to bursts, which have their own concurrency.
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("parallelism must be positive, but was: " + parallelism);
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * @param clients provides the http clients for the test requests; new default clients if not set
+         */
+        public Builder clients(HttpClients clients) {
+            this.clients = clients;
+            return this;
+        }
+
+        /**
+         * @param latencies records the latency of each test case that received a response; not used by bursts
+         */
+        public Builder latencies(LatencyHistograms latencies) {
+            this.latencies = Optional.of(latencies);
+            return this;
+        }
+
+        /**
+         * @param executorBackend kind of threads executing test cases concurrently
+         */
+        public Builder executorBackend(ExecutorBackend executorBackend) {
+            this.executorBackend = executorBackend;
+            return this;
+        }
+
+        /**
+         * @param logQuietMillis time without log events after which the logs of a finished request are considered complete
+         */
+        public Builder logQuietMillis(int logQuietMillis) {
+            if (logQuietMillis < 0) {
+                throw new IllegalArgumentException("logQuietMillis must not be negative, but was: " + logQuietMillis);
+            }
+            this.logQuietMillis = logQuietMillis;
+            return this;
+        }
+
+        public RunSettings build() {
+            return new RunSettings(this);
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package net.oneandone.httpselftest.test.run;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -14,7 +15,11 @@ public class SimpleContext implements Context {
     private List<String> clues;
 
     public SimpleContext() {
-        valueStore = new HashMap<>();
+        this(Collections.synchronizedMap(new HashMap<>()));
+    }
+
+    private SimpleContext(Map<String, String> valueStore) {
+        this.valueStore = valueStore;
         clues = new LinkedList<>();
     }
 
@@ -22,6 +27,13 @@ public class SimpleContext implements Context {
         clues = new LinkedList<>();
     }
 
+    /**
+     * @return a context sharing the value store with this one, but collecting its own clues
+     */
+    SimpleContext withOwnClues() {
+        return new SimpleContext(valueStore);
+    }
+
     @Override
     public void store(String key, String value) {
         Objects.requireNonNull(key, "key");
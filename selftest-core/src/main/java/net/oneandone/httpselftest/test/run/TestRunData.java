@@ -2,6 +2,7 @@ package net.oneandone.httpselftest.test.run;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 
 import net.oneandone.httpselftest.http.WrappedRequest;
 import net.oneandone.httpselftest.http.WrappedResponse;
@@ -14,6 +15,8 @@ public final class TestRunData {
     public final String runId;
 
     long durationMillis;
+    long durationMicros;
+    LatencySummary latency;
     TestRunResult result;
     WrappedRequest wrappedRequest;
     WrappedResponse wrappedResponse;
@@ -26,10 +29,34 @@ public final class TestRunData {
         this.runId = runId;
     }
 
+    /**
+     * Creates the data of a test run without request and response, e.g. to render outcomes outside of a {@link TestRunner}.
+     */
+    public static TestRunData completed(String testName, String runId, long durationMillis, int maxDurationMillis,
+            TestRunResult result) {
+        TestRunData data = new TestRunData(testName, Instant.now(), runId);
+        data.durationMillis = durationMillis;
+        data.maxDuration = maxDurationMillis;
+        data.result = result;
+        return data;
+    }
+
     public long getDurationMillis() {
         return durationMillis;
     }
 
+    public long getDurationMicros() {
+        return durationMicros;
+    }
+
+    /**
+     * @return latency percentiles of this test case across runs including this one, empty if not tracked or no response was
+     *         received
+     */
+    public Optional<LatencySummary> getLatency() {
+        return Optional.ofNullable(latency);
+    }
+
     public TestRunResult getResult() {
         return result;
     }
@@ -4,22 +4,36 @@ import static java.lang.Math.max;
 import static java.lang.Math.min;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import net.oneandone.httpselftest.common.Pair;
 import net.oneandone.httpselftest.http.Headers;
-import net.oneandone.httpselftest.http.HttpClient;
-import net.oneandone.httpselftest.http.SocketHttpClient;
+import net.oneandone.httpselftest.http.HttpClients;
+import net.oneandone.httpselftest.http.StreamingBody;
 import net.oneandone.httpselftest.http.TestRequest;
-import net.oneandone.httpselftest.http.UrlConnectionHttpClient;
+import net.oneandone.httpselftest.http.TestResponse;
 import net.oneandone.httpselftest.http.WrappedRequest;
 import net.oneandone.httpselftest.log.LogAccess;
+import net.oneandone.httpselftest.log.LogActivity;
 import net.oneandone.httpselftest.log.LogSupport;
+import net.oneandone.httpselftest.log.RequestCompletion;
 import net.oneandone.httpselftest.test.api.AssertionException;
 import net.oneandone.httpselftest.test.api.Context;
+import net.oneandone.httpselftest.test.api.StreamingTestCase;
 import net.oneandone.httpselftest.test.api.TestCase;
 import net.oneandone.httpselftest.test.api.TestConfigs.Values;
 import net.oneandone.httpselftest.writer.SelfTestWriter;
@@ -32,6 +46,8 @@ public class TestRunner {
 
     private static final AtomicInteger EXECUTION_COUNTER = new AtomicInteger(0);
 
+    private static final AtomicInteger WORKER_COUNTER = new AtomicInteger(0);
+
     private SelfTestWriter writer;
 
     private Values config;
@@ -42,12 +58,32 @@ public class TestRunner {
 
     private List<TestCase> tests;
 
+    private int parallelism;
+
+    private HttpClients clients;
+
+    private Optional<LatencyHistograms> latencies;
+
+    private ExecutorBackend executorBackend;
+
+    private int logQuietMillis;
+
     public TestRunner(SelfTestWriter writer, Values testParams, String appUrl, List<TestCase> tests, LogSupport logSupport) {
+        this(writer, testParams, appUrl, tests, logSupport, RunSettings.defaults());
+    }
+
+    public TestRunner(SelfTestWriter writer, Values testParams, String appUrl, List<TestCase> tests, LogSupport logSupport,
+            RunSettings settings) {
         this.writer = writer;
         this.appUrl = appUrl;
         this.config = testParams;
         this.tests = tests;
         this.logSupport = logSupport;
+        this.parallelism = settings.parallelism();
+        this.clients = settings.clients();
+        this.latencies = settings.latencies();
+        this.executorBackend = settings.executorBackend();
+        this.logQuietMillis = settings.logQuietMillis();
     }
 
     public void runAll() {
@@ -58,43 +94,139 @@ public class TestRunner {
         tests.forEach(testcase -> runIds.put(testcase, runId(testcase.getName())));
 
         logSupport.runWithAttachedAppenders(new HashSet<>(runIds.values()), () -> {
-            for (TestCase test : tests) {
-                ctx.resetClues();
-                run(test, runIds.get(test), ctx);
+            if (parallelism > 1 && tests.size() > 1) {
+                runParallel(runIds, ctx);
+            } else {
+                for (TestCase test : tests) {
+                    ctx.resetClues();
+                    TestRunData testdata = run(test, runIds.get(test), ctx);
+                    writer.writeTestOutcome(testdata, testdata.logs, ctx);
+                }
             }
         });
 
         writer.writeText("Done.");
     }
 
-    private void run(TestCase testCase, String runId, SimpleContext ctx) {
+    /*
+     * Tests are started as soon as their dependencies are done, but outcomes are written in the original order. Since each
+     * outcome is written only after all previous ones, the writer is used by the calling thread only.
+     */
+    private void runParallel(Map<TestCase, String> runIds, SimpleContext sharedCtx) {
+        List<TestCase> executionOrder = dependencyOrder(tests);
+
+        ExecutorService executor = executorBackend.newFixedThreadPool(min(parallelism, tests.size()),
+                () -> "selftest-worker-" + WORKER_COUNTER.incrementAndGet());
+        try {
+            Map<String, CompletableFuture<?>> finished = new HashMap<>();
+            Map<TestCase, CompletableFuture<Pair<TestRunData, SimpleContext>>> outcomes = new IdentityHashMap<>();
+
+            for (TestCase test : executionOrder) {
+                CompletableFuture<?>[] dependencies =
+                        test.dependsOn().stream().map(finished::get).toArray(CompletableFuture<?>[]::new);
+                CompletableFuture<Pair<TestRunData, SimpleContext>> outcome =
+                        CompletableFuture.allOf(dependencies).handleAsync((done, dependencyFailure) -> {
+                            SimpleContext ctx = sharedCtx.withOwnClues();
+                            return new Pair<>(runReportingFailures(test, runIds.get(test), ctx), ctx);
+                        }, executor);
+                finished.put(test.getName(), outcome);
+                outcomes.put(test, outcome);
+            }
+
+            for (TestCase test : tests) {
+                Pair<TestRunData, SimpleContext> outcome = outcomes.get(test).join();
+                writer.writeTestOutcome(outcome.left, outcome.left.logs, outcome.right);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // anything thrown becomes the outcome of the test case, so it neither skips its dependents nor aborts the page
+    private TestRunData runReportingFailures(TestCase testCase, String runId, SimpleContext ctx) {
+        try {
+            return run(testCase, runId, ctx);
+        } catch (Throwable t) {
+            TestRunData testdata = new TestRunData(testCase.getName(), Instant.now(), runId);
+            testdata.logs = Collections.emptyList();
+            testdata.result = TestRunResult.error(t instanceof Exception ? (Exception) t : new ExecutionException(t));
+            return testdata;
+        }
+    }
+
+    // orders tests such that each test comes after its dependencies, keeping the original order where possible
+    static List<TestCase> dependencyOrder(List<TestCase> tests) {
+        Map<String, TestCase> byName = new HashMap<>();
+        for (TestCase test : tests) {
+            if (byName.put(test.getName(), test) != null) {
+                throw new IllegalStateException("Duplicate test case name: " + test.getName());
+            }
+        }
+
+        List<TestCase> ordered = new ArrayList<>();
+        Set<String> done = new HashSet<>();
+        for (TestCase test : tests) {
+            addWithDependencies(test, byName, done, new HashSet<>(), ordered);
+        }
+        return ordered;
+    }
+
+    private static void addWithDependencies(TestCase test, Map<String, TestCase> byName, Set<String> done, Set<String> visiting,
+            List<TestCase> ordered) {
+        if (done.contains(test.getName())) {
+            return;
+        }
+        if (!visiting.add(test.getName())) {
+            throw new IllegalStateException("Cyclic dependency between test cases: " + visiting);
+        }
+        for (String dependencyName : test.dependsOn()) {
+            TestCase dependency = byName.get(dependencyName);
+            if (dependency == null) {
+                throw new IllegalStateException(
+                        "Test case '" + test.getName() + "' depends on unknown test case '" + dependencyName + "'");
+            }
+            addWithDependencies(dependency, byName, done, visiting, ordered);
+        }
+        visiting.remove(test.getName());
+        done.add(test.getName());
+        ordered.add(test);
+    }
+
+    private TestRunData run(TestCase testCase, String runId, SimpleContext ctx) {
         List<LogAccess> buffersForRunId = logSupport.getLogs(runId);
-        final TestRunData testdata = execute(testCase, runId, config, appUrl, ctx, buffersForRunId);
+        final TestRunData testdata = execute(testCase, runId, config, appUrl, clients, ctx, buffersForRunId,
+                logQuietMillis);
         testdata.maxDuration = testCase.maxAcceptableDurationMillis();
-
-        writer.writeTestOutcome(testdata, testdata.logs, ctx);
+        if (testdata.wrappedResponse != null) {
+            latencies.ifPresent(histograms -> testdata.latency = histograms.record(testdata.testName, testdata.durationMicros));
+        }
+        return testdata;
     }
 
     static int clamped(int waitForLogs) {
         return min(max(waitForLogs, 0), 5_000);
     }
 
-    private static final TestRunData execute(TestCase test, String runId, Values config, String appUrl, Context ctx,
-            List<LogAccess> buffersForRunId) {
+    static TestRunData execute(TestCase test, String runId, Values config, String appUrl, HttpClients clients,
+            Context ctx, List<LogAccess> buffersForRunId, int logQuietMillis) {
         final TestRunData testRun = new TestRunData(test.getName(), Instant.now(), runId);
         testRun.logs = Collections.emptyList();
 
         try {
-            testRun.wrappedRequest = new WrappedRequest(test.prepareRequest(config, ctx));
+            testRun.wrappedRequest = wrap(test, test.prepareRequest(config, ctx), config, ctx);
             addRunId(testRun.wrappedRequest.request.headers, runId);
 
-            invokeKeepingTime(appUrl, testRun.wrappedRequest, testRun);
-
-            sleep(clamped(test.waitForLogsMillis()));
+            RequestCompletion.register(runId);
+            try {
+                invokeKeepingTime(appUrl, clients, testRun.wrappedRequest, testRun);
+                awaitLogs(runId, clamped(test.waitForLogsMillis()), logQuietMillis, buffersForRunId);
+            } finally {
+                RequestCompletion.unregister(runId);
+            }
             testRun.logs = LogAccess.snapshot(buffersForRunId);
 
             try {
-                test.verify(config, testRun.wrappedResponse.response, ctx);
+                verify(test, config, testRun.wrappedRequest, testRun.wrappedResponse.response, ctx);
                 testRun.result = TestRunResult.success();
             } catch (AssertionException e) {
                 testRun.result = TestRunResult.failure(e.getMessage());
@@ -106,30 +238,96 @@ public class TestRunner {
         return testRun;
     }
 
-    private static void addRunId(Headers headers, String runId) {
+    static WrappedRequest wrap(TestCase test, TestRequest request, Values config, Context ctx) {
+        if (!(test instanceof StreamingTestCase)) {
+            return new WrappedRequest(request);
+        }
+        StreamingTestCase streaming = (StreamingTestCase) test;
+        return new WrappedRequest(request, new StreamingBody(streaming.captureHeadBytes(), streaming.captureTailBytes(),
+                (response, body) -> streaming.verifyBody(config, response, body, ctx)));
+    }
+
+    // a streamed body was verified during the call already, its outcome decides whether the response is verified as well
+    static void verify(TestCase test, Values config, WrappedRequest request, TestResponse response, Context ctx)
+            throws Exception {
+        StreamingBody streamingBody = request.getStreamingBody();
+        if (streamingBody != null && streamingBody.failure() != null) {
+            throw streamingBody.failure();
+        }
+        test.verify(config, response, ctx);
+    }
+
+    /*
+     * Waits until the application finished the request of the run, as signalled through the SelftestMDCFilter, and no log
+     * event arrived for the quiet period, counted from the finished request or the last event captured after it. Without
+     * that signal, e.g. if the filter is not installed, waits the full time. Wakes up on captured events and finished
+     * requests instead of polling.
+     */
+    static void awaitLogs(String runId, int maxMillis, List<LogAccess> buffersForRunId) {
+        awaitLogs(runId, maxMillis, RunSettings.DEFAULT_LOG_QUIET_MILLIS, buffersForRunId);
+    }
+
+    static void awaitLogs(String runId, int maxMillis, int quietMillis, List<LogAccess> buffersForRunId) {
+        long quietNanos = TimeUnit.MILLISECONDS.toNanos(quietMillis);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxMillis);
+        long eventCount = eventCount(buffersForRunId);
+        OptionalLong lastEvent = OptionalLong.empty();
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                if (now - deadline >= 0) {
+                    return;
+                }
+                long currentCount = eventCount(buffersForRunId);
+                if (currentCount != eventCount) {
+                    eventCount = currentCount;
+                    lastEvent = OptionalLong.of(now);
+                }
+                OptionalLong completedAt = RequestCompletion.completedAt(runId);
+                long wakeUp = deadline;
+                if (completedAt.isPresent()) {
+                    long quietStart = completedAt.getAsLong();
+                    if (lastEvent.isPresent() && lastEvent.getAsLong() - quietStart > 0) {
+                        quietStart = lastEvent.getAsLong();
+                    }
+                    long quietEnd = quietStart + quietNanos;
+                    if (now - quietEnd >= 0) {
+                        return;
+                    }
+                    if (quietEnd - deadline < 0) {
+                        wakeUp = quietEnd;
+                    }
+                }
+                long seenCount = eventCount;
+                boolean completed = completedAt.isPresent();
+                LogActivity.await(wakeUp - now, () -> eventCount(buffersForRunId) == seenCount
+                        && RequestCompletion.isCompleted(runId) == completed);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long eventCount(List<LogAccess> buffersForRunId) {
+        return buffersForRunId.stream().mapToLong(access -> access.buffer.eventCount()).sum();
+    }
+
+    static void addRunId(Headers headers, String runId) {
         if (headers.get(X_REQUEST_ID) != null) {
             throw new IllegalStateException("Header " + X_REQUEST_ID + " must no be set by test case.");
         }
         headers.add(X_REQUEST_ID, runId);
     }
 
-    private static void invokeKeepingTime(String appUrl, WrappedRequest reqWrapper, final TestRunData testRun) {
+    static void invokeKeepingTime(String appUrl, HttpClients clients, WrappedRequest reqWrapper,
+            final TestRunData testRun) {
         long timeBefore = System.nanoTime();
         try {
-            testRun.wrappedResponse = getClient(reqWrapper.request).call(appUrl, reqWrapper, 3000);
+            testRun.wrappedResponse = clients.get(reqWrapper.request.clientType).call(appUrl, reqWrapper, 3000);
         } finally {
-            testRun.durationMillis = (System.nanoTime() - timeBefore) / 1_000_000;
-        }
-    }
-
-    private static HttpClient getClient(TestRequest request) {
-        switch (request.clientType) {
-            case SOCKET:
-                return new SocketHttpClient();
-            case URLCON:
-                return new UrlConnectionHttpClient();
-            default:
-                throw new IllegalStateException("Unknown clientType: " + request.clientType);
+            long durationNanos = System.nanoTime() - timeBefore;
+            testRun.durationMicros = durationNanos / 1_000;
+            testRun.durationMillis = durationNanos / 1_000_000;
         }
     }
 
@@ -145,12 +343,4 @@ public class TestRunner {
         return runId;
     }
 
-    private static void sleep(int millis) {
-        try {
-            Thread.sleep(millis);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-    }
-
 }
@@ -0,0 +1,100 @@
+package net.oneandone.httpselftest.writer;
+
+import java.io.PrintWriter;
+
+/**
+ * Writes HTML elements directly to the underlying writer, escaping text and attribute values the same way j2html does. Used
+ * for the large parts of the page, where building a DOM first would only produce garbage.
+ */
+final class HtmlStream {
+
+    private final PrintWriter out;
+
+    HtmlStream(PrintWriter out) {
+        this.out = out;
+    }
+
+    /**
+     * @param tag             element name
+     * @param attributesPairs attribute names and values, alternating
+     * @return this
+     */
+    HtmlStream open(String tag, String... attributesPairs) {
+        out.write('<');
+        out.write(tag);
+        for (int i = 0; i + 1 < attributesPairs.length; i += 2) {
+            out.write(' ');
+            out.write(attributesPairs[i]);
+            out.write("=\"");
+            escaped(attributesPairs[i + 1], 0, attributesPairs[i + 1].length());
+            out.write('"');
+        }
+        out.write('>');
+        return this;
+    }
+
+    HtmlStream close(String tag) {
+        out.write("</");
+        out.write(tag);
+        out.write('>');
+        return this;
+    }
+
+    HtmlStream element(String tag, String text, String... attributesPairs) {
+        return open(tag, attributesPairs).text(text).close(tag);
+    }
+
+    HtmlStream text(String text) {
+        return escaped(text, 0, text.length());
+    }
+
+    HtmlStream br() {
+        out.write("<br>");
+        return this;
+    }
+
+    HtmlStream raw(String html) {
+        out.write(html);
+        return this;
+    }
+
+    HtmlStream newline() {
+        out.write('\n');
+        return this;
+    }
+
+    /**
+     * Writes the given region of the text, escaping HTML special characters. Unescaped runs are written in one piece.
+     */
+    HtmlStream escaped(String text, int from, int to) {
+        int runStart = from;
+        for (int i = from; i < to; i++) {
+            String replacement = replacement(text.charAt(i));
+            if (replacement != null) {
+                out.write(text, runStart, i - runStart);
+                out.write(replacement);
+                runStart = i + 1;
+            }
+        }
+        out.write(text, runStart, to - runStart);
+        return this;
+    }
+
+    private static String replacement(char c) {
+        switch (c) {
+            case '<':
+                return "&lt;";
+            case '>':
+                return "&gt;";
+            case '&':
+                return "&amp;";
+            case '"':
+                return "&quot;";
+            case '\'':
+                return "&#x27;";
+            default:
+                return null;
+        }
+    }
+
+}
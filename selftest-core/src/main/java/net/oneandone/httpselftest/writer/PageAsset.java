@@ -0,0 +1,103 @@
+package net.oneandone.httpselftest.writer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Stylesheet and script of the HTML page. They are loaded once and served as separate resources, so browsers can cache them
+ * instead of receiving them inlined on every page.
+ */
+public enum PageAsset {
+
+    CSS("css", "/httpselftest.css", "text/css; charset=UTF-8"),
+
+    JS("js", "/httpselftest.js", "application/javascript; charset=UTF-8");
+
+    private final String id;
+
+    private final String contentType;
+
+    private final byte[] content;
+
+    private final String version;
+
+    PageAsset(String id, String resource, String contentType) {
+        this.id = id;
+        this.contentType = contentType;
+        this.content = load(resource);
+        this.version = versionOf(content);
+    }
+
+    /**
+     * @return value of the asset request parameter identifying this asset
+     */
+    public String id() {
+        return id;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    /**
+     * @return the UTF-8 encoded asset; not to be modified
+     */
+    public byte[] content() {
+        return content;
+    }
+
+    /**
+     * @return a hash of the content, changing with each release that changes the asset
+     */
+    public String version() {
+        return version;
+    }
+
+    /**
+     * @return the entity tag of the content, including quotes
+     */
+    public String etag() {
+        return "\"" + version + "\"";
+    }
+
+    public static Optional<PageAsset> byId(String id) {
+        return Arrays.stream(values()).filter(asset -> asset.id.equals(id)).findFirst();
+    }
+
+    private static byte[] load(String resource) {
+        try (InputStream in = PageAsset.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("resource not found: " + resource);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String versionOf(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder version = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                version.append(String.format("%02x", digest[i]));
+            }
+            return version.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
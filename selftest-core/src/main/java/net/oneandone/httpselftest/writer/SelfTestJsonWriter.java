@@ -9,10 +9,14 @@ import java.util.Set;
 import com.github.cliftonlabs.json_simple.JsonArray;
 import com.github.cliftonlabs.json_simple.JsonObject;
 
+import net.oneandone.httpselftest.http.PhaseTimings;
 import net.oneandone.httpselftest.log.LogDetails;
 import net.oneandone.httpselftest.test.api.TestCase;
 import net.oneandone.httpselftest.test.api.TestConfigs;
+import net.oneandone.httpselftest.test.run.BurstOutcome;
+import net.oneandone.httpselftest.test.run.LatencySummary;
 import net.oneandone.httpselftest.test.run.ResultType;
+import net.oneandone.httpselftest.test.run.RunRecord;
 import net.oneandone.httpselftest.test.run.SimpleContext;
 import net.oneandone.httpselftest.test.run.TestRunData;
 
@@ -21,6 +25,10 @@ public class SelfTestJsonWriter extends SelfTestWriter {
     public final List<TestRunData> testRunData;
     public final List<Throwable> uncaughtExceptions;
 
+    private List<RunRecord> history;
+
+    private BurstOutcome burst;
+
     public SelfTestJsonWriter(PrintWriter w) {
         super(w);
         testRunData = new ArrayList<>();
@@ -34,8 +42,14 @@ public class SelfTestJsonWriter extends SelfTestWriter {
 
     @Override
     public void writePageEnd() {
+        if (history != null) {
+            writer.append(jsonHistoryOf(history));
+            return;
+        }
+
         boolean success = uncaughtExceptions.isEmpty()
-                && testRunData.stream().allMatch(data -> data.getResult().type == ResultType.SUCCESS);
+                && testRunData.stream().allMatch(data -> data.getResult().type == ResultType.SUCCESS)
+                && (burst == null || burst.isSuccess());
 
         JsonArray failures = testRunData.stream().filter(data -> data.getResult().type == ResultType.FAILURE)
                 .map(data -> jsonFailureOf(data.testName, data.getResult().assertionMessage))
@@ -48,7 +62,19 @@ public class SelfTestJsonWriter extends SelfTestWriter {
         JsonArray exceptions =
                 uncaughtExceptions.stream().map(Throwable::toString).collect(JsonArray::new, JsonArray::add, JsonArray::addAll);
 
-        writer.append(jsonResponseOf(success, failures, errors, exceptions));
+        JsonObject latencies = new JsonObject();
+        testRunData.forEach(
+                data -> data.getLatency().ifPresent(latency -> latencies.put(data.testName, jsonLatencyOf(latency))));
+
+        JsonObject phases = new JsonObject();
+        testRunData.stream().filter(data -> data.getResponse() != null && data.getResponse().timings != null)
+                .forEach(data -> phases.put(data.testName, jsonPhasesOf(data.getResponse().timings)));
+
+        JsonObject response = jsonResponseOf(success, failures, errors, exceptions, latencies, phases);
+        if (burst != null) {
+            response.put("burst", jsonBurstOf(burst));
+        }
+        writer.append(response.toJson());
     }
 
     @Override
@@ -69,13 +95,93 @@ public class SelfTestJsonWriter extends SelfTestWriter {
     public void writeUnrunTests(List<TestCase> tests) {
     }
 
-    private static String jsonResponseOf(boolean success, JsonArray failures, JsonArray errors, JsonArray exceptions) {
+    @Override
+    public void writeHistory(List<RunRecord> runs) {
+        history = runs;
+    }
+
+    @Override
+    public void writeBurstOutcome(BurstOutcome outcome) {
+        burst = outcome;
+    }
+
+    static JsonObject jsonBurstOf(BurstOutcome outcome) {
+        JsonObject o = new JsonObject();
+        o.put("name", outcome.testName);
+        o.put("iterations", outcome.iterations);
+        o.put("concurrency", outcome.concurrency);
+        o.put("durationMillis", outcome.durationMillis);
+        o.put("requestsPerSecond", outcome.requestsPerSecond());
+        o.put("failures", outcome.failures);
+        o.put("errors", outcome.errors);
+        o.put("errorRate", outcome.errorRate());
+        o.put("latency", jsonLatencyOf(outcome.latency));
+        if (outcome.firstProblem != null) {
+            o.put("firstProblem", outcome.firstProblem);
+        }
+        return o;
+    }
+
+    private static String jsonHistoryOf(List<RunRecord> history) {
+        JsonArray runs = history.stream().map(SelfTestJsonWriter::jsonRunOf).collect(JsonArray::new, JsonArray::add,
+                JsonArray::addAll);
+        JsonObject o = new JsonObject();
+        o.put("history", runs);
+        return o.toJson();
+    }
+
+    static JsonObject jsonRunOf(RunRecord run) {
+        JsonArray tests = run.tests.stream().map(test -> {
+            JsonObject t = new JsonObject();
+            t.put("name", test.testName);
+            t.put("result", test.result.name());
+            t.put("durationMillis", test.durationMillis);
+            return t;
+        }).collect(JsonArray::new, JsonArray::add, JsonArray::addAll);
+
+        JsonObject o = new JsonObject();
+        o.put("start", run.startInstant.toString());
+        o.put("durationMillis", run.durationMillis);
+        o.put("success", run.isSuccess());
+        o.put("tests", tests);
+        o.put("exceptions", new JsonArray(run.uncaughtExceptions));
+        return o;
+    }
+
+    private static JsonObject jsonResponseOf(boolean success, JsonArray failures, JsonArray errors, JsonArray exceptions,
+            JsonObject latencies, JsonObject phases) {
         JsonObject s = new JsonObject();
         s.put("success", success);
         s.put("testFailures", failures);
         s.put("testErrors", errors);
         s.put("exceptions", exceptions);
-        return s.toJson();
+        if (!latencies.isEmpty()) {
+            s.put("latency", latencies);
+        }
+        if (!phases.isEmpty()) {
+            s.put("phases", phases);
+        }
+        return s;
+    }
+
+    static JsonObject jsonPhasesOf(PhaseTimings timings) {
+        JsonObject o = new JsonObject();
+        o.put("connectMicros", timings.connectMicros);
+        o.put("sendMicros", timings.sendMicros);
+        o.put("firstByteMicros", timings.firstByteMicros);
+        o.put("headersMicros", timings.headersMicros);
+        o.put("bodyMicros", timings.bodyMicros);
+        return o;
+    }
+
+    static JsonObject jsonLatencyOf(LatencySummary latency) {
+        JsonObject o = new JsonObject();
+        o.put("count", latency.count);
+        o.put("p50Micros", latency.p50Micros);
+        o.put("p90Micros", latency.p90Micros);
+        o.put("p99Micros", latency.p99Micros);
+        o.put("maxMicros", latency.maxMicros);
+        return o;
     }
 
     private static JsonObject jsonFailureOf(String name, String message) {
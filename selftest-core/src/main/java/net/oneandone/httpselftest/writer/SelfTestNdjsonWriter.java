@@ -0,0 +1,143 @@
+package net.oneandone.httpselftest.writer;
+
+import java.io.PrintWriter;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import com.github.cliftonlabs.json_simple.JsonObject;
+
+import net.oneandone.httpselftest.log.LogDetails;
+import net.oneandone.httpselftest.test.api.TestCase;
+import net.oneandone.httpselftest.test.api.TestConfigs;
+import net.oneandone.httpselftest.test.run.BurstOutcome;
+import net.oneandone.httpselftest.test.run.ResultType;
+import net.oneandone.httpselftest.test.run.RunRecord;
+import net.oneandone.httpselftest.test.run.SimpleContext;
+import net.oneandone.httpselftest.test.run.TestRunData;
+import net.oneandone.httpselftest.test.run.TestRunResult;
+
+/**
+ * Writes newline delimited JSON: one record per test outcome as soon as it is known, followed by a summary record. Consumers
+ * can stop at the first failed test, and only counters are kept until the summary. Each record has a {@code type} of
+ * {@code test}, {@code exception}, {@code burst}, {@code run} (history) or {@code summary}.
+ */
+public class SelfTestNdjsonWriter extends SelfTestWriter {
+
+    public static final String CONTENT_TYPE = "application/x-ndjson";
+
+    private int tests;
+
+    private int failures;
+
+    private int errors;
+
+    private int exceptions;
+
+    private boolean burstFailed;
+
+    private boolean wroteHistory;
+
+    public SelfTestNdjsonWriter(PrintWriter w) {
+        super(w);
+    }
+
+    @Override
+    public void writePageStart(TestConfigs configs, Set<String> relevantConfigIds, TestConfigs.Values paramsToUse,
+            String servletName, String testsBaseUrl, Instant lastTestRun, String callerIp, String lastTestrunIp) {
+    }
+
+    @Override
+    public void writePageEnd() {
+        if (wroteHistory) {
+            return;
+        }
+        JsonObject summary = record("summary");
+        summary.put("success", failures == 0 && errors == 0 && exceptions == 0 && !burstFailed);
+        summary.put("tests", tests);
+        summary.put("failures", failures);
+        summary.put("errors", errors);
+        summary.put("exceptions", exceptions);
+        write(summary);
+    }
+
+    @Override
+    public void writeTestOutcome(TestRunData testRun, List<LogDetails> logs, SimpleContext ctx) {
+        TestRunResult result = testRun.getResult();
+        tests++;
+        if (result.type == ResultType.FAILURE) {
+            failures++;
+        } else if (result.type == ResultType.ERROR) {
+            errors++;
+        }
+
+        JsonObject o = record("test");
+        o.put("name", testRun.testName);
+        o.put("runId", testRun.runId);
+        o.put("start", testRun.startInstant.toString());
+        o.put("result", result.type.name());
+        if (result.type == ResultType.FAILURE) {
+            o.put("message", result.assertionMessage);
+        } else if (result.type == ResultType.ERROR) {
+            o.put("message", result.uncaught.toString());
+        }
+        o.put("durationMillis", testRun.getDurationMillis());
+        o.put("durationMicros", testRun.getDurationMicros());
+        o.put("slowResponse", testRun.getDurationMillis() > testRun.getMaxDurationMillis());
+        o.put("errorLogs", logs.stream().anyMatch(details -> details.hasEventOnLevel("ERROR")));
+        o.put("warnLogs", logs.stream().anyMatch(details -> details.hasEventOnLevel("WARN")));
+        o.put("logOverflow", logs.stream().anyMatch(details -> details.logs.hasOverflown));
+        testRun.getLatency().ifPresent(latency -> o.put("latency", SelfTestJsonWriter.jsonLatencyOf(latency)));
+        if (testRun.getResponse() != null && testRun.getResponse().timings != null) {
+            o.put("phases", SelfTestJsonWriter.jsonPhasesOf(testRun.getResponse().timings));
+        }
+        write(o);
+    }
+
+    @Override
+    public void writeText(String paragraph) {
+    }
+
+    @Override
+    public void writeUncaughtException(Throwable t) {
+        exceptions++;
+        JsonObject o = record("exception");
+        o.put("message", t.toString());
+        write(o);
+    }
+
+    @Override
+    public void writeUnrunTests(List<TestCase> tests) {
+    }
+
+    @Override
+    public void writeHistory(List<RunRecord> runs) {
+        wroteHistory = true;
+        runs.forEach(run -> {
+            JsonObject o = record("run");
+            o.putAll(SelfTestJsonWriter.jsonRunOf(run));
+            write(o);
+        });
+    }
+
+    @Override
+    public void writeBurstOutcome(BurstOutcome outcome) {
+        burstFailed = !outcome.isSuccess();
+        JsonObject o = record("burst");
+        o.putAll(SelfTestJsonWriter.jsonBurstOf(outcome));
+        write(o);
+    }
+
+    private static JsonObject record(String type) {
+        JsonObject o = new JsonObject();
+        o.put("type", type);
+        return o;
+    }
+
+    // each record is flushed, so it reaches the client while the next test case is still running
+    private void write(JsonObject record) {
+        writer.append(record.toJson()).append('\n');
+        writer.flush();
+    }
+
+}
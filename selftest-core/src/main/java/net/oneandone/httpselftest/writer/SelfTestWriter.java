@@ -3,6 +3,8 @@ package net.oneandone.httpselftest.writer;
 import net.oneandone.httpselftest.log.LogDetails;
 import net.oneandone.httpselftest.test.api.TestCase;
 import net.oneandone.httpselftest.test.api.TestConfigs;
+import net.oneandone.httpselftest.test.run.BurstOutcome;
+import net.oneandone.httpselftest.test.run.RunRecord;
 import net.oneandone.httpselftest.test.run.SimpleContext;
 import net.oneandone.httpselftest.test.run.TestRunData;
 import java.io.PrintWriter;
@@ -31,4 +33,11 @@ public abstract class SelfTestWriter {
 
     public abstract void writeUnrunTests(List<TestCase> tests);
 
+    /**
+     * @param history past runs, newest first
+     */
+    public abstract void writeHistory(List<RunRecord> history);
+
+    public abstract void writeBurstOutcome(BurstOutcome outcome);
+
 }
@@ -1,12 +1,11 @@
 package net.oneandone.httpselftest.writer;
 
-import static j2html.TagCreator.br;
 import static j2html.TagCreator.div;
 import static j2html.TagCreator.form;
 import static j2html.TagCreator.h2;
-import static j2html.TagCreator.h3;
 import static j2html.TagCreator.input;
-import static j2html.TagCreator.rawHtml;
+import static j2html.TagCreator.link;
+import static j2html.TagCreator.script;
 import static j2html.TagCreator.span;
 import static j2html.TagCreator.table;
 import static j2html.TagCreator.text;
@@ -14,6 +13,7 @@ import static j2html.TagCreator.tr;
 import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
+import static net.oneandone.httpselftest.servlet.SelftestServlet.ASSET;
 import static net.oneandone.httpselftest.servlet.SelftestServlet.PARAMETER_PREFIX;
 
 import java.io.PrintWriter;
@@ -25,13 +25,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.function.BiPredicate;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -40,27 +39,29 @@ import j2html.tags.ContainerTag;
 import j2html.tags.DomContent;
 import j2html.tags.specialized.DivTag;
 import j2html.tags.specialized.FormTag;
-import j2html.tags.specialized.H3Tag;
-import j2html.tags.specialized.SpanTag;
 import j2html.tags.specialized.TableTag;
 import j2html.tags.specialized.TrTag;
 import net.oneandone.httpselftest.common.Pair;
 import net.oneandone.httpselftest.http.Headers;
 import net.oneandone.httpselftest.http.HttpDetails;
 import net.oneandone.httpselftest.http.HttpException;
+import net.oneandone.httpselftest.http.PhaseTimings;
 import net.oneandone.httpselftest.http.WrappedRequest;
 import net.oneandone.httpselftest.http.WrappedResponse;
 import net.oneandone.httpselftest.http.presenter.FormEntityPresenter;
 import net.oneandone.httpselftest.http.presenter.RawHttpPresenter;
+import net.oneandone.httpselftest.http.presenter.Http2FramePresenter;
 import net.oneandone.httpselftest.http.presenter.HttpPresenter;
 import net.oneandone.httpselftest.http.presenter.JsonEntityPresenter;
 import net.oneandone.httpselftest.http.presenter.PlainHttpPresenter;
 import net.oneandone.httpselftest.log.EventRenderer;
 import net.oneandone.httpselftest.log.LogDetails;
-import net.oneandone.httpselftest.log.SelftestEvent;
 import net.oneandone.httpselftest.test.api.TestCase;
 import net.oneandone.httpselftest.test.api.TestConfigs;
+import net.oneandone.httpselftest.test.run.BurstOutcome;
+import net.oneandone.httpselftest.test.run.LatencySummary;
 import net.oneandone.httpselftest.test.run.ResultType;
+import net.oneandone.httpselftest.test.run.RunRecord;
 import net.oneandone.httpselftest.test.run.SimpleContext;
 import net.oneandone.httpselftest.test.run.TestRunData;
 import net.oneandone.httpselftest.test.run.TestRunResult;
@@ -87,32 +88,53 @@ public class SelftestHtmlWriter extends SelfTestWriter {
         CONTENT_PRESENTERS = new ArrayList<>();
         CONTENT_PRESENTERS.add(new PlainHttpPresenter());
         CONTENT_PRESENTERS.add(new RawHttpPresenter());
+        CONTENT_PRESENTERS.add(new Http2FramePresenter());
         CONTENT_PRESENTERS.add(new FormEntityPresenter());
         CONTENT_PRESENTERS.add(new JsonEntityPresenter());
     }
 
+    /*
+     * Static up to the metainfo block, so it is rendered once. Stylesheet and script are referenced relative to the page, with
+     * their version in the URL, so browsers cache them across pages and releases.
+     */
+    private static final String PAGE_HEAD = "<!doctype html>\n<head><meta charset='utf-8'/>\n"
+            + link().withRel("stylesheet").withHref(assetUrl(PageAsset.CSS)).render() + "\n</head>\n<body>\n"
+            + script().withSrc(assetUrl(PageAsset.JS)).render() + "\n";
+
+    private final HtmlStream html;
+
+    private final boolean progressive;
+
     public SelftestHtmlWriter(PrintWriter w) {
+        this(w, false);
+    }
+
+    /**
+     * @param progressive flush after the page start, each text and each test outcome, so they show while the run goes on.
+     *                    The first flush commits the response, which is then sent chunked instead of in one piece.
+     */
+    public SelftestHtmlWriter(PrintWriter w, boolean progressive) {
         super(w);
+        this.html = new HtmlStream(w);
+        this.progressive = progressive;
     }
 
     @Override
     public void writeText(String paragraph) {
-        write(textBlock(paragraph));
+        textBlock(paragraph, html);
+        html.newline();
+        flushIfProgressive();
     }
 
     @Override
     public void writePageStart(TestConfigs configs, Set<String> relevantConfigIds, TestConfigs.Values paramsToUse,
             String servletName, String testsBaseUrl, Instant lastTestRun, String callerIp, String lastTestrunIp) {
-        writeDirect("<!doctype html>");
-        writeDirect("<head><meta charset='utf-8'/>");
-        write(TagCreator.styleWithInlineFile("/httpselftest.css"));
-        writeDirect("</head>");
-        writeDirect("<body>");
-        write(TagCreator.scriptWithInlineFile("/httpselftest.js"));
+        writer.write(PAGE_HEAD);
         write(metainfoBlock(testsBaseUrl, lastTestRun, callerIp, lastTestrunIp));
         write(testParametersForm(configs, paramsToUse, servletName));
         providedConfigsForm(configs, relevantConfigIds, paramsToUse.activeConfigId()).ifPresent(this::write);
         write(div().withClass("clear"));
+        flushIfProgressive();
     }
 
     @Override
@@ -128,50 +150,135 @@ public class SelftestHtmlWriter extends SelfTestWriter {
         }
     }
 
+    @Override
+    public void writeHistory(List<RunRecord> history) {
+        html.open("div", "class", "group history");
+        html.element("h2", "History");
+        if (history.isEmpty()) {
+            textBlock("No scheduled runs yet.", html);
+            html.close("div").newline();
+            return;
+        }
+        List<String> testNames =
+                history.stream().flatMap(run -> run.tests.stream()).map(test -> test.testName).distinct().collect(toList());
+
+        html.open("table", "class", "history");
+        html.open("tr").element("th", "Start").element("th", "Duration");
+        testNames.forEach(name -> html.element("th", name));
+        html.close("tr");
+        for (RunRecord run : history) {
+            html.open("tr", "class", run.isSuccess() ? "history-success" : "history-failure");
+            html.element("td", EventRenderer.TIMESTAMP_FORMATTER.format(run.startInstant),
+                    "title", String.join("\n", run.uncaughtExceptions));
+            html.element("td", run.durationMillis + "ms");
+            for (String name : testNames) {
+                Optional<RunRecord.TestOutcome> outcome =
+                        run.tests.stream().filter(test -> test.testName.equals(name)).findFirst();
+                if (outcome.isPresent()) {
+                    html.element("td", outcome.get().result + " (" + outcome.get().durationMillis + "ms)", "class",
+                            "history-" + outcome.get().result.name().toLowerCase());
+                } else {
+                    html.element("td", "-");
+                }
+            }
+            html.close("tr");
+        }
+        html.close("table");
+        html.close("div").newline();
+    }
+
+    @Override
+    public void writeBurstOutcome(BurstOutcome outcome) {
+        html.open("div", "class", "group burst test-" + (outcome.isSuccess() ? "success" : "failure"));
+        html.element("h2", "Burst " + outcome.testName + " (" + outcome.iterations + " iterations, concurrency "
+                + outcome.concurrency + ")");
+        html.open("table");
+        burstRow("Duration", outcome.durationMillis + "ms");
+        burstRow("Throughput", String.format(Locale.ROOT, "%.1f requests/s", outcome.requestsPerSecond()));
+        burstRow("Problems", outcome.failures + " failures, " + outcome.errors + " errors ("
+                + String.format(Locale.ROOT, "%.1f%%", outcome.errorRate() * 100) + ")");
+        burstRow("Latency", formattedLatency(outcome.latency));
+        if (outcome.firstProblem != null) {
+            burstRow("First problem", outcome.firstProblem);
+        }
+        html.close("table");
+        html.close("div").newline();
+    }
+
+    private void burstRow(String name, String value) {
+        html.open("tr").element("td", name).element("td", value).close("tr");
+    }
+
     @Override
     public void writeTestOutcome(TestRunData testRun, List<LogDetails> logs, SimpleContext ctx) {
-        boolean hasErrorLogs = hasLogEvent(logs, (evt, renderer) -> renderer.getLevel(evt.event).equals("ERROR"));
-        boolean hasWarnLogs = hasLogEvent(logs, (evt, renderer) -> renderer.getLevel(evt.event).equals("WARN"));
+        boolean hasErrorLogs = logs.stream().anyMatch(details -> details.hasEventOnLevel("ERROR"));
+        boolean hasWarnLogs = logs.stream().anyMatch(details -> details.hasEventOnLevel("WARN"));
         boolean logHasOverflown = logs.stream().anyMatch(details -> details.logs.hasOverflown);
         boolean slowResponse = testRun.getDurationMillis() > testRun.getMaxDurationMillis();
+        boolean slowPercentile =
+                testRun.getLatency().map(latency -> latency.p99Micros > testRun.getMaxDurationMillis() * 1_000L).orElse(false);
 
         String resultClass = "testcase test-" + testRun.getResult().type.name().toLowerCase();
-        if (hasErrorLogs || hasWarnLogs || slowResponse) {
+        if (hasErrorLogs || hasWarnLogs || slowResponse || slowPercentile) {
             resultClass = resultClass + " warn";
         }
 
-        DivTag div = div().withClasses("group", "nonempty", resultClass).with( //
-                h2().with( //
-                        text(testRun.testName + " (" + testRun.getDurationMillis() + "ms) - " + testRun.getResult().type), //
-                        caretSpan(), //
-                        text(ctx.getClues().isEmpty() ? "" : ctx.getClues().toString()), //
-                        indicator(hasErrorLogs, "errorlogs", "There are log messages on ERROR."), //
-                        indicator(hasWarnLogs, "warnlogs", "There are log messages on WARN."), //
-                        indicator(slowResponse, "slowresponse", "The response was slower than expected."), //
-                        indicator(logHasOverflown, "logoverflow", "Log buffer has overflown."))
-                        .attr("title", testRun.runId + " @ " + EventRenderer.TIMESTAMP_FORMATTER.format(testRun.startInstant)), //
-                div().withClass("contents").with( //
-                        concat(messageIfExistsAsDom(testRun.getResult()), //
-                                requestIfExistsAsDom(testRun.getRequest()), //
-                                responseIfExistsAsDom(testRun.getResponse()), //
-                                partialResponseIfExistsAsDom(testRun.getResult().uncaught), //
-                                exceptionIfExistsAsDom(testRun.getResult().uncaught), //
-                                applicationLogIfExistsAsDom(logs))));
-        write(div);
+        html.open("div", "class", "group nonempty " + resultClass);
+        html.open("h2", "title", testRun.runId + " @ " + EventRenderer.TIMESTAMP_FORMATTER.format(testRun.startInstant));
+        html.text(testRun.testName + " (" + testRun.getDurationMillis() + "ms) - " + testRun.getResult().type);
+        html.open("span", "class", "caret").close("span");
+        html.text(ctx.getClues().isEmpty() ? "" : ctx.getClues().toString());
+        testRun.getLatency().ifPresent(this::latency);
+        indicator(hasErrorLogs, "errorlogs", "There are log messages on ERROR.");
+        indicator(hasWarnLogs, "warnlogs", "There are log messages on WARN.");
+        indicator(slowResponse, "slowresponse", "The response was slower than expected.");
+        indicator(slowPercentile, "slowpercentile", "The 99th percentile of the latency across runs is slower than expected.");
+        indicator(logHasOverflown, "logoverflow", "Log buffer has overflown.");
+        html.close("h2");
+
+        html.open("div", "class", "contents");
+        messageIfExists(testRun.getResult());
+        requestIfExists(testRun.getRequest());
+        responseIfExists(testRun.getResponse());
+        partialResponseIfExists(testRun.getResult().uncaught);
+        exceptionIfExists(testRun.getResult().uncaught);
+        applicationLogIfExists(logs);
+        html.close("div");
+
+        html.close("div").newline();
+        flushIfProgressive();
+    }
+
+    private void flushIfProgressive() {
+        if (progressive) {
+            writer.flush();
+        }
+    }
+
+    private void latency(LatencySummary latency) {
+        html.element("span", formattedLatency(latency), "class", "latency", "title",
+                "Latency across " + latency.count + " runs since startup");
     }
 
-    private boolean hasLogEvent(List<LogDetails> logs, BiPredicate<SelftestEvent, EventRenderer> pred) {
-        return logs.stream().anyMatch(details -> details.logs.events.stream().anyMatch(evt -> pred.test(evt, details.renderer)));
+    private static String formattedLatency(LatencySummary latency) {
+        return "p50 " + formattedMicros(latency.p50Micros) + " / p90 " + formattedMicros(latency.p90Micros) + " / p99 "
+                + formattedMicros(latency.p99Micros) + " / max " + formattedMicros(latency.maxMicros);
     }
 
-    private static SpanTag indicator(boolean condition, String clazz, String msg) {
-        // withCondClass overwrites indicator-inactive
-        return span("!").withClass("indicator-inactive").withCondClass(condition, "indicator " + clazz).attr("title", msg);
+    static String formattedMicros(long micros) {
+        return micros / 1_000 + "." + micros % 1_000 / 100 + "ms";
+    }
+
+    private void indicator(boolean condition, String clazz, String msg) {
+        html.element("span", "!", "class", condition ? "indicator " + clazz : "indicator-inactive", "title", msg);
     }
 
     @Override
     public void writeUncaughtException(Throwable t) {
-        write(h2("UNCAUGHT EXCEPTION"), div(textBlock(stacktraceAsString(t))));
+        html.element("h2", "UNCAUGHT EXCEPTION").newline();
+        html.open("div");
+        textBlock(stacktraceAsString(t), html);
+        html.close("div").newline();
     }
 
     private void write(DomContent... all) {
@@ -180,6 +287,10 @@ public class SelftestHtmlWriter extends SelfTestWriter {
         }
     }
 
+    static String assetUrl(PageAsset asset) {
+        return "?" + ASSET + "=" + asset.id() + "&v=" + asset.version();
+    }
+
     private void writeDirect(String s) {
         writer.write(s);
         writer.write("\n");
@@ -238,18 +349,6 @@ public class SelftestHtmlWriter extends SelfTestWriter {
         return Optional.of(div().withId("configs").withClass("block").with(form));
     }
 
-    @SafeVarargs
-    private static DomContent[] concat(List<DomContent>... parts) {
-        List<DomContent> combined = new LinkedList<>();
-
-        for (List<DomContent> elements : parts) {
-            for (DomContent element : elements) {
-                combined.add(element);
-            }
-        }
-        return combined.toArray(new DomContent[0]);
-    }
-
     @SafeVarargs
     private static <T> List<T> listOf(T... elements) {
         return Arrays.asList(elements);
@@ -260,64 +359,114 @@ public class SelftestHtmlWriter extends SelfTestWriter {
                 TagCreator::td).toArray(ContainerTag[]::new));
     }
 
-    private static DivTag monospacedParagraph(String text) {
-        return div().withClass("mono").with(textBlock(text));
+    private static void monospacedParagraph(String text, HtmlStream html) {
+        html.open("div", "class", "mono");
+        textBlock(text, html);
+        html.close("div");
     }
 
-    private static DomContent textBlock(String paragraph) {
-        List<DomContent> pieces = new ArrayList<>();
-        for (String line : paragraph.split("\\n")) {
-            pieces.add(span(text(line)));
-            pieces.add(br());
-        }
-        return div(pieces.toArray(new DomContent[0]));
+    private static void textBlock(String paragraph, HtmlStream html) {
+        html.open("div");
+        forEachLine(paragraph, (line, from, to) -> html.open("span").escaped(line, from, to).close("span").br());
+        html.close("div");
+    }
+
+    private static void urlHighlightedTextBlock(String paragraph, String logLevel, HtmlStream html) {
+        String levelClass = "level-" + logLevel.toLowerCase();
+        Matcher url = HTTP_PREFIX.matcher(paragraph);
+        html.open("div");
+        forEachLine(paragraph, (line, from, to) -> {
+            html.open("span", "class", levelClass);
+            urlHighlightedLine(line, from, to, url, html);
+            html.close("span").br();
+        });
+        html.close("div");
     }
 
-    private static DomContent urlHighlightedTextBlock(String paragraph, String logLevel) {
-        List<DomContent> lines = new ArrayList<>();
-        for (String line : paragraph.split("\\n")) {
-            LinkedList<DomContent> parts = new LinkedList<>();
-            for (String part : line.split(" ")) {
-                parts.add(text(" "));
-                boolean isUrl = HTTP_PREFIX.matcher(part).matches();
-                parts.add(isUrl ? span(part).withClass("url") : text(part));
+    // words are separated by single spaces, trailing spaces are dropped
+    private static void urlHighlightedLine(String text, int from, int to, Matcher url, HtmlStream html) {
+        while (to > from && text.charAt(to - 1) == ' ') {
+            to--;
+        }
+        int wordStart = from;
+        while (true) {
+            int wordEnd = text.indexOf(' ', wordStart);
+            if (wordEnd < 0 || wordEnd > to) {
+                wordEnd = to;
             }
-            if (!parts.isEmpty()) {
-                parts.removeFirst(); // remove leading " "
+            if (url.region(wordStart, wordEnd).matches()) {
+                html.open("span", "class", "url").escaped(text, wordStart, wordEnd).close("span");
+            } else {
+                html.escaped(text, wordStart, wordEnd);
             }
-            lines.add(span(parts.toArray(new DomContent[0])).withClass("level-" + logLevel.toLowerCase()));
-            lines.add(br());
+            if (wordEnd >= to) {
+                return;
+            }
+            html.raw(" ");
+            wordStart = wordEnd + 1;
         }
-        return div(lines.toArray(new DomContent[0]));
     }
 
-    private static DomContent logEventAsDom(SelftestEvent e, EventRenderer renderer) {
-        return urlHighlightedTextBlock(renderer.doLayout(e.event), renderer.getLevel(e.event));
+    /*
+     * Visits the same lines as paragraph.split("\n") without creating substrings: an empty paragraph has one empty line,
+     * trailing empty lines are dropped.
+     */
+    private static void forEachLine(String paragraph, LineVisitor visitor) {
+        if (paragraph.isEmpty()) {
+            visitor.visit(paragraph, 0, 0);
+            return;
+        }
+        int end = paragraph.length();
+        while (end > 0 && paragraph.charAt(end - 1) == '\n') {
+            end--;
+        }
+        int start = 0;
+        while (start < end) {
+            int lineEnd = paragraph.indexOf('\n', start);
+            if (lineEnd < 0 || lineEnd > end) {
+                lineEnd = end;
+            }
+            visitor.visit(paragraph, start, lineEnd);
+            start = lineEnd + 1;
+        }
     }
 
-    private static List<DomContent> messageIfExistsAsDom(TestRunResult result) {
+    @FunctionalInterface
+    private interface LineVisitor {
+        void visit(String text, int from, int to);
+    }
+
+    private void messageIfExists(TestRunResult result) {
         if (result != null && result.type == ResultType.FAILURE) {
-            return listOf(h3("FAILED ASSERTION"), monospacedParagraph(result.assertionMessage));
-        } else {
-            return Collections.emptyList();
+            html.element("h3", "FAILED ASSERTION");
+            monospacedParagraph(result.assertionMessage, html);
+        }
+    }
+
+    private void requestIfExists(WrappedRequest wrapper) {
+        if (wrapper != null) {
+            httpBlock("REQUEST", wrapper.request.getHeaders(), wrapper.getDetails());
         }
     }
 
-    private static List<DomContent> requestIfExistsAsDom(WrappedRequest wrapper) {
-        if (wrapper == null) {
-            return Collections.emptyList();
+    private void responseIfExists(WrappedResponse wrapper) {
+        if (wrapper != null) {
+            httpBlock("RESPONSE", wrapper.response.getHeaders(), wrapper.responseDetails);
+            timingsIfExist(wrapper.timings);
         }
-        return httpBlockAsDom("REQUEST", wrapper.request.getHeaders(), wrapper.getDetails());
     }
 
-    private static List<DomContent> responseIfExistsAsDom(WrappedResponse wrapper) {
-        if (wrapper == null) {
-            return Collections.emptyList();
+    private void timingsIfExist(PhaseTimings timings) {
+        if (timings != null) {
+            html.element("h3", "TIMING");
+            monospacedParagraph("connect " + formattedMicros(timings.connectMicros) + " | send "
+                    + formattedMicros(timings.sendMicros) + " | first byte " + formattedMicros(timings.firstByteMicros)
+                    + " | headers " + formattedMicros(timings.headersMicros) + " | body " + formattedMicros(timings.bodyMicros),
+                    html);
         }
-        return httpBlockAsDom("RESPONSE", wrapper.response.getHeaders(), wrapper.responseDetails);
     }
 
-    private static List<DomContent> httpBlockAsDom(String blockName, Headers headers, HttpDetails details) {
+    private void httpBlock(String blockName, Headers headers, HttpDetails details) {
         List<Pair<String, String>> parsedContents = CONTENT_PRESENTERS.stream() //
                 .map(presenter -> parseCatchingExceptions(presenter, headers, details)) //
                 .filter(pair -> pair.right.isPresent()) //
@@ -326,34 +475,23 @@ public class SelftestHtmlWriter extends SelfTestWriter {
 
         boolean defaultWorked = parsedContents.stream().anyMatch(pair -> pair.left.equals(CONTENT_PRESENTERS.get(0).id()));
 
-        AtomicBoolean first = new AtomicBoolean(true);
-        List<DomContent> parserTags = parsedContents.stream() //
-                .map(pair -> span(pair.left) //
-                        .withClass("presentationToggle") //
-                        .withCondClass(first.getAndSet(false), "active presentationToggle")) //
-                .collect(Collectors.toList());
-
-        first.set(true);
-        List<DomContent> responseParagraphs = parsedContents.stream() //
-                .map(pair -> div() //
-                        .withClass("presenterContent " + pair.left) //
-                        .withCondClass(first.getAndSet(false), "active presenterContent " + pair.left) //
-                        .with(monospacedParagraph(pair.right))) //
-                .collect(Collectors.toList());
-
-        List<DomContent> headerElements = new LinkedList<>();
-        headerElements.add(span(blockName));
-        if (parserTags.size() > 1 || !defaultWorked) {
-            headerElements.addAll(parserTags);
+        html.open("h3").element("span", blockName);
+        if (parsedContents.size() > 1 || !defaultWorked) {
+            for (int i = 0; i < parsedContents.size(); i++) {
+                html.element("span", parsedContents.get(i).left, "class",
+                        i == 0 ? "active presentationToggle" : "presentationToggle");
+            }
         }
-
-        H3Tag header = h3(concat(headerElements));
-
-        List<DomContent> httpBlock = new LinkedList<>();
-        httpBlock.add(header);
-        httpBlock.add(div(concat(responseParagraphs)));
-
-        return httpBlock;
+        html.close("h3");
+
+        html.open("div");
+        for (int i = 0; i < parsedContents.size(); i++) {
+            Pair<String, String> content = parsedContents.get(i);
+            html.open("div", "class", (i == 0 ? "active presenterContent " : "presenterContent ") + content.left);
+            monospacedParagraph(content.right, html);
+            html.close("div");
+        }
+        html.close("div");
     }
 
     private static Pair<String, Optional<String>> parseCatchingExceptions(HttpPresenter presenter, Headers headers,
@@ -366,63 +504,56 @@ public class SelftestHtmlWriter extends SelfTestWriter {
         }
     }
 
-    private static List<DomContent> partialResponseIfExistsAsDom(Exception e) {
+    private void partialResponseIfExists(Exception e) {
         if (e instanceof HttpException && ((HttpException) e).getBytes() != null) {
+            String partialResponse;
             try {
                 byte[] bytes = ((HttpException) e).getBytes();
-                String partialResponse = new String(bytes, StandardCharsets.UTF_8);
-                return listOf(h3("PARTIAL RESPONSE UNTIL EXCEPTION"), monospacedParagraph(partialResponse));
+                partialResponse = new String(bytes, StandardCharsets.UTF_8);
             } catch (RuntimeException e2) {
-                return listOf(h3("EXCEPTION DURING PARTIAL RESPONSE HANDLING: " + e2.getMessage()));
+                html.element("h3", "EXCEPTION DURING PARTIAL RESPONSE HANDLING: " + e2.getMessage());
+                return;
             }
-        } else {
-            return Collections.emptyList();
+            html.element("h3", "PARTIAL RESPONSE UNTIL EXCEPTION");
+            monospacedParagraph(partialResponse, html);
         }
     }
 
-    private static List<DomContent> exceptionIfExistsAsDom(Exception e) {
+    private void exceptionIfExists(Exception e) {
         if (e != null) {
-            return listOf(h3("EXCEPTION DURING EXECUTION"), monospacedParagraph(stacktraceAsString(e)));
-        } else {
-            return Collections.emptyList();
+            html.element("h3", "EXCEPTION DURING EXECUTION");
+            monospacedParagraph(stacktraceAsString(e), html);
         }
     }
 
-    private static List<DomContent> applicationLogIfExistsAsDom(List<LogDetails> list) {
+    private void applicationLogIfExists(List<LogDetails> list) {
         List<LogDetails> logsWithEntries =
                 list.stream().filter(info -> !info.logs.events.isEmpty()).sorted(ROOT_COMP).collect(toList());
 
-        List<DomContent> dom = new LinkedList<>();
-        logsWithEntries.forEach(info -> {
-            if (!info.logs.events.isEmpty()) {
-                List<DomContent> header = new LinkedList<>();
-                header.add(span("LOG ["));
-                header.addAll(joinWithArrows(info.logNames));
-                header.add(span("]"));
-                dom.add(h3(concat(header)));
-
-                if (info.logs.hasOverflown) {
-                    dom.add(span("Log buffer has overflown! Oldest lines have been dropped.").withClass("warn"));
-                    dom.add(br());
-                }
+        for (LogDetails info : logsWithEntries) {
+            html.open("h3").element("span", "LOG [");
+            joinWithArrows(info.logNames);
+            html.element("span", "]").close("h3");
 
-                DivTag logDiv = div().withClass("mono log");
-                info.logs.events.forEach(event -> logDiv.with(logEventAsDom(event, info.renderer)));
-                dom.add(logDiv);
+            if (info.logs.hasOverflown) {
+                html.element("span", "Log buffer has overflown! Oldest lines have been dropped.", "class", "warn").br();
             }
-        });
-        return dom;
+
+            html.open("div", "class", "mono log");
+            for (int i = 0; i < info.logs.events.size(); i++) {
+                urlHighlightedTextBlock(info.renderedLine(i), info.level(i), html);
+            }
+            html.close("div");
+        }
     }
 
-    private static List<DomContent> joinWithArrows(List<String> logNames) {
-        LinkedList<DomContent> joined = logNames.stream().collect(LinkedList::new, (list, part) -> {
-            list.add(span(part).withClass("mono"));
-            list.add(rawHtml(" &rarr; "));
-        }, LinkedList::addAll);
-        if (!joined.isEmpty()) {
-            joined.removeLast(); // trailing arrow
+    private void joinWithArrows(List<String> logNames) {
+        for (int i = 0; i < logNames.size(); i++) {
+            if (i > 0) {
+                html.raw(" &rarr; ");
+            }
+            html.element("span", logNames.get(i), "class", "mono");
         }
-        return joined;
     }
 
     private static TableTag configsTableAsDom(Set<String> idsToWrite, String className, Optional<String> activeConfigId,
@@ -447,10 +578,6 @@ public class SelftestHtmlWriter extends SelfTestWriter {
                 h2(test.getName()));
     }
 
-    private static SpanTag caretSpan() {
-        return span().withClass("caret");
-    }
-
     private static String formattedDurationWithIpHint(Instant lastTestRun, Instant now, String callerIp, String lastTestrunIp) {
         final String formattedDuration = formattedDurationBetween(lastTestRun, now);
         final String hint = callerIp.equals(lastTestrunIp) ? "from your IP" : "from another IP";
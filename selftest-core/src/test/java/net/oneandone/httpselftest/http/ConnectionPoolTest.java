@@ -0,0 +1,66 @@
+package net.oneandone.httpselftest.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import org.junit.jupiter.api.Test;
+
+public class ConnectionPoolTest {
+
+    private static final InetSocketAddress ADDRESS = new InetSocketAddress("localhost", 8080);
+
+    private static final InetSocketAddress OTHER_ADDRESS = new InetSocketAddress("localhost", 8081);
+
+    @Test
+    public void acquiresReleasedConnection() throws Exception {
+        ConnectionPool pool = new ConnectionPool();
+        Socket socket = new Socket();
+
+        pool.release(ADDRESS, socket);
+
+        assertThat(pool.acquire(OTHER_ADDRESS)).isNull();
+        assertThat(pool.acquire(ADDRESS)).isSameAs(socket);
+        assertThat(pool.acquire(ADDRESS)).isNull();
+    }
+
+    @Test
+    public void skipsClosedConnections() throws Exception {
+        ConnectionPool pool = new ConnectionPool();
+        Socket open = new Socket();
+        Socket closed = new Socket();
+        closed.close();
+
+        pool.release(ADDRESS, open);
+        pool.release(ADDRESS, closed);
+
+        assertThat(pool.acquire(ADDRESS)).isSameAs(open);
+        assertThat(pool.idleCount()).isZero();
+    }
+
+    @Test
+    public void closeClosesIdleConnections() throws Exception {
+        ConnectionPool pool = new ConnectionPool();
+        Socket socket = new Socket();
+        pool.release(ADDRESS, socket);
+
+        pool.close();
+
+        assertThat(socket.isClosed()).isTrue();
+        assertThat(pool.idleCount()).isZero();
+    }
+
+    @Test
+    public void releaseAfterCloseClosesConnection() throws Exception {
+        ConnectionPool pool = new ConnectionPool();
+        pool.close();
+        Socket socket = new Socket();
+
+        pool.release(ADDRESS, socket);
+
+        assertThat(socket.isClosed()).isTrue();
+        assertThat(pool.acquire(ADDRESS)).isNull();
+    }
+
+}
@@ -0,0 +1,93 @@
+package net.oneandone.httpselftest.http;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.oneandone.httpselftest.common.Pair;
+
+public class HpackTest {
+
+    // https://tools.ietf.org/html/rfc7541#appendix-C.1.2
+    @Test
+    public void integerWithPrefixOverflow() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Hpack.writeInteger(out, 0, 5, 1337);
+
+        assertThat(out.toByteArray()).containsExactly(0x1f, 0x9a, 0x0a);
+        assertThat(Hpack.Decoder.readInteger(out.toByteArray(), new int[1], 5)).isEqualTo(1337);
+    }
+
+    // https://tools.ietf.org/html/rfc7541#appendix-C.4
+    @Test
+    public void requestsWithHuffmanCodingAndDynamicTable() {
+        Hpack.Decoder decoder = new Hpack.Decoder();
+
+        assertThat(lines(decoder.decode(hex("828684418cf1e3c2e5f23a6ba0ab90f4ff")))).containsExactly(":method: GET",
+                ":scheme: http", ":path: /", ":authority: www.example.com");
+        assertThat(lines(decoder.decode(hex("828684be5886a8eb10649cbf")))).containsExactly(":method: GET", ":scheme: http",
+                ":path: /", ":authority: www.example.com", "cache-control: no-cache");
+        assertThat(lines(decoder.decode(hex("828785bf408825a849e95ba97d7f8925a849e95bb8e8b4bf")))).containsExactly(
+                ":method: GET", ":scheme: https", ":path: /index.html", ":authority: www.example.com",
+                "custom-key: custom-value");
+    }
+
+    @Test
+    public void encodedFieldsDecode() {
+        List<Pair<String, String>> fields = Arrays.asList(field(":method", "POST"), field(":path", "/a?b=c"),
+                field("content-type", "text/plain"), field("x-custom", "value"));
+
+        assertThat(lines(new Hpack.Decoder().decode(Hpack.encode(fields)))).containsExactlyElementsOf(lines(fields));
+    }
+
+    @Test
+    public void huffmanDecodesEveryByte() {
+        byte[] all = new byte[256];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = (byte) i;
+        }
+        ByteBuffer encoded = ByteBuffer.allocate(1024);
+        org.eclipse.jetty.http2.hpack.Huffman.encode(encoded, all);
+        encoded.flip();
+        byte[] bytes = new byte[encoded.remaining()];
+        encoded.get(bytes);
+
+        assertThat(Hpack.Huffman.decode(bytes)).containsExactly(all);
+    }
+
+    @Test
+    public void invalidHuffmanPadding() {
+        assertThatThrownBy(() -> Hpack.Huffman.decode(new byte[] { 0x00 })).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("padding");
+    }
+
+    @Test
+    public void invalidIndex() {
+        assertThatThrownBy(() -> new Hpack.Decoder().decode(hex("be"))).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("index: 62");
+    }
+
+    private static Pair<String, String> field(String name, String value) {
+        return new Pair<>(name, value);
+    }
+
+    private static List<String> lines(List<Pair<String, String>> fields) {
+        return fields.stream().map(field -> field.left + ": " + field.right).collect(toList());
+    }
+
+    private static byte[] hex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+}
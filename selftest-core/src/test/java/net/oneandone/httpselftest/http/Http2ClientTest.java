@@ -0,0 +1,180 @@
+package net.oneandone.httpselftest.http;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.any;
+import static com.github.tomakehurst.wiremock.client.WireMock.anyRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.anyUrl;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import com.github.tomakehurst.wiremock.verification.LoggedRequest;
+
+import net.oneandone.httpselftest.http.presenter.Http2FramePresenter;
+
+public class Http2ClientTest {
+
+    @RegisterExtension
+    public WireMockExtension wire = WireMockExtension.newInstance().options(wireMockConfig().dynamicPort()).build();
+
+    private String baseUrl;
+
+    private Http2ConnectionPool pool;
+
+    private Http2Client client;
+
+    @BeforeEach
+    public void setup() {
+        baseUrl = "http://localhost:" + wire.getPort() + "/prefix/";
+        wire.stubFor(any(anyUrl()).willReturn(aResponse().withStatus(200).withHeader("X-Answer", "42").withBody("body")));
+        pool = new Http2ConnectionPool();
+        client = new Http2Client(HttpClients.DEFAULT_MAX_BODY_BYTES, pool);
+    }
+
+    @AfterEach
+    public void cleanup() {
+        pool.close();
+        assertThat(wire.findAllUnmatchedRequests()).isEmpty();
+    }
+
+    @Test
+    public void getRequest() {
+        Headers headers = new Headers();
+        headers.add("Accept", "text/plain");
+
+        WrappedResponse response = client.call(baseUrl, wrapped(new TestRequest("path", "GET", headers)), 1000);
+
+        LoggedRequest request = wire.findAll(anyRequestedFor(anyUrl())).get(0);
+        assertThat(request.getUrl()).isEqualTo("/prefix/path");
+        assertThat(request.getHeader("Accept")).isEqualTo("text/plain");
+        assertThat(response.response.getStatus()).isEqualTo(200);
+        assertThat(response.response.getHeader("X-Answer")).isEqualTo("42");
+        assertThat(response.response.getBody()).isEqualTo("body");
+    }
+
+    @Test
+    public void postRequestWithBody() {
+        String body = "!\"§$%&/()=?ßüäö²³µ|^°'`~";
+
+        client.call(baseUrl, wrapped(new TestRequest("path", "POST", new Headers(), body)), 1000);
+
+        LoggedRequest request = wire.findAll(anyRequestedFor(anyUrl())).get(0);
+        assertThat(request.getBody()).isEqualTo(body.getBytes(UTF_8));
+        assertThat(request.getHeader("Content-Length")).isEqualTo(String.valueOf(body.getBytes(UTF_8).length));
+    }
+
+    @Test
+    public void largeBodiesInBothDirections() {
+        char[] chars = new char[200_000];
+        Arrays.fill(chars, 'x');
+        String large = new String(chars);
+        wire.stubFor(any(anyUrl()).willReturn(aResponse().withStatus(200).withBody(large)));
+
+        WrappedResponse response = client.call(baseUrl, wrapped(new TestRequest("path", "POST", new Headers(), large)), 2000);
+
+        assertThat(wire.findAll(anyRequestedFor(anyUrl())).get(0).getBody()).hasSize(200_000);
+        assertThat(response.response.getBody()).hasSize(200_000);
+    }
+
+    @Test
+    public void requestsShareOneConnection() throws Exception {
+        int requests = 20;
+        wire.stubFor(any(anyUrl()).willReturn(aResponse().withStatus(200).withBody("body").withFixedDelay(100)));
+        ExecutorService callers = Executors.newFixedThreadPool(requests);
+        try {
+            List<Future<WrappedResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                responses.add(callers.submit(() -> client.call(baseUrl, wrapped(new TestRequest("path", "GET")), 5000)));
+            }
+            for (Future<WrappedResponse> response : responses) {
+                assertThat(response.get().response.getBody()).isEqualTo("body");
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+
+        assertThat(pool.connectionCount()).isEqualTo(1);
+        assertThat(wire.findAll(anyRequestedFor(anyUrl()))).hasSize(requests);
+    }
+
+    @Test
+    public void frameDump() {
+        WrappedRequest request = wrapped(new TestRequest("path", "GET"));
+
+        WrappedResponse response = client.call(baseUrl, request, 1000);
+
+        String requestDump = new Http2FramePresenter().parse(null, request.getDetails()).get();
+        assertThat(requestDump).startsWith("HEADERS stream=1 length=").contains("flags=END_STREAM|END_HEADERS")
+                .contains("    :method: GET\n    :scheme: http\n").contains("    :path: /prefix/path\n");
+        String responseDump = new Http2FramePresenter().parse(null, response.responseDetails).get();
+        assertThat(responseDump).contains("    :status: 200\n").contains("    x-answer: 42\n").contains("DATA stream=1");
+        assertThat(response.responseDetails.headerBlock()).startsWith("HTTP/2 200\n").contains("x-answer: 42\n");
+        assertThat(response.responseDetails.bodyBlock()).isEqualTo("body");
+        assertThat(request.getDetails().headerBlock()).startsWith("GET /prefix/path HTTP/2\n");
+    }
+
+    @Test
+    public void phaseTimings() {
+        wire.stubFor(any(anyUrl()).willReturn(aResponse().withStatus(200).withBody("body").withFixedDelay(100)));
+
+        PhaseTimings timings = client.call(baseUrl, wrapped(new TestRequest("path", "GET")), 1000).timings;
+
+        assertThat(timings.firstByteMicros).isGreaterThanOrEqualTo(100_000);
+        assertThat(timings.connectMicros).isLessThan(100_000);
+        assertThat(timings.bodyMicros).isLessThan(100_000);
+    }
+
+    @Test
+    public void timeoutKeepsConnectionUsable() {
+        wire.stubFor(any(anyUrl()).willReturn(aResponse().withStatus(200).withFixedDelay(1500)));
+
+        assertThatThrownBy(() -> client.call(baseUrl, wrapped(new TestRequest("path", "GET")), 300))
+                .isInstanceOf(HttpException.class).hasCauseInstanceOf(SocketTimeoutException.class);
+
+        wire.stubFor(any(anyUrl()).willReturn(aResponse().withStatus(204)));
+        assertThat(client.call(baseUrl, wrapped(new TestRequest("path", "GET")), 1000).response.getStatus()).isEqualTo(204);
+        assertThat(pool.connectionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void bodyExceedsMaximum() {
+        assertThatThrownBy(() -> new Http2Client(3, pool).call(baseUrl, wrapped(new TestRequest("path", "GET")), 1000))
+                .isInstanceOf(HttpException.class).hasMessageContaining("exceeds maximum size of 3 bytes");
+    }
+
+    @Test
+    public void connectionSpecificHeadersAreRejected() {
+        Headers headers = new Headers();
+        headers.add("Connection", "close");
+
+        assertThatThrownBy(() -> client.call(baseUrl, wrapped(new TestRequest("path", "GET", headers)), 1000))
+                .isInstanceOf(HttpException.class).hasMessageContaining("not allowed in HTTP/2: Connection");
+    }
+
+    @Test
+    public void unboundPort() {
+        assertThatThrownBy(() -> client.call("http://localhost:" + (wire.getPort() + 1) + "/", wrapped(
+                new TestRequest("path", "GET")), 1000)).hasRootCauseExactlyInstanceOf(ConnectException.class);
+    }
+
+    private static WrappedRequest wrapped(TestRequest request) {
+        return new WrappedRequest(request);
+    }
+
+}
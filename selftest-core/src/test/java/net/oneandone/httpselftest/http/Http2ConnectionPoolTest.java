@@ -0,0 +1,105 @@
+package net.oneandone.httpselftest.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class Http2ConnectionPoolTest {
+
+    @Test
+    public void unusableConnectionIsClosedWhenReplaced() throws Exception {
+        try (ServerSocket server = new ServerSocket(0); Http2ConnectionPool pool = new Http2ConnectionPool()) {
+            CountDownLatch firstClosed = new CountDownLatch(1);
+            Thread serverThread = new Thread(() -> goAwayAndAwaitClose(server, firstClosed));
+            serverThread.setDaemon(true);
+            serverThread.start();
+            InetSocketAddress address = new InetSocketAddress("localhost", server.getLocalPort());
+
+            Http2Connection first = pool.acquire(address, 1000);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            while (first.isUsable() && System.nanoTime() - deadline < 0) {
+                Thread.sleep(10);
+            }
+            assertThat(first.isUsable()).as("usable after GOAWAY").isFalse();
+            Http2Connection second = pool.acquire(address, 1000);
+
+            assertThat(second).isNotSameAs(first);
+            assertThat(pool.connectionCount()).isEqualTo(1);
+            assertThat(firstClosed.await(2, TimeUnit.SECONDS)).as("first connection closed").isTrue();
+        }
+    }
+
+    @Test
+    public void slowConnectDoesNotBlockOtherAddresses() throws Exception {
+        InetSocketAddress slow = new InetSocketAddress("localhost", 1);
+        CountDownLatch connecting = new CountDownLatch(1);
+        CountDownLatch giveUp = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try (ServerSocket server = new ServerSocket(0);
+                Http2ConnectionPool pool = new Http2ConnectionPool((address, timeoutMillis) -> {
+                    if (address.equals(slow)) {
+                        connecting.countDown();
+                        await(giveUp);
+                        throw new ConnectException("gave up");
+                    }
+                    return Http2Connection.open(address, timeoutMillis);
+                })) {
+            InetSocketAddress fast = new InetSocketAddress("localhost", server.getLocalPort());
+
+            Future<Http2Connection> slowConnection = callers.submit(() -> pool.acquire(slow, 1000));
+            assertThat(connecting.await(2, TimeUnit.SECONDS)).isTrue();
+            Http2Connection fastConnection = callers.submit(() -> pool.acquire(fast, 1000)).get(2, TimeUnit.SECONDS);
+
+            assertThat(fastConnection.isUsable()).isTrue();
+            giveUp.countDown();
+            assertThatThrownBy(slowConnection::get).isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(ConnectException.class);
+        } finally {
+            giveUp.countDown();
+            callers.shutdownNow();
+        }
+    }
+
+    // announces to close the first connection, then waits for the client to close it
+    private static void goAwayAndAwaitClose(ServerSocket server, CountDownLatch closed) {
+        try (Socket socket = server.accept()) {
+            OutputStream out = socket.getOutputStream();
+            new Http2Frame(Http2Frame.SETTINGS, 0, 0, new byte[0]).write(out);
+            new Http2Frame(Http2Frame.GOAWAY, 0, 0, new byte[8]).write(out); // last stream 0, NO_ERROR
+            out.flush();
+            InputStream in = socket.getInputStream();
+            while (in.read() >= 0) {
+                // preface and settings of the client
+            }
+            closed.countDown();
+        } catch (IOException e) {
+            closed.countDown(); // reset by the client
+        }
+    }
+
+    private static void await(CountDownLatch latch) throws InterruptedIOException {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+}
@@ -0,0 +1,277 @@
+package net.oneandone.httpselftest.http;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.any;
+import static com.github.tomakehurst.wiremock.client.WireMock.anyRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.anyUrl;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.github.tomakehurst.wiremock.http.Fault;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import com.github.tomakehurst.wiremock.verification.LoggedRequest;
+
+public class NioHttpClientTest {
+
+    @RegisterExtension
+    public WireMockExtension wire = WireMockExtension.newInstance().options(wireMockConfig().dynamicPort()).build();
+
+    private String baseUrl;
+
+    private SelectorLoop loop;
+
+    private NioHttpClient client;
+
+    private SocketMock socketMock;
+    private String baseUrlSocket;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        baseUrl = "http://localhost:" + wire.getPort() + "/prefix/";
+        wire.stubFor(any(anyUrl()).willReturn(aResponse().withStatus(200)));
+        loop = new SelectorLoop();
+        client = new NioHttpClient(HttpClients.DEFAULT_MAX_BODY_BYTES, loop);
+
+        socketMock = new SocketMock();
+        baseUrlSocket = "http://localhost:" + socketMock.port() + "/prefix/";
+    }
+
+    @AfterEach
+    public void cleanup() throws Exception {
+        socketMock.close();
+        loop.close();
+        assertThat(wire.findAllUnmatchedRequests()).isEmpty();
+    }
+
+    @Test
+    public void minimalRequest() {
+        TestResponse response = client.call(baseUrl, wrapped(new TestRequest("path", "GET")), 1000).response;
+
+        LoggedRequest request = wire.findAll(getRequestedFor(anyUrl())).get(0);
+        assertThat(request.getUrl()).isEqualTo("/prefix/path");
+        assertThat(request.getHeader("Host")).isEqualTo("localhost:" + wire.getPort());
+        assertThat(response.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    public void requestLayoutMatchesSocketClient() {
+        socketMock.replyWith("HTTP/1.1 200 OK\r\n\r\n");
+
+        client.call(baseUrlSocket, wrapped(new TestRequest("path", "POST", new Headers(), "body")), 1000);
+
+        assertThat(socketMock.requested()).isEqualTo("POST /prefix/path HTTP/1.1\r\n" //
+                + "Host: localhost:" + socketMock.port() + "\r\n" //
+                + "Content-Length: 4\r\n" //
+                + "\r\n" //
+                + "body");
+    }
+
+    @Test
+    public void requestAndResponseDetails() {
+        WrappedRequest request = wrapped(new TestRequest("path", "POST", new Headers(), "request corgi"));
+        wire.stubFor(any(anyUrl()).willReturn(aResponse().withStatus(200).withBody("reeesponse body")));
+
+        WrappedResponse response = client.call(baseUrl, request, 1000);
+
+        assertThat(request.getDetails().bodyBlock()).isEqualTo("request corgi");
+        assertThat(response.response.getBody()).isEqualTo("reeesponse body");
+        assertThat(response.responseDetails.bodyBlock()).isEqualTo("reeesponse body");
+        assertThat(response.responseDetails.headerBlock()).startsWith("HTTP/1.1 200 ").contains("Transfer-Encoding: chunked");
+    }
+
+    @Test
+    public void responseParsing_contentLengthStopsReading() {
+        socketMock.replyWith("HTTP/1.1 200 OK\r\n" //
+                + "Content-Length: 7\r\n" //
+                + "\r\n" //
+                + "autobahn"); // 8 instead of 7 bytes
+
+        TestResponse response = client.call(baseUrlSocket, wrapped(simpleGet()), 1000).response;
+
+        assertThat(response.getBody()).isEqualTo("autobah");
+    }
+
+    @Test
+    public void responseParsing_chunkedEncoding() {
+        socketMock.replyWith("HTTP/1.1 200 OK\r\n" //
+                + "Transfer-Encoding: chunked\r\n" //
+                + "\r\n" //
+                + "4\r\nauto\r\n" //
+                + "4\r\nbahn\r\n" //
+                + "0\r\n\r\n");
+
+        WrappedResponse response = client.call(baseUrlSocket, wrapped(simpleGet()), 1000);
+
+        assertThat(response.response.getBody()).isEqualTo("autobahn");
+        WireBasedHttpDetails details = (WireBasedHttpDetails) response.responseDetails;
+        assertThat(new String(details.headerBytes, UTF_8)).isEqualTo("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n");
+    }
+
+    @Test
+    public void responseParsing_largeChunkedBody() {
+        StringBuilder wire = new StringBuilder("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n");
+        for (int i = 0; i < 10_000; i++) {
+            wire.append("a\r\n0123456789\r\n");
+        }
+        socketMock.replyWith(wire.append("0\r\n\r\n").toString());
+
+        WrappedResponse response = client.call(baseUrlSocket, wrapped(simpleGet()), 1000);
+
+        assertThat(((WireBasedHttpDetails) response.responseDetails).bodyBytes).hasSize(100_000);
+    }
+
+    @Test
+    public void responseWithLargeBody() {
+        char[] chars = new char[3_000_000];
+        Arrays.fill(chars, 'x');
+        wire.stubFor(any(anyUrl()).willReturn(aResponse().withStatus(200).withBody(new String(chars))));
+
+        WrappedResponse response = client.call(baseUrl, wrapped(simpleGet()), 2000);
+
+        assertThat(((WireBasedHttpDetails) response.responseDetails).bodyBytes).hasSize(3_000_000);
+    }
+
+    @Test
+    public void responseWithoutBodyOnHead() {
+        wire.stubFor(any(anyUrl()).willReturn(aResponse().withStatus(200).withBody("body")));
+
+        TestResponse response = client.call(baseUrl, wrapped(new TestRequest("path", "HEAD")), 1000).response;
+
+        assertThat(response.getBody()).isEqualTo("");
+    }
+
+    @Test
+    public void responseParsing_contentLengthExceedsMaximum() {
+        socketMock.replyWith("HTTP/1.1 200 OK\r\n" //
+                + "Content-Length: 9\r\n" //
+                + "\r\n" //
+                + "123456789");
+
+        assertThatThrownBy(() -> new NioHttpClient(8, loop).call(baseUrlSocket, wrapped(simpleGet()), 1000))
+                .isInstanceOf(HttpException.class).hasMessageContaining("exceeds maximum size of 8 bytes");
+    }
+
+    @Test
+    public void responseParsing_lessBytesThanAdvertised() {
+        socketMock.replyWith("HTTP/1.1 200 OK\r\n" //
+                + "Content-Length: 9\r\n" //
+                + "\r\n" //
+                + "12345678"); // missing one byte
+
+        assertThatThrownBy(() -> client.call(baseUrlSocket, wrapped(simpleGet()), 1000))
+                .isInstanceOfSatisfying(HttpException.class, e -> assertThat(e.getBytes()).hasSize(46))
+                .hasRootCauseExactlyInstanceOf(SocketTimeoutException.class);
+    }
+
+    @Test
+    public void streamingIsNotSupported() {
+        StreamingBody streaming = new StreamingBody(0, 0, (response, body) -> {
+        });
+
+        assertThatThrownBy(() -> client.call(baseUrl, new WrappedRequest(simpleGet(), streaming), 1000))
+                .isInstanceOf(HttpException.class).hasMessageContaining("does not support streaming");
+    }
+
+    @Test
+    public void unboundPort() {
+        int unboundPort = socketMock.port() + 1;
+
+        assertThatThrownBy(() -> client.call("http://localhost:" + unboundPort + "/prefix", wrapped(simpleGet()), 1000))
+                .hasRootCauseExactlyInstanceOf(ConnectException.class);
+    }
+
+    @Test
+    public void timeout() {
+        wire.stubFor(any(anyUrl()).willReturn(aResponse().withStatus(200).withFixedDelay(1500)));
+
+        assertThatThrownBy(() -> client.call(baseUrl, wrapped(simpleGet()), 500)).isInstanceOfSatisfying(HttpException.class,
+                e -> assertThat(e.getBytes()).isEmpty()).hasCauseInstanceOf(SocketTimeoutException.class);
+    }
+
+    @Test
+    public void faultEmptyResponse() {
+        wire.stubFor(any(anyUrl()).willReturn(aResponse().withStatus(200).withFault(Fault.EMPTY_RESPONSE)));
+
+        assertThatThrownBy(() -> client.call(baseUrl, wrapped(simpleGet()), 1000)).isInstanceOf(HttpException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void phaseTimings() {
+        wire.stubFor(any(anyUrl()).willReturn(aResponse().withStatus(200).withBody("body").withFixedDelay(100)));
+
+        PhaseTimings timings = client.call(baseUrl, wrapped(simpleGet()), 1000).timings;
+
+        assertThat(timings).isNotNull();
+        assertThat(timings.firstByteMicros).isGreaterThanOrEqualTo(100_000);
+        assertThat(timings.connectMicros).isLessThan(100_000);
+        assertThat(timings.bodyMicros).isLessThan(100_000);
+    }
+
+    @Test
+    public void concurrentRequestsShareTheLoop() throws Exception {
+        int requests = 20;
+        wire.stubFor(any(anyUrl()).willReturn(aResponse().withStatus(200).withBody("body").withFixedDelay(200)));
+        ExecutorService callers = Executors.newFixedThreadPool(requests);
+        try {
+            long start = System.nanoTime();
+            List<Future<WrappedResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                responses.add(callers.submit(() -> client.call(baseUrl, wrapped(simpleGet()), 5000)));
+            }
+            for (Future<WrappedResponse> response : responses) {
+                assertThat(response.get().response.getBody()).isEqualTo("body");
+            }
+
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(requests * 200);
+            assertThat(wire.findAll(anyRequestedFor(anyUrl()))).hasSize(requests);
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void closingTheLoopFailsRequestsInFlight() throws Exception {
+        wire.stubFor(any(anyUrl()).willReturn(aResponse().withStatus(200).withFixedDelay(2000)));
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<WrappedResponse> response = caller.submit(() -> client.call(baseUrl, wrapped(simpleGet()), 5000));
+            Thread.sleep(100);
+
+            loop.close();
+
+            assertThatThrownBy(() -> response.get(1, TimeUnit.SECONDS)).hasRootCauseMessage("selector loop closed");
+            assertThatThrownBy(() -> client.call(baseUrl, wrapped(simpleGet()), 1000)).isInstanceOf(HttpException.class)
+                    .hasRootCauseMessage("selector loop is closed");
+        } finally {
+            caller.shutdownNow();
+        }
+    }
+
+    private static WrappedRequest wrapped(TestRequest request) {
+        return new WrappedRequest(request);
+    }
+
+    private static TestRequest simpleGet() {
+        return new TestRequest("path", "GET");
+    }
+
+}
@@ -10,12 +10,18 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
 import org.junit.jupiter.api.AfterEach;
@@ -56,7 +62,8 @@ public class SocketHttpClientTest {
     }
 
     @AfterEach
-    public void cleanup() {
+    public void cleanup() throws Exception {
+        socketMock.close();
         assertThat(wire.findAllUnmatchedRequests()).isEmpty();
     }
 
@@ -110,6 +117,21 @@ public class SocketHttpClientTest {
         return Arrays.asList(characters.split("")).stream();
     }
 
+    @Test
+    public void phaseTimings() throws Exception {
+        wire.stubFor(any(anyUrl()).willReturn(aResponse().withStatus(200).withBody("body").withFixedDelay(100)));
+
+        TestRequest request = new TestRequest("path", "POST", new Headers(), "request");
+
+        PhaseTimings timings = client.call(baseUrl, wrapped(request), 1000).timings;
+
+        assertThat(timings).isNotNull();
+        assertThat(timings.firstByteMicros).isGreaterThanOrEqualTo(100_000);
+        assertThat(timings.connectMicros).isLessThan(100_000);
+        assertThat(timings.sendMicros).isLessThan(100_000);
+        assertThat(timings.bodyMicros).isLessThan(100_000);
+    }
+
     @Test
     public void minimalRequest_noBody_noHeaders() {
         stub(200);
@@ -205,6 +227,85 @@ public class SocketHttpClientTest {
         assertThat(response.getBody()).isEqualTo("autobahn");
     }
 
+    @Test
+    public void responseParsing_chunkedEncoding() {
+        socketMock.replyWith("HTTP/1.1 200 OK\r\n" //
+                + "Transfer-Encoding: chunked\r\n" //
+                + "\r\n" //
+                + "4\r\nauto\r\n" //
+                + "4\r\nbahn\r\n" //
+                + "0\r\n\r\n");
+
+        WrappedResponse response = client.call(baseUrlSocket, wrapped(simpleGet()), 1000);
+
+        assertThat(response.response.getBody()).isEqualTo("autobahn");
+        WireBasedHttpDetails details = (WireBasedHttpDetails) response.responseDetails;
+        assertThat(new String(details.headerBytes, UTF_8)).isEqualTo("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n");
+        assertThat(new String(details.bodyBytes, UTF_8)).isEqualTo("autobahn");
+    }
+
+    @Test
+    public void responseParsing_headerValueContainingColon() {
+        socketMock.replyWith("HTTP/1.1 200 OK\r\n" //
+                + "Location: http://localhost:8080/path\r\n" //
+                + "Content-Length: 0\r\n" //
+                + "\r\n");
+
+        TestResponse response = client.call(baseUrlSocket, wrapped(simpleGet()), 1000).response;
+
+        assertThat(response.getHeader("Location")).isEqualTo("http://localhost:8080/path");
+    }
+
+    @Test
+    public void responseWithLargeBody() {
+        char[] chars = new char[3_000_000];
+        Arrays.fill(chars, 'x');
+        String expectedBody = new String(chars);
+        stub(200, expectedBody);
+
+        WrappedResponse response = invoke(simpleGet());
+
+        assertThat(response.response.getBody()).isEqualTo(expectedBody);
+        assertThat(((WireBasedHttpDetails) response.responseDetails).bodyBytes).hasSize(3_000_000);
+    }
+
+    @Test
+    public void responseParsing_largeChunkedBody() {
+        StringBuilder wire = new StringBuilder("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n");
+        for (int i = 0; i < 10_000; i++) {
+            wire.append("a\r\n0123456789\r\n");
+        }
+        socketMock.replyWith(wire.append("0\r\n\r\n").toString());
+
+        WrappedResponse response = client.call(baseUrlSocket, wrapped(simpleGet()), 1000);
+
+        assertThat(((WireBasedHttpDetails) response.responseDetails).bodyBytes).hasSize(100_000);
+    }
+
+    @Test
+    public void responseParsing_contentLengthExceedsMaximum() {
+        socketMock.replyWith("HTTP/1.1 200 OK\r\n" //
+                + "Content-Length: 9\r\n" //
+                + "\r\n" //
+                + "123456789");
+
+        assertThatThrownBy(() -> new SocketHttpClient(8).call(baseUrlSocket, wrapped(simpleGet()), 1000))
+                .isInstanceOf(HttpException.class).hasMessageContaining("exceeds maximum size of 8 bytes");
+    }
+
+    @Test
+    public void responseParsing_chunkedBodyExceedsMaximum() {
+        socketMock.replyWith("HTTP/1.1 200 OK\r\n" //
+                + "Transfer-Encoding: chunked\r\n" //
+                + "\r\n" //
+                + "4\r\nauto\r\n" //
+                + "5\r\nbahns\r\n" //
+                + "0\r\n\r\n");
+
+        assertThatThrownBy(() -> new SocketHttpClient(8).call(baseUrlSocket, wrapped(simpleGet()), 1000))
+                .isInstanceOf(HttpException.class).hasMessageContaining("exceeds maximum size of 8 bytes");
+    }
+
     @Test
     public void unboundPort() {
         int unboundPort = socketMock.port() + 1;
@@ -416,6 +517,239 @@ public class SocketHttpClientTest {
         assertThat(req.details.bodyBlock()).isEqualTo("request body");
     }
 
+    @Test
+    public void keepAlive_reusesConnection() throws Exception {
+        stub(200, "body");
+        try (ConnectionPool pool = new ConnectionPool()) {
+            SocketHttpClient pooledClient = new SocketHttpClient(1000, pool);
+
+            WrappedResponse first = pooledClient.call(baseUrl, wrapped(simpleGet()), 2000);
+            assertThat(pool.idleCount()).isEqualTo(1);
+            WrappedResponse second = pooledClient.call(baseUrl, wrapped(simpleGet()), 2000);
+            assertThat(pool.idleCount()).isEqualTo(1);
+
+            for (WrappedResponse response : Arrays.asList(first, second)) {
+                WireBasedHttpDetails details = (WireBasedHttpDetails) response.responseDetails;
+                assertThat(new String(details.headerBytes, UTF_8)).startsWith("HTTP/1.1 200 ");
+                assertThat(new String(details.bodyBytes, UTF_8)).isEqualTo("body");
+            }
+        }
+        assertThat(wire.findAll(anyRequestedFor(anyUrl()))).hasSize(2);
+    }
+
+    @Test
+    public void keepAlive_connectionCloseIsHonored() throws Exception {
+        socketMock.replyWith("HTTP/1.1 200 OK\r\n" //
+                + "Connection: close\r\n" //
+                + "Content-Length: 0\r\n" //
+                + "\r\n");
+        try (ConnectionPool pool = new ConnectionPool()) {
+            new SocketHttpClient(1000, pool).call(baseUrlSocket, wrapped(simpleGet()), 1000);
+
+            assertThat(pool.idleCount()).isZero();
+        }
+    }
+
+    @Test
+    public void keepAlive_undelimitedBodyIsNotReused() throws Exception {
+        socketMock.replyWith("HTTP/1.1 200 OK\r\n\r\n");
+        try (ConnectionPool pool = new ConnectionPool()) {
+            new SocketHttpClient(1000, pool).call(baseUrlSocket, wrapped(simpleGet()), 1000);
+
+            assertThat(pool.idleCount()).isZero();
+        }
+    }
+
+    @Test
+    public void keepAlive_retriesOnConnectionClosedByServer() throws Exception {
+        try (ServerSocket server = new ServerSocket(0); ConnectionPool pool = new ConnectionPool()) {
+            AtomicInteger accepted = new AtomicInteger();
+            Thread serverThread = new Thread(() -> answerOnceAndClose(server, accepted));
+            serverThread.setDaemon(true);
+            serverThread.start();
+            String url = "http://localhost:" + server.getLocalPort() + "/";
+            SocketHttpClient pooledClient = new SocketHttpClient(1000, pool);
+
+            pooledClient.call(url, wrapped(simpleGet()), 1000);
+            assertThat(pool.idleCount()).isEqualTo(1);
+            WrappedResponse response = pooledClient.call(url, wrapped(simpleGet()), 1000);
+
+            assertThat(response.response.getBody()).isEqualTo("ok");
+            assertThat(accepted).hasValue(2);
+        }
+    }
+
+    @Test
+    public void keepAlive_timeoutIsNotRetried() throws Exception {
+        try (ServerSocket server = new ServerSocket(0); ConnectionPool pool = new ConnectionPool()) {
+            AtomicInteger requests = new AtomicInteger();
+            Thread serverThread = new Thread(() -> answerOnlyFirstRequest(server, requests, false));
+            serverThread.setDaemon(true);
+            serverThread.start();
+            String url = "http://localhost:" + server.getLocalPort() + "/";
+            SocketHttpClient pooledClient = new SocketHttpClient(1000, pool);
+
+            pooledClient.call(url, wrapped(simpleGet()), 1000);
+            assertThatThrownBy(() -> pooledClient.call(url, wrapped(simpleGet()), 300)).isInstanceOf(HttpException.class)
+                    .hasRootCauseExactlyInstanceOf(SocketTimeoutException.class);
+
+            assertThat(requests).hasValue(2);
+        }
+    }
+
+    @Test
+    public void keepAlive_postIsNotRetried() throws Exception {
+        try (ServerSocket server = new ServerSocket(0); ConnectionPool pool = new ConnectionPool()) {
+            AtomicInteger requests = new AtomicInteger();
+            Thread serverThread = new Thread(() -> answerOnlyFirstRequest(server, requests, true));
+            serverThread.setDaemon(true);
+            serverThread.start();
+            String url = "http://localhost:" + server.getLocalPort() + "/";
+            SocketHttpClient pooledClient = new SocketHttpClient(1000, pool);
+
+            pooledClient.call(url, wrapped(simpleGet()), 1000);
+            assertThat(pool.idleCount()).isEqualTo(1);
+            TestRequest post = new TestRequest("path", "POST", new Headers(), "order");
+            assertThatThrownBy(() -> pooledClient.call(url, wrapped(post), 1000)).isInstanceOf(HttpException.class);
+
+            Thread.sleep(100); // a retry would arrive on a new connection
+            assertThat(requests).hasValue(2);
+        }
+    }
+
+    @Test
+    public void streaming_chunkedBodyIsCapturedInWindows() {
+        StringBuilder wire = new StringBuilder("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n");
+        for (int i = 0; i < 10_000; i++) {
+            wire.append("a\r\n0123456789\r\n");
+        }
+        socketMock.replyWith(wire.append("0\r\n\r\n").toString());
+        AtomicInteger digits = new AtomicInteger();
+        StreamingBody streaming = new StreamingBody(5, 5, (response, body) -> {
+            assertThat(response.getHeader("Transfer-Encoding")).isEqualTo("chunked");
+            int read;
+            while ((read = body.read()) >= 0) {
+                if (Character.isDigit(read)) {
+                    digits.incrementAndGet();
+                }
+            }
+        });
+
+        WrappedResponse response = client.call(baseUrlSocket, new WrappedRequest(simpleGet(), streaming), 1000);
+
+        assertThat(digits).hasValue(100_000);
+        assertThat(streaming.length()).isEqualTo(100_000);
+        assertThat(streaming.failure()).isNull();
+        assertThat(response.response.getBody()).isNull();
+        assertThat(response.responseDetails.bodyBlock()).isEqualTo("01234\n[... 99990 bytes omitted ...]\n56789");
+    }
+
+    @Test
+    public void streaming_maximumBodySizeDoesNotApply() {
+        char[] chars = new char[3_000_000];
+        Arrays.fill(chars, 'x');
+        stub(200, new String(chars));
+        StreamingBody streaming = new StreamingBody(4, 0, (response, body) -> {
+            // leaves the body to be drained
+        });
+
+        WrappedResponse response = new SocketHttpClient(1000).call(baseUrl, new WrappedRequest(simpleGet(), streaming), 2000);
+
+        assertThat(streaming.length()).isEqualTo(3_000_000);
+        assertThat(response.responseDetails.bodyBlock()).isEqualTo("xxxx\n[... 2999996 bytes omitted ...]\n");
+    }
+
+    @Test
+    public void streaming_consumerFailureIsRecorded() {
+        socketMock.replyWith("HTTP/1.1 200 OK\r\nContent-Length: 8\r\n\r\nautobahn");
+        StreamingBody streaming = new StreamingBody(100, 100, (response, body) -> {
+            body.read(new byte[4]);
+            throw new AssertionException("no trains");
+        });
+
+        WrappedResponse response = client.call(baseUrlSocket, new WrappedRequest(simpleGet(), streaming), 1000);
+
+        assertThat(streaming.failure()).isInstanceOf(AssertionException.class).hasMessage("no trains");
+        assertThat(response.responseDetails.bodyBlock()).isEqualTo("autobahn");
+    }
+
+    @Test
+    public void streaming_connectionIsReusedAfterDraining() throws Exception {
+        stub(200, "body");
+        try (ConnectionPool pool = new ConnectionPool()) {
+            SocketHttpClient pooledClient = new SocketHttpClient(1000, pool);
+
+            pooledClient.call(baseUrl, new WrappedRequest(simpleGet(), new StreamingBody(0, 0, (response, body) -> {
+            })), 2000);
+            assertThat(pool.idleCount()).isEqualTo(1);
+            WrappedResponse second = pooledClient.call(baseUrl, wrapped(simpleGet()), 2000);
+
+            assertThat(second.response.getBody()).isEqualTo("body");
+        }
+    }
+
+    @Test
+    public void streaming_truncatedBodyFailsTheCall() {
+        socketMock.replyWith("HTTP/1.1 200 OK\r\nContent-Length: 9\r\n\r\n12345678");
+        StreamingBody streaming = new StreamingBody(100, 100, (response, body) -> {
+            try {
+                while (body.read() >= 0) {
+                    // consume
+                }
+            } catch (IOException e) {
+                // swallowed by the test case
+            }
+        });
+
+        assertThatThrownBy(() -> client.call(baseUrlSocket, new WrappedRequest(simpleGet(), streaming), 500))
+                .isInstanceOf(HttpException.class).hasRootCauseExactlyInstanceOf(SocketTimeoutException.class);
+    }
+
+    // answers each connection with a single keep-alive response, then closes it
+    private static void answerOnceAndClose(ServerSocket server, AtomicInteger accepted) {
+        try {
+            while (true) {
+                try (Socket socket = server.accept()) {
+                    accepted.incrementAndGet();
+                    awaitRequestHead(socket.getInputStream());
+                    socket.getOutputStream().write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok".getBytes(UTF_8));
+                }
+            }
+        } catch (IOException e) {
+            // server closed
+        }
+    }
+
+    // answers the first request of each connection with a keep-alive response, but not the following one
+    private static void answerOnlyFirstRequest(ServerSocket server, AtomicInteger requests, boolean closeWithoutAnswer) {
+        while (!server.isClosed()) {
+            try (Socket socket = server.accept()) {
+                InputStream in = socket.getInputStream();
+                awaitRequestHead(in);
+                requests.incrementAndGet();
+                socket.getOutputStream().write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok".getBytes(UTF_8));
+                awaitRequestHead(in);
+                requests.incrementAndGet();
+                while (!closeWithoutAnswer && in.read() >= 0) {
+                    // keep the connection open until the client gives up
+                }
+            } catch (IOException e) {
+                // client gave up or server closed
+            }
+        }
+    }
+
+    private static void awaitRequestHead(InputStream in) throws IOException {
+        int matched = 0;
+        while (matched < 4) {
+            int read = in.read();
+            if (read < 0) {
+                throw new EOFException();
+            }
+            matched = read == "\r\n\r\n".charAt(matched) ? matched + 1 : (read == '\r' ? 1 : 0);
+        }
+    }
+
     private LoggedRequest sentRequest() {
         List<LoggedRequest> sentRequests = wire.findAll(anyRequestedFor(anyUrl()));
         assertThat(sentRequests).as("sanity check: number of requests sent").hasSize(1);
@@ -13,11 +13,12 @@ import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class SocketMock {
+public class SocketMock implements AutoCloseable {
 
     private static final Logger LOG = LoggerFactory.getLogger(SocketMock.class);
 
     private final ServerSocket serverSocket;
+    private volatile Socket socket; // referenced until closed, so the client sees no end of stream before
     private volatile String payloadToReturn;
     private volatile byte[] receivedBytes;
 
@@ -26,7 +27,7 @@ public class SocketMock {
         serverSocket.bind(null); // pick free port
         Thread socketHandler = new Thread(() -> {
             try {
-                Socket socket = serverSocket.accept();
+                socket = serverSocket.accept();
                 socket.setSoTimeout(250);
 
                 // read
@@ -52,7 +53,9 @@ public class SocketMock {
                     socket.close();
                 }
             } catch (IOException e) {
-                LOG.error("Unhandled exception in SocketMock.", e);
+                if (!serverSocket.isClosed()) { // not closed by the test
+                    LOG.error("Unhandled exception in SocketMock.", e);
+                }
             }
         });
         socketHandler.start();
@@ -70,6 +73,14 @@ public class SocketMock {
         return new String(receivedBytes, StandardCharsets.UTF_8);
     }
 
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        if (socket != null) {
+            socket.close();
+        }
+    }
+
     private static byte[] toArray(List<Byte> list) {
         Byte[] boxed = list.toArray(new Byte[0]);
         int len = boxed.length;
@@ -0,0 +1,122 @@
+package net.oneandone.httpselftest.http;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.jupiter.api.Test;
+
+public class StreamingBodyTest {
+
+    @Test
+    public void smallBodyIsCapturedCompletely() throws Exception {
+        StreamingBody streaming = drained(4, 4, "autobahn");
+
+        assertThat(captured(streaming)).isEqualTo("autobahn");
+        assertThat(streaming.length()).isEqualTo(8);
+    }
+
+    @Test
+    public void bodySpillingIntoTailIsCapturedCompletely() throws Exception {
+        assertThat(captured(drained(4, 6, "autobahn"))).isEqualTo("autobahn");
+    }
+
+    @Test
+    public void largeBodyIsCapturedInWindows() throws Exception {
+        StreamingBody streaming = drained(4, 4, "autobahn on a sunny day");
+
+        assertThat(captured(streaming)).isEqualTo("auto\n[... 15 bytes omitted ...]\n day");
+        assertThat(streaming.length()).isEqualTo(23);
+    }
+
+    @Test
+    public void tailWindowWrapsAround() throws Exception {
+        StreamingBody streaming = new StreamingBody(0, 3, (response, body) -> {
+            byte[] buffer = new byte[2];
+            while (body.read(buffer) >= 0) {
+                // two bytes at a time, so the ring buffer wraps in the middle of a read
+            }
+        });
+        streaming.consume(null, stream("abcdefg"));
+
+        assertThat(captured(streaming)).isEqualTo("\n[... 4 bytes omitted ...]\nefg");
+    }
+
+    @Test
+    public void emptyWindowsCaptureOnlyTheLength() throws Exception {
+        StreamingBody streaming = drained(0, 0, "autobahn");
+
+        assertThat(captured(streaming)).isEqualTo("\n[... 8 bytes omitted ...]\n");
+        assertThat(streaming.length()).isEqualTo(8);
+    }
+
+    @Test
+    public void unreadBytesAreDrained() throws Exception {
+        StreamingBody streaming = new StreamingBody(100, 0, (response, body) -> body.read());
+
+        streaming.consume(null, stream("autobahn"));
+
+        assertThat(captured(streaming)).isEqualTo("autobahn");
+    }
+
+    @Test
+    public void consumerFailureIsRecorded() throws Exception {
+        StreamingBody streaming = new StreamingBody(100, 0, (response, body) -> {
+            throw new IllegalStateException("consumer");
+        });
+
+        streaming.consume(null, stream("autobahn"));
+
+        assertThat(streaming.failure()).hasMessage("consumer");
+        assertThat(streaming.length()).isEqualTo(8);
+    }
+
+    @Test
+    public void readFailureIsRethrownEvenIfSwallowed() {
+        StreamingBody streaming = new StreamingBody(100, 0, (response, body) -> {
+            try {
+                body.read();
+            } catch (IOException e) {
+                // swallowed
+            }
+        });
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("wire");
+            }
+        };
+
+        assertThatThrownBy(() -> streaming.consume(null, failing)).isInstanceOf(IOException.class).hasMessage("wire");
+        assertThat(streaming.failure()).isNull();
+    }
+
+    @Test
+    public void negativeWindowsAreRejected() {
+        assertThatThrownBy(() -> new StreamingBody(-1, 0, (response, body) -> {
+        })).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static StreamingBody drained(int headBytes, int tailBytes, String body) throws Exception {
+        StreamingBody streaming = new StreamingBody(headBytes, tailBytes, (response, in) -> {
+            while (in.read() >= 0) {
+                // consume
+            }
+        });
+        streaming.consume(null, stream(body));
+        return streaming;
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(UTF_8));
+    }
+
+    private static String captured(StreamingBody streaming) {
+        return new String(streaming.captured(), UTF_8);
+    }
+
+}
@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -58,12 +59,28 @@ public class UrlConnectionHttpClientTest {
     }
 
     @AfterEach
-    public void cleanup() {
+    public void cleanup() throws Exception {
+        socketMock.close();
         assertThat(wire.findAllUnmatchedRequests()).isEmpty();
     }
 
     // TODO add tests for gzip, deflate, ..
 
+    @Test
+    public void phaseTimings() throws Exception {
+        wire.stubFor(any(anyUrl()).willReturn(aResponse().withStatus(200).withBody("body").withFixedDelay(100)));
+
+        TestRequest request = new TestRequest("path", "POST", new Headers(), "request");
+
+        PhaseTimings timings = client.call(baseUrl, wrapped(request), 1000).timings;
+
+        assertThat(timings).isNotNull();
+        assertThat(timings.firstByteMicros).isGreaterThanOrEqualTo(100_000);
+        assertThat(timings.connectMicros).isLessThan(100_000);
+        assertThat(timings.sendMicros).isLessThan(100_000);
+        assertThat(timings.bodyMicros).isLessThan(100_000);
+    }
+
     @Test
     public void minimalRequest_noBody_noHeaders() throws Exception {
         stub(200);
@@ -156,6 +173,25 @@ public class UrlConnectionHttpClientTest {
         assertThat(response.getBody()).isEqualTo(expectedBody);
     }
 
+    @Test
+    public void authenticationChallengeWithBodyOnRequestWithBody() throws Exception {
+        wire.stubFor(any(anyUrl()).willReturn(
+                aResponse().withStatus(401).withHeader("WWW-Authenticate", "Basic realm=\"selftest\"").withBody("denied")));
+
+        TestResponse response = invoke(new TestRequest("path", "POST", new Headers(), "request")).response;
+
+        assertThat(response.getStatus()).isEqualTo(401);
+        assertThat(response.getBody()).isEqualTo("denied");
+    }
+
+    @Test
+    public void responseBodyExceedsMaximum() throws Exception {
+        wire.stubFor(any(anyUrl()).willReturn(aResponse().withStatus(200).withBody("123456789")));
+
+        assertThatThrownBy(() -> new UrlConnectionHttpClient(8).call(baseUrl, wrapped(simpleGet()), 1000))
+                .isInstanceOf(HttpException.class).hasMessageContaining("exceeds maximum size of 8 bytes");
+    }
+
     @Test
     public void methodsWithBody() throws Exception {
         ArrayList<String> allowedWithBody = new ArrayList<>(ALL_HTTP_METHODS);
@@ -313,6 +349,40 @@ public class UrlConnectionHttpClientTest {
         assertThat(response.getBody()).isEqualTo("autobahn");
     }
 
+    @Test
+    public void streaming_bodyIsCapturedInWindows() {
+        socketMock.replyWith("HTTP/1.1 200 OK\r\n" //
+                + "Content-Length: 15\r\n" //
+                + "\r\n" //
+                + "autobahn corgis");
+        StringBuilder consumed = new StringBuilder();
+        StreamingBody streaming = new StreamingBody(4, 6, (response, body) -> {
+            byte[] buffer = new byte[4];
+            int read;
+            while ((read = body.read(buffer)) >= 0) {
+                consumed.append(new String(buffer, 0, read, UTF_8));
+            }
+        });
+
+        WrappedResponse response = client.call(baseUrlSocket, new WrappedRequest(simpleGet(), streaming), 1000);
+
+        assertThat(consumed.toString()).isEqualTo("autobahn corgis");
+        assertThat(response.response.getBody()).isNull();
+        assertThat(response.responseDetails.bodyBlock()).isEqualTo("auto\n[... 5 bytes omitted ...]\ncorgis");
+    }
+
+    @Test
+    public void streaming_errorStatusStreamsErrorBody() {
+        stub(500, "trouble");
+        AtomicReference<Integer> status = new AtomicReference<>();
+        StreamingBody streaming = new StreamingBody(100, 100, (response, body) -> status.set(response.getStatus()));
+
+        WrappedResponse response = client.call(baseUrl, new WrappedRequest(simpleGet(), streaming), 1000);
+
+        assertThat(status.get()).isEqualTo(500);
+        assertThat(response.responseDetails.bodyBlock()).isEqualTo("trouble");
+    }
+
     @Test
     public void unboundPort() {
         int unboundPort = socketMock.port() + 1;
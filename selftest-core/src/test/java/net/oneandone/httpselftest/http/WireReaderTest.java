@@ -0,0 +1,119 @@
+package net.oneandone.httpselftest.http;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class WireReaderTest {
+
+    @Test
+    public void readsLines() throws Exception {
+        WireReader reader = reader("first\r\nsecond\r\n\r\nrest");
+
+        assertThat(reader.readLine()).isEqualTo("first");
+        assertThat(reader.readLine()).isEqualTo("second");
+        assertThat(reader.readLine()).isEmpty();
+        assertThat(reader.position()).isEqualTo(17);
+    }
+
+    @Test
+    public void readsLinesSpreadOverManyReads() throws Exception {
+        WireReader reader = new WireReader(trickling("first\r\nsecond\r\n"));
+
+        assertThat(reader.readLine()).isEqualTo("first");
+        assertThat(reader.readLine()).isEqualTo("second");
+    }
+
+    @Test
+    public void streamingReadsDoNotGrowTheCapture() throws Exception {
+        WireReader reader = reader("head\r\nbody");
+        reader.readLine();
+        byte[] target = new byte[10];
+
+        reader.discardConsumed();
+        int read = reader.read(target, 0, 10);
+
+        assertThat(new String(target, 0, read, UTF_8)).isEqualTo("body");
+        assertThat(reader.read(target, 0, 10)).isEqualTo(-1);
+        assertThat(reader.captured()).isEmpty();
+    }
+
+    @Test
+    public void lineFeedAloneDoesNotEndLine() throws Exception {
+        WireReader reader = reader("a\nb\r\n");
+
+        assertThat(reader.readLine()).isEqualTo("a\nb");
+    }
+
+    @Test
+    public void endOfStreamBeforeCrLf() throws Exception {
+        WireReader reader = reader("no line ending\r");
+
+        assertThatThrownBy(reader::readLine).isInstanceOf(IllegalStateException.class).hasMessageContaining("before CRLF");
+    }
+
+    @Test
+    public void skipsBytes() throws Exception {
+        WireReader reader = new WireReader(trickling("line\r\n0123456789"));
+        reader.readLine();
+
+        int start = reader.skip(8);
+
+        assertThat(new String(reader.copy(start, start + 8), UTF_8)).isEqualTo("01234567");
+        assertThat(reader.position()).isEqualTo(14);
+    }
+
+    @Test
+    public void skipBeyondEndOfStream() throws Exception {
+        WireReader reader = reader("0123");
+
+        assertThatThrownBy(() -> reader.skip(5)).isInstanceOf(IllegalStateException.class).hasMessageContaining("expected: 5");
+    }
+
+    @Test
+    public void growsBeyondInitialCapacity() throws Exception {
+        char[] longLine = new char[100_000];
+        Arrays.fill(longLine, 'x');
+        WireReader reader = reader(new String(longLine) + "\r\n");
+
+        assertThat(reader.readLine()).hasSize(100_000);
+    }
+
+    @Test
+    public void failsBeyondMaximumSize() throws Exception {
+        WireReader reader = new WireReader(new ByteArrayInputStream("0123456789\r\n".getBytes(UTF_8)), 8);
+
+        assertThatThrownBy(reader::readLine).isInstanceOf(IllegalStateException.class).hasMessageContaining("maximum size of 8");
+    }
+
+    @Test
+    public void capturesEverythingRead() throws Exception {
+        WireReader reader = reader("line\r\nunconsumed");
+        reader.readLine();
+
+        assertThat(new String(reader.captured(), UTF_8)).isEqualTo("line\r\nunconsumed");
+    }
+
+    private static WireReader reader(String wire) {
+        return new WireReader(new ByteArrayInputStream(wire.getBytes(UTF_8)));
+    }
+
+    // returns a single byte per read, like a slow connection
+    private static InputStream trickling(String wire) {
+        return new FilterInputStream(new ByteArrayInputStream(wire.getBytes(UTF_8))) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+    }
+
+}
@@ -2,6 +2,7 @@ package net.oneandone.httpselftest.log;
 
 import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import java.util.Arrays;
 import java.util.HashSet;
@@ -24,6 +25,7 @@ public class AppenderTest {
     public void setup() {
         appender = new BoundedInMemoryAppender<>(RUN_IDS, "X-REQUEST-ID");
         MDC.remove("X-REQUEST-ID");
+        RequestMarker.clear();
     }
 
     @Test
@@ -79,6 +81,50 @@ public class AppenderTest {
         assertThat(appender.getBuffer("runId").snapshot().events).isEmpty();
     }
 
+    @Test
+    public void registersAndUnregistersRuns() throws Exception {
+        BoundedInMemoryAppender<String> appender = new BoundedInMemoryAppender<>("X-REQUEST-ID", 10);
+        Set<String> runIds = new HashSet<>(Arrays.asList("runId"));
+        markThreadWithSelftestRunId("runId");
+
+        appender.doAppend("beforeRegistration");
+        appender.register(runIds);
+        appender.doAppend("duringRun");
+        LogSnapshot snapshot = appender.getBuffer("runId").snapshot();
+        appender.unregister(runIds);
+
+        assertThat(snapshot.events).extracting(e -> e.event).containsExactly("duringRun");
+        assertThatThrownBy(() -> appender.getBuffer("runId")).hasMessageContainingAll("Unknown", "runId");
+    }
+
+    @Test
+    public void usesRequestMarkerInsteadOfMdc() throws Exception {
+        markThreadWithSelftestRunId("runId");
+        RequestMarker.mark(null);
+        appender.doAppend("markedWithoutRun");
+
+        MDC.remove("X-REQUEST-ID");
+        RequestMarker.mark("runId");
+        appender.doAppend("markedWithRun");
+
+        assertThat(appender.getBuffer("runId").snapshot().events).extracting(e -> e.event).containsExactly("markedWithRun");
+    }
+
+    @Test
+    public void countsExaminedAndCapturedEvents() throws Exception {
+        CaptureStatistics statistics = new CaptureStatistics();
+        BoundedInMemoryAppender<String> appender = new BoundedInMemoryAppender<>("X-REQUEST-ID", 10, statistics);
+
+        appender.doAppend("noRunRegistered");
+        appender.register(RUN_IDS);
+        appender.doAppend("unmarked");
+        markThreadWithSelftestRunId("runId");
+        appender.doAppend("marked");
+
+        assertThat(statistics.getExamined()).isEqualTo(2);
+        assertThat(statistics.getCaptured()).isEqualTo(1);
+    }
+
     private void markThreadWithSelftestRunId(String runId) {
         MDC.put("X-REQUEST-ID", runId);
     }
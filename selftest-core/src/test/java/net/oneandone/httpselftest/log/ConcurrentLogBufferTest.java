@@ -0,0 +1,145 @@
+package net.oneandone.httpselftest.log;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class ConcurrentLogBufferTest {
+
+    @Test
+    public void keepsEventsInOrder() {
+        ConcurrentLogBuffer buffer = new ConcurrentLogBuffer(3);
+
+        buffer.add(SelftestEvent.of("a"));
+        buffer.add(SelftestEvent.of("b"));
+
+        LogSnapshot snapshot = buffer.snapshot();
+        assertThat(payloads(snapshot)).containsExactly("a", "b");
+        assertThat(snapshot.hasOverflown).isFalse();
+    }
+
+    @Test
+    public void countsEventsAcrossSnapshots() {
+        ConcurrentLogBuffer buffer = new ConcurrentLogBuffer(1);
+
+        buffer.add(SelftestEvent.of("a"));
+        buffer.snapshot();
+        buffer.add(SelftestEvent.of("b"));
+        buffer.add(SelftestEvent.of("c"));
+
+        assertThat(buffer.eventCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void keepsLatestEventsOnOverflow() {
+        ConcurrentLogBuffer buffer = new ConcurrentLogBuffer(3);
+
+        for (int i = 0; i < 5; i++) {
+            buffer.add(SelftestEvent.of(i));
+        }
+
+        LogSnapshot snapshot = buffer.snapshot();
+        assertThat(payloads(snapshot)).containsExactly(2, 3, 4);
+        assertThat(snapshot.hasOverflown).isTrue();
+    }
+
+    @Test
+    public void exactlyFullIsNoOverflow() {
+        ConcurrentLogBuffer buffer = new ConcurrentLogBuffer(2);
+
+        buffer.add(SelftestEvent.of("a"));
+        buffer.add(SelftestEvent.of("b"));
+
+        assertThat(buffer.snapshot().hasOverflown).isFalse();
+    }
+
+    @Test
+    public void snapshotResetsBuffer() {
+        ConcurrentLogBuffer buffer = new ConcurrentLogBuffer(2);
+        buffer.add(SelftestEvent.of("a"));
+        buffer.add(SelftestEvent.of("b"));
+        buffer.add(SelftestEvent.of("c"));
+        buffer.snapshot();
+
+        buffer.add(SelftestEvent.of("d"));
+
+        LogSnapshot snapshot = buffer.snapshot();
+        assertThat(payloads(snapshot)).containsExactly("d");
+        assertThat(snapshot.hasOverflown).isFalse();
+        assertThat(buffer.snapshot().events).isEmpty();
+    }
+
+    @Test
+    public void concurrentWritersLoseNoEventsAcrossSnapshots() throws Exception {
+        int writers = 4;
+        int eventsPerWriter = 20_000;
+        ConcurrentLogBuffer buffer = new ConcurrentLogBuffer(writers * eventsPerWriter);
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < eventsPerWriter; i++) {
+                        buffer.add(SelftestEvent.of(writer * eventsPerWriter + i));
+                    }
+                    return null;
+                }));
+            }
+
+            Set<Object> seen = new HashSet<>();
+            start.countDown();
+            while (!futures.stream().allMatch(Future::isDone)) {
+                seen.addAll(payloads(buffer.snapshot()));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            seen.addAll(payloads(buffer.snapshot()));
+
+            assertThat(seen).hasSize(writers * eventsPerWriter);
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void countsLevelsIncludingDroppedEvents() {
+        ConcurrentLogBuffer buffer = new ConcurrentLogBuffer(2);
+
+        buffer.add(SelftestEvent.of("a", "ERROR"));
+        buffer.add(SelftestEvent.of("b", "INFO"));
+        buffer.add(SelftestEvent.of("c", "INFO"));
+
+        LogSnapshot snapshot = buffer.snapshot();
+        assertThat(snapshot.levelCounts).containsEntry("ERROR", 1).containsEntry("INFO", 2).hasSize(2);
+        assertThat(snapshot.allLevelsCounted).isTrue();
+        assertThat(buffer.snapshot().levelCounts).isEmpty();
+    }
+
+    @Test
+    public void rejectsInvalidCapacity() {
+        assertThatThrownBy(() -> new ConcurrentLogBuffer(0)).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("capacity");
+    }
+
+    private static List<Object> payloads(LogSnapshot snapshot) {
+        return snapshot.events.stream().map(e -> e.event).collect(toList());
+    }
+
+}
@@ -7,12 +7,13 @@ import org.junit.jupiter.api.Test;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class LogInfoTest {
 
     @Test
     public void snapshotWorksOnMultipleAppenders() throws Exception {
-        SynchronousLogBuffer theOnlyBuffer = new SynchronousLogBuffer();
+        ConcurrentLogBuffer theOnlyBuffer = new ConcurrentLogBuffer();
         theOnlyBuffer.add(SelftestEvent.of("log msg"));
         LogAccess log1 = new LogAccess(Collections.singletonList("appender1"), theOnlyBuffer, new EventRendererStub());
         LogAccess log2 = new LogAccess(Collections.singletonList("appender2"), theOnlyBuffer, new EventRendererStub());
@@ -26,4 +27,47 @@ public class LogInfoTest {
         assertThat(snapshot.get(1).logs.events.get(0).event).isEqualTo("log msg");
     }
 
+    @Test
+    public void linesAreRenderedOnce() throws Exception {
+        AtomicInteger layouts = new AtomicInteger();
+        EventRenderer countingRenderer = new EventRendererStub() {
+            @Override
+            public String doLayout(Object o) {
+                layouts.incrementAndGet();
+                return super.doLayout(o);
+            }
+        };
+        LogDetails details = new LogDetails(Collections.singletonList("appender"),
+                new LogSnapshot(Collections.singletonList(SelftestEvent.of("log msg")), false), countingRenderer);
+
+        assertThat(details.renderedLine(0)).isEqualTo("log msg");
+        assertThat(details.renderedLine(0)).isEqualTo("log msg");
+        assertThat(layouts.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void levelChecksUseCountsOfCapturedLevels() throws Exception {
+        ConcurrentLogBuffer buffer = new ConcurrentLogBuffer();
+        buffer.add(SelftestEvent.of("warning", "WARN"));
+        LogDetails details = new LogDetails(Collections.singletonList("appender"), buffer.snapshot(), new EventRendererStub());
+
+        assertThat(details.logs.allLevelsCounted).isTrue();
+        assertThat(details.hasEventOnLevel("WARN")).isTrue();
+        assertThat(details.hasEventOnLevel("ERROR")).isFalse();
+        assertThat(details.level(0)).isEqualTo("WARN");
+    }
+
+    @Test
+    public void levelChecksFallBackToRenderer() throws Exception {
+        ConcurrentLogBuffer buffer = new ConcurrentLogBuffer();
+        buffer.add(SelftestEvent.of("warning", "WARN"));
+        buffer.add(SelftestEvent.of("without level"));
+        LogDetails details = new LogDetails(Collections.singletonList("appender"), buffer.snapshot(), new EventRendererStub());
+
+        assertThat(details.logs.allLevelsCounted).isFalse();
+        assertThat(details.hasEventOnLevel("WARN")).isTrue();
+        assertThat(details.hasEventOnLevel("unknown")).isTrue();
+        assertThat(details.hasEventOnLevel("ERROR")).isFalse();
+    }
+
 }
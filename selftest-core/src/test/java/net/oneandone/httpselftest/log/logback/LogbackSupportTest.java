@@ -17,6 +17,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.slf4j.LoggerFactory;
@@ -50,44 +51,121 @@ public class LogbackSupportTest {
         countHolder = new AtomicInteger();
     }
 
+    @AfterEach
+    public void teardown() {
+        logbackSupport.stop();
+    }
+
     @Test
     public void test_appenderMapType() throws Exception {
         assertThat(getField(logbackSupport, "appenderMap")).isExactlyInstanceOf(IdentityHashMap.class);
     }
 
     @Test
-    public void test_singleAttachment() throws Exception {
+    public void test_attachedOnceAcrossRuns() throws Exception {
         assertNumSelftestAppenders(0);
+        logbackSupport.start();
+        assertNumSelftestAppenders(NUM_LOGGERS);
+
+        logbackSupport.runWithAttachedAppenders(REQUEST_IDS, this::storeAppenderCount);
+        assertNumSelftestAppendersWas(NUM_LOGGERS);
+        assertNumSelftestAppenders(NUM_LOGGERS);
+
         logbackSupport.runWithAttachedAppenders(REQUEST_IDS, this::storeAppenderCount);
         assertNumSelftestAppendersWas(NUM_LOGGERS);
+        assertNumSelftestAppenders(NUM_LOGGERS);
+
+        logbackSupport.stop();
         assertNumSelftestAppenders(0);
     }
 
     @Test
-    public void test_multiAttachment() throws Exception {
+    public void test_startIsIdempotent() throws Exception {
+        logbackSupport.start();
+        logbackSupport.start();
+        assertNumSelftestAppenders(NUM_LOGGERS);
+    }
+
+    @Test
+    public void test_runAttachesIfNotStarted() throws Exception {
         assertNumSelftestAppenders(0);
         logbackSupport.runWithAttachedAppenders(REQUEST_IDS, this::storeAppenderCount);
         assertNumSelftestAppendersWas(NUM_LOGGERS);
-        assertNumSelftestAppenders(0);
+        assertNumSelftestAppenders(NUM_LOGGERS);
+    }
+
+    @Test
+    public void test_attachmentWithAddionalLogger() throws Exception {
+        logbackSupport.start();
+        additivityLogger.setAdditive(false);
 
         logbackSupport.runWithAttachedAppenders(REQUEST_IDS, this::storeAppenderCount);
-        assertNumSelftestAppendersWas(NUM_LOGGERS);
-        assertNumSelftestAppenders(0);
+        assertNumSelftestAppendersWas(NUM_LOGGERS); // loggers are only looked up when attaching
+
+        logbackSupport.stop();
+        logbackSupport.start();
+        assertNumSelftestAppenders(NUM_LOGGERS + 1);
     }
 
     @Test
-    public void test_attachmentWithAddionalLogger() throws Exception {
+    public void test_reattachAfterReset() throws Exception {
+        logbackSupport.start();
+        allLogbackLoggers().forEach(logger -> { // what a logback reset does
+            attachedSelftestAppenders(logger).forEach(appender -> logger.detachAppender(appender.getName()));
+        });
         assertNumSelftestAppenders(0);
+
         logbackSupport.runWithAttachedAppenders(REQUEST_IDS, this::storeAppenderCount);
         assertNumSelftestAppendersWas(NUM_LOGGERS);
-        assertNumSelftestAppenders(0);
+    }
 
-        additivityLogger.setAdditive(false);
+    @Test
+    public void test_reattachDuringRun() throws Exception {
+        logbackSupport.start();
+        logbackSupport.runWithAttachedAppenders(new HashSet<>(Arrays.asList("id1")), () -> {
+            allLogbackLoggers().forEach(logger -> { // what a logback reset does
+                attachedSelftestAppenders(logger).forEach(appender -> logger.detachAppender(appender.getName()));
+            });
 
-        assertNumSelftestAppenders(0);
-        logbackSupport.runWithAttachedAppenders(REQUEST_IDS, this::storeAppenderCount);
-        assertNumSelftestAppendersWas(NUM_LOGGERS + 1);
-        assertNumSelftestAppenders(0);
+            logbackSupport.runWithAttachedAppenders(new HashSet<>(Arrays.asList("id2")), () -> {
+                List<LogAccess> accessors1 = logbackSupport.getLogs("id1");
+                List<LogAccess> accessors2 = logbackSupport.getLogs("id2");
+
+                logMsg(ROOT_LOGGER, "id1", "msg-a");
+                logMsg(ROOT_LOGGER, "id2", "msg-b");
+
+                assertMessage(LogAccess.snapshot(accessors1), asList("ROOT", "STDOUT"), "msg-a");
+                assertMessage(LogAccess.snapshot(accessors2), asList("ROOT", "STDOUT"), "msg-b");
+            });
+
+            List<LogAccess> accessors1 = logbackSupport.getLogs("id1");
+            logMsg(ROOT_LOGGER, "id1", "msg-c");
+            assertMessage(LogAccess.snapshot(accessors1), asList("ROOT", "STDOUT"), "msg-c");
+        });
+        assertNumSelftestAppenders(NUM_LOGGERS);
+        assertThatThrownBy(() -> logbackSupport.getLogs("id1")).hasMessageContainingAll("Unknown", "id1");
+    }
+
+    @Test
+    public void test_concurrentRuns() throws Exception {
+        logbackSupport.start();
+        logbackSupport.runWithAttachedAppenders(new HashSet<>(Arrays.asList("id1")), () -> {
+            logbackSupport.runWithAttachedAppenders(new HashSet<>(Arrays.asList("id2")), () -> {
+                List<LogAccess> accessors1 = logbackSupport.getLogs("id1");
+                List<LogAccess> accessors2 = logbackSupport.getLogs("id2");
+
+                logMsg(ROOT_LOGGER, "id1", "msg-a");
+                logMsg(ROOT_LOGGER, "id2", "msg-b");
+
+                List<LogDetails> snapshot1 = LogAccess.snapshot(accessors1);
+                assertMessage(snapshot1, asList("ROOT", "STDOUT"), "msg-a");
+                assertNumMessages(snapshot1, 1);
+                List<LogDetails> snapshot2 = LogAccess.snapshot(accessors2);
+                assertMessage(snapshot2, asList("ROOT", "STDOUT"), "msg-b");
+                assertNumMessages(snapshot2, 1);
+            });
+            assertThatThrownBy(() -> logbackSupport.getLogs("id2")).hasMessageContainingAll("Unknown", "id2");
+        });
     }
 
     @Test
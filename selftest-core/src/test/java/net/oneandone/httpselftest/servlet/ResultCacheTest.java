@@ -0,0 +1,129 @@
+package net.oneandone.httpselftest.servlet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.LinkedList;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.oneandone.httpselftest.servlet.ResultCache.Result;
+
+public class ResultCacheTest {
+
+    private static final Duration TTL = Duration.ofSeconds(10);
+
+    private MutableClock clock;
+    private Queue<Runnable> backgroundTasks;
+    private ResultCache cache;
+    private AtomicInteger runs;
+
+    @BeforeEach
+    public void setup() {
+        clock = new MutableClock();
+        backgroundTasks = new LinkedList<>();
+        cache = new ResultCache(TTL, backgroundTasks::add, clock);
+        runs = new AtomicInteger();
+    }
+
+    @Test
+    public void firstRequestRunsInForeground() {
+        Optional<Result> result = cache.get("key", countingRun());
+
+        assertThat(result).hasValueSatisfying(r -> assertThat(r.body).isEqualTo("run 1"));
+        assertThat(backgroundTasks).isEmpty();
+    }
+
+    @Test
+    public void freshResultIsServedWithoutRun() {
+        cache.get("key", countingRun());
+        clock.advance(TTL.minusMillis(1));
+
+        Optional<Result> result = cache.get("key", countingRun());
+
+        assertThat(result).hasValueSatisfying(r -> assertThat(r.body).isEqualTo("run 1"));
+        assertThat(cache.age(result.get())).isEqualTo(TTL.minusMillis(1));
+        assertThat(runs.get()).isEqualTo(1);
+        assertThat(backgroundTasks).isEmpty();
+    }
+
+    @Test
+    public void expiredResultIsServedWhileSingleRefreshRuns() {
+        cache.get("key", countingRun());
+        clock.advance(TTL);
+
+        assertThat(cache.get("key", countingRun())).hasValueSatisfying(r -> assertThat(r.body).isEqualTo("run 1"));
+        assertThat(cache.get("key", countingRun())).hasValueSatisfying(r -> assertThat(r.body).isEqualTo("run 1"));
+        assertThat(backgroundTasks).hasSize(1);
+
+        backgroundTasks.poll().run();
+
+        assertThat(cache.get("key", countingRun())).hasValueSatisfying(r -> assertThat(r.body).isEqualTo("run 2"));
+        assertThat(backgroundTasks).isEmpty();
+    }
+
+    @Test
+    public void keysAreCachedSeparately() {
+        cache.get("key1", countingRun());
+
+        assertThat(cache.get("key2", countingRun())).hasValueSatisfying(r -> assertThat(r.body).isEqualTo("run 2"));
+    }
+
+    @Test
+    public void runThatCouldNotStartIsNotCached() {
+        assertThat(cache.get("key", () -> null)).isEmpty();
+
+        assertThat(cache.get("key", countingRun())).hasValueSatisfying(r -> assertThat(r.body).isEqualTo("run 1"));
+    }
+
+    @Test
+    public void newKeyEvictsLeastRecentlyUsedOnceFull() {
+        for (int i = 0; i < ResultCache.MAX_ENTRIES; i++) {
+            cache.get("key" + i, countingRun());
+        }
+        cache.get("key0", countingRun()); // key1 is now the least recently used
+
+        assertThat(cache.get("oneTooMany", countingRun()).map(result -> result.body)).hasValue("run 17");
+        assertThat(cache.get("key0", countingRun()).map(result -> result.body)).hasValue("run 1");
+        assertThat(cache.get("key1", countingRun()).map(result -> result.body)).as("evicted, runs again").hasValue("run 18");
+        assertThat(runs).hasValue(18);
+    }
+
+    private Supplier<Result> countingRun() {
+        return () -> cache.newResult("run " + runs.incrementAndGet(), 200);
+    }
+
+    static class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2020-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+}
@@ -1,10 +1,14 @@
 package net.oneandone.httpselftest.servlet;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 import javax.servlet.FilterChain;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
@@ -19,6 +23,9 @@ import org.slf4j.MDC;
 import org.slf4j.spi.MDCAdapter;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import net.oneandone.httpselftest.log.RequestCompletion;
+import net.oneandone.httpselftest.log.RequestMarker;
+
 @ExtendWith(MockitoExtension.class)
 public class SelftestMDCFilterTest {
 
@@ -58,6 +65,35 @@ public class SelftestMDCFilterTest {
         verifyNoInteractions(mdcMock);
     }
 
+    @Test
+    public void requestIsMarkedDuringChain() throws Exception {
+        when(request.getHeader("X-REQUEST-ID")).thenReturn("runId1");
+        AtomicReference<String> markedRunId = new AtomicReference<>();
+        doAnswer(invocation -> {
+            markedRunId.set(RequestMarker.runId());
+            return null;
+        }).when(chain).doFilter(request, response);
+
+        filter.doFilter(request, response, chain);
+
+        assertThat(markedRunId.get()).isEqualTo("runId1");
+        assertThat(RequestMarker.runId()).isNull();
+    }
+
+    @Test
+    public void requestWithoutHeaderIsMarkedAsNoRun() throws Exception {
+        AtomicReference<String> markedRunId = new AtomicReference<>();
+        doAnswer(invocation -> {
+            markedRunId.set(RequestMarker.runId());
+            return null;
+        }).when(chain).doFilter(request, response);
+
+        filter.doFilter(request, response, chain);
+
+        assertThat(markedRunId.get()).isSameAs(RequestMarker.NO_RUN);
+        assertThat(RequestMarker.runId()).isNull();
+    }
+
     @Test
     public void mdcIsSetAndClearedWithHeader() throws Exception {
         when(request.getHeader("X-REQUEST-ID")).thenReturn("runId1");
@@ -69,4 +105,23 @@ public class SelftestMDCFilterTest {
         verifyNoMoreInteractions(mdcMock);
     }
 
+    @Test
+    public void completionIsSignalledAfterChain() throws Exception {
+        when(request.getHeader("X-REQUEST-ID")).thenReturn("runId1");
+        AtomicReference<Boolean> completedDuringChain = new AtomicReference<>();
+        doAnswer(invocation -> {
+            completedDuringChain.set(RequestCompletion.isCompleted("runId1"));
+            return null;
+        }).when(chain).doFilter(request, response);
+        RequestCompletion.register("runId1");
+        try {
+            filter.doFilter(request, response, chain);
+
+            assertThat(completedDuringChain.get()).isFalse();
+            assertThat(RequestCompletion.isCompleted("runId1")).isTrue();
+        } finally {
+            RequestCompletion.unregister("runId1");
+        }
+    }
+
 }
@@ -0,0 +1,115 @@
+package net.oneandone.httpselftest.servlet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.oneandone.httpselftest.servlet.ResultCacheTest.MutableClock;
+import net.oneandone.httpselftest.test.run.RunHistory;
+import net.oneandone.httpselftest.test.run.RunRecord;
+import net.oneandone.httpselftest.test.run.TestRunData;
+import net.oneandone.httpselftest.test.run.TestRunDataHelper;
+import net.oneandone.httpselftest.test.run.TestRunResult;
+
+public class SelftestSchedulerTest {
+
+    private MutableClock clock;
+    private RunHistory history;
+
+    @BeforeEach
+    public void setup() {
+        clock = new MutableClock();
+        history = new RunHistory(10);
+    }
+
+    @Test
+    public void runOnceRecordsOutcome() {
+        SelftestScheduler scheduler = new SelftestScheduler(history, writer -> {
+            TestRunData testRun = new TestRunData("test1", clock.instant(), "run1");
+            TestRunDataHelper.setResult(testRun, TestRunResult.success());
+            writer.writeTestOutcome(testRun, null, null);
+            clock.advance(Duration.ofMillis(42));
+            return true;
+        }, clock);
+
+        scheduler.runOnce();
+
+        List<RunRecord> runs = history.snapshot();
+        assertThat(runs).hasSize(1);
+        assertThat(runs.get(0).startInstant).isEqualTo(Instant.parse("2020-01-01T00:00:00Z"));
+        assertThat(runs.get(0).durationMillis).isEqualTo(42);
+        assertThat(runs.get(0).isSuccess()).isTrue();
+        assertThat(runs.get(0).tests.get(0).testName).isEqualTo("test1");
+    }
+
+    @Test
+    public void skippedRunsAreNotRecorded() {
+        SelftestScheduler scheduler = new SelftestScheduler(history, writer -> false, clock);
+
+        scheduler.runOnce();
+
+        assertThat(history.snapshot()).isEmpty();
+    }
+
+    @Test
+    public void exceptionsAreRecordedAsFailedRuns() {
+        SelftestScheduler scheduler = new SelftestScheduler(history, writer -> {
+            throw new IllegalStateException("broken config");
+        }, clock);
+
+        scheduler.runOnce();
+
+        RunRecord run = history.snapshot().get(0);
+        assertThat(run.isSuccess()).isFalse();
+        assertThat(run.uncaughtExceptions).containsExactly("java.lang.IllegalStateException: broken config");
+    }
+
+    @Test
+    public void errorsAreLoggedAndRecordedAsFailedRuns() {
+        List<String> logged = new ArrayList<>();
+        SelftestScheduler scheduler = new SelftestScheduler(history, writer -> {
+            throw new NoClassDefFoundError("com/example/Missing");
+        }, clock, (message, t) -> logged.add(message + ": " + t));
+
+        scheduler.runOnce();
+
+        RunRecord run = history.snapshot().get(0);
+        assertThat(run.isSuccess()).isFalse();
+        assertThat(run.uncaughtExceptions).containsExactly("java.lang.NoClassDefFoundError: com/example/Missing");
+        assertThat(logged).hasSize(1);
+        assertThat(logged.get(0)).contains("NoClassDefFoundError");
+    }
+
+    @Test
+    public void runsPeriodically() throws Exception {
+        CountDownLatch runs = new CountDownLatch(3);
+        try (SelftestScheduler scheduler = new SelftestScheduler(history, writer -> {
+            runs.countDown();
+            return true;
+        }, clock)) {
+            scheduler.start(Duration.ofMillis(10));
+            assertThat(runs.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+    }
+
+    @Test
+    public void keepsRunningAfterErrors() throws Exception {
+        CountDownLatch runs = new CountDownLatch(3);
+        try (SelftestScheduler scheduler = new SelftestScheduler(history, writer -> {
+            runs.countDown();
+            throw new AssertionError("broken test case");
+        }, clock)) {
+            scheduler.start(Duration.ofMillis(10));
+            assertThat(runs.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+    }
+
+}
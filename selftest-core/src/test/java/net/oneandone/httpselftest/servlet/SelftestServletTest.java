@@ -4,11 +4,15 @@ import static java.util.stream.Collectors.toList;
 import static net.oneandone.httpselftest.log.logback.LogbackSupport.attachedSelftestAppenders;
 import static net.oneandone.httpselftest.servlet.SelftestServlet.guaranteeLeadingAndTrailingSlash;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.lenient;
 import static org.springframework.test.util.ReflectionTestUtils.getField;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Semaphore;
 
 import javax.servlet.ServletConfig;
 
@@ -26,6 +30,7 @@ import ch.qos.logback.classic.LoggerContext;
 import ch.qos.logback.core.Appender;
 import net.oneandone.httpselftest.http.TestResponse;
 import net.oneandone.httpselftest.http.TestRequest;
+import net.oneandone.httpselftest.log.CaptureStatistics;
 import net.oneandone.httpselftest.log.LogAccess;
 import net.oneandone.httpselftest.log.LogSupport;
 import net.oneandone.httpselftest.log.logback.LogbackSupport;
@@ -33,6 +38,9 @@ import net.oneandone.httpselftest.test.api.Context;
 import net.oneandone.httpselftest.test.api.TestCase;
 import net.oneandone.httpselftest.test.api.TestConfigs;
 import net.oneandone.httpselftest.test.api.TestValues;
+import net.oneandone.httpselftest.test.run.ExecutorBackend;
+import net.oneandone.httpselftest.test.run.RunSettings;
+import net.oneandone.httpselftest.writer.PageAsset;
 
 @ExtendWith(MockitoExtension.class)
 public class SelftestServletTest {
@@ -54,20 +62,27 @@ public class SelftestServletTest {
         LogbackSupportStub stub = new LogbackSupportStub((LogbackSupport) support);
         ReflectionTestUtils.setField(servlet, "logSupport", stub);
         assertThat(stub.attachWasCalled).as("was attached").isFalse();
+        int attachedAfterInit = allAttachedSelftestAppenders().length;
+        assertThat(attachedAfterInit).as("attached appenders after init").isPositive();
 
         // GET
         MockHttpServletResponse response = new MockHttpServletResponse();
         servlet.doGet(newAuthorizedExecuteRequest(), response);
         assertThat(response.getStatus()).as("status").isEqualTo(200);
-        assertThat(allAttachedSelftestAppenders()).as("attached appenders after GET").isEmpty();
+        assertThat(allAttachedSelftestAppenders()).as("attached appenders after GET").hasSize(attachedAfterInit);
         assertThat(stub.attachWasCalled).as("was attached").isFalse();
 
         // POST
         response = new MockHttpServletResponse();
         servlet.doPost(newAuthorizedExecuteRequest(), response);
         assertThat(response.getStatus()).as("status").isEqualTo(200);
-        assertThat(allAttachedSelftestAppenders()).as("attached appenders after POST").isEmpty();
+        assertThat(allAttachedSelftestAppenders()).as("attached appenders after POST").hasSize(attachedAfterInit);
         assertThat(stub.attachWasCalled).as("was attached").isTrue();
+        assertThat(response.getHeader(SelftestServlet.HEADER_LOG_EXAMINED)).as("examined header").isNotNull();
+        assertThat(response.getHeader(SelftestServlet.HEADER_LOG_CAPTURED)).as("captured header").isNotNull();
+
+        servlet.destroy();
+        assertThat(allAttachedSelftestAppenders()).as("attached appenders after destroy").isEmpty();
     }
 
     private MockHttpServletRequest newAuthorizedExecuteRequest() {
@@ -88,6 +103,234 @@ public class SelftestServletTest {
         return ((LoggerContext) LoggerFactory.getILoggerFactory()).getLoggerList();
     }
 
+    @Test
+    public void executionsAreAdmittedUpToLimit() throws Exception {
+        SelftestServlet servlet = new SimpleSelftestServlet();
+        doReturn("user:pw").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_CREDENTIALS);
+        doReturn("8080").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_OVERRIDE_PORT);
+        doReturn("basepath").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_OVERRIDE_PATH);
+        lenient().doReturn("1").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_CONCURRENT_RUNS);
+        lenient().doReturn("50").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_CONCURRENT_RUNS_TIMEOUT);
+        servlet.init(servletConfigMock);
+
+        Semaphore runPermits = (Semaphore) getField(servlet, "runPermits");
+        runPermits.acquire(); // another execution is running
+        try {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            servlet.doGet(newAuthorizedExecuteRequest(), response);
+            assertThat(response.getStatus()).as("GET while running").isEqualTo(200);
+
+            response = new MockHttpServletResponse();
+            servlet.doPost(newAuthorizedExecuteRequest(), response);
+            assertThat(response.getStatus()).as("POST while running").isEqualTo(503);
+            assertThat(response.getHeader("Retry-After")).isNotNull();
+            assertThat(response.getContentAsString()).contains("currently in use");
+        } finally {
+            runPermits.release();
+        }
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        servlet.doPost(newAuthorizedExecuteRequest(), response);
+        assertThat(response.getStatus()).as("POST after run").isEqualTo(200);
+        assertThat(runPermits.availablePermits()).isEqualTo(1);
+
+        servlet.destroy();
+    }
+
+    @Test
+    public void cachedResultsForJsonExecutions() throws Exception {
+        SelftestServlet servlet = new SimpleSelftestServlet();
+        doReturn("user:pw").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_CREDENTIALS);
+        doReturn("8080").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_OVERRIDE_PORT);
+        doReturn("basepath").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_OVERRIDE_PATH);
+        lenient().doReturn("60000").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_CACHE_TTL);
+        servlet.init(servletConfigMock);
+
+        MockHttpServletRequest request = newAuthorizedExecuteRequest();
+        request.removeParameter("p-param1");
+        request.addHeader("Accept", "application/json");
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        servlet.doPost(request, first);
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        servlet.doPost(request, second);
+
+        assertThat(first.getContentAsString()).contains("\"success\"");
+        assertThat(second.getContentAsString()).isEqualTo(first.getContentAsString());
+        assertThat(second.getHeader("Age")).isEqualTo("0");
+        assertThat(second.getHeader(SelftestServlet.HEADER_RESULT_TIMESTAMP))
+                .isEqualTo(first.getHeader(SelftestServlet.HEADER_RESULT_TIMESTAMP));
+
+        servlet.destroy();
+    }
+
+    @Test
+    public void customParametersBypassTheResultCache() throws Exception {
+        SelftestServlet servlet = new SimpleSelftestServlet();
+        doReturn("user:pw").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_CREDENTIALS);
+        doReturn("8080").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_OVERRIDE_PORT);
+        doReturn("basepath").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_OVERRIDE_PATH);
+        lenient().doReturn("60000").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_CACHE_TTL);
+        servlet.init(servletConfigMock);
+
+        try {
+            for (int i = 0; i < 2; i++) {
+                MockHttpServletRequest request = newAuthorizedExecuteRequest();
+                request.setParameter("p-param1", "value" + i);
+                request.addHeader("Accept", "application/json");
+                MockHttpServletResponse response = new MockHttpServletResponse();
+                servlet.doPost(request, response);
+
+                assertThat(response.getStatus()).as("status for value " + i).isEqualTo(200);
+                assertThat(response.getContentAsString()).as("body for value " + i).contains("\"success\"");
+                assertThat(response.getHeader("Age")).as("not served from the result cache").isNull();
+            }
+        } finally {
+            servlet.destroy();
+        }
+    }
+
+    @Test
+    public void failedFirstRunOfResultCacheIsWrittenAsJson() throws Exception {
+        SelftestServlet servlet = new ErrorSelftestServlet();
+        doReturn("user:pw").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_CREDENTIALS);
+        doReturn("8080").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_OVERRIDE_PORT);
+        doReturn("basepath").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_OVERRIDE_PATH);
+        lenient().doReturn("60000").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_CACHE_TTL);
+        servlet.init(servletConfigMock);
+
+        try {
+            MockHttpServletRequest request = newAuthorizedExecuteRequest();
+            request.removeParameter("p-param1");
+            request.addHeader("Accept", "application/json");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            servlet.doPost(request, response);
+
+            assertThat(response.getStatus()).isEqualTo(500);
+            assertThat(response.getContentType()).startsWith("application/json");
+            assertThat(response.getContentAsString()).contains("\"success\":false", "NoClassDefFoundError");
+        } finally {
+            servlet.destroy();
+        }
+    }
+
+    @Test
+    public void historyOfScheduledRuns() throws Exception {
+        SelftestServlet servlet = new SimpleSelftestServlet();
+        doReturn("user:pw").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_CREDENTIALS);
+        doReturn("8080").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_OVERRIDE_PORT);
+        doReturn("basepath").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_OVERRIDE_PATH);
+        lenient().doReturn("3600000").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_SCHEDULE_INTERVAL);
+        servlet.init(servletConfigMock);
+        ((SelftestScheduler) getField(servlet, "scheduler")).runOnce();
+
+        MockHttpServletRequest request = newAuthorizedExecuteRequest();
+        request.addParameter(SelftestServlet.HISTORY, "");
+        request.addHeader("Accept", "application/json");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        servlet.doGet(request, response);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsString()).startsWith("{\"history\":[{").contains("\"name\":\"TestA\"");
+
+        servlet.destroy();
+    }
+
+    @Test
+    public void ndjsonStreamsRecordsPerTestCase() throws Exception {
+        SelftestServlet servlet = new SimpleSelftestServlet();
+        doReturn("user:pw").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_CREDENTIALS);
+        doReturn("8080").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_OVERRIDE_PORT);
+        doReturn("basepath").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_OVERRIDE_PATH);
+        lenient().doReturn("60000").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_CACHE_TTL);
+        servlet.init(servletConfigMock);
+
+        MockHttpServletRequest request = newAuthorizedExecuteRequest();
+        request.addHeader("Accept", "application/x-ndjson");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        servlet.doPost(request, response);
+
+        assertThat(response.getContentType()).startsWith("application/x-ndjson");
+        String[] records = response.getContentAsString().split("\n");
+        assertThat(records[0]).contains("\"type\":\"test\"", "\"name\":\"TestA\"");
+        assertThat(records[records.length - 1]).contains("\"type\":\"summary\"");
+        assertThat(response.getHeader("Age")).as("not served from the result cache").isNull();
+
+        servlet.destroy();
+    }
+
+    @Test
+    public void burstOfSingleTestCase() throws Exception {
+        SelftestServlet servlet = new SimpleSelftestServlet();
+        doReturn("user:pw").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_CREDENTIALS);
+        doReturn("8080").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_OVERRIDE_PORT);
+        doReturn("basepath").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_OVERRIDE_PATH);
+        lenient().doReturn("5").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_BURST_MAX_ITERATIONS);
+        servlet.init(servletConfigMock);
+
+        MockHttpServletRequest request = newAuthorizedExecuteRequest();
+        request.removeParameter("execute");
+        request.addParameter(SelftestServlet.BURST, "TestA");
+        request.addParameter(SelftestServlet.BURST_ITERATIONS, "100");
+        request.addParameter(SelftestServlet.BURST_CONCURRENCY, "2");
+        request.addHeader("Accept", "application/json");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        servlet.doPost(request, response);
+
+        assertThat(response.getContentAsString()).contains("\"burst\":{", "\"name\":\"TestA\"", "\"iterations\":5",
+                "\"concurrency\":2");
+
+        request.setParameter(SelftestServlet.BURST, "unknown");
+        response = new MockHttpServletResponse();
+        servlet.doPost(request, response);
+
+        assertThat(response.getContentAsString()).doesNotContain("burst");
+
+        servlet.destroy();
+    }
+
+    @Test
+    public void executorBackendConfiguration() throws Exception {
+        lenient().doReturn("auto").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_EXECUTOR);
+        assertThat(Configurator.getExecutorBackend(servletConfigMock))
+                .isEqualTo(ExecutorBackend.isVirtualAvailable() ? ExecutorBackend.VIRTUAL : ExecutorBackend.PLATFORM);
+
+        lenient().doReturn("threads").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_EXECUTOR);
+        assertThatThrownBy(() -> Configurator.getExecutorBackend(servletConfigMock)).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("possible values");
+
+        lenient().doReturn("virtual").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_EXECUTOR);
+        if (ExecutorBackend.isVirtualAvailable()) {
+            assertThat(Configurator.getExecutorBackend(servletConfigMock)).isEqualTo(ExecutorBackend.VIRTUAL);
+        } else {
+            assertThatThrownBy(() -> Configurator.getExecutorBackend(servletConfigMock))
+                    .isInstanceOf(IllegalStateException.class).hasMessageContaining("Java 21");
+        }
+    }
+
+    @Test
+    public void htmlProgressiveConfiguration() throws Exception {
+        assertThat(Configurator.getHtmlProgressive(servletConfigMock)).isFalse();
+
+        lenient().doReturn("true").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_HTML_PROGRESSIVE);
+        assertThat(Configurator.getHtmlProgressive(servletConfigMock)).isTrue();
+
+        lenient().doReturn("yes").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_HTML_PROGRESSIVE);
+        assertThatThrownBy(() -> Configurator.getHtmlProgressive(servletConfigMock)).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining(SelftestServlet.PROP_HTML_PROGRESSIVE);
+    }
+
+    @Test
+    public void logQuietPeriodConfiguration() throws Exception {
+        assertThat(Configurator.getLogQuietPeriod(servletConfigMock)).isEqualTo(RunSettings.DEFAULT_LOG_QUIET_MILLIS);
+
+        lenient().doReturn("250").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_LOG_QUIET_PERIOD);
+        assertThat(Configurator.getLogQuietPeriod(servletConfigMock)).isEqualTo(250);
+
+        lenient().doReturn("-1").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_LOG_QUIET_PERIOD);
+        assertThatThrownBy(() -> Configurator.getLogQuietPeriod(servletConfigMock)).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining(SelftestServlet.PROP_LOG_QUIET_PERIOD);
+    }
+
     @Test
     public void contextPathHandling() throws Exception {
         assertThat(guaranteeLeadingAndTrailingSlash("")).isEqualTo("/");
@@ -119,6 +362,90 @@ public class SelftestServletTest {
         assertThat(response.getStatus()).isEqualTo(401);
         assertThat(response.getHeader("WWW-Authenticate")).isEqualTo("Basic");
         assertThat(response.getContentAsByteArray()).isEmpty();
+
+        servlet.destroy();
+    }
+
+    @Test
+    public void assetsAreServedCacheableWithoutAuthorization() throws Exception {
+        SelftestServlet servlet = new SimpleSelftestServlet();
+        doReturn("user:pw").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_CREDENTIALS);
+        servlet.init(servletConfigMock);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setParameter(SelftestServlet.ASSET, "css");
+        request.setParameter("v", PageAsset.CSS.version());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        servlet.doGet(request, response);
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentType()).startsWith("text/css");
+        assertThat(response.getHeader("ETag")).isEqualTo(PageAsset.CSS.etag());
+        assertThat(response.getHeader("Cache-Control")).contains("max-age=31536000");
+        assertThat(response.getContentAsByteArray()).isEqualTo(PageAsset.CSS.content());
+
+        request = new MockHttpServletRequest();
+        request.setParameter(SelftestServlet.ASSET, "js");
+        request.addHeader("If-None-Match", PageAsset.JS.etag());
+        response = new MockHttpServletResponse();
+        servlet.doGet(request, response);
+        assertThat(response.getStatus()).isEqualTo(304);
+        assertThat(response.getHeader("Cache-Control")).isEqualTo("no-cache");
+        assertThat(response.getContentAsByteArray()).isEmpty();
+
+        request = new MockHttpServletRequest();
+        request.setParameter(SelftestServlet.ASSET, "unknown");
+        response = new MockHttpServletResponse();
+        servlet.doGet(request, response);
+        assertThat(response.getStatus()).isEqualTo(404);
+
+        servlet.destroy();
+    }
+
+    @Test
+    public void configsAreBuiltOnceUnlessDynamic() throws Exception {
+        lenient().doReturn("8080").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_OVERRIDE_PORT);
+        lenient().doReturn("basepath").when(servletConfigMock).getInitParameter(SelftestServlet.PROP_OVERRIDE_PATH);
+        CountingSelftestServlet servlet = new CountingSelftestServlet(false);
+        servlet.init(servletConfigMock);
+        try {
+            servlet.doGet(new MockHttpServletRequest(), new MockHttpServletResponse());
+            servlet.doGet(new MockHttpServletRequest(), new MockHttpServletResponse());
+            assertThat(servlet.configsCalls).isEqualTo(1);
+        } finally {
+            servlet.destroy();
+        }
+
+        CountingSelftestServlet dynamic = new CountingSelftestServlet(true);
+        dynamic.init(servletConfigMock);
+        try {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            dynamic.doGet(new MockHttpServletRequest(), response);
+            dynamic.doGet(new MockHttpServletRequest(), new MockHttpServletResponse());
+            assertThat(response.getStatus()).isEqualTo(200);
+            assertThat(dynamic.configsCalls).isEqualTo(2);
+        } finally {
+            dynamic.destroy();
+        }
+    }
+
+    public static class CountingSelftestServlet extends SimpleSelftestServlet {
+        private final boolean dynamic;
+        private int configsCalls;
+
+        CountingSelftestServlet(boolean dynamic) {
+            this.dynamic = dynamic;
+        }
+
+        @Override
+        protected TestConfigs.Builder getConfigs() {
+            configsCalls++;
+            return super.getConfigs();
+        }
+
+        @Override
+        protected boolean hasDynamicConfigs() {
+            return dynamic;
+        }
     }
 
     public static class SimpleSelftestServlet extends SelftestServlet {
@@ -140,6 +467,25 @@ public class SelftestServletTest {
         }
     }
 
+    public static class ErrorSelftestServlet extends SelftestServlet {
+        @Override
+        protected TestConfigs.Builder getConfigs() {
+            return new TestConfigs.Builder("param1");
+        }
+
+        public static class Broken implements TestCase {
+            @Override
+            public TestRequest prepareRequest(TestValues config, Context ctx) throws Exception {
+                throw new NoClassDefFoundError("missing");
+            }
+
+            @Override
+            public void verify(TestValues config, TestResponse response, Context ctx) throws Exception {
+                // not reached
+            }
+        }
+    }
+
     public class LogbackSupportStub implements LogSupport {
         public boolean attachWasCalled = false;
         private final LogbackSupport delegate;
@@ -148,6 +494,16 @@ public class SelftestServletTest {
             delegate = support;
         }
 
+        @Override
+        public void start() {
+            delegate.start();
+        }
+
+        @Override
+        public void stop() {
+            delegate.stop();
+        }
+
         @Override
         public void runWithAttachedAppenders(Set<String> runIds, Runnable c) {
             delegate.runWithAttachedAppenders(runIds, () -> {
@@ -156,6 +512,11 @@ public class SelftestServletTest {
             });
         }
 
+        @Override
+        public Optional<CaptureStatistics> getStatistics() {
+            return delegate.getStatistics();
+        }
+
         @Override
         public List<LogAccess> getLogs(String runIds) {
             return delegate.getLogs(runIds);
@@ -0,0 +1,99 @@
+package net.oneandone.httpselftest.servlet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+import net.oneandone.httpselftest.http.TestRequest;
+import net.oneandone.httpselftest.http.TestResponse;
+import net.oneandone.httpselftest.test.api.Context;
+import net.oneandone.httpselftest.test.api.TestCase;
+import net.oneandone.httpselftest.test.api.TestValues;
+
+public class TestRegistryTest {
+
+    @Test
+    public void instantiatesTestCasesInAlphabeticOrder() {
+        TestRegistry registry = new TestRegistry(Suite.class);
+
+        List<TestCase> tests = registry.instantiate();
+
+        assertThat(tests).extracting(TestCase::getName).containsExactly("Alpha", "Beta");
+    }
+
+    @Test
+    public void eachCallCreatesFreshInstances() {
+        TestRegistry registry = new TestRegistry(Suite.class);
+
+        List<TestCase> first = registry.instantiate();
+        List<TestCase> second = registry.instantiate();
+
+        assertThat(second.get(0)).isNotSameAs(first.get(0));
+        assertThat(second.get(1)).isNotSameAs(first.get(1));
+    }
+
+    @Test
+    public void factoryCreatesFreshInstancesOfNamedTestCase() {
+        TestRegistry registry = new TestRegistry(Suite.class);
+
+        Supplier<TestCase> factory = registry.factory("Beta").get();
+
+        assertThat(factory.get()).isInstanceOf(Suite.Beta.class).isNotSameAs(factory.get());
+        assertThat(registry.factory("Gamma")).isEmpty();
+    }
+
+    @Test
+    public void failingConstructorFailsInstantiation() {
+        TestRegistry registry = new TestRegistry(FailingSuite.class);
+
+        assertThatThrownBy(registry::instantiate).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("'Failing'");
+    }
+
+    @Test
+    public void missingConstructorFailsDiscovery() {
+        assertThatThrownBy(() -> new TestRegistry(InnerSuite.class)).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("'Inner'");
+    }
+
+    public abstract static class NoAssertions implements TestCase {
+        @Override
+        public TestRequest prepareRequest(TestValues config, Context ctx) throws Exception {
+            return new TestRequest("path", "GET");
+        }
+
+        @Override
+        public void verify(TestValues config, TestResponse response, Context ctx) throws Exception {
+            // no assertion
+        }
+    }
+
+    public static class Suite {
+        public static class Beta extends NoAssertions {
+        }
+
+        public static class Alpha extends NoAssertions {
+        }
+
+        public static class NoTestCase {
+        }
+    }
+
+    public static class FailingSuite {
+        public static class Failing extends NoAssertions {
+            public Failing() {
+                throw new IllegalArgumentException("broken");
+            }
+        }
+    }
+
+    public static class InnerSuite {
+        public class Inner extends NoAssertions {
+        }
+    }
+
+}
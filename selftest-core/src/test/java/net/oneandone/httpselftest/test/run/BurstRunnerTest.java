@@ -0,0 +1,152 @@
+package net.oneandone.httpselftest.test.run;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.any;
+import static com.github.tomakehurst.wiremock.client.WireMock.anyRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.anyUrl;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+
+import net.oneandone.httpselftest.http.TestRequest;
+import net.oneandone.httpselftest.http.TestResponse;
+import net.oneandone.httpselftest.log.InactiveLogSupport;
+import net.oneandone.httpselftest.test.api.AssertionException;
+import net.oneandone.httpselftest.test.api.Context;
+import net.oneandone.httpselftest.test.api.TestCase;
+import net.oneandone.httpselftest.test.api.TestConfigs;
+import net.oneandone.httpselftest.test.api.TestValues;
+import net.oneandone.httpselftest.writer.SelfTestJsonWriter;
+
+public class BurstRunnerTest {
+
+    @RegisterExtension
+    public WireMockExtension wire = WireMockExtension.newInstance().options(wireMockConfig().dynamicPort()).build();
+
+    private SelfTestJsonWriter writer;
+
+    private String appUrl;
+
+    @BeforeEach
+    public void setup() {
+        wire.stubFor(any(anyUrl()).willReturn(aResponse().withStatus(200).withFixedDelay(10)));
+        wire.stubFor(any(urlEqualTo("/broken")).willReturn(aResponse().withStatus(500)));
+        writer = new SelfTestJsonWriter(new PrintWriter(new StringWriter()));
+        appUrl = "http://localhost:" + wire.getPort() + "/";
+    }
+
+    @Test
+    public void executesAllIterationsAndSamples() throws Exception {
+        BurstOutcome outcome = runner(new Ping("ok"), 250, 4).run();
+
+        wire.verify(250, anyRequestedFor(anyUrl()));
+        assertThat(outcome.isSuccess()).isTrue();
+        assertThat(outcome.iterations).isEqualTo(250);
+        assertThat(outcome.latency.count).isEqualTo(250);
+        assertThat(outcome.latency.p50Micros).isGreaterThanOrEqualTo(10_000);
+        assertThat(outcome.requestsPerSecond()).isPositive();
+        assertThat(writer.testRunData).hasSize(3); // iterations 0, 100 and 200
+    }
+
+    @Test
+    public void countsProblems() throws Exception {
+        BurstOutcome outcome = runner(new Ping("broken"), 10, 2).run();
+
+        assertThat(outcome.isSuccess()).isFalse();
+        assertThat(outcome.failures).isEqualTo(10);
+        assertThat(outcome.errorRate()).isEqualTo(1.0);
+        assertThat(outcome.firstProblem).contains("expected 200");
+    }
+
+    @Test
+    public void concurrencyIsLimitedByIterations() throws Exception {
+        BurstOutcome outcome = runner(new Ping("ok"), 1, 8).run();
+
+        assertThat(outcome.isSuccess()).isTrue();
+        assertThat(writer.testRunData).hasSize(1);
+    }
+
+    @Test
+    public void eachIterationGetsItsOwnInstance() throws Exception {
+        TestConfigs configs = new TestConfigs(new TestConfigs.Builder());
+        AtomicInteger instances = new AtomicInteger();
+        BurstOutcome outcome = new BurstRunner(writer, () -> {
+            instances.incrementAndGet();
+            return new SingleUse();
+        }, configs.createEmpty(), appUrl, new InactiveLogSupport(), 20, 4, RunSettings.defaults()).run();
+
+        assertThat(outcome.isSuccess()).as(outcome.firstProblem).isTrue();
+        assertThat(instances).hasValueGreaterThanOrEqualTo(20);
+    }
+
+    @Test
+    public void rejectsInvalidParameters() throws Exception {
+        assertThatThrownBy(() -> runner(new Ping("ok"), 0, 1)).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("iterations");
+        assertThatThrownBy(() -> runner(new Ping("ok"), 1, 0)).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("concurrency");
+    }
+
+    private BurstRunner runner(TestCase test, int iterations, int concurrency) {
+        TestConfigs configs = new TestConfigs(new TestConfigs.Builder());
+        return new BurstRunner(writer, () -> test, configs.createEmpty(), appUrl, new InactiveLogSupport(), iterations,
+                concurrency, RunSettings.defaults());
+    }
+
+    // not thread-safe and not reusable, like test cases keeping state between prepareRequest and verify
+    private static class SingleUse extends Ping {
+
+        private boolean prepared;
+
+        SingleUse() {
+            super("ok");
+        }
+
+        @Override
+        public TestRequest prepareRequest(TestValues config, Context ctx) throws Exception {
+            if (prepared) {
+                throw new IllegalStateException("instance reused");
+            }
+            prepared = true;
+            return super.prepareRequest(config, ctx);
+        }
+    }
+
+    private static class Ping implements TestCase {
+
+        private final String path;
+
+        Ping(String path) {
+            this.path = path;
+        }
+
+        @Override
+        public TestRequest prepareRequest(TestValues config, Context ctx) throws Exception {
+            return new TestRequest(path, "GET");
+        }
+
+        @Override
+        public void verify(TestValues config, TestResponse response, Context ctx) throws Exception {
+            if (response.getStatus() != 200) {
+                throw new AssertionException("expected 200, but got " + response.getStatus());
+            }
+        }
+
+        @Override
+        public int waitForLogsMillis() {
+            return 0;
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+package net.oneandone.httpselftest.test.run;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class ExecutorBackendTest {
+
+    @Test
+    public void platformThreadsAreNamedDaemons() throws Exception {
+        Thread worker = workerOf(ExecutorBackend.PLATFORM);
+
+        assertThat(worker.getName()).isEqualTo("test-worker");
+        assertThat(worker.isDaemon()).isTrue();
+    }
+
+    @Test
+    public void virtualThreadsIfAvailable() throws Exception {
+        assumeTrue(ExecutorBackend.isVirtualAvailable());
+
+        Thread worker = workerOf(ExecutorBackend.VIRTUAL);
+
+        assertThat(worker.getName()).isEqualTo("test-worker");
+        assertThat(Thread.class.getMethod("isVirtual").invoke(worker)).isEqualTo(true);
+    }
+
+    @Test
+    public void virtualThreadsAvailableFromJava21() throws Exception {
+        int feature = Integer.parseInt(System.getProperty("java.specification.version").replaceFirst("^1\\.", ""));
+
+        assertThat(ExecutorBackend.isVirtualAvailable()).isEqualTo(feature >= 21);
+    }
+
+    @Test
+    public void virtualThreadsFailIfUnavailable() throws Exception {
+        assumeFalse(ExecutorBackend.isVirtualAvailable());
+
+        ExecutorService executor = ExecutorBackend.VIRTUAL.newFixedThreadPool(1, () -> "test-worker");
+        try {
+            assertThatThrownBy(() -> executor.submit(() -> {
+            })).isInstanceOf(IllegalStateException.class).hasMessageContaining("Virtual threads");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Thread workerOf(ExecutorBackend backend) throws Exception {
+        ExecutorService executor = backend.newFixedThreadPool(1, () -> "test-worker");
+        try {
+            return executor.submit(Thread::currentThread).get();
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+package net.oneandone.httpselftest.test.run;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentilesOfUniformValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 100_000; micros++) {
+            histogram.record(micros);
+        }
+
+        LatencySummary summary = histogram.summary();
+
+        assertThat(summary.count).isEqualTo(100_000);
+        assertThat(summary.p50Micros).isCloseTo(50_000, within(50_000 / 64L));
+        assertThat(summary.p90Micros).isCloseTo(90_000, within(90_000 / 64L));
+        assertThat(summary.p99Micros).isCloseTo(99_000, within(99_000 / 64L));
+        assertThat(summary.maxMicros).isEqualTo(100_000);
+    }
+
+    @Test
+    public void singleOutlierShowsInHighPercentilesOnly() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1_000);
+        }
+        histogram.record(2_000_000);
+
+        LatencySummary summary = histogram.summary();
+
+        assertThat(summary.p50Micros).isCloseTo(1_000, within(1_000 / 64L));
+        assertThat(summary.p99Micros).isCloseTo(1_000, within(1_000 / 64L));
+        assertThat(summary.maxMicros).isEqualTo(2_000_000);
+
+        histogram.record(2_000_000);
+        assertThat(histogram.summary().p99Micros).isCloseTo(2_000_000, within(2_000_000 / 64L));
+    }
+
+    @Test
+    public void percentilesNeverExceedMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000_001);
+
+        LatencySummary summary = histogram.summary();
+
+        assertThat(summary.p50Micros).isEqualTo(1_000_001);
+        assertThat(summary.maxMicros).isEqualTo(1_000_001);
+    }
+
+    @Test
+    public void valuesAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        LatencySummary summary = histogram.summary();
+
+        assertThat(summary.p50Micros).isEqualTo(0);
+        assertThat(summary.maxMicros).isEqualTo(LatencyHistogram.MAX_TRACKABLE_MICROS);
+    }
+
+    @Test
+    public void bucketsCoverValuesWithBoundedError() {
+        int previousIndex = -1;
+        for (long value = 0; value < LatencyHistogram.MAX_TRACKABLE_MICROS; value = value * 9 / 8 + 1) {
+            int index = LatencyHistogram.indexOf(value);
+            long highest = LatencyHistogram.highestEquivalentValue(index);
+
+            assertThat(index).isGreaterThanOrEqualTo(previousIndex);
+            assertThat(highest).isGreaterThanOrEqualTo(value).isLessThanOrEqualTo(value + value / 64);
+            assertThat(LatencyHistogram.indexOf(highest)).isEqualTo(index);
+            previousIndex = index;
+        }
+    }
+
+    @Test
+    public void concurrentRecordingLosesNoValues() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < 4; w++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        histogram.record(i);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+
+        assertThat(histogram.summary().count).isEqualTo(40_000);
+    }
+
+}
@@ -0,0 +1,65 @@
+package net.oneandone.httpselftest.test.run;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class RunHistoryTest {
+
+    @Test
+    public void keepsNewestRunsFirst() {
+        RunHistory history = new RunHistory(2);
+
+        history.add(record(1));
+        history.add(record(2));
+        history.add(record(3));
+
+        assertThat(durations(history.snapshot())).containsExactly(3L, 2L);
+    }
+
+    @Test
+    public void snapshotIsACopy() {
+        RunHistory history = new RunHistory(2);
+        List<RunRecord> snapshot = history.snapshot();
+
+        history.add(record(1));
+
+        assertThat(snapshot).isEmpty();
+    }
+
+    @Test
+    public void recordsOutcomesOfTests() {
+        TestRunData testRun = new TestRunData("test1", Instant.now(), "run1");
+        TestRunDataHelper.setDurationMillis(testRun, 12);
+        TestRunDataHelper.setResult(testRun, TestRunResult.failure("failed"));
+
+        RunRecord record = new RunRecord(Instant.now(), 15, singletonList(testRun), emptyList());
+
+        assertThat(record.isSuccess()).isFalse();
+        assertThat(record.tests).hasSize(1);
+        assertThat(record.tests.get(0).testName).isEqualTo("test1");
+        assertThat(record.tests.get(0).result).isEqualTo(ResultType.FAILURE);
+        assertThat(record.tests.get(0).durationMillis).isEqualTo(12);
+    }
+
+    @Test
+    public void rejectsInvalidCapacity() {
+        assertThatThrownBy(() -> new RunHistory(0)).isInstanceOf(IllegalArgumentException.class).hasMessageContaining("capacity");
+    }
+
+    private static RunRecord record(long durationMillis) {
+        return new RunRecord(Instant.now(), durationMillis, emptyList(), emptyList());
+    }
+
+    private static List<Long> durations(List<RunRecord> records) {
+        return records.stream().map(r -> r.durationMillis).collect(toList());
+    }
+
+}
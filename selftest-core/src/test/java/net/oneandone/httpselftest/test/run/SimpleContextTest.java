@@ -93,4 +93,19 @@ public class SimpleContextTest {
         assertThat(ctx.retrieve("key")).isEqualTo("value");
     }
 
+    @Test
+    public void withOwnCluesSharesStore() throws Exception {
+        ctx.store("key", "value");
+        ctx.addClue("clue");
+
+        SimpleContext other = ctx.withOwnClues();
+        assertThat(other.retrieve("key")).isEqualTo("value");
+        assertThat(other.getClues()).isEmpty();
+
+        other.store("otherKey", "otherValue");
+        other.addClue("otherClue");
+        assertThat(ctx.retrieve("otherKey")).isEqualTo("otherValue");
+        assertThat(ctx.getClues()).containsExactly("clue");
+    }
+
 }
@@ -25,4 +25,17 @@ public class TestRunDataHelper {
         data.maxDuration = maxDuration;
     }
 
+    public static void setLatency(TestRunData data, LatencySummary latency) {
+        data.latency = latency;
+    }
+
+    public static LatencySummary latency(long count, long p50Micros, long p90Micros, long p99Micros, long maxMicros) {
+        return new LatencySummary(count, p50Micros, p90Micros, p99Micros, maxMicros);
+    }
+
+    public static BurstOutcome burstOutcome(String testName, int iterations, int concurrency, long durationMillis,
+            int failures, int errors, LatencySummary latency, String firstProblem) {
+        return new BurstOutcome(testName, iterations, concurrency, durationMillis, failures, errors, latency, firstProblem);
+    }
+
 }
@@ -1,13 +1,77 @@
 package net.oneandone.httpselftest.test.run;
 
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.any;
+import static com.github.tomakehurst.wiremock.client.WireMock.anyUrl;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.ServletException;
+
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 
-import java.util.Arrays;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+
+import net.oneandone.httpselftest.http.DataBasedHttpDetails;
+import net.oneandone.httpselftest.http.Headers;
+import net.oneandone.httpselftest.http.HttpClient;
+import net.oneandone.httpselftest.http.HttpClients;
+import net.oneandone.httpselftest.http.TestRequest;
+import net.oneandone.httpselftest.http.TestResponse;
+import net.oneandone.httpselftest.http.WrappedResponse;
+import net.oneandone.httpselftest.log.ConcurrentLogBuffer;
+import net.oneandone.httpselftest.log.InactiveLogSupport;
+import net.oneandone.httpselftest.log.LogAccess;
+import net.oneandone.httpselftest.log.RequestCompletion;
+import net.oneandone.httpselftest.log.SelftestEvent;
+import net.oneandone.httpselftest.servlet.SelftestMDCFilter;
+import net.oneandone.httpselftest.test.api.AssertionException;
+import net.oneandone.httpselftest.test.api.Context;
+import net.oneandone.httpselftest.test.api.StreamingTestCase;
+import net.oneandone.httpselftest.test.api.TestCase;
+import net.oneandone.httpselftest.test.api.TestConfigs;
+import net.oneandone.httpselftest.test.api.TestValues;
+import net.oneandone.httpselftest.writer.SelfTestJsonWriter;
 
 public class TestRunnerTest {
 
+    @RegisterExtension
+    public WireMockExtension wire = WireMockExtension.newInstance().options(wireMockConfig().dynamicPort()).build();
+
+    private SelfTestJsonWriter writer;
+
+    private String appUrl;
+
+    @BeforeEach
+    public void setup() {
+        wire.stubFor(any(anyUrl()).willReturn(aResponse().withStatus(200).withFixedDelay(100)));
+        writer = new SelfTestJsonWriter(new PrintWriter(new StringWriter()));
+        appUrl = "http://localhost:" + wire.getPort() + "/";
+    }
+
     @Test
     public void clamped() throws Exception {
         assertThat(TestRunner.clamped(30)).isEqualTo(30);
@@ -32,4 +96,357 @@ public class TestRunnerTest {
         assertThat(TestRunner.runId(tooLong).length()).isEqualTo(200);
     }
 
+    @Test
+    public void dependencyOrder_keepsOrderWithoutDependencies() throws Exception {
+        List<TestCase> tests = Arrays.asList(new Step("a"), new Step("b"), new Step("c"));
+
+        assertThat(names(TestRunner.dependencyOrder(tests))).containsExactly("a", "b", "c");
+    }
+
+    @Test
+    public void dependencyOrder_movesDependenciesFirst() throws Exception {
+        List<TestCase> tests = Arrays.asList(new Step("a", "c"), new Step("b"), new Step("c", "b"));
+
+        assertThat(names(TestRunner.dependencyOrder(tests))).containsExactly("b", "c", "a");
+    }
+
+    @Test
+    public void dependencyOrder_rejectsCycles() throws Exception {
+        List<TestCase> tests = Arrays.asList(new Step("a", "b"), new Step("b", "c"), new Step("c", "a"));
+
+        assertThatThrownBy(() -> TestRunner.dependencyOrder(tests)).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Cyclic");
+    }
+
+    @Test
+    public void dependencyOrder_rejectsUnknownDependencies() throws Exception {
+        List<TestCase> tests = Arrays.asList(new Step("a", "unknown"));
+
+        assertThatThrownBy(() -> TestRunner.dependencyOrder(tests)).isInstanceOf(IllegalStateException.class)
+                .hasMessageContainingAll("'a'", "'unknown'");
+    }
+
+    @Test
+    public void dependencyOrder_rejectsDuplicateNames() throws Exception {
+        List<TestCase> tests = Arrays.asList(new Step("a"), new Step("a"));
+
+        assertThatThrownBy(() -> TestRunner.dependencyOrder(tests)).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Duplicate");
+    }
+
+    @Test
+    public void parallel_writesOutcomesInOriginalOrder() throws Exception {
+        List<TestCase> tests = Arrays.asList(new Step("a", "c"), new Step("b"), new Step("c"), new Step("d"));
+
+        runner(tests, 4).runAll();
+
+        assertThat(writer.testRunData.stream().map(data -> data.testName)).containsExactly("a", "b", "c", "d");
+        assertThat(writer.testRunData).allSatisfy(data -> assertThat(data.getResult().type).isEqualTo(ResultType.SUCCESS));
+    }
+
+    @Test
+    public void parallel_dependentTestSeesStoredValues() throws Exception {
+        List<TestCase> tests = Arrays.asList(new Step("a", "b"), new Step("b"));
+
+        runner(tests, 2).runAll();
+
+        assertThat(writer.testRunData.get(0).getResult().type).isEqualTo(ResultType.SUCCESS);
+        assertThat(writer.testRunData.get(0).getRequest().request.path).isEqualTo("after-b");
+    }
+
+    @Test
+    public void parallel_failingDependencyIsReportedPerTest() throws Exception {
+        Step broken = new Step("b") {
+            @Override
+            public TestRequest prepareRequest(TestValues config, Context ctx) throws Exception {
+                throw new AssertionError("broken dependency");
+            }
+        };
+        List<TestCase> tests = Arrays.asList(new Step("a", "b"), broken, new Step("c"));
+
+        runner(tests, 2).runAll();
+
+        assertThat(writer.testRunData.stream().map(data -> data.testName)).containsExactly("a", "b", "c");
+        assertThat(writer.testRunData.get(0).getResult().type).isEqualTo(ResultType.SUCCESS);
+        assertThat(writer.testRunData.get(1).getResult().type).isEqualTo(ResultType.ERROR);
+        assertThat(writer.testRunData.get(1).getResult().uncaught).hasRootCauseMessage("broken dependency");
+        assertThat(writer.testRunData.get(2).getResult().type).isEqualTo(ResultType.SUCCESS);
+    }
+
+    @Test
+    public void parallel_runsIndependentTestsConcurrently() throws Exception {
+        List<TestCase> tests = Arrays.asList(new Step("a"), new Step("b"), new Step("c"), new Step("d"));
+
+        long before = System.nanoTime();
+        runner(tests, 4).runAll();
+        long tookMillis = (System.nanoTime() - before) / 1_000_000;
+
+        assertThat(writer.testRunData).hasSize(4);
+        assertThat(tookMillis).as("4 tests with 100ms delay each").isLessThan(400);
+    }
+
+    @Test
+    public void latenciesAreTrackedAcrossRuns() throws Exception {
+        LatencyHistograms latencies = new LatencyHistograms();
+        List<TestCase> tests = Arrays.asList(new Step("a"));
+        TestConfigs configs = new TestConfigs(new TestConfigs.Builder());
+
+        for (int i = 0; i < 2; i++) {
+            new TestRunner(writer, configs.createEmpty(), appUrl, tests, new InactiveLogSupport(),
+                    RunSettings.builder().latencies(latencies).build()).runAll();
+        }
+
+        TestRunData second = writer.testRunData.get(1);
+        assertThat(second.getDurationMicros()).isGreaterThanOrEqualTo(100_000);
+        assertThat(second.getLatency()).hasValueSatisfying(latency -> {
+            assertThat(latency.count).isEqualTo(2);
+            assertThat(latency.maxMicros).isGreaterThanOrEqualTo(second.getDurationMicros());
+            assertThat(latency.p50Micros).isGreaterThanOrEqualTo(100_000).isLessThanOrEqualTo(latency.maxMicros);
+        });
+    }
+
+    @Test
+    public void latenciesAreNotTrackedByDefault() throws Exception {
+        runner(Arrays.asList(new Step("a")), 1).runAll();
+
+        assertThat(writer.testRunData.get(0).getLatency()).isEmpty();
+    }
+
+    @Test
+    public void parallelism_mustBePositive() throws Exception {
+        assertThatThrownBy(() -> runner(Collections.emptyList(), 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void streaming_bodyIsVerifiedWhileReceived() throws Exception {
+        wire.stubFor(any(anyUrl()).willReturn(aResponse().withStatus(200).withBody("autobahn")));
+        Download download = new Download("autobahn");
+
+        runner(Arrays.asList(download), 1).runAll();
+
+        assertThat(writer.testRunData.get(0).getResult().type).isEqualTo(ResultType.SUCCESS);
+        assertThat(download.verifiedResponse.getBody()).isNull();
+    }
+
+    @Test
+    public void streaming_bodyAssertionFailsTheTest() throws Exception {
+        wire.stubFor(any(anyUrl()).willReturn(aResponse().withStatus(200).withBody("autobahn")));
+        Download download = new Download("corgi");
+
+        runner(Arrays.asList(download), 1).runAll();
+
+        TestRunResult result = writer.testRunData.get(0).getResult();
+        assertThat(result.type).isEqualTo(ResultType.FAILURE);
+        assertThat(result.assertionMessage).contains("corgi");
+        assertThat(download.verifiedResponse).isNull();
+    }
+
+    @Test
+    public void awaitLogs_endsOnceRequestCompletedAndLogsAreQuiet() throws Exception {
+        RequestCompletion.register("run-1");
+        try {
+            RequestCompletion.started("run-1");
+            RequestCompletion.finished("run-1");
+
+            long before = System.nanoTime();
+            TestRunner.awaitLogs("run-1", 1_000, Collections.emptyList());
+
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - before)).isLessThan(500);
+        } finally {
+            RequestCompletion.unregister("run-1");
+        }
+    }
+
+    @Test
+    public void awaitLogs_waitsFullTimeWithoutCompletionSignal() throws Exception {
+        RequestCompletion.register("run-2");
+        try {
+            RequestCompletion.started("run-2"); // still active
+
+            long before = System.nanoTime();
+            TestRunner.awaitLogs("run-2", 100, Collections.emptyList());
+
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - before)).isGreaterThanOrEqualTo(100);
+        } finally {
+            RequestCompletion.unregister("run-2");
+        }
+    }
+
+    @Test
+    public void awaitLogs_waitsWhileEventsArrive() throws Exception {
+        ConcurrentLogBuffer buffer = new ConcurrentLogBuffer();
+        List<LogAccess> logs = Arrays.asList(new LogAccess(Arrays.asList("root"), buffer, null));
+        RequestCompletion.register("run-3");
+        Thread logging = new Thread(() -> {
+            for (int i = 0; i < 5; i++) {
+                try {
+                    Thread.sleep(10); // like an asynchronous appender, well within the quiet period
+                } catch (InterruptedException e) {
+                    return;
+                }
+                buffer.add(SelftestEvent.of(i));
+            }
+        });
+        try {
+            RequestCompletion.started("run-3");
+            RequestCompletion.finished("run-3");
+            logging.start();
+
+            TestRunner.awaitLogs("run-3", 5_000, 50, logs);
+
+            assertThat(logging.isAlive()).isFalse();
+            assertThat(buffer.eventCount()).isEqualTo(5);
+        } finally {
+            logging.interrupt();
+            RequestCompletion.unregister("run-3");
+        }
+    }
+
+    @Test
+    public void awaitLogs_wakesUpWhenRequestFinishes() throws Exception {
+        RequestCompletion.register("run-4");
+        Thread application = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                return;
+            }
+            RequestCompletion.finished("run-4");
+        });
+        try {
+            RequestCompletion.started("run-4");
+            application.start();
+
+            long before = System.nanoTime();
+            TestRunner.awaitLogs("run-4", 5_000, Collections.emptyList());
+
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - before)).isBetween(50L, 2_000L);
+        } finally {
+            application.interrupt();
+            RequestCompletion.unregister("run-4");
+        }
+    }
+
+    @Test
+    public void awaitLogs_defaultTestCaseWithFilterEndsBeforeItsBound() throws Exception {
+        SelftestMDCFilter filter = new SelftestMDCFilter();
+        AtomicLong responded = new AtomicLong();
+        HttpClient client = (baseUrl, request, timeoutMillis) -> {
+            MockHttpServletRequest servletRequest = new MockHttpServletRequest();
+            servletRequest.addHeader(TestRunner.X_REQUEST_ID, request.request.headers.get(TestRunner.X_REQUEST_ID).get(0));
+            try {
+                filter.doFilter(servletRequest, new MockHttpServletResponse(), new MockFilterChain());
+            } catch (IOException | ServletException e) {
+                throw new IllegalStateException(e);
+            }
+            responded.set(System.nanoTime());
+            return new WrappedResponse(new TestResponse(200, new Headers(), ""),
+                    new DataBasedHttpDetails("HTTP/1.1 200 OK (synthetic)", new Headers(), ""));
+        };
+        HttpClients clients = mock(HttpClients.class);
+        when(clients.get(any())).thenReturn(client);
+        AtomicLong verified = new AtomicLong();
+        TestCase defaultWait = new TestCase() {
+            @Override
+            public TestRequest prepareRequest(TestValues config, Context ctx) throws Exception {
+                return new TestRequest("path", "GET");
+            }
+
+            @Override
+            public void verify(TestValues config, TestResponse response, Context ctx) throws Exception {
+                verified.set(System.nanoTime());
+            }
+        };
+        TestConfigs configs = new TestConfigs(new TestConfigs.Builder());
+
+        new TestRunner(writer, configs.createEmpty(), appUrl, Arrays.asList(defaultWait), new InactiveLogSupport(),
+                RunSettings.builder().clients(clients).build()).runAll();
+
+        assertThat(writer.testRunData.get(0).getResult().type).isEqualTo(ResultType.SUCCESS);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(verified.get() - responded.get()))
+                .isLessThan(defaultWait.waitForLogsMillis());
+    }
+
+    private TestRunner runner(List<TestCase> tests, int parallelism) {
+        TestConfigs configs = new TestConfigs(new TestConfigs.Builder());
+        return new TestRunner(writer, configs.createEmpty(), appUrl, tests, new InactiveLogSupport(),
+                RunSettings.builder().parallelism(parallelism).build());
+    }
+
+    private static List<String> names(List<TestCase> tests) {
+        return tests.stream().map(TestCase::getName).collect(toList());
+    }
+
+    private static class Download implements StreamingTestCase {
+
+        private final String expectedBody;
+        private TestResponse verifiedResponse;
+
+        Download(String expectedBody) {
+            this.expectedBody = expectedBody;
+        }
+
+        @Override
+        public TestRequest prepareRequest(TestValues config, Context ctx) throws Exception {
+            return new TestRequest("download", "GET");
+        }
+
+        @Override
+        public void verifyBody(TestValues config, TestResponse response, InputStream body, Context ctx) throws Exception {
+            byte[] expected = expectedBody.getBytes(UTF_8);
+            for (byte b : expected) {
+                if (body.read() != b) {
+                    throw new AssertionException("body does not start with " + expectedBody);
+                }
+            }
+        }
+
+        @Override
+        public void verify(TestValues config, TestResponse response, Context ctx) throws Exception {
+            verifiedResponse = response;
+        }
+
+        @Override
+        public int waitForLogsMillis() {
+            return 0;
+        }
+    }
+
+    private static class Step implements TestCase {
+
+        private final String name;
+        private final Set<String> dependencies;
+
+        Step(String name, String... dependencies) {
+            this.name = name;
+            this.dependencies = new HashSet<>(Arrays.asList(dependencies));
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Set<String> dependsOn() {
+            return dependencies;
+        }
+
+        @Override
+        public TestRequest prepareRequest(TestValues config, Context ctx) throws Exception {
+            String path = dependencies.stream().map(ctx::retrieve).filter(value -> value != null).findFirst().orElse(name);
+            return new TestRequest(path, "GET");
+        }
+
+        @Override
+        public void verify(TestValues config, TestResponse response, Context ctx) throws Exception {
+            ctx.store(name, "after-" + name);
+        }
+
+        @Override
+        public int waitForLogsMillis() {
+            return 0;
+        }
+    }
+
 }
@@ -0,0 +1,41 @@
+package net.oneandone.httpselftest.writer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+import j2html.utils.EscapeUtil;
+
+public class HtmlStreamTest {
+
+    private final StringWriter out = new StringWriter();
+
+    private final HtmlStream html = new HtmlStream(new PrintWriter(out));
+
+    @Test
+    public void escapesLikeJ2html() throws Exception {
+        String special = "a<b>c&d\"e'f ü";
+
+        html.text(special);
+
+        assertThat(out.toString()).isEqualTo(EscapeUtil.escape(special));
+    }
+
+    @Test
+    public void escapesRegion() throws Exception {
+        html.escaped("<a&b>", 1, 4);
+
+        assertThat(out.toString()).isEqualTo("a&amp;b");
+    }
+
+    @Test
+    public void writesElementsWithAttributes() throws Exception {
+        html.element("span", "text", "class", "a b", "title", "\"quoted\"").br();
+
+        assertThat(out.toString()).isEqualTo("<span class=\"a b\" title=\"&quot;quoted&quot;\">text</span><br>");
+    }
+
+}
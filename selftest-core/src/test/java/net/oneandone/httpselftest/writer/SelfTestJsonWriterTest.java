@@ -1,15 +1,24 @@
 package net.oneandone.httpselftest.writer;
 
+import net.oneandone.httpselftest.http.DataBasedHttpDetails;
+import net.oneandone.httpselftest.http.Headers;
 import net.oneandone.httpselftest.http.HttpException;
+import net.oneandone.httpselftest.http.PhaseTimings;
+import net.oneandone.httpselftest.http.TestResponse;
+import net.oneandone.httpselftest.http.WrappedResponse;
 import net.oneandone.httpselftest.log.LogAccess;
 import static net.oneandone.httpselftest.log.LogAccess.snapshot;
+import net.oneandone.httpselftest.test.run.RunRecord;
 import net.oneandone.httpselftest.test.run.TestRunData;
+import net.oneandone.httpselftest.test.run.TestRunDataHelper;
 import net.oneandone.httpselftest.test.run.TestRunResult;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collections;
 import java.util.List;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -71,6 +80,60 @@ public class SelfTestJsonWriterTest {
         assertThat(json).contains("success", "true").doesNotContain("test1", "message");
     }
 
+    @Test
+    public void writeTestOutcome_latency() {
+        TestRunData testRun = SelftestHtmlWriterTest.testRun("test1", "mn1", 234, TestRunResult.success());
+        TestRunDataHelper.setLatency(testRun, TestRunDataHelper.latency(3, 1_000, 2_000, 3_000, 4_000));
+
+        writer.writeTestOutcome(testRun, snapshot(SelftestHtmlWriterTest.logInfos("ROOT")), null);
+        writer.writePageEnd();
+
+        assertThat(out.written()).contains("\"latency\":{\"test1\":{", "\"count\":3", "\"p50Micros\":1000",
+                "\"p90Micros\":2000", "\"p99Micros\":3000", "\"maxMicros\":4000");
+    }
+
+    @Test
+    public void writeTestOutcome_noLatency() {
+        TestRunData testRun = SelftestHtmlWriterTest.testRun("test1", "mn1", 234, TestRunResult.success());
+
+        writer.writeTestOutcome(testRun, snapshot(SelftestHtmlWriterTest.logInfos("ROOT")), null);
+        writer.writePageEnd();
+
+        assertThat(out.written()).doesNotContain("latency", "phases");
+    }
+
+    @Test
+    public void writeTestOutcome_phases() {
+        TestRunData testRun = SelftestHtmlWriterTest.testRun("test1", "mn1", 234, TestRunResult.success());
+        TestRunDataHelper.setResponse(testRun, new WrappedResponse(new TestResponse(200, new Headers(), ""),
+                new DataBasedHttpDetails("HTTP/1.1 200 OK", new Headers(), ""), new PhaseTimings(1, 2, 3, 4, 5)));
+
+        writer.writeTestOutcome(testRun, snapshot(SelftestHtmlWriterTest.logInfos("ROOT")), null);
+        writer.writePageEnd();
+
+        assertThat(out.written()).contains("\"phases\":{\"test1\":{", "\"connectMicros\":1", "\"sendMicros\":2",
+                "\"firstByteMicros\":3", "\"headersMicros\":4", "\"bodyMicros\":5");
+    }
+
+    @Test
+    public void writeBurstOutcome() {
+        writer.writeBurstOutcome(TestRunDataHelper.burstOutcome("test1", 200, 4, 2_000, 0, 0,
+                TestRunDataHelper.latency(200, 8_000, 9_000, 12_000, 15_000), null));
+        writer.writePageEnd();
+
+        assertThat(out.written()).contains("\"success\":true", "\"burst\":{", "\"iterations\":200",
+                "\"requestsPerSecond\":100.0", "\"errorRate\":0.0", "\"p99Micros\":12000").doesNotContain("firstProblem");
+    }
+
+    @Test
+    public void writeBurstOutcome_failed() {
+        writer.writeBurstOutcome(TestRunDataHelper.burstOutcome("test1", 10, 1, 100, 1, 0,
+                TestRunDataHelper.latency(10, 1, 1, 1, 1), "expected 200"));
+        writer.writePageEnd();
+
+        assertThat(out.written()).contains("\"success\":false", "\"failures\":1", "\"firstProblem\":\"expected 200\"");
+    }
+
     @Test
     public void writeTestOutcome_uncaughtException() {
 
@@ -81,4 +144,17 @@ public class SelfTestJsonWriterTest {
         assertThat(json).contains("\"success\":false", "java.lang.IllegalAccessException", "chonker").doesNotContain("at");
     }
 
+    @Test
+    public void writeHistory() {
+        TestRunData testRun = SelftestHtmlWriterTest.testRun("test1", "mn1", 234, TestRunResult.failure("failed"));
+        RunRecord run = new RunRecord(Instant.EPOCH, 250, Collections.singletonList(testRun), Collections.emptyList());
+
+        writer.writeHistory(Collections.singletonList(run));
+        writer.writePageEnd();
+
+        String json = out.written();
+        assertThat(json).startsWith("{\"history\":[").contains("\"start\":\"1970-01-01T00:00:00Z\"", "\"durationMillis\":250",
+                "\"success\":false", "\"name\":\"test1\"", "\"result\":\"FAILURE\"", "\"durationMillis\":234");
+    }
+
 }
@@ -0,0 +1,120 @@
+package net.oneandone.httpselftest.writer;
+
+import static net.oneandone.httpselftest.log.LogAccess.snapshot;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.cliftonlabs.json_simple.JsonObject;
+import com.github.cliftonlabs.json_simple.Jsoner;
+
+import net.oneandone.httpselftest.log.LogAccess;
+import net.oneandone.httpselftest.log.SelftestEvent;
+import net.oneandone.httpselftest.test.run.RunRecord;
+import net.oneandone.httpselftest.test.run.TestRunData;
+import net.oneandone.httpselftest.test.run.TestRunResult;
+
+public class SelfTestNdjsonWriterTest {
+
+    private SelftestHtmlWriterTest.CapturingPrintWriter out;
+
+    private SelfTestNdjsonWriter writer;
+
+    @BeforeEach
+    public void prepareFile() throws Exception {
+        out = new SelftestHtmlWriterTest.CapturingPrintWriter("./target/ndjsonwritertest.json", "UTF-8");
+        writer = new SelfTestNdjsonWriter(out);
+    }
+
+    @AfterEach
+    public void finishFile() {
+        out.close();
+    }
+
+    @Test
+    public void testOutcomeIsWrittenImmediately() throws Exception {
+        TestRunData testRun = SelftestHtmlWriterTest.testRun("test1", "run-1", 234, TestRunResult.failure("failed"));
+
+        writer.writeTestOutcome(testRun, snapshot(SelftestHtmlWriterTest.logInfos("ROOT")), SelftestHtmlWriterTest.context());
+
+        List<JsonObject> records = records();
+        assertThat(records).hasSize(1);
+        JsonObject record = records.get(0);
+        assertThat(record.get("type")).isEqualTo("test");
+        assertThat(record.get("name")).isEqualTo("test1");
+        assertThat(record.get("runId")).isEqualTo("run-1");
+        assertThat(record.get("result")).isEqualTo("FAILURE");
+        assertThat(record.get("message")).isEqualTo("failed");
+        assertThat(number(record, "durationMillis")).isEqualTo(234);
+        assertThat(record.get("slowResponse")).isEqualTo(true);
+        assertThat(record.get("errorLogs")).isEqualTo(false);
+    }
+
+    @Test
+    public void errorLogsAreIndicated() throws Exception {
+        TestRunData testRun = SelftestHtmlWriterTest.testRun("test1", "run-1", 20, TestRunResult.success());
+        List<LogAccess> logs = SelftestHtmlWriterTest.logInfos("ROOT");
+        logs.get(0).buffer.add(SelftestEvent.of("boom", "ERROR"));
+
+        writer.writeTestOutcome(testRun, snapshot(logs), SelftestHtmlWriterTest.context());
+
+        JsonObject record = records().get(0);
+        assertThat(record.get("errorLogs")).isEqualTo(true);
+        assertThat(record.get("slowResponse")).isEqualTo(false);
+        assertThat(record).doesNotContainKey("message");
+    }
+
+    @Test
+    public void summaryCountsOutcomes() throws Exception {
+        writer.writeTestOutcome(SelftestHtmlWriterTest.testRun("a", "run-a", 1, TestRunResult.success()),
+                Collections.emptyList(), SelftestHtmlWriterTest.context());
+        TestRunResult error = TestRunResult.error(new IllegalStateException());
+        writer.writeTestOutcome(SelftestHtmlWriterTest.testRun("b", "run-b", 1, error), Collections.emptyList(),
+                SelftestHtmlWriterTest.context());
+        writer.writeUncaughtException(new IllegalArgumentException("uncaught"));
+        writer.writePageEnd();
+
+        List<JsonObject> records = records();
+        assertThat(records).extracting(record -> record.get("type")).containsExactly("test", "test", "exception", "summary");
+        JsonObject summary = records.get(3);
+        assertThat(summary.get("success")).isEqualTo(false);
+        assertThat(number(summary, "tests")).isEqualTo(2);
+        assertThat(number(summary, "errors")).isEqualTo(1);
+        assertThat(number(summary, "exceptions")).isEqualTo(1);
+    }
+
+    @Test
+    public void historyIsWrittenAsRunRecords() throws Exception {
+        RunRecord run = new RunRecord(Instant.now(), 12, Collections.emptyList(), Collections.emptyList());
+
+        writer.writeHistory(Collections.singletonList(run));
+        writer.writePageEnd();
+
+        List<JsonObject> records = records();
+        assertThat(records).hasSize(1);
+        assertThat(records.get(0).get("type")).isEqualTo("run");
+        assertThat(records.get(0).get("success")).isEqualTo(true);
+    }
+
+    private List<JsonObject> records() throws Exception {
+        String written = out.written();
+        assertThat(written).endsWith("\n");
+        List<JsonObject> records = new ArrayList<>();
+        for (String line : written.split("\n")) {
+            records.add((JsonObject) Jsoner.deserialize(line));
+        }
+        return records;
+    }
+
+    private static long number(JsonObject record, String key) {
+        return ((Number) record.get(key)).longValue();
+    }
+
+}
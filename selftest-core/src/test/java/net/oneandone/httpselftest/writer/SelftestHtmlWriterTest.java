@@ -11,6 +11,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
@@ -47,21 +48,23 @@ import net.oneandone.httpselftest.http.DataBasedHttpDetails;
 import net.oneandone.httpselftest.http.Headers;
 import net.oneandone.httpselftest.http.HttpDetails;
 import net.oneandone.httpselftest.http.HttpException;
+import net.oneandone.httpselftest.http.PhaseTimings;
 import net.oneandone.httpselftest.http.TestHttpHelper;
 import net.oneandone.httpselftest.http.TestRequest;
 import net.oneandone.httpselftest.http.TestResponse;
 import net.oneandone.httpselftest.http.WireBasedHttpDetails;
 import net.oneandone.httpselftest.http.WrappedRequest;
 import net.oneandone.httpselftest.http.WrappedResponse;
+import net.oneandone.httpselftest.log.ConcurrentLogBuffer;
 import net.oneandone.httpselftest.log.EventRendererStub;
 import net.oneandone.httpselftest.log.LogAccess;
 import net.oneandone.httpselftest.log.SelftestEvent;
-import net.oneandone.httpselftest.log.SynchronousLogBuffer;
 import net.oneandone.httpselftest.log.logback.LogbackEventRenderer;
 import net.oneandone.httpselftest.log.logback.LogbackSupport;
 import net.oneandone.httpselftest.test.api.TestCase;
 import net.oneandone.httpselftest.test.api.TestConfigs;
 import net.oneandone.httpselftest.test.api.TestConfigs.Values;
+import net.oneandone.httpselftest.test.run.RunRecord;
 import net.oneandone.httpselftest.test.run.SimpleContext;
 import net.oneandone.httpselftest.test.run.TestRunData;
 import net.oneandone.httpselftest.test.run.TestRunDataHelper;
@@ -95,6 +98,9 @@ public class SelftestHtmlWriterTest {
         ReflectionTestUtils.setField(configs, "fixedParameterNames", Collections.emptyList());
         writer.writePageStart(configs, relevantConfigIds, paramsToUse, servletName, testsBaseUrl, lastTestRun, callerIp,
                 lastTestrunIp);
+        // the file is not served by the servlet, so the assets referenced by the page are inlined
+        out.write("<style>" + new String(PageAsset.CSS.content(), UTF_8) + "</style>");
+        out.write("<script>" + new String(PageAsset.JS.content(), UTF_8) + "</script>");
     }
 
     static TestConfigs someTestConfigs() {
@@ -125,6 +131,55 @@ public class SelftestHtmlWriterTest {
         }
     }
 
+    @Test
+    public void progressiveWriterFlushesEachOutcome_silent() {
+        List<String> flushed = new LinkedList<>();
+        StringWriter target = new StringWriter() {
+            @Override
+            public void flush() {
+                flushed.add(toString());
+            }
+        };
+        SelftestHtmlWriter progressive = new SelftestHtmlWriter(new PrintWriter(target), true);
+        TestRunData testRun = testRun("test1", "run-1", 20, TestRunResult.success());
+
+        progressive.writeText("Running tests:");
+        progressive.writeTestOutcome(testRun, Collections.emptyList(), context());
+
+        assertThat(flushed).hasSize(2);
+        assertThat(flushed.get(1)).contains("test1");
+    }
+
+    @Test
+    public void regularWriterDoesNotFlush_silent() {
+        int[] flushes = { 0 };
+        StringWriter target = new StringWriter() {
+            @Override
+            public void flush() {
+                flushes[0]++;
+            }
+        };
+        SelftestHtmlWriter regular = new SelftestHtmlWriter(new PrintWriter(target));
+
+        regular.writeText("Running tests:");
+        regular.writeTestOutcome(testRun("test1", "run-1", 20, TestRunResult.success()), Collections.emptyList(), context());
+
+        assertThat(flushes[0]).isZero();
+    }
+
+    @Test
+    public void pageStartReferencesVersionedAssets_silent() {
+        StringWriter target = new StringWriter();
+        TestConfigs configs = someTestConfigs();
+        new SelftestHtmlWriter(new PrintWriter(target)).writePageStart(configs, Collections.emptySet(),
+                configs.create("qs relevant", Collections.emptyMap()), "servletName", "base url", null, "1.1.1.1", null);
+
+        assertThat(target.toString()).startsWith("<!doctype html>")
+                .contains("<link rel=\"stylesheet\" href=\"?asset=css&amp;v=" + PageAsset.CSS.version() + "\">")
+                .contains("<script src=\"?asset=js&amp;v=" + PageAsset.JS.version() + "\"></script>")
+                .doesNotContain("<style>");
+    }
+
     @Test
     public void metainfoBlock_silent() {
         String myIp = writer.metainfoBlock("base url", Instant.now(), "1.1.1.1", "1.1.1.1").render();
@@ -249,6 +304,38 @@ public class SelftestHtmlWriterTest {
         assertThat(out.written()).contains("Available test cases", "mock1.name", "mock2.name");
     }
 
+    @Test
+    public void writeHistory() {
+        RunRecord failed = new RunRecord(Instant.now(), 40, Arrays.asList(testRun("test1", "mn2", 12, TestRunResult.success()),
+                testRun("test2", "mn3", 23, TestRunResult.failure("failed"))), Collections.emptyList());
+        RunRecord succeeded = new RunRecord(Instant.now(), 10,
+                Collections.singletonList(testRun("test1", "mn1", 8, TestRunResult.success())), Collections.emptyList());
+
+        writer.writeHistory(Arrays.asList(failed, succeeded));
+
+        String html = out.written();
+        assertThat(html).contains("<th>test1</th><th>test2</th>", "history-failure", "history-success");
+        assertThat(html).contains("SUCCESS (12ms)", "FAILURE (23ms)", "SUCCESS (8ms)", "<td>-</td>");
+    }
+
+    @Test
+    public void writeBurstOutcome() {
+        writer.writeBurstOutcome(TestRunDataHelper.burstOutcome("test1", 200, 4, 2_000, 3, 1,
+                TestRunDataHelper.latency(200, 8_000, 9_000, 12_000, 15_000), "expected 200"));
+
+        String html = out.written();
+        assertThat(html).contains("Burst test1 (200 iterations, concurrency 4)", "test-failure", "100.0 requests/s");
+        assertThat(html).contains("3 failures, 1 errors (2.0%)", "p50 8.0ms / p90 9.0ms / p99 12.0ms / max 15.0ms",
+                "expected 200");
+    }
+
+    @Test
+    public void writeHistory_empty() {
+        writer.writeHistory(Collections.emptyList());
+
+        assertThat(out.written()).contains("History", "No scheduled runs yet.").doesNotContain("<table");
+    }
+
     @Test
     public void writeTestOutcome_urlConResponse() throws Exception {
         TestRunData testRun = testRun("test1", "mn1", 234, TestRunResult.success());
@@ -364,7 +451,7 @@ public class SelftestHtmlWriterTest {
 
         TestRunData testRun = testRun("nameIrrelevant", "mn2", 200, TestRunResult.success());
 
-        SynchronousLogBuffer singleBuffer = new SynchronousLogBuffer();
+        ConcurrentLogBuffer singleBuffer = new ConcurrentLogBuffer();
         Layout<ILoggingEvent> layout = getStdOutPatternFromConfig();
 
         List<LogAccess> logs = new LinkedList<>();
@@ -393,6 +480,44 @@ public class SelftestHtmlWriterTest {
         assertThat(html).contains("indicator errorlogs", "indicator warnlogs", "indicator slowresponse");
     }
 
+    @Test
+    public void writeTestOutcome_latency() {
+        TestRunData testRun = testRun("nameIrrelevant", "mn2", 50, TestRunResult.success());
+        TestRunDataHelper.setLatency(testRun, TestRunDataHelper.latency(7, 40_000, 60_500, 120_000, 250_123));
+
+        writer.writeTestOutcome(testRun, Collections.emptyList(), emptyContext());
+
+        String html = out.written();
+        assertThat(html).contains("p50 40.0ms / p90 60.5ms / p99 120.0ms / max 250.1ms", "across 7 runs");
+        assertThat(html).contains("indicator slowpercentile").doesNotContain("indicator slowresponse");
+    }
+
+    @Test
+    public void writeTestOutcome_phaseTimings() {
+        TestRunData testRun = testRun("nameIrrelevant", "mn2", 50, TestRunResult.success());
+        WrappedResponse response = dataBasedResponseWithBody("body");
+        TestRunDataHelper.setResponse(testRun, new WrappedResponse(response.response, response.responseDetails,
+                new PhaseTimings(1_200, 300, 45_000, 100, 2_500)));
+
+        writer.writeTestOutcome(testRun, Collections.emptyList(), emptyContext());
+
+        assertThat(out.written()).contains("TIMING",
+                "connect 1.2ms | send 0.3ms | first byte 45.0ms | headers 0.1ms | body 2.5ms");
+    }
+
+    @Test
+    public void writeTestOutcome_logLineSpacing() {
+        TestRunData testRun = testRun("nameIrrelevant", "mn2", 50, TestRunResult.success());
+        List<LogAccess> logs = logInfos("ROOT");
+        logs.get(0).buffer.add(of("  indented  http://url.de  twice <b>  \n\nafter empty line\n\n"));
+
+        writer.writeTestOutcome(testRun, snapshot(logs), emptyContext());
+
+        assertThat(out.written()).contains("<div><span class=\"level-unknown\">  indented  <span class=\"url\">http://url.de</span>"
+                + "  twice &lt;b&gt;</span><br><span class=\"level-unknown\"></span><br>"
+                + "<span class=\"level-unknown\">after empty line</span><br></div>");
+    }
+
     @Test
     public void writeTestOutcome_overflow() {
         TestRunData testRun = testRun("nameIrrelevant", "mn3", 50, TestRunResult.success());
@@ -462,7 +587,7 @@ public class SelftestHtmlWriterTest {
         List<LogAccess> logs = new LinkedList<>();
         if (logNames != null) {
             for (String logName : logNames) {
-                logs.add(new LogAccess(names(logName), new SynchronousLogBuffer(), new EventRendererStub()));
+                logs.add(new LogAccess(names(logName), new ConcurrentLogBuffer(), new EventRendererStub()));
             }
         }
         return logs;
@@ -559,11 +684,27 @@ public class SelftestHtmlWriterTest {
         }
 
         @Override
-        public void write(String s) {
+        public void write(String s, int off, int len) {
+            if (writeToFile) {
+                super.write(s, off, len);
+            }
+            captured.append(s, off, off + len);
+        }
+
+        @Override
+        public void write(char[] buf, int off, int len) {
+            if (writeToFile) {
+                super.write(buf, off, len);
+            }
+            captured.append(buf, off, len);
+        }
+
+        @Override
+        public void write(int c) {
             if (writeToFile) {
-                super.write(s);
+                super.write(c);
             }
-            captured.append(s);
+            captured.append((char) c);
         }
 
         public void reset() {